@@ -0,0 +1,50 @@
+package com.podio.sdk;
+
+import android.graphics.Bitmap;
+import android.test.AndroidTestCase;
+
+public class BitmapPoolTest extends AndroidTestCase {
+
+    public void testHandsOutABitmapOfTheSameDimensions() {
+        BitmapPool pool = new BitmapPool(1024 * 1024);
+        Bitmap bitmap = Bitmap.createBitmap(20, 10, Bitmap.Config.ARGB_8888);
+        pool.put(bitmap);
+
+        assertNull(pool.get(40, 40, 1));
+        assertSame(bitmap, pool.get(20, 10, 1));
+        assertNull(pool.get(20, 10, 1));
+        assertEquals(0, pool.size());
+    }
+
+    public void testIgnoresBitmapsThatCantBeReused() {
+        BitmapPool pool = new BitmapPool(1024 * 1024);
+        pool.put(Bitmap.createBitmap(new int[200], 20, 10, Bitmap.Config.ARGB_8888));
+        pool.put(Bitmap.createBitmap(20, 10, Bitmap.Config.RGB_565));
+
+        assertEquals(0, pool.size());
+    }
+
+    public void testDropsTheLeastRecentlyPooledBitmapsFirst() {
+        BitmapPool pool = new BitmapPool(2 * 10 * 10 * 4);
+        Bitmap first = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        Bitmap second = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        Bitmap third = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        pool.put(first);
+        pool.put(second);
+        pool.put(third);
+
+        assertEquals(2 * 10 * 10 * 4, pool.size());
+        assertSame(second, pool.get(10, 10, 1));
+        assertSame(third, pool.get(10, 10, 1));
+        assertNull(pool.get(10, 10, 1));
+    }
+
+    public void testDisabledPoolKeepsNothing() {
+        BitmapPool pool = new BitmapPool(0);
+        pool.put(Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888));
+
+        assertFalse(pool.isEnabled());
+        assertEquals(0, pool.size());
+    }
+
+}
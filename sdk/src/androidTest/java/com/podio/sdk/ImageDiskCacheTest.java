@@ -0,0 +1,49 @@
+package com.podio.sdk;
+
+import android.test.AndroidTestCase;
+
+import java.io.File;
+
+public class ImageDiskCacheTest extends AndroidTestCase {
+
+    private File directory;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        directory = new File(getContext().getCacheDir(), "image-disk-cache-test");
+        new ImageDiskCache(directory, 0L).clear();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        new ImageDiskCache(directory, 0L).clear();
+        directory.delete();
+        super.tearDown();
+    }
+
+    public void testImagesAreReadBackByANewInstance() {
+        new ImageDiskCache(directory, 1024L).put("https://test/image/1/small", new byte[] { 1, 2, 3 });
+
+        ImageDiskCache cache = new ImageDiskCache(directory, 1024L);
+        File file = cache.get("https://test/image/1/small");
+
+        assertNotNull(file);
+        assertEquals(3L, file.length());
+        assertNull(cache.get("https://test/image/1/large"));
+    }
+
+    public void testLeastRecentlyReadImagesAreDeletedFirst() {
+        ImageDiskCache cache = new ImageDiskCache(directory, 10L);
+        cache.put("a", new byte[4]);
+        cache.put("b", new byte[4]);
+        cache.get("a");
+        cache.put("c", new byte[4]);
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals(8L, cache.size());
+    }
+
+}
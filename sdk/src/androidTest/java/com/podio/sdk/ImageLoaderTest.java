@@ -0,0 +1,97 @@
+package com.podio.sdk;
+
+import android.graphics.Bitmap;
+import android.test.AndroidTestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+public class ImageLoaderTest extends AndroidTestCase {
+
+    private static final class TestListener implements ImageLoader.ImageListener {
+        private volatile Bitmap bitmap;
+        private volatile int deliveryCount;
+
+        @Override
+        public void onImageReady(Bitmap bitmap, String url, boolean isFromCache) {
+            if (bitmap != null) {
+                this.bitmap = bitmap;
+                this.deliveryCount++;
+            }
+        }
+
+        @Override
+        public void onErrorOccurred(PodioError podioError, String url) {
+            deliveryCount++;
+        }
+    }
+
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        file = new File(getContext().getCacheDir(), "image-loader-test.png");
+        FileOutputStream out = new FileOutputStream(file);
+
+        try {
+            Bitmap.createBitmap(8, 8, Bitmap.Config.ARGB_8888).compress(Bitmap.CompressFormat.PNG, 100, out);
+        } finally {
+            out.close();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+        super.tearDown();
+    }
+
+    private static void awaitDelivery(TestListener listener) throws InterruptedException {
+        // The images are decoded on a worker thread and delivered on the main thread.
+        for (int i = 0; i < 200 && listener.deliveryCount == 0; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    public void testConcurrentRequestsShareTheSameLoad() throws InterruptedException {
+        ImageLoader imageLoader = new ImageLoader();
+        imageLoader.setup(getContext());
+
+        TestListener first = new TestListener();
+        TestListener second = new TestListener();
+        imageLoader.loadImage(file.getPath(), null, first);
+        imageLoader.loadImage(file.getPath(), null, second);
+        awaitDelivery(first);
+        awaitDelivery(second);
+
+        assertNotNull(first.bitmap);
+        assertSame(first.bitmap, second.bitmap);
+    }
+
+    public void testCanceledRequestsDontGetTheImage() throws InterruptedException {
+        ImageLoader imageLoader = new ImageLoader();
+        imageLoader.setup(getContext());
+
+        TestListener canceled = new TestListener();
+        TestListener waiting = new TestListener();
+        ImageLoader.ImageRequest request = imageLoader.loadImage(file.getPath(), null, canceled);
+        imageLoader.loadImage(file.getPath(), null, waiting);
+        request.cancel();
+        awaitDelivery(waiting);
+
+        assertTrue(request.isCanceled());
+        assertNotNull(waiting.bitmap);
+        assertNull(canceled.bitmap);
+        assertEquals(0, canceled.deliveryCount);
+    }
+
+    public void testSampleSizeKeepsTheImageAtLeastAsLargeAsRequested() {
+        assertEquals(1, ImageLoader.getSampleSize(400, 400, 0, 0));
+        assertEquals(1, ImageLoader.getSampleSize(400, 400, 300, 300));
+        assertEquals(4, ImageLoader.getSampleSize(400, 400, 100, 100));
+        assertEquals(2, ImageLoader.getSampleSize(400, 200, 100, 100));
+        assertEquals(8, ImageLoader.getSampleSize(800, 200, 100, 0));
+    }
+
+}
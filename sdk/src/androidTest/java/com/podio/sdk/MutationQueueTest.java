@@ -0,0 +1,367 @@
+package com.podio.sdk;
+
+import android.test.AndroidTestCase;
+
+import com.podio.sdk.json.JsonParser;
+import com.podio.sdk.provider.PromiseClient;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class MutationQueueTest extends AndroidTestCase {
+
+    private static final class TestFilter extends Filter {
+
+        private TestFilter(String path, boolean isDeferrable) {
+            super(path);
+            setDeferrable(isDeferrable);
+        }
+
+        private TestFilter withQuery(String key, String value) {
+            addQueryParameter(key, value);
+            return this;
+        }
+    }
+
+    /**
+     * A store keeping its values as JSON, like a persistent store would.
+     */
+    private static final class TestStore implements Store {
+        private final HashMap<Object, String> values = new HashMap<Object, String>();
+
+        @Override
+        public Request<Void> free() {
+            return done(null);
+        }
+
+        @Override
+        public Request<Void> erase() {
+            return done(null);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public synchronized <T> Request<T> get(Object key, Class<T> classOfValue) {
+            String json = values.get(key);
+            return done(json != null ? JsonParser.fromJson(json, classOfValue) : null);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public synchronized <T> Request<Map<Object, T>> getAll(Collection<?> keys, Class<T> classOfValue) {
+            HashMap<Object, T> result = new HashMap<Object, T>();
+
+            for (Object key : keys) {
+                String json = values.get(key);
+                result.put(key, json != null ? JsonParser.fromJson(json, classOfValue) : null);
+            }
+
+            return done((Map<Object, T>) result);
+        }
+
+        @Override
+        public synchronized Request<Void> set(Object key, Object value) {
+            values.put(key, JsonParser.toJson(value));
+            return done(null);
+        }
+
+        @Override
+        public synchronized Request<Void> setAll(Map<?, ?> values) {
+            for (Map.Entry<?, ?> entry : values.entrySet()) {
+                set(entry.getKey(), entry.getValue());
+            }
+
+            return done(null);
+        }
+
+        @Override
+        public synchronized Request<Void> remove(Object key) {
+            values.remove(key);
+            return done(null);
+        }
+
+        private static <T> Request<T> done(T value) {
+            Promise<T> promise = new Promise<T>();
+            promise.complete(value);
+            return promise;
+        }
+    }
+
+    private static final class Body {
+        private final long value;
+
+        private Body(long value) {
+            this.value = value;
+        }
+    }
+
+    private static void awaitRequests(PromiseClient client, int count) throws InterruptedException {
+        // Replays are issued on the main thread, as the outcome of the previous request arrives.
+        for (int i = 0; i < 100 && client.size() < count; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static void awaitMainThread() throws InterruptedException {
+        // Outcomes are delivered on the main thread, in order, so once this result is delivered
+        // so are all outcomes delivered before it.
+        final CountDownLatch delivered = new CountDownLatch(1);
+        Promise<Void> barrier = new Promise<Void>();
+        barrier.withResultListener(new Request.ResultListener<Void>() {
+            @Override
+            public boolean onRequestPerformed(Void content) {
+                delivered.countDown();
+                return false;
+            }
+        });
+
+        barrier.complete(null);
+        assertTrue(delivered.await(2, TimeUnit.SECONDS));
+    }
+
+    private static void awaitSize(MutationQueue queue, int size) throws InterruptedException {
+        for (int i = 0; i < 100 && queue.size() != size; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Issues a change and fails it as if the device were offline, which leaves the queue waiting.
+     */
+    private static Request<Object> goOffline(MutationQueue queue, PromiseClient client) throws InterruptedException {
+        int count = client.size();
+        Request<Object> request = queue.request(Request.Method.PUT, new TestFilter("item/1", true), null, Object.class);
+        awaitRequests(client, count + 1);
+
+        client.get(count).fail(new ConnectionError("offline"));
+        awaitSize(queue, 1);
+        return request;
+    }
+
+    public void testPassesNonDeferrableRequestsThrough() {
+        PromiseClient client = new PromiseClient();
+        MutationQueue queue = new MutationQueue(client, new TestStore());
+
+        queue.request(Request.Method.POST, new TestFilter("item/app/1/filter", false), null, Object.class);
+
+        assertEquals(1, client.size());
+        assertEquals(0, queue.size());
+    }
+
+    public void testSendsChangesStraightAwayWhenOnline() {
+        PromiseClient client = new PromiseClient();
+        TestStore store = new TestStore();
+        MutationQueue queue = new MutationQueue(client, store);
+
+        Request<Object> request = queue.request(Request.Method.PUT, new TestFilter("item/1", true), new Body(1L), Object.class);
+
+        assertEquals(1, client.size());
+        assertEquals(0, queue.size());
+        assertTrue(store.values.isEmpty());
+
+        client.get(0).complete("done");
+        assertEquals("done", request.waitForResult(10));
+    }
+
+    public void testFailsTheChangeOnOtherErrorsWhenOnline() throws InterruptedException {
+        PromiseClient client = new PromiseClient();
+        MutationQueue queue = new MutationQueue(client, new TestStore());
+
+        Request<Object> request = queue.request(Request.Method.PUT, new TestFilter("item/1", true), null, Object.class);
+        request.withErrorListener(new Request.ErrorListener() {
+            @Override
+            public boolean onErrorOccurred(Throwable cause) {
+                return true;
+            }
+        });
+
+        client.get(0).fail(new NoResponseError("timeout"));
+
+        try {
+            request.waitForResult(10);
+            fail("should have thrown PodioError");
+        } catch (PodioError e) {
+            assertTrue(e instanceof NoResponseError);
+        }
+
+        assertEquals(0, queue.size());
+    }
+
+    public void testSessionListenersCanBeAdded() {
+        PromiseClient client = new PromiseClient();
+        MutationQueue queue = new MutationQueue(client, new TestStore());
+
+        Request<Object> request = queue.request(Request.Method.PUT, new TestFilter("item/1", true), null, Object.class);
+        assertSame(request, request.withSessionListener(new Request.SessionListener() {
+            @Override
+            public boolean onSessionChanged(String authToken, String refreshToken, String transferToken, long expires) {
+                return false;
+            }
+        }));
+    }
+
+    public void testCoalescesPendingUpdatesOfTheSameEntity() throws InterruptedException {
+        PromiseClient client = new PromiseClient();
+        MutationQueue queue = new MutationQueue(client, new TestStore());
+        goOffline(queue, client);
+
+        queue.request(Request.Method.PUT, new TestFilter("item/5", true), null, Object.class);
+        queue.request(Request.Method.PUT, new TestFilter("item/5", true), null, Object.class);
+        queue.request(Request.Method.POST, new TestFilter("comment/item/5", true), null, Object.class);
+
+        assertEquals(1, client.size());
+        assertEquals(3, queue.size());
+    }
+
+    public void testMergesPendingPartialUpdatesOfTheSameEntity() throws InterruptedException {
+        PromiseClient client = new PromiseClient();
+        MutationQueue queue = new MutationQueue(client, new TestStore());
+        goOffline(queue, client);
+
+        Request<Object> first = queue.request(Request.Method.PUT, new TestFilter("item/5", true),
+                JsonParser.fromJson("{\"fields\":{\"title\":\"a\",\"status\":\"open\"},\"tags\":[\"x\"]}", Object.class), Object.class);
+        Request<Object> second = queue.request(Request.Method.PUT, new TestFilter("item/5", true),
+                JsonParser.fromJson("{\"fields\":{\"status\":\"closed\"}}", Object.class), Object.class);
+
+        // item/1 and the merged update.
+        assertEquals(2, queue.size());
+
+        queue.resume();
+        awaitRequests(client, 2);
+        client.get(1).complete(null);
+        awaitRequests(client, 3);
+
+        assertEquals("PUT https://test/item/5", client.targets.get(2));
+        assertEquals("{\"fields\":{\"title\":\"a\",\"status\":\"closed\"},\"tags\":[\"x\"]}", client.data.get(2));
+
+        client.get(2).complete("done");
+        assertEquals("done", first.waitForResult(10));
+        assertEquals("done", second.waitForResult(10));
+    }
+
+    public void testDeleteDropsPendingChangesOfTheSameEntity() throws InterruptedException {
+        PromiseClient client = new PromiseClient();
+        MutationQueue queue = new MutationQueue(client, new TestStore());
+        goOffline(queue, client);
+
+        Request<Object> update = queue.request(Request.Method.PUT, new TestFilter("item/5", true), null, Object.class);
+        queue.request(Request.Method.POST, new TestFilter("item/5", true), null, Object.class);
+        queue.request(Request.Method.POST, new TestFilter("comment/item/5", true), null, Object.class);
+        queue.request(Request.Method.DELETE, new TestFilter("item/5", true), null, null);
+
+        // item/1, the comment and the deletion.
+        assertEquals(3, queue.size());
+
+        queue.resume();
+        awaitRequests(client, 2);
+        client.get(1).complete(null);
+        awaitRequests(client, 3);
+        client.get(2).complete(null);
+        awaitRequests(client, 4);
+
+        assertEquals("DELETE https://test/item/5", client.targets.get(3));
+        client.get(3).complete(null);
+
+        // The dropped update is delivered the outcome of the deletion.
+        awaitSize(queue, 0);
+        assertTrue(((Promise<Object>) update).isDone());
+    }
+
+    public void testKeepsTheChangeWhenOffline() throws InterruptedException {
+        PromiseClient client = new PromiseClient();
+        MutationQueue queue = new MutationQueue(client, new TestStore());
+
+        queue.request(Request.Method.DELETE, new TestFilter("item/1", true), null, null);
+        awaitRequests(client, 1);
+
+        client.get(0).fail(new ConnectionError("offline"));
+        Thread.sleep(100);
+        assertEquals(1, queue.size());
+
+        queue.resume();
+        awaitRequests(client, 2);
+        client.get(1).complete(null);
+
+        awaitSize(queue, 0);
+        assertEquals(0, queue.size());
+    }
+
+    public void testWaitsLongerAndLongerBetweenAttempts() throws InterruptedException {
+        assertEquals(1000L, MutationQueue.getBackoff(0));
+        assertEquals(2000L, MutationQueue.getBackoff(1));
+        assertEquals(4000L, MutationQueue.getBackoff(2));
+        assertEquals(5L * 60L * 1000L, MutationQueue.getBackoff(10));
+        assertEquals(5L * 60L * 1000L, MutationQueue.getBackoff(Integer.MAX_VALUE));
+
+        PromiseClient client = new PromiseClient();
+        MutationQueue queue = new MutationQueue(client, new TestStore());
+        goOffline(queue, client);
+
+        // The change isn't replayed right away, but within the first backoff.
+        Thread.sleep(100);
+        assertEquals(1, client.size());
+
+        for (int i = 0; i < 150 && client.size() < 2; i++) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(2, client.size());
+    }
+
+    public void testGivesUpAfterMaxAttempts() throws InterruptedException {
+        PromiseClient client = new PromiseClient();
+        MutationQueue queue = new MutationQueue(client, new TestStore());
+        Request<Object> request = goOffline(queue, client);
+        request.withErrorListener(new Request.ErrorListener() {
+            @Override
+            public boolean onErrorOccurred(Throwable cause) {
+                return true;
+            }
+        });
+
+        for (int attempt = 0; attempt < MutationQueue.MAX_ATTEMPTS; attempt++) {
+            assertEquals(1, queue.size());
+            queue.resume();
+            awaitRequests(client, attempt + 2);
+            client.get(attempt + 1).fail(new ApiError("{}", 503));
+            awaitMainThread();
+        }
+
+        assertEquals(0, queue.size());
+        assertEquals(MutationQueue.MAX_ATTEMPTS + 1, client.size());
+
+        try {
+            request.waitForResult(10);
+            fail("should have thrown PodioError");
+        } catch (PodioError e) {
+            assertTrue(e instanceof ApiError);
+        }
+    }
+
+    public void testReplaysPersistedChangesAfterRestart() throws InterruptedException {
+        TestStore store = new TestStore();
+        PromiseClient client = new PromiseClient();
+        MutationQueue queue = new MutationQueue(client, store);
+
+        queue.request(Request.Method.PUT, new TestFilter("item/7", true).withQuery("hook", "false"), new Body(42L), Object.class);
+        client.get(0).fail(new ConnectionError("offline"));
+        awaitSize(queue, 1);
+
+        // The app is restarted, the new queue finds the change in the store.
+        PromiseClient restartedClient = new PromiseClient();
+        MutationQueue restartedQueue = new MutationQueue(restartedClient, store);
+        awaitRequests(restartedClient, 1);
+
+        assertEquals(1, restartedClient.size());
+        assertEquals("PUT https://test/item/7?hook=false", restartedClient.targets.get(0));
+        assertEquals("{\"value\":42}", restartedClient.data.get(0));
+
+        restartedClient.get(0).complete(null);
+        awaitSize(restartedQueue, 0);
+        assertEquals(0, restartedQueue.size());
+    }
+
+}
@@ -0,0 +1,168 @@
+package com.podio.sdk;
+
+import android.test.AndroidTestCase;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class PromiseTest extends AndroidTestCase {
+
+    public void testWaitForResultReturnsAtOnceWhenDone() {
+        Promise<String> promise = new Promise<String>();
+        promise.complete("done");
+
+        long start = System.currentTimeMillis();
+        assertEquals("done", promise.waitForResult(10));
+        assertTrue(System.currentTimeMillis() - start < 1000);
+    }
+
+    public void testWaitForResultThrowsTheError() {
+        Promise<String> promise = new Promise<String>();
+        promise.withErrorListener(new Request.ErrorListener() {
+            @Override
+            public boolean onErrorOccurred(Throwable cause) {
+                return true;
+            }
+        });
+
+        promise.fail(new IllegalStateException("failed"));
+
+        try {
+            promise.waitForResult(10);
+            fail("should have thrown PodioError");
+        } catch (PodioError e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    public void testThenTransformsTheResultOnTheGivenExecutor() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            Promise<String> source = new Promise<String>();
+            Request<Integer> length = source.then(new Request.Transformation<String, Integer>() {
+                @Override
+                public Integer transform(String result) {
+                    return result.length();
+                }
+            }, executor);
+
+            source.complete("four");
+            assertEquals(Integer.valueOf(4), length.waitForResult(10));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testComposeDeliversTheResultOfTheNextRequest() {
+        final Promise<String> next = new Promise<String>();
+        Promise<Integer> source = new Promise<Integer>();
+
+        Request<String> composed = source.compose(new Request.Continuation<Integer, String>() {
+            @Override
+            public Request<String> proceed(Integer result) {
+                return next;
+            }
+        }, null);
+
+        source.complete(1);
+        next.complete("next");
+        assertEquals("next", composed.waitForResult(10));
+    }
+
+    public void testAllDeliversTheResultsInRequestOrder() {
+        Promise<String> first = new Promise<String>();
+        Promise<String> second = new Promise<String>();
+        Promise<List<String>> all = Promise.all(Arrays.asList(first, second));
+
+        second.complete("b");
+        first.complete("a");
+        assertEquals(Arrays.asList("a", "b"), all.waitForResult(10));
+    }
+
+    public void testAnyDeliversTheFirstResult() {
+        Promise<String> first = new Promise<String>();
+        Promise<String> second = new Promise<String>();
+        Promise<String> any = Promise.any(Arrays.asList(first, second));
+
+        second.complete("b");
+        assertEquals("b", any.waitForResult(10));
+    }
+
+    public void testCancelAllCancelsTaggedPromisesAndTheirSources() {
+        Promise<String> first = new Promise<String>();
+        Promise<String> second = new Promise<String>();
+        Promise<List<String>> all = Promise.all(Arrays.asList(first, second));
+        all.withTag("tag");
+
+        Promise.cancelAll("tag");
+
+        assertTrue(all.isCanceled());
+        assertTrue(first.isCanceled());
+        assertTrue(second.isCanceled());
+    }
+
+    public void testCancelAllCancelsAPromiseBetweenRequests() throws InterruptedException {
+        final Promise<String> next = new Promise<String>();
+        Promise<Integer> source = new Promise<Integer>();
+
+        Promise<String> composed = (Promise<String>) source.compose(new Request.Continuation<Integer, String>() {
+            @Override
+            public Request<String> proceed(Integer result) {
+                return next;
+            }
+        }, null);
+
+        // The continuation is called on the main thread, ahead of any listeners added after it.
+        final CountDownLatch delivered = new CountDownLatch(1);
+        source.withResultListener(new Request.ResultListener<Integer>() {
+            @Override
+            public boolean onRequestPerformed(Integer content) {
+                delivered.countDown();
+                return false;
+            }
+        });
+
+        composed.withTag("tag");
+        source.complete(1);
+        assertTrue(delivered.await(2, TimeUnit.SECONDS));
+        Promise.cancelAll("tag");
+
+        assertTrue(composed.isCanceled());
+        assertTrue(next.isCanceled());
+    }
+
+    public void testAbandonedTaggedPromisesCanBeCollected() throws InterruptedException {
+        Promise<String> promise = new Promise<String>();
+        promise.withTag("tag");
+        WeakReference<Promise<String>> reference = new WeakReference<Promise<String>>(promise);
+        promise = null;
+
+        for (int i = 0; i < 50 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertNull(reference.get());
+    }
+
+    public void testCancelAllLeavesOtherPromisesAlone() {
+        Promise<String> other = new Promise<String>();
+        other.withTag("other");
+        Promise<String> untagged = new Promise<String>();
+
+        Promise.cancelAll("tag");
+
+        assertFalse(other.isCanceled());
+        assertFalse(untagged.isCanceled());
+
+        other.complete("done");
+        assertEquals("done", other.waitForResult(10));
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.podio.sdk;
+
+import android.test.AndroidTestCase;
+
+import java.util.Arrays;
+
+public class RequestGroupTest extends AndroidTestCase {
+
+    private static RequestGroup.Member<String> member(final Promise<String> promise, final int[] issued) {
+        return new RequestGroup.Member<String>() {
+            @Override
+            public Request<String> issue() {
+                issued[0]++;
+                return promise;
+            }
+        };
+    }
+
+    private static void awaitIssued(int count, int[] issued) throws InterruptedException {
+        // Results are delivered on the main thread, so is the next member issued.
+        for (int i = 0; i < 100 && issued[0] < count; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static void awaitCanceled(Promise<?> promise) throws InterruptedException {
+        for (int i = 0; i < 100 && !promise.isCanceled(); i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    public void testDeliversTheResultsInMemberOrder() {
+        Promise<String> first = new Promise<String>();
+        Promise<String> second = new Promise<String>();
+        int[] issued = new int[] { 0 };
+
+        RequestGroup group = Podio.parallel(member(first, issued), member(second, issued));
+
+        second.complete("b");
+        first.complete("a");
+        assertEquals(Arrays.<Object> asList("a", "b"), group.waitForResult(10));
+        assertTrue(group.getElapsedMillis(0) >= 0L);
+        assertTrue(group.getElapsedMillis(1) >= 0L);
+    }
+
+    public void testKeepsNoMoreThanMaxConcurrencyInFlight() throws InterruptedException {
+        Promise<String> first = new Promise<String>();
+        Promise<String> second = new Promise<String>();
+        Promise<String> third = new Promise<String>();
+        int[] issued = new int[] { 0 };
+
+        RequestGroup group = Podio.parallel(2, member(first, issued), member(second, issued), member(third, issued));
+        assertEquals(2, issued[0]);
+        assertEquals(-1L, group.getElapsedMillis(2));
+
+        first.complete("a");
+        awaitIssued(3, issued);
+        assertEquals(3, issued[0]);
+
+        second.complete("b");
+        third.complete("c");
+        assertEquals(Arrays.<Object> asList("a", "b", "c"), group.waitForResult(10));
+    }
+
+    public void testFailsWithTheFirstErrorAndCancelsTheRest() throws InterruptedException {
+        Promise<String> first = new Promise<String>();
+        Promise<String> second = new Promise<String>();
+        Promise<String> third = new Promise<String>();
+        int[] issued = new int[] { 0 };
+
+        RequestGroup group = Podio.parallel(2, member(first, issued), member(second, issued), member(third, issued));
+        group.withErrorListener(new Request.ErrorListener() {
+            @Override
+            public boolean onErrorOccurred(Throwable cause) {
+                return true;
+            }
+        });
+
+        first.fail(new IllegalStateException("failed"));
+
+        try {
+            group.waitForResult(10);
+            fail("should have thrown PodioError");
+        } catch (PodioError e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        awaitCanceled(second);
+        assertTrue(second.isCanceled());
+        assertEquals(2, issued[0]);
+    }
+
+    public void testKeepsGoingWhenNotFailFast() {
+        Promise<String> first = new Promise<String>();
+        Promise<String> second = new Promise<String>();
+        int[] issued = new int[] { 0 };
+
+        RequestGroup group = new RequestGroup(2, member(first, issued), member(second, issued))
+                .withFailFast(false)
+                .start();
+
+        first.fail(new IllegalStateException("failed"));
+        second.complete("b");
+
+        assertEquals(Arrays.<Object> asList(null, "b"), group.waitForResult(10));
+        assertTrue(group.getError(0) instanceof IllegalStateException);
+        assertNull(group.getError(1));
+    }
+
+    public void testParallelKeepsGoingWhenNotFailFast() {
+        Promise<String> first = new Promise<String>();
+        Promise<String> second = new Promise<String>();
+        int[] issued = new int[] { 0 };
+
+        RequestGroup group = Podio.parallel(1, false, member(first, issued), member(second, issued));
+
+        first.fail(new IllegalStateException("failed"));
+        second.complete("b");
+
+        assertEquals(Arrays.<Object> asList(null, "b"), group.waitForResult(10));
+        assertEquals(2, issued[0]);
+        assertTrue(group.getError(0) instanceof IllegalStateException);
+    }
+
+}
@@ -29,6 +29,38 @@ public class UtilsTest extends AndroidTestCase {
         assertEquals("1970-01-01 21:14:59", timeString);
     }
 
+    public void testFormatAndParseMatchSimpleDateFormat() throws ParseException {
+        SimpleDateFormat dateTimeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        dateTimeFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        // Roughly every 37 hours from 1650 to 2350, plus some odd seconds.
+        for (long millis = -10000000000000L; millis < 12000000000000L; millis += 133333333000L + 7000L) {
+            Date date = new Date(millis);
+            String dateTime = dateTimeFormat.format(date);
+
+            assertEquals(dateTime, Utils.formatDateTimeUtc(date));
+            assertEquals(dateFormat.format(date), Utils.formatDateUtc(date));
+            assertEquals(dateTimeFormat.parse(dateTime), Utils.parseDateTimeUtc(dateTime));
+            assertEquals(dateFormat.parse(dateTime.substring(0, 10)), Utils.parseDateUtc(dateTime.substring(0, 10)));
+        }
+
+        // Out of range fields roll over, just like with a lenient SimpleDateFormat.
+        String[] lenient = { "2014-02-30 25:61:61", "2014-00-01 00:00:00", "2014-13-01 00:00:00", "2016-02-29 23:59:59" };
+        for (String dateTime : lenient) {
+            assertEquals(dateTimeFormat.parse(dateTime), Utils.parseDateTimeUtc(dateTime));
+        }
+
+        // Other notations are still handled as before.
+        assertEquals(dateFormat.parse("2014-7-9"), Utils.parseDateUtc("2014-7-9"));
+        assertEquals(dateFormat.parse("2014-07-09 10:00:00"), Utils.parseDateUtc("2014-07-09 10:00:00"));
+        assertNull(Utils.parseDateTimeUtc("2014-07-09"));
+        assertNull(Utils.parseDateTimeUtc("2014-07-09T10:00:00"));
+        assertNull(Utils.parseDateTimeUtc(null));
+        assertNull(Utils.formatDateTimeUtc(null));
+    }
+
     public void testGetNativeBoolean() {
         Boolean value = Boolean.TRUE;
         assertEquals(true, Utils.getNative(value, false));
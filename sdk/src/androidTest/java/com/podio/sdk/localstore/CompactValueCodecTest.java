@@ -0,0 +1,58 @@
+package com.podio.sdk.localstore;
+
+import android.test.AndroidTestCase;
+
+import com.podio.sdk.domain.Item;
+import com.podio.sdk.json.JsonParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+public class CompactValueCodecTest extends AndroidTestCase {
+
+    private static final String ITEM_JSON = "{item_id:7,title:'Åsa',priority:1.5,pinned:true," +
+            "participants:{'12':{status:'going'}},tags:['a','b']," +
+            "fields:[{type:'calculation',field_id:5,config:{settings:{return_type:'text'}},values:[{value:'abc'}]}," +
+            "{type:'number',field_id:6,values:[{value:'3.2500'}]}]}";
+
+    private static byte[] encode(ValueCodec codec, Object value) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        codec.encode(value, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    public void testRegisteredClassSurvivesRoundTrip() throws Exception {
+        Item item = JsonParser.fromJson(ITEM_JSON, Item.class);
+
+        for (boolean deflate : new boolean[] { true, false }) {
+            CompactValueCodec codec = new CompactValueCodec(deflate);
+            byte[] bytes = encode(codec, item);
+            Item copy = codec.decode(new ByteArrayInputStream(bytes), Item.class);
+
+            assertEquals(JsonParser.toJson(item), JsonParser.toJson(copy));
+            assertEquals(1, copy.getParticipants().size());
+        }
+    }
+
+    public void testBinaryValueIsSmallerThanJson() throws Exception {
+        Item item = JsonParser.fromJson(ITEM_JSON, Item.class);
+        byte[] json = encode(new JsonValueCodec(), item);
+        byte[] binary = encode(new CompactValueCodec(false), item);
+
+        assertTrue(binary.length < json.length);
+    }
+
+    public void testJsonValuesCanBeDecoded() throws Exception {
+        Item item = JsonParser.fromJson(ITEM_JSON, Item.class);
+        byte[] json = encode(new JsonValueCodec(), item);
+        Item copy = new CompactValueCodec().decode(new ByteArrayInputStream(json), Item.class);
+
+        assertEquals(JsonParser.toJson(item), JsonParser.toJson(copy));
+    }
+
+    public void testUnregisteredClassIsEncodedAsJson() throws Exception {
+        byte[] bytes = encode(new CompactValueCodec(), new String[] { "a" });
+        assertEquals("[\"a\"]", new String(bytes, "UTF-8"));
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.podio.sdk.localstore;
+
+import android.test.AndroidTestCase;
+
+import java.io.File;
+import java.util.Arrays;
+
+public class FileStorageEngineTest extends AndroidTestCase {
+
+    private File directory;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        directory = new File(getContext().getCacheDir(), "file-storage-engine-test");
+        directory.mkdirs();
+        new FileStorageEngine(directory).erase();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        new FileStorageEngine(directory).erase();
+        directory.delete();
+        super.tearDown();
+    }
+
+    public void testSmallAndLargeValuesAreReadBack() throws Exception {
+        char[] chars = new char[LocalStoreRequest.MAPPED_READ_THRESHOLD * 2];
+        Arrays.fill(chars, 'z');
+        String value = new String(chars);
+
+        FileStorageEngine engine = new FileStorageEngine(directory, new CompactValueCodec());
+        engine.write("small", new String[] { "a" });
+        engine.write("large", new String[] { value });
+
+        assertEquals("a", engine.read("small", String[].class)[0]);
+        assertEquals(value, engine.read("large", String[].class)[0]);
+        assertNull(engine.read("missing", String[].class));
+    }
+
+}
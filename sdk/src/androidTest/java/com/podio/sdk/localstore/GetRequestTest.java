@@ -0,0 +1,168 @@
+package com.podio.sdk.localstore;
+
+import android.test.AndroidTestCase;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class GetRequestTest extends AndroidTestCase {
+
+    /**
+     * A storage engine which holds on to each read until it's told to let go.
+     */
+    private static final class SlowStorageEngine implements StorageEngine {
+        private final CountDownLatch readStarted = new CountDownLatch(1);
+        private final CountDownLatch readReleased = new CountDownLatch(1);
+        private final Object value;
+
+        private SlowStorageEngine(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T read(Object key, Class<T> classOfValue) throws IOException {
+            readStarted.countDown();
+
+            try {
+                readReleased.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IOException(e.getMessage());
+            }
+
+            return (T) value;
+        }
+
+        @Override
+        public int write(Object key, Object value) throws IOException {
+            return ENCODED_LENGTH;
+        }
+
+        @Override
+        public Map<Object, Integer> writeAll(Map<?, ?> values) throws IOException {
+            HashMap<Object, Integer> lengths = new HashMap<Object, Integer>();
+
+            for (Object key : values.keySet()) {
+                lengths.put(key, ENCODED_LENGTH);
+            }
+
+            return lengths;
+        }
+
+        @Override
+        public void delete(Object key) throws IOException {
+        }
+
+        @Override
+        public void erase() {
+        }
+    }
+
+    private static final int ENCODED_LENGTH = 17;
+
+    private MemoryStore memoryStore;
+    private KeyGenerations generations;
+    private SlowStorageEngine storageEngine;
+    private LocalStoreRequest.RuntimeStoreEnabler storeEnabler;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        memoryStore = new MemoryStore(1024, new JsonSizer());
+        generations = new KeyGenerations();
+        storageEngine = new SlowStorageEngine("old");
+        storeEnabler = new LocalStoreRequest.RuntimeStoreEnabler() {
+            @Override
+            public MemoryStore getMemoryStore() {
+                return memoryStore;
+            }
+
+            @Override
+            public StorageEngine getStorageEngine() {
+                return storageEngine;
+            }
+        };
+    }
+
+    public void testDiskReadIsPutInMemory() throws Exception {
+        GetRequest<String> request = LocalStoreRequest.newGetRequest(storeEnabler, generations, "key", String.class);
+        Thread worker = runInBackground(request);
+
+        storageEngine.readStarted.await(5, TimeUnit.SECONDS);
+        storageEngine.readReleased.countDown();
+        worker.join(5000);
+
+        assertEquals("old", request.waitForResult(1));
+        assertEquals("old", memoryStore.get("key"));
+    }
+
+    public void testDiskReadDoesntOverwriteAConcurrentSet() throws Exception {
+        GetRequest<String> request = LocalStoreRequest.newGetRequest(storeEnabler, generations, "key", String.class);
+        Thread worker = runInBackground(request);
+        storageEngine.readStarted.await(5, TimeUnit.SECONDS);
+
+        // The caller sets a new value while the old one is being read from disk.
+        long[] snapshot = generations.invalidate(memoryStore, Collections.singleton("key"));
+        generations.putIfCurrent(memoryStore, "key", "new", snapshot);
+
+        storageEngine.readReleased.countDown();
+        worker.join(5000);
+
+        assertEquals("new", memoryStore.get("key"));
+    }
+
+    public void testDiskReadDoesntRestoreAConcurrentlyRemovedValue() throws Exception {
+        GetRequest<String> request = LocalStoreRequest.newGetRequest(storeEnabler, generations, "key", String.class);
+        Thread worker = runInBackground(request);
+        storageEngine.readStarted.await(5, TimeUnit.SECONDS);
+
+        // The caller removes the value while it's being read from disk.
+        generations.invalidate(memoryStore, Collections.singleton("key"));
+
+        storageEngine.readReleased.countDown();
+        worker.join(5000);
+
+        assertNull(memoryStore.get("key"));
+    }
+
+    public void testStaleSetDoesntOverwriteALaterRemove() throws Exception {
+        long[] snapshot = generations.invalidate(memoryStore, Collections.singleton("key"));
+        SetRequest request = LocalStoreRequest.newSetRequest(storeEnabler, generations, snapshot, "key", "value");
+
+        // The caller removes the value before the set request gets to run.
+        generations.invalidate(memoryStore, Collections.singleton("key"));
+        request.run();
+
+        assertNull(memoryStore.get("key"));
+    }
+
+    public void testSetSizesTheValueByItsEncodedLength() {
+        long[] snapshot = generations.invalidate(memoryStore, Collections.singleton("key"));
+        LocalStoreRequest.newSetRequest(storeEnabler, generations, snapshot, "key", "value").run();
+
+        assertEquals("value", memoryStore.get("key"));
+        assertEquals(ENCODED_LENGTH, memoryStore.size());
+    }
+
+    public void testSetAllSizesTheValuesByTheirEncodedLengths() {
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put("a", "value");
+        values.put("b", "value");
+
+        long[] snapshot = generations.invalidate(memoryStore, values.keySet());
+        LocalStoreRequest.newSetAllRequest(storeEnabler, generations, snapshot, values).run();
+
+        assertEquals(2 * ENCODED_LENGTH, memoryStore.size());
+    }
+
+    private static Thread runInBackground(Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        thread.start();
+        return thread;
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.podio.sdk.localstore;
+
+import android.test.AndroidTestCase;
+
+public class JsonSizerTest extends AndroidTestCase {
+
+    public void testSizeIsUtf8LengthOfJson() {
+        JsonSizer sizer = new JsonSizer();
+
+        // ["abc"] and ["åäö"] respectively.
+        assertEquals(7, sizer.sizeOf("key", new String[] { "abc" }, -1));
+        assertEquals(10, sizer.sizeOf("key", new String[] { "åäö" }, -1));
+    }
+
+    public void testEncodedLengthIsUsedWhenKnown() {
+        JsonSizer sizer = new JsonSizer();
+
+        assertEquals(3, sizer.sizeOf("key", new String[] { "abc" }, 3));
+        assertEquals(0, sizer.sizeOf("key", new String[] { "abc" }, 0));
+    }
+
+    public void testRegisteredEstimatorIsUsedForItsClass() {
+        JsonSizer sizer = new JsonSizer().register(String[].class, new Sizer() {
+            @Override
+            public int sizeOf(Object key, Object value, int encodedLength) {
+                return 42;
+            }
+        });
+
+        assertEquals(42, sizer.sizeOf("key", new String[] { "abc" }, 7));
+        assertEquals(3, sizer.sizeOf("key", new Integer[] { 1 }, -1));
+    }
+
+}
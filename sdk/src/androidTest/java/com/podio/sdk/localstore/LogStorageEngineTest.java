@@ -0,0 +1,130 @@
+package com.podio.sdk.localstore;
+
+import android.test.AndroidTestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+
+public class LogStorageEngineTest extends AndroidTestCase {
+
+    private File directory;
+
+    private static long sizeOf(File directory) {
+        long size = 0;
+
+        for (File file : directory.listFiles()) {
+            size += file.length();
+        }
+
+        return size;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        directory = new File(getContext().getCacheDir(), "log-storage-engine-test");
+        directory.mkdirs();
+        new FileStorageEngine(directory).erase();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        new FileStorageEngine(directory).erase();
+        directory.delete();
+        super.tearDown();
+    }
+
+    public void testWrittenValueIsReadAfterReopen() throws Exception {
+        LogStorageEngine engine = LogStorageEngine.open(directory);
+        engine.write("key", new String[] { "a", "b" });
+        engine.write(42L, new String[] { "c" });
+
+        LogStorageEngine reopened = LogStorageEngine.open(directory);
+        assertTrue(Arrays.equals(new String[] { "a", "b" }, reopened.read("key", String[].class)));
+        assertTrue(Arrays.equals(new String[] { "c" }, reopened.read(42L, String[].class)));
+        assertNull(reopened.read("missing", String[].class));
+    }
+
+    public void testOverwrittenAndDeletedValuesStayThatWayAfterReopen() throws Exception {
+        LogStorageEngine engine = LogStorageEngine.open(directory);
+        engine.write("key", new String[] { "a" });
+        engine.write("key", new String[] { "b" });
+        engine.write("gone", new String[] { "c" });
+        engine.delete("gone");
+
+        LogStorageEngine reopened = LogStorageEngine.open(directory);
+        assertTrue(Arrays.equals(new String[] { "b" }, reopened.read("key", String[].class)));
+        assertNull(reopened.read("gone", String[].class));
+    }
+
+    public void testBatchWrittenValuesAreReadAfterReopen() throws Exception {
+        HashMap<Object, Object> values = new HashMap<Object, Object>();
+        values.put("key", new String[] { "a" });
+        values.put(42L, new String[] { "b", "c" });
+
+        LogStorageEngine engine = LogStorageEngine.open(directory);
+        engine.write("key", new String[] { "old" });
+        engine.writeAll(values);
+
+        LogStorageEngine reopened = LogStorageEngine.open(directory);
+        assertTrue(Arrays.equals(new String[] { "a" }, reopened.read("key", String[].class)));
+        assertTrue(Arrays.equals(new String[] { "b", "c" }, reopened.read(42L, String[].class)));
+    }
+
+    public void testTornRecordIsCutOffOnReopen() throws Exception {
+        LogStorageEngine engine = LogStorageEngine.open(directory);
+        engine.write("key", new String[] { "a" });
+
+        // Simulate a crash in the middle of writing a record.
+        FileOutputStream outputStream = new FileOutputStream(new File(directory, "1.log"), true);
+        outputStream.write(new byte[] { 0, 0, 0, 1, 0, 0, 0, 3, 0, 0 });
+        outputStream.close();
+
+        LogStorageEngine reopened = LogStorageEngine.open(directory);
+        assertTrue(Arrays.equals(new String[] { "a" }, reopened.read("key", String[].class)));
+
+        reopened.write("other", new String[] { "b" });
+        LogStorageEngine reopenedAgain = LogStorageEngine.open(directory);
+        assertTrue(Arrays.equals(new String[] { "a" }, reopenedAgain.read("key", String[].class)));
+        assertTrue(Arrays.equals(new String[] { "b" }, reopenedAgain.read("other", String[].class)));
+    }
+
+    public void testLargeValueIsReadAfterReopen() throws Exception {
+        char[] chars = new char[LocalStoreRequest.MAPPED_READ_THRESHOLD * 2];
+        Arrays.fill(chars, 'y');
+        String value = new String(chars);
+
+        LogStorageEngine engine = LogStorageEngine.open(directory);
+        engine.write("small", new String[] { "a" });
+        engine.write("large", new String[] { value });
+
+        LogStorageEngine reopened = LogStorageEngine.open(directory);
+        assertEquals(value, reopened.read("large", String[].class)[0]);
+        assertEquals("a", reopened.read("small", String[].class)[0]);
+    }
+
+    public void testStaleRecordsAreCompacted() throws Exception {
+        char[] chars = new char[10 * 1024];
+        Arrays.fill(chars, 'x');
+        String value = new String(chars);
+
+        LogStorageEngine engine = LogStorageEngine.open(directory);
+        for (int i = 0; i < 300; i++) {
+            engine.write("key", new String[] { value, Integer.toString(i) });
+        }
+
+        // Give the background compaction a chance to finish.
+        for (int i = 0; i < 50 && sizeOf(directory) > 1024 * 1024; i++) {
+            Thread.sleep(100);
+        }
+
+        assertTrue(sizeOf(directory) < 1024 * 1024);
+
+        LogStorageEngine reopened = LogStorageEngine.open(directory);
+        String[] result = reopened.read("key", String[].class);
+        assertEquals("299", result[1]);
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.podio.sdk.localstore;
+
+import android.test.AndroidTestCase;
+
+public class MemoryStoreTest extends AndroidTestCase {
+
+    private static final class CountingSizer implements Sizer {
+        private int count = 0;
+
+        @Override
+        public int sizeOf(Object key, Object value, int encodedLength) {
+            count++;
+            return 10;
+        }
+    }
+
+    public void testValuesAreSizedOnlyWhenPut() {
+        CountingSizer sizer = new CountingSizer();
+        MemoryStore memoryStore = new MemoryStore(100, sizer);
+
+        memoryStore.put("a", "value");
+        memoryStore.put("b", "value");
+        memoryStore.remove("a");
+        memoryStore.evictAll();
+
+        assertEquals(2, sizer.count);
+        assertEquals(0, memoryStore.size());
+    }
+
+    public void testSizeIsAccountedForUntilTheValueIsRemoved() {
+        MemoryStore memoryStore = new MemoryStore(100, new CountingSizer());
+
+        memoryStore.put("a", "value");
+        memoryStore.put("b", "value");
+        assertEquals(20, memoryStore.size());
+
+        memoryStore.put("a", "other value");
+        assertEquals(20, memoryStore.size());
+        assertEquals("other value", memoryStore.get("a"));
+
+        memoryStore.remove("b");
+        assertEquals(10, memoryStore.size());
+        assertNull(memoryStore.get("b"));
+    }
+
+    public void testLeastRecentlyUsedValuesAreEvicted() {
+        MemoryStore memoryStore = new MemoryStore(20, new CountingSizer());
+
+        memoryStore.put("a", "value");
+        memoryStore.put("b", "value");
+        memoryStore.get("a");
+        memoryStore.put("c", "value");
+
+        assertEquals("value", memoryStore.get("a"));
+        assertNull(memoryStore.get("b"));
+        assertEquals(1, memoryStore.evictionCount());
+    }
+
+}
@@ -1,10 +1,13 @@
 package com.podio.sdk.parser;
 
+import java.nio.charset.Charset;
 import java.util.List;
 
 import android.test.AndroidTestCase;
 
+import com.google.gson.JsonSyntaxException;
 import com.podio.sdk.domain.Item;
+import com.podio.sdk.domain.ItemParticipation;
 import com.podio.sdk.domain.field.CalculationField;
 import com.podio.sdk.domain.field.CategoryField;
 import com.podio.sdk.domain.field.ContactField;
@@ -153,4 +156,84 @@ public class JsonParserTest extends AndroidTestCase {
         assertContent(item, TextField.class, Field.Type.text);
     }
 
+    public void testParseJsonStringToCalculationFieldValuesBeforeConfiguration() {
+        String json = "{fields:[{values:[{value:'12.5'}],config:{settings:{return_type:'number'}},type:'calculation'}]}";
+        Item item = JsonParser.fromJson(json, Item.class);
+
+        assertContent(item, CalculationField.class, Field.Type.calculation);
+
+        CalculationField field = (CalculationField) item.getFields().get(0);
+        assertEquals(1, field.valuesCount());
+        assertEquals(NumberField.Value.class, field.getValue(0).getClass());
+        assertEquals("12.5", ((NumberField.Value) field.getValue(0)).getValue());
+    }
+
+    public void testParseJsonStringToFieldWithTypeAfterValues() {
+        String json = "{fields:[{field_id:3,values:[{value:'hello'}],label:'Title',type:'text'}]}";
+        Item item = JsonParser.fromJson(json, Item.class);
+
+        assertContent(item, TextField.class, Field.Type.text);
+
+        TextField field = (TextField) item.getFields().get(0);
+        assertEquals(3L, field.getFieldId());
+        assertEquals("Title", field.getLabel());
+        assertEquals(1, field.valuesCount());
+        assertEquals("hello", field.getValue(0).getValue());
+    }
+
+    public void testParseJsonStringToFieldWithoutValues() {
+        String json = "{fields:[{type:'text',field_id:4}]}";
+        Item item = JsonParser.fromJson(json, Item.class);
+
+        assertContent(item, TextField.class, Field.Type.text);
+
+        TextField field = (TextField) item.getFields().get(0);
+        assertNotNull(field.getValues());
+        assertEquals(0, field.valuesCount());
+    }
+
+    public void testSerializeAndParseCalculationField() {
+        String json = "{fields:[{type:'calculation',field_id:5,config:{settings:{return_type:'text'}},values:[{value:'abc'}]}]}";
+        Item item = JsonParser.fromJson(json, Item.class);
+        Item copy = JsonParser.fromJson(JsonParser.toJson(item), Item.class);
+
+        assertContent(copy, CalculationField.class, Field.Type.calculation);
+
+        CalculationField field = (CalculationField) copy.getFields().get(0);
+        assertEquals(1, field.valuesCount());
+        assertEquals("abc", ((TextField.Value) field.getValue(0)).getValue());
+    }
+
+    public void testParseJsonStringToFieldWithAMapInItsValues() {
+        String json = "{item_id:1,fields:[{type:'app',field_id:2,values:[{value:{item_id:7,participants:{'5':{status:'accepted'}}}}]}]}";
+        Item item = JsonParser.fromJson(json, Item.class);
+
+        assertContent(item, RelationshipField.class, Field.Type.app);
+
+        RelationshipField field = (RelationshipField) item.getFields().get(0);
+        Item reference = field.getValue(0).getItem();
+        assertEquals(7L, reference.getId());
+        assertEquals(ItemParticipation.MeetingParticipantStatus.accepted, reference.getParticipants().get(5L).getStatus());
+    }
+
+    public void testParseJsonBytesToItem() throws Exception {
+        byte[] json = "{item_id:7,title:'Åsa',fields:[{type:'text'}]}".getBytes("UTF-8");
+        Item item = JsonParser.fromJson(json, Charset.forName("UTF-8"), Item.class);
+
+        assertContent(item, TextField.class, Field.Type.text);
+        assertEquals(7L, item.getId());
+        assertEquals("Åsa", item.getTitle());
+    }
+
+    public void testParseErrorDoesNotContainJson() {
+        String json = "{fields:[{type:'text',values:'no-array-here'}]}";
+
+        try {
+            JsonParser.fromJson(json, Item.class);
+            fail("Should have thrown exception");
+        } catch (JsonSyntaxException e) {
+            assertFalse(e.getMessage().contains("no-array-here"));
+        }
+    }
+
 }
@@ -0,0 +1,289 @@
+package com.podio.sdk.provider;
+
+import android.test.AndroidTestCase;
+
+import com.podio.sdk.ConnectionError;
+import com.podio.sdk.PodioError;
+import com.podio.sdk.Promise;
+import com.podio.sdk.Request;
+import com.podio.sdk.Transport;
+import com.podio.sdk.domain.File;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+
+public class FileProviderTest extends AndroidTestCase {
+
+    private static final class RangeTransport implements Transport {
+        private final byte[] content;
+        private String etag = "\"v1\"";
+        private int resumeOffset = -1;
+        private int connections;
+        private String range;
+        private String ifRange;
+
+        private RangeTransport(byte[] content) {
+            this.content = content;
+        }
+
+        @Override
+        public synchronized HttpURLConnection openConnection(URL url) throws IOException {
+            connections++;
+
+            return new HttpURLConnection(url) {
+                private int offset;
+
+                @Override
+                public void connect() {
+                }
+
+                @Override
+                public void disconnect() {
+                }
+
+                @Override
+                public boolean usingProxy() {
+                    return false;
+                }
+
+                @Override
+                public int getResponseCode() {
+                    range = getRequestProperty("Range");
+                    ifRange = getRequestProperty("If-Range");
+
+                    if (range == null || !etag.equals(ifRange)) {
+                        offset = 0;
+                        return HTTP_OK;
+                    }
+
+                    offset = resumeOffset >= 0 ? resumeOffset : Integer.parseInt(range.substring(6, range.length() - 1));
+                    return HTTP_PARTIAL;
+                }
+
+                @Override
+                public String getHeaderField(String name) {
+                    if ("Content-Length".equalsIgnoreCase(name)) {
+                        return Integer.toString(content.length - offset);
+                    } else if ("Content-Range".equalsIgnoreCase(name)) {
+                        return "bytes " + offset + "-" + (content.length - 1) + "/" + content.length;
+                    } else if ("ETag".equalsIgnoreCase(name)) {
+                        return etag;
+                    } else {
+                        return null;
+                    }
+                }
+
+                @Override
+                public InputStream getInputStream() {
+                    return new ByteArrayInputStream(content, offset, content.length - offset);
+                }
+            };
+        }
+    }
+
+    private static void awaitRequests(PromiseClient client, int count) throws InterruptedException {
+        // Retries are sent after a randomized delay of up to two seconds.
+        for (int i = 0; i < 300 && client.size() < count; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    public void testRetriesUploadAfterAConnectionError() throws InterruptedException {
+        PromiseClient client = new PromiseClient();
+        FileProvider provider = new FileProvider();
+        provider.setClient(client);
+
+        Request<File> upload = provider.uploadFile(new java.io.File("test.png"));
+        client.get(0).fail(new ConnectionError("offline"));
+        awaitRequests(client, 2);
+
+        assertEquals(2, client.size());
+        assertFalse(((Promise<File>) upload).isDone());
+    }
+
+    public void testGivesUpAfterTheMaxNumberOfAttempts() throws InterruptedException {
+        PromiseClient client = new PromiseClient();
+        FileProvider provider = new FileProvider();
+        provider.setClient(client);
+        provider.setMaxUploadAttempts(1);
+
+        final Throwable[] error = new Throwable[1];
+        provider.uploadFile(new java.io.File("test.png"))
+                .withErrorListener(new Request.ErrorListener() {
+                    @Override
+                    public boolean onErrorOccurred(Throwable cause) {
+                        error[0] = cause;
+                        return true;
+                    }
+                });
+
+        client.get(0).fail(new ConnectionError("offline"));
+
+        for (int i = 0; i < 100 && error[0] == null; i++) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(error[0] instanceof ConnectionError);
+        assertEquals(1, client.size());
+    }
+
+    public void testUploadsNoMoreThanMaxParallelFiles() {
+        PromiseClient client = new PromiseClient();
+        FileProvider provider = new FileProvider();
+        provider.setClient(client);
+
+        provider.uploadFiles(2, Arrays.asList(
+                new java.io.File("a.png"),
+                new java.io.File("b.png"),
+                new java.io.File("c.png")));
+
+        assertEquals(2, client.size());
+    }
+
+    public void testResumesADownloadFromThePartialFile() throws IOException {
+        java.io.File destination = newDestination("0123", "1\n\"v1\"");
+        RangeTransport transport = new RangeTransport("0123456789".getBytes("UTF-8"));
+        FileProvider provider = new FileProvider();
+        provider.setTransport(transport);
+
+        java.io.File result = provider.download("1", "https://files.podio.com/1", destination).waitForResult(5);
+
+        assertEquals(destination, result);
+        assertEquals("bytes=4-", transport.range);
+        assertEquals("\"v1\"", transport.ifRange);
+        assertEquals("0123456789", readAndDelete(destination));
+        assertFalse(new java.io.File(destination.getPath() + ".part").exists());
+        assertFalse(new java.io.File(destination.getPath() + ".part.validator").exists());
+    }
+
+    public void testRestartsADownloadOfAFileWhichHasChanged() throws IOException {
+        java.io.File destination = newDestination("abcd", "1\n\"v1\"");
+        RangeTransport transport = new RangeTransport("0123456789".getBytes("UTF-8"));
+        transport.etag = "\"v2\"";
+        FileProvider provider = new FileProvider();
+        provider.setTransport(transport);
+
+        provider.download("1", "https://files.podio.com/1", destination).waitForResult(5);
+
+        assertEquals("\"v1\"", transport.ifRange);
+        assertEquals("0123456789", readAndDelete(destination));
+    }
+
+    public void testDoesntResumeFromThePartialFileOfAnotherFile() throws IOException {
+        java.io.File destination = newDestination("abcd", "2\n\"v1\"");
+        RangeTransport transport = new RangeTransport("0123456789".getBytes("UTF-8"));
+        FileProvider provider = new FileProvider();
+        provider.setTransport(transport);
+
+        provider.download("1", "https://files.podio.com/1", destination).waitForResult(5);
+
+        assertNull(transport.range);
+        assertEquals("0123456789", readAndDelete(destination));
+    }
+
+    public void testRestartsADownloadResumedAtTheWrongOffset() throws IOException {
+        java.io.File destination = newDestination("abcd", "1\n\"v1\"");
+        RangeTransport transport = new RangeTransport("0123456789".getBytes("UTF-8"));
+        transport.resumeOffset = 2;
+        FileProvider provider = new FileProvider();
+        provider.setTransport(transport);
+
+        provider.download("1", "https://files.podio.com/1", destination).waitForResult(5);
+
+        assertEquals(2, transport.connections);
+        assertNull(transport.range);
+        assertEquals("0123456789", readAndDelete(destination));
+    }
+
+    public void testDoesntRetryALocalFailure() throws IOException {
+        // The destination directory can't be created, there's a file in its way.
+        java.io.File parent = newDestination(null, null);
+        new FileOutputStream(parent).close();
+        java.io.File destination = new java.io.File(parent, "file.txt");
+
+        RangeTransport transport = new RangeTransport("0123456789".getBytes("UTF-8"));
+        FileProvider provider = new FileProvider();
+        provider.setTransport(transport);
+
+        try {
+            provider.download("1", "https://files.podio.com/1", destination).waitForResult(5);
+            fail("Should have thrown a PodioError");
+        } catch (PodioError e) {
+            assertFalse(e instanceof ConnectionError);
+        } finally {
+            parent.delete();
+        }
+
+        assertEquals(0, transport.connections);
+    }
+
+    public void testDoesntRetryAnInvalidLink() throws IOException {
+        java.io.File destination = newDestination(null, null);
+        RangeTransport transport = new RangeTransport("0123456789".getBytes("UTF-8"));
+        FileProvider provider = new FileProvider();
+        provider.setTransport(transport);
+
+        try {
+            provider.download("1", null, destination).waitForResult(5);
+            fail("Should have thrown a PodioError");
+        } catch (PodioError e) {
+            assertFalse(e instanceof ConnectionError);
+        }
+
+        assertEquals(0, transport.connections);
+    }
+
+    public void testFailsTheDownloadOnAnUnexpectedException() throws IOException {
+        java.io.File destination = newDestination(null, null);
+        final IllegalStateException exception = new IllegalStateException("unexpected");
+        FileProvider provider = new FileProvider();
+        provider.setTransport(new Transport() {
+            @Override
+            public HttpURLConnection openConnection(URL url) {
+                throw exception;
+            }
+        });
+
+        try {
+            provider.download("1", "https://files.podio.com/1", destination).waitForResult(5);
+            fail("Should have thrown a PodioError");
+        } catch (PodioError e) {
+            assertSame(exception, e.getCause());
+        }
+    }
+
+    private java.io.File newDestination(String partialContent, String validator) throws IOException {
+        java.io.File destination = new java.io.File(getContext().getCacheDir(), "file-provider-test.txt");
+        destination.delete();
+        write(new java.io.File(destination.getPath() + ".part"), partialContent);
+        write(new java.io.File(destination.getPath() + ".part.validator"), validator);
+        return destination;
+    }
+
+    private static void write(java.io.File file, String content) throws IOException {
+        file.delete();
+
+        if (content != null) {
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(content.getBytes("UTF-8"));
+            out.close();
+        }
+    }
+
+    private static String readAndDelete(java.io.File file) throws IOException {
+        byte[] content = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        in.read(content);
+        in.close();
+        file.delete();
+
+        return new String(content, "UTF-8");
+    }
+
+}
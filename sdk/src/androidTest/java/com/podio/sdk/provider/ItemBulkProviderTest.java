@@ -0,0 +1,151 @@
+package com.podio.sdk.provider;
+
+import android.test.AndroidTestCase;
+
+import com.podio.sdk.PodioError;
+import com.podio.sdk.Promise;
+import com.podio.sdk.Request;
+import com.podio.sdk.domain.Item;
+import com.podio.sdk.json.JsonParser;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ItemBulkProviderTest extends AndroidTestCase {
+
+    private PromiseClient client;
+    private ItemProvider provider;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        client = new PromiseClient();
+        provider = new ItemProvider();
+        provider.setClient(client);
+    }
+
+    public void testBulkResultReportsEachOperationInOrder() {
+        Request<ItemProvider.BulkResult> request = provider.bulk()
+                .create(1, new Item())
+                .update(2, new Item())
+                .delete(7, 3)
+                .submit();
+
+        assertEquals(3, client.size());
+        assertEquals(Request.Method.POST, client.methods.get(0));
+        assertEquals(Request.Method.PUT, client.methods.get(1));
+        assertEquals("POST https://test/item/app/7/delete", client.targets.get(2));
+
+        // The operations report back out of order, and the update fails.
+        client.<Void> get(2).complete(null);
+        client.<Item.CreateResult> get(1).fail(new PodioError("update failed"));
+        client.<Item.CreateResult> get(0).complete(newCreateResult(10L));
+
+        ItemProvider.BulkResult result = request.waitForResult(10);
+        assertNotNull(result);
+        assertEquals(3, result.size());
+        assertEquals(1, result.getFailureCount());
+
+        assertTrue(result.isSuccess(0));
+        assertEquals(10L, result.getResult(0).getItemId());
+        assertNull(result.getError(0));
+
+        assertFalse(result.isSuccess(1));
+        assertNull(result.getResult(1));
+        assertEquals("update failed", result.getError(1).getMessage());
+
+        assertTrue(result.isSuccess(2));
+        assertNull(result.getResult(2));
+        assertNull(result.getError(2));
+    }
+
+    public void testBulkCompletesOnlyOnceEveryOperationHasReported() throws InterruptedException {
+        Promise<ItemProvider.BulkResult> request = (Promise<ItemProvider.BulkResult>) provider.bulk()
+                .create(1, new Item())
+                .delete(1, 2)
+                .submit();
+
+        client.<Void> get(1).fail(new PodioError("delete failed"));
+        awaitMainThread();
+        assertFalse(request.isDone());
+
+        client.<Item.CreateResult> get(0).complete(newCreateResult(10L));
+        ItemProvider.BulkResult result = request.waitForResult(10);
+        assertTrue(request.isDone());
+        assertEquals(1, result.getFailureCount());
+        assertFalse(result.isSuccess(1));
+    }
+
+    public void testBulkKeepsIssuingOperationsAfterAFailure() throws InterruptedException {
+        Request<ItemProvider.BulkResult> request = provider.bulk()
+                .delete(1, 1)
+                .delete(2, 2)
+                .onMaxConcurrency(1)
+                .submit();
+
+        assertEquals(1, client.size());
+
+        client.<Void> get(0).fail(new PodioError("delete failed"));
+        awaitMainThread();
+        assertEquals(2, client.size());
+
+        client.<Void> get(1).complete(null);
+
+        ItemProvider.BulkResult result = request.waitForResult(10);
+        assertFalse(result.isSuccess(0));
+        assertTrue(result.isSuccess(1));
+    }
+
+    public void testDeletesItemsOfTheSameApplicationInOneRequest() {
+        Request<ItemProvider.BulkResult> request = provider.bulk()
+                .delete(1, 1)
+                .update(5, new Item())
+                .delete(1, 2)
+                .delete(2, 3)
+                .submit();
+
+        assertEquals(3, client.size());
+        assertEquals("POST https://test/item/app/1/delete", client.targets.get(0));
+        assertEquals("{\"item_ids\":[1,2]}", client.data.get(0));
+        assertEquals("PUT https://test/item/5", client.targets.get(1));
+        assertEquals("POST https://test/item/app/2/delete", client.targets.get(2));
+        assertEquals("{\"item_ids\":[3]}", client.data.get(2));
+
+        // The deletions sharing a request share its outcome.
+        client.<Void> get(0).fail(new PodioError("delete failed"));
+        client.<Item.CreateResult> get(1).complete(newCreateResult(5L));
+        client.<Void> get(2).complete(null);
+
+        ItemProvider.BulkResult result = request.waitForResult(10);
+        assertEquals(4, result.size());
+        assertEquals(2, result.getFailureCount());
+        assertFalse(result.isSuccess(0));
+        assertTrue(result.isSuccess(1));
+        assertEquals(5L, result.getResult(1).getItemId());
+        assertFalse(result.isSuccess(2));
+        assertEquals("delete failed", result.getError(2).getMessage());
+        assertTrue(result.isSuccess(3));
+    }
+
+    private static void awaitMainThread() throws InterruptedException {
+        // Results are delivered on the main thread, in order, so once this result is delivered
+        // so are all results delivered before it.
+        final CountDownLatch delivered = new CountDownLatch(1);
+        Promise<Void> barrier = new Promise<Void>();
+        barrier.withResultListener(new Request.ResultListener<Void>() {
+            @Override
+            public boolean onRequestPerformed(Void content) {
+                delivered.countDown();
+                return false;
+            }
+        });
+
+        barrier.complete(null);
+        assertTrue(delivered.await(2, TimeUnit.SECONDS));
+    }
+
+    private static Item.CreateResult newCreateResult(long itemId) {
+        return JsonParser.fromJson("{\"item_id\":" + itemId + "}", Item.CreateResult.class);
+    }
+
+}
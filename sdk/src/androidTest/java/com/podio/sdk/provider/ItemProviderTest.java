@@ -1,6 +1,7 @@
 
 package com.podio.sdk.provider;
 
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 
 import org.mockito.Mock;
@@ -12,6 +13,7 @@ import android.test.InstrumentationTestCase;
 
 import com.podio.sdk.Request;
 import com.podio.sdk.domain.Item;
+import com.podio.sdk.json.JsonParser;
 import com.podio.sdk.volley.MockRestClient;
 import com.podio.sdk.provider.ItemProvider.ItemFilterProvider;
 
@@ -42,6 +44,28 @@ public class ItemProviderTest extends InstrumentationTestCase {
         assertEquals(Uri.parse("https://test/item/app/2"), mockClient.uri);
     }
 
+    public void testBulkIssuesNoMoreThanMaxConcurrency() {
+        MockRestClient mockClient = new MockRestClient(getInstrumentation().getTargetContext());
+        ItemProvider provider = new ItemProvider();
+        provider.setClient(mockClient);
+
+        provider.bulk()
+                .update(5, new Item())
+                .delete(4, 6)
+                .onMaxConcurrency(1)
+                .submit();
+
+        assertEquals(Uri.parse("https://test/item/5"), mockClient.uri);
+
+        provider.bulk()
+                .update(5, new Item())
+                .delete(4, 6)
+                .onMaxConcurrency(2)
+                .submit();
+
+        assertEquals(Uri.parse("https://test/item/app/4/delete"), mockClient.uri);
+    }
+
     public void testCreateItemWithNullPointer() {
         MockRestClient mockClient = new MockRestClient(getInstrumentation().getTargetContext());
         ItemProvider provider = new ItemProvider();
@@ -82,6 +106,122 @@ public class ItemProviderTest extends InstrumentationTestCase {
         assertEquals(Uri.parse("https://test/item/app/4/filter"), mockClient.uri);
     }
 
+    public void testCursorFetchesThePageOfTheRequestedPosition() {
+        MockRestClient mockClient = new MockRestClient(getInstrumentation().getTargetContext());
+        ItemProvider provider = new ItemProvider();
+        provider.setClient(mockClient);
+
+        ItemProvider.ItemCursor cursor = provider.filter()
+                .onSpan(20, 0)
+                .cursor(4);
+
+        assertNull(cursor.getItem(45));
+        assertEquals(-1, cursor.getFilteredCount());
+        assertEquals(Uri.parse("https://test/item/app/4/filter"), mockClient.uri);
+
+        String requestBody = mockClient.data;
+        assertTrue(requestBody.contains("\"limit\":20"));
+        assertTrue(requestBody.contains("\"offset\":40"));
+    }
+
+    public void testCursorDoesntChangeTheFilterItWasCreatedFrom() {
+        PromiseClient client = new PromiseClient();
+        ItemProvider provider = new ItemProvider();
+        provider.setClient(client);
+
+        ItemProvider.ItemFilterProvider filter = provider.filter().onSpan(20, 0);
+        filter.cursor(4).load(40);
+        filter.get(4);
+
+        assertEquals(2, client.size());
+        assertTrue(client.data.get(0).contains("\"offset\":40"));
+        assertTrue(client.data.get(1).contains("\"offset\":0"));
+    }
+
+    public void testCursorFetchesLaterPagesUntilTheEndOfTheData() {
+        PromiseClient client = new PromiseClient();
+        ItemProvider provider = new ItemProvider();
+        provider.setClient(client);
+
+        ItemProvider.ItemCursor cursor = provider.filter()
+                .onSpan(20, 0)
+                .cursor(4);
+
+        Request<List<Item>> firstPage = cursor.load(0);
+        client.<Item.FilterResult> get(0).complete(newFilterResult(25, 20));
+        assertEquals(20, firstPage.waitForResult(10).size());
+        assertEquals(25, cursor.getFilteredCount());
+
+        Request<List<Item>> secondPage = cursor.load(20);
+        assertEquals(2, client.size());
+        assertTrue(client.data.get(1).contains("\"limit\":20"));
+        assertTrue(client.data.get(1).contains("\"offset\":20"));
+
+        client.<Item.FilterResult> get(1).complete(newFilterResult(25, 5));
+        assertEquals(5, secondPage.waitForResult(10).size());
+        assertNotNull(cursor.getItem(24));
+
+        // There are no more items, nothing more is fetched.
+        assertTrue(cursor.load(40).waitForResult(10).isEmpty());
+        assertNull(cursor.getItem(45));
+        assertEquals(2, client.size());
+    }
+
+    public void testCursorPrefetchesTheNextPageWithPrefetchPriority() {
+        PromiseClient client = new PromiseClient();
+        ItemProvider provider = new ItemProvider();
+        provider.setClient(client);
+
+        ItemProvider.ItemCursor cursor = provider.filter()
+                .onSpan(20, 0)
+                .cursor(4);
+
+        Request<List<Item>> firstPage = cursor.load(0);
+        client.<Item.FilterResult> get(0).complete(newFilterResult(100, 20));
+        assertEquals(20, firstPage.waitForResult(10).size());
+        assertNotNull(cursor.getItem(19));
+
+        assertEquals(2, client.size());
+        assertTrue(client.data.get(1).contains("\"offset\":20"));
+        assertEquals(Request.Priority.NORMAL, client.priorities.get(0));
+        assertEquals(Request.Priority.PREFETCH, client.priorities.get(1));
+        assertEquals(Request.Priority.NORMAL, provider.getPriority());
+    }
+
+    public void testCursorDoesntAskForPagesAlreadyOnTheirWay() {
+        PromiseClient client = new PromiseClient();
+        ItemProvider provider = new ItemProvider();
+        provider.setClient(client);
+
+        ItemProvider.ItemCursor cursor = provider.filter()
+                .onSpan(20, 0)
+                .cursor(4);
+
+        assertNull(cursor.getItem(0));
+        assertNull(cursor.getItem(1));
+        assertEquals(1, client.size());
+
+        client.<Item.FilterResult> get(0).complete(newFilterResult(100, 20));
+        assertEquals(20, cursor.load(0).waitForResult(10).size());
+
+        for (int i = 15; i < 20; i++) {
+            assertNotNull(cursor.getItem(i));
+        }
+
+        assertNull(cursor.getItem(20));
+        assertEquals(2, client.size());
+    }
+
+    private static Item.FilterResult newFilterResult(int filteredCount, int itemCount) {
+        StringBuilder json = new StringBuilder("{\"total\":100,\"filtered\":" + filteredCount + ",\"items\":[");
+
+        for (int i = 0; i < itemCount; i++) {
+            json.append(i > 0 ? ",{}" : "{}");
+        }
+
+        return JsonParser.fromJson(json.append("]}").toString(), Item.FilterResult.class);
+    }
+
     public void testGetItem() {
         MockRestClient mockClient = new MockRestClient(getInstrumentation().getTargetContext());
         ItemProvider provider = new ItemProvider();
@@ -0,0 +1,249 @@
+package com.podio.sdk.provider;
+
+import android.net.Uri;
+import android.test.InstrumentationTestCase;
+
+import com.podio.sdk.Promise;
+import com.podio.sdk.Request;
+import com.podio.sdk.Store;
+import com.podio.sdk.domain.Item;
+import com.podio.sdk.internal.Utils;
+import com.podio.sdk.json.JsonParser;
+import com.podio.sdk.volley.MockRestClient;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ItemSyncTest extends InstrumentationTestCase {
+
+    private static final class EmptyStore implements Store {
+
+        @Override
+        public Request<Void> free() {
+            return done(null);
+        }
+
+        @Override
+        public Request<Void> erase() {
+            return done(null);
+        }
+
+        @Override
+        public <T> Request<T> get(Object key, Class<T> classOfValue) {
+            return done(null);
+        }
+
+        @Override
+        public <T> Request<Map<Object, T>> getAll(Collection<?> keys, Class<T> classOfValue) {
+            return done((Map<Object, T>) new HashMap<Object, T>());
+        }
+
+        @Override
+        public Request<Void> set(Object key, Object value) {
+            return done(null);
+        }
+
+        @Override
+        public Request<Void> setAll(Map<?, ?> values) {
+            return done(null);
+        }
+
+        @Override
+        public Request<Void> remove(Object key) {
+            return done(null);
+        }
+
+        private static <T> Request<T> done(T value) {
+            Promise<T> promise = new Promise<T>();
+            promise.complete(value);
+            return promise;
+        }
+    }
+
+    /**
+     * A store keeping its values in memory.
+     */
+    private static final class MapStore implements Store {
+        private final HashMap<Object, Object> values = new HashMap<Object, Object>();
+
+        @Override
+        public Request<Void> free() {
+            return EmptyStore.done(null);
+        }
+
+        @Override
+        public synchronized Request<Void> erase() {
+            values.clear();
+            return EmptyStore.done(null);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public synchronized <T> Request<T> get(Object key, Class<T> classOfValue) {
+            return EmptyStore.done((T) values.get(key));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public synchronized <T> Request<Map<Object, T>> getAll(Collection<?> keys, Class<T> classOfValue) {
+            HashMap<Object, T> result = new HashMap<Object, T>();
+
+            for (Object key : keys) {
+                result.put(key, (T) values.get(key));
+            }
+
+            return EmptyStore.done((Map<Object, T>) result);
+        }
+
+        @Override
+        public synchronized Request<Void> set(Object key, Object value) {
+            values.put(key, value);
+            return EmptyStore.done(null);
+        }
+
+        @Override
+        public synchronized Request<Void> setAll(Map<?, ?> values) {
+            this.values.putAll(values);
+            return EmptyStore.done(null);
+        }
+
+        @Override
+        public synchronized Request<Void> remove(Object key) {
+            values.remove(key);
+            return EmptyStore.done(null);
+        }
+    }
+
+    public void testFetchesTheMostRecentlyEditedItemsFirst() throws InterruptedException {
+        MockRestClient mockClient = new MockRestClient(getInstrumentation().getTargetContext());
+        ItemProvider provider = new ItemProvider();
+        provider.setClient(mockClient);
+
+        new ItemSync(provider, new EmptyStore(), 50).sync(8);
+
+        // The watermark is read from the store before the first page is fetched.
+        for (int i = 0; i < 100 && mockClient.uri == null; i++) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(Uri.parse("https://test/item/app/8/filter"), mockClient.uri);
+
+        String requestBody = mockClient.data;
+        assertTrue(requestBody.contains("\"sort_by\":\"last_edit_on\""));
+        assertTrue(requestBody.contains("\"sort_desc\":true"));
+        assertTrue(requestBody.contains("\"limit\":50"));
+        assertTrue(requestBody.contains("\"offset\":0"));
+    }
+
+    public void testStopsFetchingAtTheWatermark() throws InterruptedException {
+        PromiseClient client = new PromiseClient();
+        ItemProvider provider = new ItemProvider();
+        provider.setClient(client);
+
+        MapStore store = new MapStore();
+        store.values.put("watermark-8", getTime("2015-01-02 00:00:00"));
+
+        Request<ItemSync.Result> request = new ItemSync(provider, store, 2).sync(8);
+        assertEquals(1, client.size());
+
+        client.<Item.FilterResult> get(0).complete(newFilterResult(10,
+                newItem(1L, 1L, "2015-01-02 02:00:00"),
+                newItem(2L, 1L, "2015-01-02 01:00:00")));
+
+        awaitRequests(client, 2);
+        assertEquals(2, client.size());
+        assertTrue(client.data.get(1).contains("\"offset\":2"));
+
+        // The pages are fetched in the background, the shared provider keeps its priority.
+        assertEquals(Request.Priority.BACKGROUND, client.priorities.get(0));
+        assertEquals(Request.Priority.BACKGROUND, client.priorities.get(1));
+        assertEquals(Request.Priority.NORMAL, provider.getPriority());
+
+        // The second item of this page was seen by the previous sync.
+        client.<Item.FilterResult> get(1).complete(newFilterResult(10,
+                newItem(3L, 1L, "2015-01-02 00:30:00"),
+                newItem(4L, 1L, "2015-01-01 23:00:00")));
+
+        ItemSync.Result result = request.waitForResult(10);
+        assertNotNull(result);
+        assertEquals(2, result.getPageCount());
+        assertEquals(4, result.getFetchedCount());
+        assertEquals(3, result.getChangedCount());
+        assertEquals(2, client.size());
+        assertFalse(store.values.containsKey("item-4"));
+    }
+
+    public void testMergesOnlyNewerRevisions() {
+        PromiseClient client = new PromiseClient();
+        ItemProvider provider = new ItemProvider();
+        provider.setClient(client);
+
+        MapStore store = new MapStore();
+        Item unchanged = newItem(1L, 5L, "2015-01-01 10:00:00");
+        store.values.put("item-1", unchanged);
+        store.values.put("item-2", newItem(2L, 1L, "2015-01-01 09:00:00"));
+
+        Request<ItemSync.Result> request = new ItemSync(provider, store, 10).sync(8);
+        client.<Item.FilterResult> get(0).complete(newFilterResult(3,
+                newItem(1L, 5L, "2015-01-01 10:00:00"),
+                newItem(2L, 3L, "2015-01-01 09:00:00"),
+                newItem(3L, 1L, "2015-01-01 08:00:00")));
+
+        ItemSync.Result result = request.waitForResult(10);
+        assertNotNull(result);
+        assertEquals(3, result.getFetchedCount());
+        assertEquals(2, result.getChangedCount());
+
+        assertSame(unchanged, store.values.get("item-1"));
+        assertEquals(3L, ((Item) store.values.get("item-2")).getRevisionId());
+        assertEquals(3L, ((Item) store.values.get("item-3")).getId());
+    }
+
+    public void testPersistsTheTimeTheSyncStartedAsTheWatermark() {
+        PromiseClient client = new PromiseClient();
+        ItemProvider provider = new ItemProvider();
+        provider.setClient(client);
+
+        MapStore store = new MapStore();
+        long start = System.currentTimeMillis();
+        Request<ItemSync.Result> request = new ItemSync(provider, store, 10).sync(8);
+
+        // The watermark is the time the sync started, less a margin, rather than the edit time
+        // of the newest item, so items edited while the sync is paging are fetched next time.
+        client.<Item.FilterResult> get(0).complete(newFilterResult(2,
+                newItem(1L, 1L, "2015-01-03 12:00:00"),
+                newItem(2L, 1L, "2015-01-02 12:00:00")));
+
+        assertNotNull(request.waitForResult(10));
+        long watermark = (Long) store.values.get("watermark-8");
+        assertTrue(watermark < start);
+        assertTrue(watermark > start - 60L * 60L * 1000L);
+    }
+
+    private static void awaitRequests(PromiseClient client, int count) throws InterruptedException {
+        // The next page is requested on the main thread, once the previous one is merged.
+        for (int i = 0; i < 100 && client.size() < count; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static Long getTime(String dateTime) {
+        return Utils.parseDateTimeUtc(dateTime).getTime();
+    }
+
+    private static Item newItem(long itemId, long revision, String lastEditOn) {
+        return JsonParser.fromJson("{\"item_id\":" + itemId + ",\"revision\":" + revision + ",\"last_edit_on\":\"" + lastEditOn + "\"}", Item.class);
+    }
+
+    private static Item.FilterResult newFilterResult(int filteredCount, Item... items) {
+        StringBuilder json = new StringBuilder("{\"total\":" + filteredCount + ",\"filtered\":" + filteredCount + ",\"items\":[");
+
+        for (int i = 0; i < items.length; i++) {
+            json.append(i > 0 ? "," : "").append(JsonParser.toJson(items[i]));
+        }
+
+        return JsonParser.fromJson(json.append("]}").toString(), Item.FilterResult.class);
+    }
+
+}
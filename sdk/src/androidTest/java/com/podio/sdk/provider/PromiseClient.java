@@ -0,0 +1,69 @@
+package com.podio.sdk.provider;
+
+import com.podio.sdk.Client;
+import com.podio.sdk.Filter;
+import com.podio.sdk.Promise;
+import com.podio.sdk.Request;
+import com.podio.sdk.json.JsonParser;
+
+import java.io.File;
+import java.util.ArrayList;
+
+/**
+ * A client that hands out promises, which the test then completes or fails, instead of sending any
+ * requests. The method, the target (the method and the URI), the priority and the serialized body
+ * of each request are kept for the test to verify, uploaded files are kept by their path.
+ */
+public class PromiseClient implements Client {
+    public final ArrayList<Promise<?>> requests = new ArrayList<Promise<?>>();
+    public final ArrayList<Request.Method> methods = new ArrayList<Request.Method>();
+    public final ArrayList<String> targets = new ArrayList<String>();
+    public final ArrayList<Request.Priority> priorities = new ArrayList<Request.Priority>();
+    public final ArrayList<String> data = new ArrayList<String>();
+
+    @Override
+    public Request<Void> authenticateWithUserCredentials(String username, String password) {
+        return new Promise<Void>();
+    }
+
+    @Override
+    public Request<Void> authenticateWithAppCredentials(String appId, String appToken) {
+        return new Promise<Void>();
+    }
+
+    @Override
+    public Request<Void> authenticateWithTransferToken(String transferToken) {
+        return new Promise<Void>();
+    }
+
+    @Override
+    public Request<Void> forceRefreshTokens() {
+        return new Promise<Void>();
+    }
+
+    @Override
+    public synchronized <T> Request<T> request(Request.Method method, Filter filter, Object requestData, Class<T> classOfExpectedResult) {
+        Promise<T> request = new Promise<T>();
+        requests.add(request);
+        methods.add(method);
+        targets.add(method.name() + " " + filter.buildUri("https", "test").toString());
+        priorities.add(filter.getPriority());
+        data.add(requestData instanceof File ? ((File) requestData).getPath() :
+                requestData != null ? JsonParser.toJson(requestData) : null);
+        return request;
+    }
+
+    @Override
+    public void cancelAll(Object tag) {
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized <T> Promise<T> get(int index) {
+        return (Promise<T>) requests.get(index);
+    }
+
+    public synchronized int size() {
+        return requests.size();
+    }
+
+}
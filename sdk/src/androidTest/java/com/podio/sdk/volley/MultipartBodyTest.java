@@ -0,0 +1,64 @@
+package com.podio.sdk.volley;
+
+import android.test.AndroidTestCase;
+
+import com.podio.sdk.Request;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+
+public class MultipartBodyTest extends AndroidTestCase {
+
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        file = new File(getContext().getCacheDir(), "multipart-body-test.txt");
+
+        FileOutputStream out = new FileOutputStream(file);
+        out.write("file content".getBytes("UTF-8"));
+        out.close();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+        super.tearDown();
+    }
+
+    public void testLengthMatchesWrittenBody() throws Exception {
+        MultipartBody body = new MultipartBody(file);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.writeTo(out);
+
+        String content = out.toString("UTF-8");
+        String boundary = body.getContentType().substring("multipart/form-data; boundary=".length());
+
+        assertEquals(body.getLength(), out.size());
+        assertTrue(content.startsWith("--" + boundary + "\r\n"));
+        assertTrue(content.endsWith("\r\n--" + boundary + "--\r\n"));
+        assertTrue(content.contains("name=\"source\"; filename=\"multipart-body-test.txt\""));
+        assertTrue(content.contains("\r\n\r\nfile content\r\n"));
+    }
+
+    public void testReportsProgressUpToTheFullLength() throws Exception {
+        final MultipartBody body = new MultipartBody(file);
+        final long[] last = new long[] { -1L, -1L };
+
+        body.writeTo(new ByteArrayOutputStream(), new Request.ProgressListener() {
+            @Override
+            public boolean onProgress(long transferredBytes, long totalBytes) {
+                assertTrue(transferredBytes >= last[0]);
+                last[0] = transferredBytes;
+                last[1] = totalBytes;
+                return false;
+            }
+        });
+
+        assertEquals(body.getLength(), last[0]);
+        assertEquals(body.getLength(), last[1]);
+    }
+
+}
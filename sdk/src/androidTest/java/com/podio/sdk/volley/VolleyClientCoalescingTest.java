@@ -0,0 +1,126 @@
+package com.podio.sdk.volley;
+
+import android.test.AndroidTestCase;
+
+import com.android.volley.NetworkResponse;
+import com.podio.sdk.Filter;
+import com.podio.sdk.Request;
+import com.podio.sdk.Session;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+public class VolleyClientCoalescingTest extends AndroidTestCase {
+
+    private static final class Result {
+        private String value;
+    }
+
+    private static final class TestFilter extends Filter {
+        private final Request.Priority priority;
+
+        private TestFilter(String path, Request.Priority priority) {
+            super(path);
+            this.priority = priority;
+        }
+
+        @Override
+        public Request.Priority getPriority() {
+            return priority;
+        }
+    }
+
+    /**
+     * A client that captures the requests it would have sent instead of sending them.
+     */
+    private static final class CapturingClient extends VolleyClient {
+        private final ArrayList<com.android.volley.Request<?>> sent = new ArrayList<com.android.volley.Request<?>>();
+
+        @Override
+        protected synchronized void addToRequestQueue(com.android.volley.Request<?> request) {
+            sent.add(request);
+        }
+    }
+
+    private CapturingClient client;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        Session.set("access", "refresh", 0L);
+        client = new CapturingClient();
+        client.setup(getContext(), "https", "api.podio.com", "id", "secret", null, null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Session.set(null, null, 0L);
+        super.tearDown();
+    }
+
+    public void testIdenticalGetsShareOneNetworkCall() throws Exception {
+        Request<Result> leader = client.request(Request.Method.GET, new TestFilter("item/1", Request.Priority.NORMAL), null, Result.class);
+        Request<Result> follower = client.request(Request.Method.GET, new TestFilter("item/1", Request.Priority.NORMAL), null, Result.class);
+
+        assertEquals(1, client.sent.size());
+        assertSame(leader, client.sent.get(0));
+
+        respond((VolleyRequest<Result>) leader, "{\"value\":\"shared\"}");
+
+        Result result = follower.waitForResult(1);
+        assertNotNull(result);
+        assertEquals("shared", result.value);
+        assertSame(leader.waitForResult(1), result);
+    }
+
+    public void testDifferentGetsAreSentSeparately() throws Exception {
+        client.request(Request.Method.GET, new TestFilter("item/1", Request.Priority.NORMAL), null, Result.class);
+        client.request(Request.Method.GET, new TestFilter("item/2", Request.Priority.NORMAL), null, Result.class);
+
+        assertEquals(2, client.sent.size());
+    }
+
+    public void testGetsAreNeverAttachedToALowerPriorityRequest() throws Exception {
+        client.request(Request.Method.GET, new TestFilter("item/1", Request.Priority.BACKGROUND), null, Result.class);
+        client.request(Request.Method.GET, new TestFilter("item/1", Request.Priority.USER_VISIBLE), null, Result.class);
+
+        assertEquals(2, client.sent.size());
+    }
+
+    public void testGetsAreAttachedToAHigherPriorityRequest() throws Exception {
+        client.request(Request.Method.GET, new TestFilter("item/1", Request.Priority.USER_VISIBLE), null, Result.class);
+        client.request(Request.Method.GET, new TestFilter("item/1", Request.Priority.BACKGROUND), null, Result.class);
+
+        assertEquals(1, client.sent.size());
+    }
+
+    public void testCancelingAFollowerDoesntCancelItsLeader() throws Exception {
+        Request<Result> leader = client.request(Request.Method.GET, new TestFilter("item/1", Request.Priority.NORMAL), null, Result.class);
+        Request<Result> follower = client.request(Request.Method.GET, new TestFilter("item/1", Request.Priority.NORMAL), null, Result.class);
+
+        follower.cancel();
+
+        assertTrue(((VolleyRequest<Result>) follower).isCanceled());
+        assertFalse(((VolleyRequest<Result>) leader).isCanceled());
+
+        respond((VolleyRequest<Result>) leader, "{\"value\":\"leader\"}");
+        assertEquals("leader", leader.waitForResult(1).value);
+    }
+
+    public void testCancelingALeaderKeepsItFetchingForItsFollowers() throws Exception {
+        Request<Result> leader = client.request(Request.Method.GET, new TestFilter("item/1", Request.Priority.NORMAL), null, Result.class);
+        Request<Result> follower = client.request(Request.Method.GET, new TestFilter("item/1", Request.Priority.NORMAL), null, Result.class);
+
+        leader.cancel();
+
+        assertFalse(((VolleyRequest<Result>) leader).isCanceled());
+
+        respond((VolleyRequest<Result>) leader, "{\"value\":\"follower\"}");
+        assertEquals("follower", follower.waitForResult(1).value);
+    }
+
+    private static void respond(VolleyRequest<Result> request, String json) throws Exception {
+        request.parseNetworkResponse(new NetworkResponse(200, json.getBytes("UTF-8"), new HashMap<String, String>(), false));
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.podio.sdk.volley;
+
+import android.test.AndroidTestCase;
+
+import com.podio.sdk.Filter;
+import com.podio.sdk.Provider;
+import com.podio.sdk.Request;
+import com.podio.sdk.Session;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.PriorityBlockingQueue;
+
+public class VolleyClientPriorityTest extends AndroidTestCase {
+
+    private static final class Result {
+        private String value;
+    }
+
+    private static final class TestFilter extends Filter {
+        private TestFilter(String path) {
+            super(path);
+        }
+    }
+
+    private static final class TestProvider extends Provider {
+        private Request<Result> fetch(String path) {
+            return get(new TestFilter(path), Result.class);
+        }
+    }
+
+    /**
+     * A client that captures the requests it would have sent instead of sending them.
+     */
+    private static final class CapturingClient extends VolleyClient {
+        private final ArrayList<VolleyRequest<?>> sent = new ArrayList<VolleyRequest<?>>();
+
+        @Override
+        protected synchronized void addToRequestQueue(com.android.volley.Request<?> request) {
+            sent.add((VolleyRequest<?>) request);
+        }
+    }
+
+    private CapturingClient client;
+    private TestProvider provider;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        Session.set("access", "refresh", 0L);
+        client = new CapturingClient();
+        client.setup(getContext(), "https", "api.podio.com", "id", "secret", null, null);
+        provider = new TestProvider();
+        provider.setClient(client);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Session.set(null, null, 0L);
+        super.tearDown();
+    }
+
+    public void testProviderCopiesSendTheirRequestsWithTheirOwnPriority() throws Exception {
+        TestProvider background = provider.withPriority(Request.Priority.BACKGROUND);
+        TestProvider prefetch = provider.withPriority(Request.Priority.PREFETCH);
+
+        background.fetch("item/1");
+        prefetch.fetch("item/2");
+        provider.fetch("item/3");
+
+        assertEquals(3, client.sent.size());
+
+        assertTrue(client.sent.get(0).isBackgroundRequest());
+        assertEquals(com.android.volley.Request.Priority.LOW, client.sent.get(0).getPriority());
+
+        assertTrue(client.sent.get(1).isBackgroundRequest());
+        assertEquals(com.android.volley.Request.Priority.NORMAL, client.sent.get(1).getPriority());
+
+        // The original provider isn't affected by its copies.
+        assertFalse(client.sent.get(2).isBackgroundRequest());
+        assertEquals(com.android.volley.Request.Priority.NORMAL, client.sent.get(2).getPriority());
+        assertEquals(Request.Priority.NORMAL, provider.getPriority());
+    }
+
+    public void testNullPriorityMeansNormalPriority() throws Exception {
+        TestProvider copy = provider.withPriority(null);
+
+        assertNotSame(provider, copy);
+        assertEquals(Request.Priority.NORMAL, copy.getPriority());
+    }
+
+    public void testRequestsAreExecutedInPriorityOrder() throws Exception {
+        ((TestProvider) provider.withPriority(Request.Priority.BACKGROUND)).fetch("item/1");
+        ((TestProvider) provider.withPriority(Request.Priority.PREFETCH)).fetch("item/2");
+        ((TestProvider) provider.withPriority(Request.Priority.NORMAL)).fetch("item/3");
+        ((TestProvider) provider.withPriority(Request.Priority.USER_VISIBLE)).fetch("item/4");
+
+        // Volley queues its requests the same way, ordered by their priority, one queue per lane.
+        PriorityBlockingQueue<com.android.volley.Request<?>> background = new PriorityBlockingQueue<com.android.volley.Request<?>>();
+        PriorityBlockingQueue<com.android.volley.Request<?>> foreground = new PriorityBlockingQueue<com.android.volley.Request<?>>();
+
+        for (VolleyRequest<?> request : client.sent) {
+            (request.isBackgroundRequest() ? background : foreground).add(request);
+        }
+
+        assertSame(client.sent.get(3), foreground.poll());
+        assertSame(client.sent.get(2), foreground.poll());
+        assertSame(client.sent.get(1), background.poll());
+        assertSame(client.sent.get(0), background.poll());
+    }
+
+    public void testFileUploadsAreSentInALaneOfTheirOwn() throws Exception {
+        File file = File.createTempFile("upload", ".txt", getContext().getCacheDir());
+
+        try {
+            client.request(Request.Method.POST, new TestFilter("file/v2"), file, Result.class);
+            client.request(Request.Method.POST, new TestFilter("item/app/1"), "{}", Result.class);
+        } finally {
+            file.delete();
+        }
+
+        assertEquals(2, client.sent.size());
+        assertTrue(client.sent.get(0).isUploadRequest());
+        assertFalse(client.sent.get(1).isUploadRequest());
+    }
+
+    public void testCancelAllOnlyCancelsTheFollowersWithTheTag() throws Exception {
+        Request<Result> leader = provider.fetch("item/1").withTag("other");
+        Request<Result> tagged = provider.fetch("item/1").withTag("tag");
+        Request<Result> untagged = provider.fetch("item/1");
+
+        assertEquals(1, client.sent.size());
+
+        client.cancelAll("tag");
+
+        assertTrue(((VolleyRequest<Result>) tagged).isCanceled());
+        assertFalse(((VolleyRequest<Result>) untagged).isCanceled());
+        assertFalse(((VolleyRequest<Result>) leader).isCanceled());
+    }
+
+}
@@ -0,0 +1,168 @@
+package com.podio.sdk.volley;
+
+import android.test.AndroidTestCase;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.VolleyError;
+import com.podio.sdk.Filter;
+import com.podio.sdk.Request;
+import com.podio.sdk.Session;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class VolleyClientRefreshTest extends AndroidTestCase {
+
+    private static final class Result {
+        private String value;
+    }
+
+    private static final class TestFilter extends Filter {
+        private TestFilter(String path) {
+            super(path);
+        }
+    }
+
+    /**
+     * A client that captures the requests it would have sent instead of sending them.
+     */
+    private static final class CapturingClient extends VolleyClient {
+        private final ArrayList<com.android.volley.Request<?>> sent = new ArrayList<com.android.volley.Request<?>>();
+        private final ArrayList<VolleyRequest<Void>> refreshes = new ArrayList<VolleyRequest<Void>>();
+
+        @Override
+        protected synchronized void addToRequestQueue(com.android.volley.Request<?> request) {
+            sent.add(request);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected synchronized void addToRefreshQueue(com.android.volley.Request<?> request) {
+            refreshes.add((VolleyRequest<Void>) request);
+        }
+    }
+
+    private CapturingClient client;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        client = new CapturingClient();
+        client.setup(getContext(), "https", "api.podio.com", "id", "secret", null, null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Session.set(null, null, 0L);
+        super.tearDown();
+    }
+
+    public void testFailedEarlyRefreshDoesntFailTheRequests() throws Exception {
+        // The access token is still valid for five minutes, it will be refreshed ahead of time.
+        Session.set("access", "refresh", nowSeconds() + 300L);
+
+        Request<Result> request = client.request(Request.Method.GET, new TestFilter("item/1"), null, Result.class);
+
+        assertEquals(1, client.refreshes.size());
+        assertEquals(1, client.sent.size());
+
+        failAndAwait(client.refreshes.get(0));
+        respond((VolleyRequest<Result>) request, "{\"value\":\"done\"}");
+
+        assertFalse(((VolleyRequest<Result>) request).isCanceled());
+        assertEquals("done", request.waitForResult(1).value);
+
+        // The next request tries to refresh the access token again.
+        client.request(Request.Method.GET, new TestFilter("item/2"), null, Result.class);
+        assertEquals(2, client.refreshes.size());
+        assertEquals(2, client.sent.size());
+
+        failAndAwait(client.refreshes.get(1));
+    }
+
+    public void testFailedRefreshOfAnExpiredSessionFailsTheParkedRequests() throws Exception {
+        Session.set("access", "refresh", nowSeconds() - 60L);
+
+        final CountDownLatch errorDelivered = new CountDownLatch(1);
+        client.request(Request.Method.GET, new TestFilter("item/1"), null, Result.class)
+                .withErrorListener(new Request.ErrorListener() {
+                    @Override
+                    public boolean onErrorOccurred(Throwable cause) {
+                        errorDelivered.countDown();
+                        return true;
+                    }
+                });
+
+        // The request is parked until the access token is refreshed.
+        assertEquals(1, client.refreshes.size());
+        assertEquals(0, client.sent.size());
+
+        failAndAwait(client.refreshes.get(0));
+
+        assertTrue(errorDelivered.await(2, TimeUnit.SECONDS));
+        assertEquals(0, client.sent.size());
+    }
+
+    public void testCancelAllCancelsParkedRequests() throws Exception {
+        Session.set("access", "refresh", nowSeconds() - 60L);
+
+        Request<Result> tagged = client.request(Request.Method.GET, new TestFilter("item/1"), null, Result.class).withTag("tag");
+        Request<Result> untagged = client.request(Request.Method.GET, new TestFilter("item/2"), null, Result.class);
+
+        client.cancelAll("tag");
+
+        assertTrue(((VolleyRequest<Result>) tagged).isCanceled());
+        assertFalse(((VolleyRequest<Result>) untagged).isCanceled());
+
+        // Only the request that wasn't canceled is sent once the access token is refreshed.
+        succeedAndAwait(client.refreshes.get(0));
+
+        assertEquals(1, client.sent.size());
+        assertSame(untagged, client.sent.get(0));
+    }
+
+    private static long nowSeconds() {
+        return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    }
+
+    private static void failAndAwait(VolleyRequest<Void> refresh) throws Exception {
+        final CountDownLatch delivered = new CountDownLatch(1);
+        refresh.withErrorListener(new Request.ErrorListener() {
+            @Override
+            public boolean onErrorOccurred(Throwable cause) {
+                delivered.countDown();
+                return false;
+            }
+        });
+
+        byte[] body = "{\"error\":\"server_error\"}".getBytes("UTF-8");
+        VolleyError error = new VolleyError(new NetworkResponse(500, body, new HashMap<String, String>(), false));
+        refresh.deliverError(refresh.parseNetworkError(error));
+
+        assertTrue(delivered.await(2, TimeUnit.SECONDS));
+    }
+
+    private static void succeedAndAwait(VolleyRequest<Void> refresh) throws Exception {
+        final CountDownLatch delivered = new CountDownLatch(1);
+        refresh.withResultListener(new Request.ResultListener<Void>() {
+            @Override
+            public boolean onRequestPerformed(Void content) {
+                delivered.countDown();
+                return false;
+            }
+        });
+
+        String json = "{\"access_token\":\"new access\",\"refresh_token\":\"new refresh\",\"expires_in\":28800}";
+        refresh.parseNetworkResponse(new NetworkResponse(200, json.getBytes("UTF-8"), new HashMap<String, String>(), false));
+        refresh.deliverResponse(null);
+
+        assertTrue(delivered.await(2, TimeUnit.SECONDS));
+    }
+
+    private static void respond(VolleyRequest<Result> request, String json) throws Exception {
+        request.parseNetworkResponse(new NetworkResponse(200, json.getBytes("UTF-8"), new HashMap<String, String>(), false));
+    }
+
+}
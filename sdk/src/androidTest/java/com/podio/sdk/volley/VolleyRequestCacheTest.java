@@ -0,0 +1,123 @@
+package com.podio.sdk.volley;
+
+import android.test.AndroidTestCase;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.Cache;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Response;
+import com.android.volley.toolbox.BasicNetwork;
+import com.android.volley.toolbox.HttpHeaderParser;
+import com.android.volley.toolbox.HttpStack;
+import com.podio.sdk.Request;
+import com.podio.sdk.Session;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+public class VolleyRequestCacheTest extends AndroidTestCase {
+
+    private static final String URL = "https://api.podio.com/item/1";
+    private static final String ETAG = "\"a1b2c3\"";
+    private static final String LAST_MODIFIED = "Wed, 21 Oct 2015 07:28:00 GMT";
+    private static final String DATE = "Thu, 22 Oct 2015 10:00:00 GMT";
+
+    @Override
+    protected void tearDown() throws Exception {
+        Session.set(null, null, 0L);
+        super.tearDown();
+    }
+
+    public void testCacheEntryKeepsTheValidators() throws Exception {
+        VolleyRequest<Void> request = newCachedRequest();
+        Response<Void> response = request.parseNetworkResponse(newResponse(200, "{}"));
+        Cache.Entry entry = response.cacheEntry;
+
+        assertNotNull(entry);
+        assertEquals(ETAG, entry.etag);
+        assertEquals(HttpHeaderParser.parseDateAsEpoch(LAST_MODIFIED), entry.serverDate);
+        assertTrue(entry.softTtl > System.currentTimeMillis());
+    }
+
+    public void testCacheEntryFallsBackToTheServerDate() throws Exception {
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("Date", DATE);
+
+        VolleyRequest<Void> request = newCachedRequest();
+        Response<Void> response = request.parseNetworkResponse(new NetworkResponse(200, "{}".getBytes("UTF-8"), headers, false));
+
+        assertEquals(HttpHeaderParser.parseDateAsEpoch(DATE), response.cacheEntry.serverDate);
+    }
+
+    public void testRevalidatesAStaleEntryWithTheValidators() throws Exception {
+        VolleyRequest<Void> request = newCachedRequest();
+        Cache.Entry entry = request.parseNetworkResponse(newResponse(200, "{\"cached\":true}")).cacheEntry;
+        entry.softTtl = entry.ttl = 0L;
+
+        final Map<String, String> sentHeaders = new HashMap<String, String>();
+        BasicNetwork network = new BasicNetwork(new HttpStack() {
+            @Override
+            public HttpResponse performRequest(com.android.volley.Request<?> request, Map<String, String> additionalHeaders) throws IOException, AuthFailureError {
+                sentHeaders.putAll(additionalHeaders);
+                return new BasicHttpResponse(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), HttpStatus.SC_NOT_MODIFIED, "Not Modified"));
+            }
+        });
+
+        VolleyRequest<Void> revalidation = newCachedRequest();
+        revalidation.setCacheEntry(entry);
+        NetworkResponse networkResponse = network.performRequest(revalidation);
+
+        assertEquals(ETAG, sentHeaders.get("If-None-Match"));
+        assertTrue(networkResponse.notModified);
+        assertEquals("{\"cached\":true}", new String(networkResponse.data, "UTF-8"));
+    }
+
+    public void testCacheKeySurvivesATokenRefresh() throws Exception {
+        Session.set("{\"access_token\":\"a1\",\"refresh_token\":\"r1\",\"expires_in\":3600,\"ref\":{\"type\":\"user\",\"id\":42}}");
+        String before = newCachedRequest().getCacheKey();
+
+        Session.set("{\"access_token\":\"a2\",\"refresh_token\":\"r2\",\"expires_in\":3600,\"ref\":{\"type\":\"user\",\"id\":42}}");
+        String after = newCachedRequest().getCacheKey();
+
+        Session.set("{\"access_token\":\"a3\",\"refresh_token\":\"r3\",\"expires_in\":3600,\"ref\":{\"type\":\"user\",\"id\":43}}");
+        String otherUser = newCachedRequest().getCacheKey();
+
+        assertEquals(before, after);
+        assertFalse(before.equals(otherUser));
+        assertFalse(before.contains("r1"));
+    }
+
+    public void testCacheKeyFallsBackToTheRefreshToken() throws Exception {
+        Session.set("a1", "r1", 0L);
+        String first = newCachedRequest().getCacheKey();
+
+        Session.set("a2", "r2", 0L);
+        String second = newCachedRequest().getCacheKey();
+
+        assertNull(Session.reference());
+        assertFalse(first.equals(second));
+    }
+
+    private static VolleyRequest<Void> newCachedRequest() {
+        VolleyRequest<Void> request = VolleyRequest.newRequest(null, Request.Method.GET, URL, null, Void.class);
+        request.setCacheTimeToLive(60L);
+        return request;
+    }
+
+    private static NetworkResponse newResponse(int statusCode, String body) throws Exception {
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("ETag", ETAG);
+        headers.put("Last-Modified", LAST_MODIFIED);
+        headers.put("Date", DATE);
+
+        return new NetworkResponse(statusCode, body.getBytes("UTF-8"), headers, false);
+    }
+
+}
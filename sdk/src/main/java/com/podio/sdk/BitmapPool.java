@@ -0,0 +1,226 @@
+package com.podio.sdk;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.TreeMap;
+
+/**
+ * A size bounded pool of mutable bitmaps no longer in use, handed out for the decoder to decode new
+ * images into rather than allocating new bitmaps. The bitmaps are grouped in size classes by the
+ * number of bytes they take up, and the least recently pooled bitmaps are dropped once the pool
+ * grows beyond its max size.
+ * <p/>
+ * From KitKat on any pooled bitmap at least as large as the image to decode can be reused, before
+ * that only a bitmap of the exact same dimensions, and only when the image isn't sampled down.
+ *
+ */
+final class BitmapPool {
+
+    /**
+     * The number of bytes per pixel of the bitmaps in the pool. Only ARGB_8888 bitmaps, the
+     * default decoding config, are pooled.
+     */
+    private static final int BYTES_PER_PIXEL = 4;
+
+    /**
+     * How much larger than needed a bitmap may be to be handed out. Decoding a thumbnail into a
+     * full screen bitmap would waste the memory the pool is meant to save.
+     */
+    private static final int MAX_OVERSIZE_FACTOR = 4;
+
+    /**
+     * The pooled bitmaps in size classes, keyed by their byte count.
+     */
+    private final TreeMap<Integer, LinkedList<Bitmap>> bitmapsBySize;
+
+    /**
+     * The pooled bitmaps, the least recently pooled first.
+     */
+    private final LinkedList<Bitmap> bitmaps;
+
+    private int maxBytes;
+    private int size;
+
+    /**
+     * Creates a new bitmap pool.
+     *
+     * @param maxBytes
+     *         The max number of bytes the pooled bitmaps may take up. Zero disables the pool.
+     */
+    BitmapPool(int maxBytes) {
+        this.bitmapsBySize = new TreeMap<Integer, LinkedList<Bitmap>>();
+        this.bitmaps = new LinkedList<Bitmap>();
+        this.maxBytes = Math.max(0, maxBytes);
+        this.size = 0;
+    }
+
+    /**
+     * Changes the max size of the pool, dropping the least recently pooled bitmaps should it now be
+     * too large.
+     *
+     * @param maxBytes
+     *         The max number of bytes the pooled bitmaps may take up. Zero disables the pool.
+     */
+    synchronized void setMaxSize(int maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+        trim();
+    }
+
+    /**
+     * @return Whether bitmaps are pooled at all, i.e. if it's worth decoding mutable bitmaps.
+     */
+    synchronized boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * Adds the given bitmap to the pool. The caller must not use the bitmap afterwards, its pixels
+     * may be overwritten at any time. Immutable bitmaps, and bitmaps of other configs than
+     * ARGB_8888, can't be reused and are ignored.
+     *
+     * @param bitmap
+     *         The bitmap to pool.
+     */
+    synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()
+                || bitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+            return;
+        }
+
+        int byteCount = getByteCount(bitmap);
+
+        if (byteCount > maxBytes || bitmaps.contains(bitmap)) {
+            return;
+        }
+
+        LinkedList<Bitmap> sizeClass = bitmapsBySize.get(byteCount);
+
+        if (sizeClass == null) {
+            sizeClass = new LinkedList<Bitmap>();
+            bitmapsBySize.put(byteCount, sizeClass);
+        }
+
+        sizeClass.addLast(bitmap);
+        bitmaps.addLast(bitmap);
+        size += byteCount;
+        trim();
+    }
+
+    /**
+     * Removes a bitmap, which an image of the given dimensions can be decoded into, from the pool.
+     *
+     * @param width
+     *         The width of the encoded image.
+     * @param height
+     *         The height of the encoded image.
+     * @param sampleSize
+     *         The sample size the image is going to be decoded with.
+     *
+     * @return A bitmap to decode the image into, or null if there is no suitable bitmap.
+     */
+    synchronized Bitmap get(int width, int height, int sampleSize) {
+        if (width <= 0 || height <= 0 || bitmaps.isEmpty()) {
+            return null;
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            int sampleSizeOrOne = Math.max(1, sampleSize);
+            long sampledWidth = (width + sampleSizeOrOne - 1) / sampleSizeOrOne;
+            long sampledHeight = (height + sampleSizeOrOne - 1) / sampleSizeOrOne;
+            long needed = sampledWidth * sampledHeight * BYTES_PER_PIXEL;
+
+            if (needed > Integer.MAX_VALUE) {
+                return null;
+            }
+
+            Integer byteCount = bitmapsBySize.ceilingKey((int) needed);
+
+            if (byteCount == null || byteCount > needed * MAX_OVERSIZE_FACTOR) {
+                return null;
+            }
+
+            return remove(byteCount, bitmapsBySize.get(byteCount).getFirst());
+        }
+
+        if (sampleSize <= 1) {
+            int byteCount = width * height * BYTES_PER_PIXEL;
+            LinkedList<Bitmap> sizeClass = bitmapsBySize.get(byteCount);
+
+            if (sizeClass != null) {
+                for (Bitmap bitmap : sizeClass) {
+                    if (bitmap.getWidth() == width && bitmap.getHeight() == height) {
+                        return remove(byteCount, bitmap);
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Drops all bitmaps in the pool.
+     */
+    synchronized void clear() {
+        bitmapsBySize.clear();
+        bitmaps.clear();
+        size = 0;
+    }
+
+    /**
+     * @return The number of bytes the pooled bitmaps currently take up.
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    private Bitmap remove(int byteCount, Bitmap bitmap) {
+        LinkedList<Bitmap> sizeClass = bitmapsBySize.get(byteCount);
+        sizeClass.remove(bitmap);
+
+        if (sizeClass.isEmpty()) {
+            bitmapsBySize.remove(byteCount);
+        }
+
+        bitmaps.remove(bitmap);
+        size -= byteCount;
+        return bitmap;
+    }
+
+    private void trim() {
+        Iterator<Bitmap> iterator = bitmaps.iterator();
+
+        while (size > maxBytes && iterator.hasNext()) {
+            Bitmap eldest = iterator.next();
+            int byteCount = getByteCount(eldest);
+            LinkedList<Bitmap> sizeClass = bitmapsBySize.get(byteCount);
+            sizeClass.remove(eldest);
+
+            if (sizeClass.isEmpty()) {
+                bitmapsBySize.remove(byteCount);
+            }
+
+            size -= byteCount;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Returns the number of bytes the given bitmap takes up, which from KitKat on may be more than
+     * its pixels need, if an image was decoded into a larger, reused bitmap.
+     *
+     * @param bitmap
+     *         The bitmap to measure.
+     *
+     * @return The size of the bitmap in bytes.
+     */
+    static int getByteCount(Bitmap bitmap) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT ?
+                bitmap.getAllocationByteCount() :
+                bitmap.getByteCount();
+    }
+
+}
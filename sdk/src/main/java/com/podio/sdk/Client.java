@@ -15,4 +15,14 @@ public interface Client {
 
     public <T> Request<T> request(Request.Method method, Filter filter, Object requestData, Class<T> classOfExpectedResult);
 
+    /**
+     * Cancels all requests, issued through this client, with the given tag.
+     *
+     * @param tag
+     *         The tag of the requests to cancel.
+     *
+     * @see Request#withTag(Object)
+     */
+    public void cancelAll(Object tag);
+
 }
@@ -7,6 +7,9 @@ import com.podio.sdk.internal.Utils;
 
 public class Filter {
     private final Uri.Builder uriBuilder;
+    private long cacheTimeToLive;
+    private Request.Priority priority;
+    private boolean isDeferrable;
 
     protected Filter() {
         this(null);
@@ -14,6 +17,9 @@ public class Filter {
 
     protected Filter(String path) {
         uriBuilder = new Uri.Builder();
+        cacheTimeToLive = Provider.CACHE_DISABLED;
+        priority = Request.Priority.NORMAL;
+        isDeferrable = false;
 
         if (Utils.notEmpty(path)) {
             uriBuilder.appendEncodedPath(path);
@@ -30,6 +36,99 @@ public class Filter {
         return this;
     }
 
+    /**
+     * Sets the number of seconds a cached response to this filter may be served without first
+     * being revalidated with the API.
+     *
+     * @param seconds
+     *         The time to live in seconds, or {@link Provider#CACHE_DISABLED}.
+     */
+    void setCacheTimeToLive(long seconds) {
+        cacheTimeToLive = seconds;
+    }
+
+    /**
+     * Returns the number of seconds a cached response to this filter may be served without first
+     * being revalidated with the API. A negative value means the response shouldn't be cached at
+     * all.
+     *
+     * @return The time to live in seconds.
+     */
+    public long getCacheTimeToLive() {
+        return cacheTimeToLive;
+    }
+
+    /**
+     * Sets the priority of the request built from this filter.
+     *
+     * @param priority
+     *         The priority of the request.
+     */
+    void setPriority(Request.Priority priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * Returns the priority of the request built from this filter.
+     *
+     * @return The priority, never null.
+     */
+    public Request.Priority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Marks the request built from this filter as a change which may be deferred, e.g. until the
+     * device is online again, rather than fail.
+     *
+     * @param isDeferrable
+     *         Boolean true if the change may be deferred, boolean false otherwise.
+     */
+    void setDeferrable(boolean isDeferrable) {
+        this.isDeferrable = isDeferrable;
+    }
+
+    /**
+     * Tells whether the request built from this filter is a change which may be deferred.
+     *
+     * @return Boolean true if the change may be deferred, boolean false otherwise.
+     *
+     * @see MutationQueue
+     */
+    public boolean isDeferrable() {
+        return isDeferrable;
+    }
+
+    /**
+     * Returns the encoded path of the request built from this filter, relative to the root of the
+     * API, e.g. "item/1".
+     *
+     * @return The path, never starting with a slash.
+     */
+    String getEncodedPath() {
+        String path = uriBuilder.build().getEncodedPath();
+        return path != null && path.startsWith("/") ? path.substring(1) : path;
+    }
+
+    /**
+     * Returns the encoded query of the request built from this filter.
+     *
+     * @return The query, or null if there is none.
+     */
+    String getEncodedQuery() {
+        return uriBuilder.build().getEncodedQuery();
+    }
+
+    /**
+     * Replaces the query of the request built from this filter.
+     *
+     * @param query
+     *         The already encoded query, or null to clear it.
+     */
+    void setEncodedQuery(String query) {
+        uriBuilder.encodedQuery(query);
+    }
+
     public Uri buildUri(String scheme, String authority) {
         return uriBuilder
                 .scheme(scheme)
@@ -0,0 +1,231 @@
+package com.podio.sdk;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size bounded, persistent store of encoded images, keyed by the url they were downloaded from.
+ * Each image is kept in a file of its own, and the least recently read images are deleted once the
+ * store grows beyond its max size. The file modification times carry the read order over to the
+ * next process.
+ *
+ */
+final class ImageDiskCache {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final File directory;
+    private final long maxBytes;
+
+    /**
+     * The file names of the images along with their sizes, the least recently read first.
+     */
+    private final LinkedHashMap<String, Long> entries;
+
+    private long size;
+    private boolean isInitialized;
+
+    /**
+     * Creates a new disk cache in the given directory. The directory is scanned lazily, on first
+     * access, as that should happen on a worker thread.
+     *
+     * @param directory
+     *         The directory to keep the images in.
+     * @param maxBytes
+     *         The max number of bytes the images may take up.
+     */
+    ImageDiskCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.entries = new LinkedHashMap<String, Long>(64, 0.75f, true);
+        this.size = 0L;
+        this.isInitialized = false;
+    }
+
+    /**
+     * Returns the file holding the image for the given key, marking it as recently read.
+     *
+     * @param key
+     *         The key of the image, typically its url.
+     *
+     * @return The file, or null if there is no such image in the cache.
+     */
+    synchronized File get(String key) {
+        initialize();
+
+        String name = getFileName(key);
+        Long length = entries.get(name);
+
+        if (length == null) {
+            return null;
+        }
+
+        File file = new File(directory, name);
+
+        if (!file.isFile()) {
+            entries.remove(name);
+            size -= length;
+            return null;
+        }
+
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    /**
+     * Stores the given encoded image, replacing any previous image with the same key, and deletes
+     * the least recently read images should the cache have grown too large.
+     *
+     * @param key
+     *         The key of the image, typically its url.
+     * @param data
+     *         The encoded image.
+     *
+     * @return The file now holding the image, or null if it couldn't be written.
+     */
+    File put(String key, byte[] data) {
+        String name = getFileName(key);
+        File temp = new File(directory, name + TEMP_SUFFIX + Thread.currentThread().getId());
+        File file = new File(directory, name);
+
+        // The initial scan deletes any temporary files, so it mustn't run while this one is
+        // written. The writing itself is done outside of the lock, readers of other images
+        // shouldn't have to wait for it.
+        synchronized (this) {
+            initialize();
+        }
+
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            return null;
+        }
+
+        try {
+            FileOutputStream out = new FileOutputStream(temp);
+
+            try {
+                out.write(data);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            temp.delete();
+            return null;
+        }
+
+        synchronized (this) {
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                return null;
+            }
+
+            Long previous = entries.put(name, (long) data.length);
+            size += data.length - (previous != null ? previous : 0L);
+            trim();
+        }
+
+        return file;
+    }
+
+    /**
+     * Deletes all images in the cache.
+     */
+    synchronized void clear() {
+        File[] files = directory.listFiles();
+
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+
+        entries.clear();
+        size = 0L;
+        isInitialized = true;
+    }
+
+    /**
+     * Returns the number of bytes the images currently take up.
+     *
+     * @return The size of the cache in bytes.
+     */
+    synchronized long size() {
+        initialize();
+        return size;
+    }
+
+    private void initialize() {
+        if (isInitialized) {
+            return;
+        }
+
+        isInitialized = true;
+        File[] files = directory.listFiles();
+
+        if (files == null) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long left = lhs.lastModified();
+                long right = rhs.lastModified();
+                return left < right ? -1 : (left == right ? 0 : 1);
+            }
+        });
+
+        for (File file : files) {
+            if (file.getName().contains(TEMP_SUFFIX)) {
+                // Left behind by a process that died while writing.
+                file.delete();
+            } else if (file.isFile()) {
+                entries.put(file.getName(), file.length());
+                size += file.length();
+            }
+        }
+
+        trim();
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+
+        while (size > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            new File(directory, eldest.getKey()).delete();
+            size -= eldest.getValue();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Turns the given key into a file name of a fixed length, urls are often too long to be used
+     * as they are.
+     */
+    static String getFileName(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(UTF8));
+            char[] name = new char[digest.length * 2];
+
+            for (int i = 0; i < digest.length; i++) {
+                name[i * 2] = HEX[(digest[i] >> 4) & 0x0f];
+                name[i * 2 + 1] = HEX[digest[i] & 0x0f];
+            }
+
+            return new String(name);
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(key.hashCode()) + Integer.toHexString(key.length());
+        }
+    }
+
+}
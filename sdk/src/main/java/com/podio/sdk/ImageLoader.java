@@ -2,10 +2,13 @@
 package com.podio.sdk;
 
 import android.content.Context;
+import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.net.Uri;
-import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
 import android.util.DisplayMetrics;
 import android.util.LruCache;
 
@@ -13,26 +16,49 @@ import com.android.volley.Cache;
 import com.android.volley.NetworkResponse;
 import com.android.volley.NoConnectionError;
 import com.android.volley.RequestQueue;
+import com.android.volley.Response;
 import com.android.volley.TimeoutError;
 import com.android.volley.VolleyError;
+import com.android.volley.toolbox.BasicNetwork;
 import com.android.volley.toolbox.HttpHeaderParser;
-import com.android.volley.toolbox.HurlStack;
-import com.android.volley.toolbox.Volley;
+import com.android.volley.toolbox.NoCache;
 import com.podio.sdk.internal.Utils;
+import com.podio.sdk.volley.TransportStack;
 
+import java.io.File;
 import java.io.UnsupportedEncodingException;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.net.ssl.SSLSocketFactory;
 
 /**
  * This class is responsible for loading and caching images from the Internet. The loader can fetch
- * any image from any url (doesn't have to be one from a Podio CDN). This implementation relies
- * heavily on the Android Volley Image Loader implementation.
+ * any image from any url (doesn't have to be one from a Podio CDN). The images are cached in two
+ * tiers: the decoded bitmaps in memory and the downloaded image files on disk, the latter surviving
+ * both a new setup and a process restart. Images can optionally be decoded down to the dimensions
+ * they are going to be displayed in, which saves a lot of memory for e.g. avatars.
+ * <p/>
+ * The images are read and decoded on a small pool of background threads, the most recently
+ * requested image first. Optionally the bitmaps evicted from the memory cache can be reused for
+ * decoding new images, see {@link #setBitmapPoolSize(int)}.
  *
  */
 public class ImageLoader {
     private static final String LOCAL_RESOURCE_PREFIX = "local.resource.";
+    private static final String DISK_CACHE_DIRECTORY = "podio-images";
+    private static final long DISK_CACHE_MAX_BYTES = 20L * 1024L * 1024L;
+    private static final int MIN_DECODE_THREADS = 2;
+    private static final int MAX_DECODE_THREADS = 4;
+    private static final long DECODE_THREAD_KEEP_ALIVE_SECONDS = 30L;
 
     /**
      * The SDK provided image loader callback interface.
@@ -99,12 +125,15 @@ public class ImageLoader {
     }
 
     /**
-     * This is the image cache implementation used by the under laying Volley ImageLoader class.
+     * This is the in-memory image cache implementation. The bitmaps it evicts are handed over to
+     * the bitmap pool, which only keeps them if pooling is enabled.
      */
     private static class ImageCache extends LruCache<String, Bitmap> implements com.android.volley.toolbox.ImageLoader.ImageCache {
+        private final BitmapPool bitmapPool;
 
-        public ImageCache(int maxSize) {
+        public ImageCache(int maxSize, BitmapPool bitmapPool) {
             super(maxSize);
+            this.bitmapPool = bitmapPool;
         }
 
         @Override
@@ -121,7 +150,170 @@ public class ImageLoader {
 
         @Override
         protected int sizeOf(String key, Bitmap bitmap) {
-            return bitmap.getByteCount() / 1024;
+            return BitmapPool.getByteCount(bitmap) / 1024;
+        }
+
+        @Override
+        protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+            if (evicted) {
+                bitmapPool.put(oldValue);
+            }
+        }
+    }
+
+    /**
+     * A handle to a pending image load, e.g. for a recycled list row to cancel the load of the
+     * image it no longer shows.
+     */
+    public static class ImageRequest {
+        private final String url;
+        private final ImageListener listener;
+
+        private Load load;
+        private volatile boolean isCanceled;
+
+        private ImageRequest(String url, ImageListener listener) {
+            this.url = url;
+            this.listener = listener;
+            this.load = null;
+            this.isCanceled = false;
+        }
+
+        /**
+         * Cancels the delivery of the image to the listener of this request. The image is still
+         * loaded if other requests are waiting for it, otherwise the loading is stopped as well.
+         * Calling this method after the image has been delivered has no effect.
+         */
+        public void cancel() {
+            isCanceled = true;
+            Load load;
+
+            synchronized (this) {
+                load = this.load;
+            }
+
+            if (load != null) {
+                load.onRequestCanceled();
+            }
+        }
+
+        /**
+         * @return Whether this request has been canceled.
+         */
+        public boolean isCanceled() {
+            return isCanceled;
+        }
+    }
+
+    /**
+     * The loading of one image, shared by all requests for it which arrive while it's in progress.
+     */
+    private final class Load {
+        private final String cacheKey;
+        private final ArrayList<ImageRequest> requests;
+
+        private com.android.volley.Request<?> networkRequest;
+        private boolean isCanceled;
+
+        private Load(String cacheKey) {
+            this.cacheKey = cacheKey;
+            this.requests = new ArrayList<ImageRequest>();
+            this.networkRequest = null;
+            this.isCanceled = false;
+        }
+
+        /**
+         * @return Whether all requests for the image have been canceled, hence it's no longer
+         * worth loading.
+         */
+        private boolean isCanceled() {
+            synchronized (loads) {
+                return isCanceled;
+            }
+        }
+
+        private void setNetworkRequest(com.android.volley.Request<?> networkRequest) {
+            synchronized (loads) {
+                this.networkRequest = networkRequest;
+
+                if (isCanceled) {
+                    networkRequest.cancel();
+                }
+            }
+        }
+
+        private void onRequestCanceled() {
+            synchronized (loads) {
+                if (isCanceled) {
+                    return;
+                }
+
+                for (ImageRequest request : requests) {
+                    if (!request.isCanceled()) {
+                        return;
+                    }
+                }
+
+                // A new request for the image starts over rather than joining this load.
+                isCanceled = true;
+
+                if (loads.get(cacheKey) == this) {
+                    loads.remove(cacheKey);
+                }
+
+                if (networkRequest != null) {
+                    networkRequest.cancel();
+                }
+            }
+        }
+    }
+
+    /**
+     * A work queue handing out the most recently added task first. When scrolling through a list
+     * the images most recently asked for are the ones currently on screen.
+     */
+    private static class LastInFirstOutQueue extends LinkedBlockingDeque<Runnable> {
+
+        @Override
+        public boolean offer(Runnable runnable) {
+            return super.offerFirst(runnable);
+        }
+    }
+
+    /**
+     * Decodes an image with the given options, from whatever source it has.
+     */
+    private static interface Decoder {
+
+        public Bitmap decode(BitmapFactory.Options options);
+    }
+
+    /**
+     * Downloads an image as it is, leaving the decoding to the image loader. The response isn't
+     * put in the Volley cache, the image loader keeps the images in its own disk cache.
+     */
+    private static class ImageDataRequest extends com.android.volley.Request<byte[]> {
+        private final Response.Listener<byte[]> listener;
+
+        private ImageDataRequest(String url, Response.Listener<byte[]> listener, Response.ErrorListener errorListener) {
+            super(Method.GET, url, errorListener);
+            this.listener = listener;
+            setShouldCache(false);
+        }
+
+        @Override
+        public Priority getPriority() {
+            return Priority.LOW;
+        }
+
+        @Override
+        protected Response<byte[]> parseNetworkResponse(NetworkResponse response) {
+            return Response.success(response.data, HttpHeaderParser.parseCacheHeaders(response));
+        }
+
+        @Override
+        protected void deliverResponse(byte[] response) {
+            listener.onResponse(response);
         }
     }
 
@@ -131,15 +323,35 @@ public class ImageLoader {
     private static RequestQueue volleyImageRequestQueue;
 
     /**
-     * The shared, under laying Volley ImageLoader class that will perform the actual work.
+     * The executor reading and decoding the images, a few at a time.
+     */
+    private static final Executor decodeExecutor = newDecodeExecutor();
+
+    /**
+     * Delivers the decoded images on the main thread.
      */
-    private static com.android.volley.toolbox.ImageLoader imageLoader;
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
 
     /**
      * The in-memory image cache that will hold the already loaded images.
      */
     private ImageCache imageCache;
 
+    /**
+     * The on-disk image cache that will hold the already downloaded images.
+     */
+    private ImageDiskCache diskCache;
+
+    /**
+     * The evicted bitmaps available for decoding new images into. Disabled by default.
+     */
+    private final BitmapPool bitmapPool = new BitmapPool(0);
+
+    /**
+     * The images currently being loaded, keyed by their memory cache keys.
+     */
+    private final HashMap<String, Load> loads = new HashMap<String, Load>();
+
     /**
      * Attempts to load the requested image with the given size. If it already exists in the cache,
      * it will be loaded from there, otherwise the underlying storage infrastructure ("cloud" or
@@ -152,6 +364,9 @@ public class ImageLoader {
      * <p>
      * If the cache already holds the requested image, the callback will only be called once and
      * then with a non-null bitmap.
+     * <p>
+     * Requests for an image which is already being loaded don't load it again, they are all served
+     * by the same load. A canceled request won't have its callback called a second time.
      *
      * @param url
      *         The url to fetch the bitmap from if it doesn't exist in the cache. The url will also
@@ -164,18 +379,50 @@ public class ImageLoader {
      *         The callback implementation that will be invoked on bitmap delivery or if an error
      *         occurs.
      *
+     * @return A handle the caller can cancel the request with, should the image no longer be
+     * needed.
+     *
      * @throws NullPointerException
      *         If the url or the image listener is null.
      */
-    public void loadImage(final String url, Size size, final ImageListener listener) throws NullPointerException {
+    public ImageRequest loadImage(final String url, Size size, final ImageListener listener) throws NullPointerException {
+        return loadImage(url, size, 0, 0, listener);
+    }
+
+    /**
+     * Exactly the same behaviour as {@link com.podio.sdk.ImageLoader#loadImage(String,
+     * com.podio.sdk.ImageLoader.Size, com.podio.sdk.ImageLoader.ImageListener)}, but the image is
+     * decoded with a sample size bringing it down towards the given dimensions, rather than in its
+     * full size. The delivered bitmap is never smaller than the given dimensions, unless the image
+     * itself is.
+     *
+     * @param url
+     *         The url to fetch the bitmap from if it doesn't exist in the cache.
+     * @param size
+     *         An API defined size notation that can optionally be given.
+     * @param maxWidth
+     *         The width the image is going to be displayed in, or zero for any width.
+     * @param maxHeight
+     *         The height the image is going to be displayed in, or zero for any height.
+     * @param listener
+     *         The callback implementation that will be invoked on bitmap delivery or if an error
+     *         occurs.
+     *
+     * @return A handle the caller can cancel the request with, should the image no longer be
+     * needed.
+     *
+     * @throws NullPointerException
+     *         If the url or the image listener is null.
+     */
+    public ImageRequest loadImage(final String url, Size size, int maxWidth, int maxHeight, final ImageListener listener) throws NullPointerException {
         if (url == null || listener == null) {
             throw new NullPointerException("Neither url nor listener can be null");
         }
 
         if (url.startsWith("http://") || url.startsWith("https://")) {
-            loadNetworkImage(url, size, listener);
+            return loadNetworkImage(url, size, maxWidth, maxHeight, listener);
         } else {
-            loadLocalImage(url, listener);
+            return loadLocalImage(url, maxWidth, maxHeight, listener);
         }
     }
 
@@ -192,9 +439,12 @@ public class ImageLoader {
      * @param listener
      *         The callback implementation that will be invoked on bitmap delivery or if an error
      *         occurs.
+     *
+     * @return A handle the caller can cancel the request with, should the image no longer be
+     * needed.
      */
-    public void loadImage(Context context, final int resourceId, final ImageListener listener) {
-        loadDrawableResource(context, resourceId, listener);
+    public ImageRequest loadImage(Context context, final int resourceId, final ImageListener listener) {
+        return loadDrawableResource(context, resourceId, listener);
     }
 
     /**
@@ -232,12 +482,30 @@ public class ImageLoader {
      * @param sslSocketFactory
      *         An optional SSL socket factory to use for the network requests.
      */
-    public synchronized void setup(Context context, SSLSocketFactory sslSocketFactory) {
-        // Ensure the expected request queues exists.
+    public void setup(Context context, SSLSocketFactory sslSocketFactory) {
+        initialize(context, sslSocketFactory != null ?
+                new UrlConnectionTransport(sslSocketFactory) :
+                Podio.getTransport());
+    }
+
+    /**
+     * Initializes the image loader to its default state, downloading the images through
+     * {@link Podio#getTransport()}, hence over the same connections as all other requests. This
+     * method, or {@link #setup(Context, SSLSocketFactory)}, MUST be called prior to any further
+     * interaction with the image loader.
+     *
+     * @param context
+     *         The context used to create and initialize the network request queue.
+     */
+    public void setup(Context context) {
+        initialize(context, Podio.getTransport());
+    }
+
+    private synchronized void initialize(Context context, Transport transport) {
+        // Ensure the expected request queues exists. The images are cached by this loader, not
+        // by Volley, so the queue needs no cache of its own.
         if (volleyImageRequestQueue == null) {
-            volleyImageRequestQueue = (sslSocketFactory != null) ?
-                    Volley.newRequestQueue(context, new HurlStack(null, sslSocketFactory)) :
-                    Volley.newRequestQueue(context);
+            volleyImageRequestQueue = new RequestQueue(new NoCache(), new BasicNetwork(new TransportStack(transport)));
             volleyImageRequestQueue.start();
         }
 
@@ -249,55 +517,158 @@ public class ImageLoader {
             }
         });
 
-        // Clear out any cached content in the request queues.
-        Cache requestCache = volleyImageRequestQueue.getCache();
-        if (requestCache != null) {
-            requestCache.clear();
+        // The canceled downloads will never finish their loads, new requests must start over.
+        synchronized (loads) {
+            loads.clear();
         }
 
-        // Ensure the expected image cache exists.
+        // Ensure the expected image cache exists. The cached images are kept, they are still
+        // valid, see clearCaches() for when they aren't.
         if (imageCache == null) {
             DisplayMetrics displayMetrics = context.getResources().getDisplayMetrics();
             int width = displayMetrics.widthPixels;
             int height = displayMetrics.heightPixels;
             int maxSizeKb = width * height * 4 * 3 / 1024; // * 4 = magic unicorn,  * 3 = 3 full screens worth of memory
-            imageCache = new ImageCache(maxSizeKb);
+            imageCache = new ImageCache(maxSizeKb, bitmapPool);
+        }
+
+        if (diskCache == null) {
+            diskCache = new ImageDiskCache(new File(context.getCacheDir(), DISK_CACHE_DIRECTORY), DISK_CACHE_MAX_BYTES);
+        }
+    }
+
+    /**
+     * Enables reuse of the bitmaps evicted from the memory cache, keeping up to the given amount of
+     * them around for new images to be decoded into. This saves both allocations and garbage
+     * collection pauses while scrolling through lists of images.
+     * <p>
+     * Pooling is disabled by default, as an evicted bitmap is overwritten once reused. Only enable
+     * it if the bitmaps delivered by the image loader are never held on to, e.g. by a view, for
+     * longer than the memory cache holds them.
+     *
+     * @param maxSizeKb
+     *         The max number of kilobytes the pooled bitmaps may take up. Zero disables pooling.
+     */
+    public void setBitmapPoolSize(int maxSizeKb) {
+        bitmapPool.setMaxSize(maxSizeKb * 1024);
+    }
+
+    /**
+     * Removes all images from the memory and disk caches, e.g. when the user signs out.
+     */
+    public void clearCaches() {
+        if (imageCache != null) {
+            imageCache.evictAll();
+        }
+
+        bitmapPool.clear();
+
+        if (volleyImageRequestQueue != null) {
+            Cache requestCache = volleyImageRequestQueue.getCache();
+
+            if (requestCache != null) {
+                requestCache.clear();
+            }
         }
 
-        // Clear out any and all cached images.
-        imageCache.evictAll();
+        final ImageDiskCache diskCache = this.diskCache;
 
-        if (imageLoader == null) {
-            imageLoader = new com.android.volley.toolbox.ImageLoader(volleyImageRequestQueue, imageCache);
+        if (diskCache != null) {
+            decodeExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    diskCache.clear();
+                }
+            });
         }
     }
 
     /**
-     * Delegates the loading of the requested network image to the Volley image loader
-     * infrastructure, that will handle the entire cache checking and populating etc.
+     * Returns a previously decoded bitmap from the in-memory cache, or reads the image from the
+     * disk cache, or downloads it, on a separate worker thread if not found in the memory cache.
+     * Downloaded images are added to the disk cache, and decoded bitmaps to the memory cache.
      *
      * @param url
-     *         The url to fetch the bitmap from if it doesn't exist in the cache. The url will also
-     *         serve as a cache key once the bitmap is fetched.
+     *         The url to fetch the bitmap from if it doesn't exist in the cache. The url, with the
+     *         size appended, will also serve as a cache key once the bitmap is fetched.
+     * @param maxWidth
+     *         The width to decode the image towards, or zero for any width.
+     * @param maxHeight
+     *         The height to decode the image towards, or zero for any height.
      * @param listener
      *         The callback implementation that will be invoked on bitmap delivery or if an error
      *         occurs.
+     *
+     * @return A handle to cancel the request with.
      */
-    private void loadNetworkImage(final String url, Size size, final ImageListener listener) {
+    private ImageRequest loadNetworkImage(final String url, Size size, final int maxWidth, final int maxHeight, final ImageListener listener) {
         Uri uri = Uri.parse(url);
         Uri requestUri = (size != null && size != Size.UNSPECIFIED) ? Uri.withAppendedPath(uri, size.literal) : uri;
+        final String requestUrl = requestUri.toString();
+        final String cacheKey = getCacheKey(requestUrl, maxWidth, maxHeight);
+        Bitmap bitmap = imageCache.getBitmap(cacheKey);
+        ImageRequest request = new ImageRequest(url, listener);
 
-        imageLoader.get(requestUri.toString(), new com.android.volley.toolbox.ImageLoader.ImageListener() {
-            @Override
-            public void onResponse(com.android.volley.toolbox.ImageLoader.ImageContainer response, boolean isImmediate) {
-                listener.onImageReady(response.getBitmap(), url, isImmediate);
-            }
+        if (bitmap != null) {
+            listener.onImageReady(bitmap, url, true);
+            return request;
+        }
+
+        listener.onImageReady(null, url, true);
+        final Load load = join(cacheKey, request);
 
+        if (load == null) {
+            return request;
+        }
+
+        decodeExecutor.execute(new Runnable() {
             @Override
-            public void onErrorResponse(VolleyError error) {
-                listener.onErrorOccurred(parseVolleyError(error), url);
+            public void run() {
+                if (load.isCanceled()) {
+                    return;
+                }
+
+                File file = diskCache.get(requestUrl);
+                Bitmap bitmap = file != null ? decodeFile(file.getPath(), maxWidth, maxHeight) : null;
+
+                if (bitmap != null) {
+                    deliverBitmap(load, bitmap);
+                    return;
+                }
+
+                load.setNetworkRequest(volleyImageRequestQueue.add(new ImageDataRequest(requestUrl, new Response.Listener<byte[]>() {
+                    @Override
+                    public void onResponse(final byte[] data) {
+                        decodeExecutor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                // The image is kept for later even if no one wants it right now.
+                                diskCache.put(requestUrl, data);
+
+                                if (load.isCanceled()) {
+                                    return;
+                                }
+
+                                Bitmap bitmap = decodeByteArray(data, maxWidth, maxHeight);
+
+                                if (bitmap != null) {
+                                    deliverBitmap(load, bitmap);
+                                } else {
+                                    deliverError(load, new PodioError(new NullPointerException("Couldn't decode image: " + url)));
+                                }
+                            }
+                        });
+                    }
+                }, new Response.ErrorListener() {
+                    @Override
+                    public void onErrorResponse(VolleyError error) {
+                        deliverError(load, parseVolleyError(error));
+                    }
+                })));
             }
         });
+
+        return request;
     }
 
     /**
@@ -308,41 +679,53 @@ public class ImageLoader {
      * @param path
      *         The local file system path to decode the bitmap from if it doesn't exist in the
      *         cache. The path will also serve as a cache key once the bitmap is decoded.
+     * @param maxWidth
+     *         The width to decode the image towards, or zero for any width.
+     * @param maxHeight
+     *         The height to decode the image towards, or zero for any height.
      * @param listener
      *         The callback implementation that will be invoked on bitmap delivery or if an error
      *         occurs.
+     *
+     * @return A handle to cancel the request with.
      */
-    private void loadLocalImage(final String path, final ImageListener listener) {
-        Bitmap bitmap = imageCache.getBitmap(path);
+    private ImageRequest loadLocalImage(final String path, final int maxWidth, final int maxHeight, final ImageListener listener) {
+        final String cacheKey = getCacheKey(path, maxWidth, maxHeight);
+        Bitmap bitmap = imageCache.getBitmap(cacheKey);
+        ImageRequest request = new ImageRequest(path, listener);
 
         if (bitmap != null) {
             listener.onImageReady(bitmap, path, true);
-            return;
+            return request;
         }
 
-        new AsyncTask<Void, Void, Bitmap>() {
-            @Override
-            protected void onPreExecute() {
-                listener.onImageReady(null, path, true);
-            }
+        listener.onImageReady(null, path, true);
+        final Load load = join(cacheKey, request);
+
+        if (load == null) {
+            return request;
+        }
 
+        decodeExecutor.execute(new Runnable() {
             @Override
-            protected Bitmap doInBackground(Void... nothing) {
-                return Utils.notEmpty(path) ?
-                        BitmapFactory.decodeFile(path) :
+            public void run() {
+                if (load.isCanceled()) {
+                    return;
+                }
+
+                Bitmap bitmap = Utils.notEmpty(path) ?
+                        decodeFile(path, maxWidth, maxHeight) :
                         null;
-            }
 
-            @Override
-            protected void onPostExecute(Bitmap bitmap) {
                 if (bitmap == null) {
-                    listener.onErrorOccurred(new PodioError(new NullPointerException("Couldn't load image: " + path)), path);
+                    deliverError(load, new PodioError(new NullPointerException("Couldn't load image: " + path)));
                 } else {
-                    imageCache.putBitmap(path, bitmap);
-                    listener.onImageReady(bitmap, path, false);
+                    deliverBitmap(load, bitmap);
                 }
             }
-        }.execute();
+        });
+
+        return request;
     }
 
     /**
@@ -358,38 +741,269 @@ public class ImageLoader {
      * @param listener
      *         The callback implementation that will be invoked on bitmap delivery or if an error
      *         occurs.
+     *
+     * @return A handle to cancel the request with.
      */
-    private void loadDrawableResource(final Context context, final int id, final ImageListener listener) {
+    private ImageRequest loadDrawableResource(final Context context, final int id, final ImageListener listener) {
         Bitmap bitmap = imageCache.getBitmap(LOCAL_RESOURCE_PREFIX + id);
+        ImageRequest request = new ImageRequest(Integer.toString(id), listener);
 
         if (bitmap != null) {
             listener.onImageReady(bitmap, Integer.toString(id), true);
-            return;
+            return request;
         }
 
-        new AsyncTask<Void, Void, Bitmap>() {
+        listener.onImageReady(null, Integer.toString(id), true);
+        final Load load = join(LOCAL_RESOURCE_PREFIX + id, request);
+
+        if (load == null) {
+            return request;
+        }
+
+        decodeExecutor.execute(new Runnable() {
             @Override
-            protected void onPreExecute() {
-                listener.onImageReady(null, Integer.toString(id), true);
+            public void run() {
+                if (load.isCanceled()) {
+                    return;
+                }
+
+                Bitmap bitmap = (context != null && id > 0) ?
+                        decodeResource(context.getResources(), id) :
+                        null;
+
+                if (bitmap == null) {
+                    deliverError(load, new PodioError(new NullPointerException("Couldn't load resource: " + id)));
+                } else {
+                    deliverBitmap(load, bitmap);
+                }
+            }
+        });
+
+        return request;
+    }
+
+    /**
+     * Adds the given request to the load of the image with the given cache key, starting a new
+     * load if there isn't one in progress.
+     *
+     * @return The new load, which the caller is expected to start, or null if the request joined
+     * a load already in progress.
+     */
+    private Load join(String cacheKey, ImageRequest request) {
+        synchronized (loads) {
+            Load load = loads.get(cacheKey);
+            boolean isNew = load == null;
+
+            if (isNew) {
+                load = new Load(cacheKey);
+                loads.put(cacheKey, load);
             }
 
+            load.requests.add(request);
+
+            synchronized (request) {
+                request.load = load;
+            }
+
+            return isNew ? load : null;
+        }
+    }
+
+    /**
+     * Ends the given load, returning the requests still waiting for the image.
+     */
+    private List<ImageRequest> finish(Load load) {
+        ArrayList<ImageRequest> waiting = new ArrayList<ImageRequest>();
+
+        synchronized (loads) {
+            if (loads.get(load.cacheKey) == load) {
+                loads.remove(load.cacheKey);
+            }
+
+            for (ImageRequest request : load.requests) {
+                if (!request.isCanceled()) {
+                    waiting.add(request);
+                }
+            }
+        }
+
+        return waiting;
+    }
+
+    /**
+     * Adds the given bitmap to the memory cache and delivers it, on the main thread, to all
+     * requests of the given load which haven't been canceled.
+     */
+    private void deliverBitmap(final Load load, final Bitmap bitmap) {
+        mainHandler.post(new Runnable() {
             @Override
-            protected Bitmap doInBackground(Void... nothing) {
-                return (context != null && id > 0) ?
-                        BitmapFactory.decodeResource(context.getResources(), id) :
-                        null;
+            public void run() {
+                imageCache.putBitmap(load.cacheKey, bitmap);
+
+                for (ImageRequest request : finish(load)) {
+                    request.listener.onImageReady(bitmap, request.url, false);
+                }
             }
+        });
+    }
 
+    /**
+     * Delivers the given error, on the main thread, to all requests of the given load which
+     * haven't been canceled.
+     */
+    private void deliverError(final Load load, final PodioError error) {
+        mainHandler.post(new Runnable() {
             @Override
-            protected void onPostExecute(Bitmap bitmap) {
-                if (bitmap == null) {
-                    listener.onErrorOccurred(new PodioError(new NullPointerException("Couldn't load resource: " + id)), Integer.toString(id));
-                } else {
-                    imageCache.putBitmap(LOCAL_RESOURCE_PREFIX + id, bitmap);
-                    listener.onImageReady(bitmap, Integer.toString(id), false);
+            public void run() {
+                for (ImageRequest request : finish(load)) {
+                    request.listener.onErrorOccurred(error, request.url);
                 }
             }
-        }.execute();
+        });
+    }
+
+    /**
+     * Builds the memory cache key of an image decoded towards the given dimensions.
+     */
+    private static String getCacheKey(String url, int maxWidth, int maxHeight) {
+        return maxWidth > 0 || maxHeight > 0 ?
+                url + "#" + Math.max(maxWidth, 0) + "x" + Math.max(maxHeight, 0) :
+                url;
+    }
+
+    /**
+     * Decodes the given image file, sampled down towards the given dimensions.
+     */
+    private Bitmap decodeFile(final String path, int maxWidth, int maxHeight) {
+        return decode(new Decoder() {
+            @Override
+            public Bitmap decode(BitmapFactory.Options options) {
+                return BitmapFactory.decodeFile(path, options);
+            }
+        }, maxWidth, maxHeight);
+    }
+
+    /**
+     * Decodes the given drawable resource, at the size it has for the density of the device.
+     */
+    private Bitmap decodeResource(final Resources resources, final int id) {
+        return decode(new Decoder() {
+            @Override
+            public Bitmap decode(BitmapFactory.Options options) {
+                return BitmapFactory.decodeResource(resources, id, options);
+            }
+        }, 0, 0);
+    }
+
+    /**
+     * Decodes the given encoded image, sampled down towards the given dimensions.
+     */
+    private Bitmap decodeByteArray(final byte[] data, int maxWidth, int maxHeight) {
+        return decode(new Decoder() {
+            @Override
+            public Bitmap decode(BitmapFactory.Options options) {
+                return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+            }
+        }, maxWidth, maxHeight);
+    }
+
+    /**
+     * Decodes an image, sampled down towards the given dimensions, into a pooled bitmap if there is
+     * a suitable one.
+     */
+    private Bitmap decode(Decoder decoder, int maxWidth, int maxHeight) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        boolean isPooling = bitmapPool.isEnabled();
+
+        if (maxWidth > 0 || maxHeight > 0 || isPooling) {
+            options.inJustDecodeBounds = true;
+            decoder.decode(options);
+            options.inSampleSize = getSampleSize(options.outWidth, options.outHeight, maxWidth, maxHeight);
+            options.inJustDecodeBounds = false;
+        }
+
+        if (!isPooling) {
+            return decoder.decode(options);
+        }
+
+        // Only mutable bitmaps can be reused once evicted from the memory cache.
+        options.inMutable = true;
+        options.inBitmap = bitmapPool.get(options.outWidth, options.outHeight, options.inSampleSize);
+
+        try {
+            return decoder.decode(options);
+        } catch (IllegalArgumentException e) {
+            if (options.inBitmap == null) {
+                throw e;
+            }
+
+            // The decoder didn't agree on the pooled bitmap being suitable, e.g. because the
+            // image was of an unexpected config. Drop the bitmap and decode into a new one.
+            options.inBitmap = null;
+            return decoder.decode(options);
+        }
+    }
+
+    /**
+     * Calculates the largest power of two sample size that keeps the decoded image at least as
+     * large as the requested dimensions. A zero, or negative, dimension doesn't constrain the
+     * sample size.
+     *
+     * @param width
+     *         The width of the encoded image.
+     * @param height
+     *         The height of the encoded image.
+     * @param maxWidth
+     *         The requested width.
+     * @param maxHeight
+     *         The requested height.
+     *
+     * @return The sample size to decode the image with.
+     */
+    static int getSampleSize(int width, int height, int maxWidth, int maxHeight) {
+        int sampleSize = 1;
+
+        if (width <= 0 || height <= 0 || (maxWidth <= 0 && maxHeight <= 0)) {
+            return sampleSize;
+        }
+
+        while ((maxWidth <= 0 || width / (sampleSize * 2) >= maxWidth)
+                && (maxHeight <= 0 || height / (sampleSize * 2) >= maxHeight)) {
+            sampleSize *= 2;
+        }
+
+        return sampleSize;
+    }
+
+    /**
+     * Creates the executor reading and decoding the images. A couple of threads keep a slow disk
+     * read from holding up all other images, while more would only compete for the CPU and memory
+     * with the UI. The threads run at background priority and die when idle.
+     */
+    private static Executor newDecodeExecutor() {
+        int threadCount = Math.max(MIN_DECODE_THREADS,
+                Math.min(MAX_DECODE_THREADS, Runtime.getRuntime().availableProcessors()));
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount,
+                DECODE_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LastInFirstOutQueue(),
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger(1);
+
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        return new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                runnable.run();
+                            }
+                        }, "podio-image-decoder-" + count.getAndIncrement());
+                    }
+                });
+
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     /**
@@ -0,0 +1,680 @@
+package com.podio.sdk;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.podio.sdk.json.JsonParser;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A client which accepts changes while the device is offline. A request built from a
+ * {@link Filter#isDeferrable() deferrable} filter is sent straight away, like any other request.
+ * Should it fail due to the device being offline, the change is written to a persistent store and
+ * replayed later on, with an exponentially growing delay between attempts. While there are changes
+ * waiting, any new changes are queued behind them, so they all reach the API in the order they
+ * were issued. Call {@link #resume()} as soon as the device is known to be online again to replay
+ * them right away. All other requests are passed straight through to the wrapped client.
+ * <p/>
+ * A replayed change failing for some other temporary reason, like the API not responding, is
+ * retried no more than {@link #MAX_ATTEMPTS} times. Once the device has been offline for a while
+ * the queue stops retrying by itself, and waits for {@link #resume()} to be called, or for any
+ * other request to succeed.
+ * <p/>
+ * Redundant changes are coalesced while waiting: a newer update of an entity is merged with any
+ * pending updates of the same entity, and deleting an entity drops any pending changes of it. The
+ * requests of the replaced changes are delivered the outcome of the change replacing them.
+ * <p/>
+ * Changes restored from the store, after the app has been restarted, are replayed without anyone
+ * listening to their outcome.
+ *
+ */
+public class MutationQueue implements Client {
+
+    /**
+     * The persisted form of a deferred change.
+     */
+    static final class Mutation {
+        private long id;
+        private String method;
+        private String path;
+        private String query;
+        private String body;
+        private String resultClass;
+        private int attempts;
+
+        Mutation() {
+        }
+
+        Mutation(long id, Request.Method method, Filter filter, String body, Class<?> classOfResult) {
+            this.id = id;
+            this.method = method.name();
+            this.path = filter.getEncodedPath();
+            this.query = filter.getEncodedQuery();
+            this.body = body;
+            this.resultClass = classOfResult != null ? classOfResult.getName() : null;
+            this.attempts = 0;
+        }
+
+        String getKey() {
+            return KEY_PREFIX + id;
+        }
+
+        boolean hasSameTarget(Mutation other) {
+            return isEqual(path, other.path) && isEqual(query, other.query);
+        }
+
+        private static boolean isEqual(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+
+    /**
+     * A pending change along with the requests waiting for its outcome.
+     */
+    private static final class Entry {
+        private final Mutation mutation;
+        private final ArrayList<Promise<Object>> promises;
+
+        private Entry(Mutation mutation) {
+            this.mutation = mutation;
+            this.promises = new ArrayList<Promise<Object>>();
+        }
+    }
+
+    /**
+     * Rebuilds the filter of a persisted change.
+     */
+    private static final class MutationFilter extends Filter {
+
+        private MutationFilter(Mutation mutation) {
+            super(mutation.path);
+            setEncodedQuery(mutation.query);
+
+            // Nobody is waiting for a replayed change, it mustn't hold up other requests.
+            setPriority(Request.Priority.BACKGROUND);
+        }
+    }
+
+    /**
+     * The max number of times a change is tried before it's given up, unless it failed due to the
+     * device being offline, in which case it never reached the API.
+     */
+    public static final int MAX_ATTEMPTS = 5;
+
+    private static final String KEY_PREFIX = "mutation-";
+    private static final String INDEX_KEY = "mutations";
+
+    private static final long MIN_BACKOFF_MS = 1000L;
+    private static final long MAX_BACKOFF_MS = 5L * 60L * 1000L;
+
+    private final Client client;
+    private final Store store;
+    private final Handler handler;
+    private final Random random;
+    private final ArrayList<Entry> entries;
+    private final Runnable replayRunnable;
+
+    private long nextId;
+    private int attempts;
+    private boolean isLoaded;
+    private boolean isWaiting;
+    private Entry inFlight;
+
+    /**
+     * Creates a new queue passing its requests on to the given client and persisting the pending
+     * changes in the given store. Any changes persisted by a previous instance are restored and
+     * replayed.
+     *
+     * @param client
+     *         The client to send the requests with.
+     * @param store
+     *         The store to persist the pending changes in. It shouldn't be used for anything else.
+     */
+    public MutationQueue(Client client, Store store) {
+        this.client = client;
+        this.store = store;
+        this.handler = new Handler(Looper.getMainLooper());
+        this.random = new Random();
+        this.entries = new ArrayList<Entry>();
+        this.nextId = System.currentTimeMillis();
+        this.attempts = 0;
+        this.isLoaded = false;
+        this.isWaiting = false;
+        this.inFlight = null;
+        this.replayRunnable = new Runnable() {
+            @Override
+            public void run() {
+                synchronized (MutationQueue.this) {
+                    isWaiting = false;
+                }
+
+                replayNext();
+            }
+        };
+
+        load();
+    }
+
+    @Override
+    public Request<Void> authenticateWithUserCredentials(String username, String password) {
+        return resumeOnSuccess(client.authenticateWithUserCredentials(username, password));
+    }
+
+    @Override
+    public Request<Void> authenticateWithAppCredentials(String appId, String appToken) {
+        return resumeOnSuccess(client.authenticateWithAppCredentials(appId, appToken));
+    }
+
+    @Override
+    public Request<Void> authenticateWithTransferToken(String transferToken) {
+        return resumeOnSuccess(client.authenticateWithTransferToken(transferToken));
+    }
+
+    @Override
+    @Deprecated
+    public Request<Void> forceRefreshTokens() {
+        return client.forceRefreshTokens();
+    }
+
+    @Override
+    public <T> Request<T> request(Request.Method method, Filter filter, Object requestData, Class<T> classOfExpectedResult) {
+        if (!filter.isDeferrable() || method == Request.Method.GET || requestData instanceof File) {
+            // Any successful request is a sign of the device being online.
+            return resumeOnSuccess(client.request(method, filter, requestData, classOfExpectedResult));
+        }
+
+        Promise<T> promise = new Promise<T>();
+        boolean isQueued;
+
+        synchronized (this) {
+            // Changes restored from the store, or waiting for the device to go online, go first.
+            isQueued = !isLoaded || !entries.isEmpty();
+
+            if (isQueued) {
+                enqueue(method, filter, requestData, classOfExpectedResult, promise);
+            }
+        }
+
+        if (isQueued) {
+            replayNext();
+        } else {
+            send(method, filter, requestData, classOfExpectedResult, promise);
+        }
+
+        return promise;
+    }
+
+    @Override
+    public void cancelAll(Object tag) {
+        // Deferred changes aren't tagged, they are meant to reach the API eventually.
+        client.cancelAll(tag);
+    }
+
+    /**
+     * Replays the pending changes right away, rather than waiting for the next scheduled attempt.
+     * Call this method when the device is known to be online again.
+     */
+    public void resume() {
+        synchronized (this) {
+            isWaiting = false;
+            attempts = 0;
+        }
+
+        handler.removeCallbacks(replayRunnable);
+        replayNext();
+    }
+
+    /**
+     * Returns the number of changes waiting to be accepted by the API.
+     *
+     * @return The number of pending changes.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Sends a change straight away, and queues it should the device turn out to be offline.
+     */
+    private <T> void send(final Request.Method method, final Filter filter, final Object requestData, final Class<T> classOfResult, final Promise<T> promise) {
+        Request<T> request = client.request(method, filter, requestData, classOfResult);
+
+        if (!promise.addSource(request)) {
+            return;
+        }
+
+        request.withResultListener(new Request.ResultListener<T>() {
+            @Override
+            public boolean onRequestPerformed(T content) {
+                promise.complete(content);
+                return false;
+            }
+        });
+
+        request.withErrorListener(new Request.ErrorListener() {
+            @Override
+            public boolean onErrorOccurred(Throwable cause) {
+                if (cause instanceof ConnectionError) {
+                    // Queued and marked as waiting in one go, or a concurrent change could trigger
+                    // a replay right away.
+                    synchronized (MutationQueue.this) {
+                        enqueue(method, filter, requestData, classOfResult, promise);
+                        onInterrupted(null, cause);
+                    }
+                } else {
+                    promise.fail(cause);
+                }
+
+                // The error is delivered again, by the promise, if at all.
+                return true;
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized <T> void enqueue(Request.Method method, Filter filter, Object requestData, Class<T> classOfResult, Promise<T> promise) {
+        String body = requestData != null ? JsonParser.toJson(requestData) : null;
+        Entry entry = new Entry(new Mutation(nextId++, method, filter, body, classOfResult));
+        entry.promises.add((Promise<Object>) (Promise<?>) promise);
+
+        if (method == Request.Method.PUT || method == Request.Method.DELETE) {
+            coalesce(entry);
+        }
+
+        entries.add(entry);
+        store.set(entry.mutation.getKey(), entry.mutation);
+        store.set(INDEX_KEY, getIndex());
+    }
+
+    /**
+     * Drops the pending, not yet sent, changes made redundant by the given change. Updates only
+     * carry the fields which have changed, so any pending updates of the same entity are merged
+     * into the given update, the newer values winning. A deletion drops any other changes posted
+     * to the entity. The requests of the dropped changes will be delivered the outcome of the
+     * given change instead.
+     */
+    private void coalesce(Entry entry) {
+        boolean isDelete = Request.Method.DELETE.name().equals(entry.mutation.method);
+        ArrayList<Entry> redundant = new ArrayList<Entry>();
+
+        for (Entry pending : entries) {
+            String method = pending.mutation.method;
+            boolean isRedundant = Request.Method.PUT.name().equals(method)
+                    || (isDelete && (Request.Method.POST.name().equals(method) || Request.Method.DELETE.name().equals(method)));
+
+            if (pending != inFlight && isRedundant && pending.mutation.hasSameTarget(entry.mutation)) {
+                redundant.add(pending);
+            }
+        }
+
+        if (!isDelete && !redundant.isEmpty()) {
+            redundant = merge(redundant, entry);
+        }
+
+        for (Entry pending : redundant) {
+            entry.promises.addAll(pending.promises);
+            store.remove(pending.mutation.getKey());
+            entries.remove(pending);
+        }
+    }
+
+    /**
+     * Merges the bodies of the given pending updates, oldest first, and the given update into the
+     * given update. Bodies which aren't JSON objects can't be merged, in which case only the
+     * pending updates with the very same body as the given update are redundant.
+     *
+     * @return The pending updates made redundant by the given update.
+     */
+    private static ArrayList<Entry> merge(ArrayList<Entry> updates, Entry entry) {
+        JsonObject merged = new JsonObject();
+
+        for (Entry update : updates) {
+            if (!merge(merged, update.mutation.body)) {
+                return getIdentical(updates, entry);
+            }
+        }
+
+        if (!merge(merged, entry.mutation.body)) {
+            return getIdentical(updates, entry);
+        }
+
+        entry.mutation.body = JsonParser.toJson(merged);
+        return updates;
+    }
+
+    /**
+     * Merges the given JSON body into the given object. The values of the body replace the values
+     * of the object, except for objects within both, like the field values of an item, which are
+     * merged one level down.
+     *
+     * @return Boolean true if the body was merged, boolean false if it isn't a JSON object.
+     */
+    private static boolean merge(JsonObject target, String body) {
+        JsonElement element = body != null ? JsonParser.fromJson(body, JsonElement.class) : null;
+
+        if (element == null || !element.isJsonObject()) {
+            return false;
+        }
+
+        for (Map.Entry<String, JsonElement> member : element.getAsJsonObject().entrySet()) {
+            JsonElement value = member.getValue();
+            JsonElement existing = target.get(member.getKey());
+
+            if (existing != null && existing.isJsonObject() && value.isJsonObject()) {
+                for (Map.Entry<String, JsonElement> child : value.getAsJsonObject().entrySet()) {
+                    existing.getAsJsonObject().add(child.getKey(), child.getValue());
+                }
+            } else {
+                target.add(member.getKey(), value);
+            }
+        }
+
+        return true;
+    }
+
+    private static ArrayList<Entry> getIdentical(ArrayList<Entry> updates, Entry entry) {
+        ArrayList<Entry> identical = new ArrayList<Entry>();
+
+        for (Entry update : updates) {
+            if (Mutation.isEqual(update.mutation.body, entry.mutation.body)) {
+                identical.add(update);
+            }
+        }
+
+        return identical;
+    }
+
+    private void replayNext() {
+        final Entry entry;
+
+        synchronized (this) {
+            if (!isLoaded || isWaiting || inFlight != null || entries.isEmpty()) {
+                return;
+            }
+
+            entry = entries.get(0);
+            inFlight = entry;
+        }
+
+        Mutation mutation = entry.mutation;
+        Request<Object> request;
+
+        try {
+            // The body is passed on as a JSON tree, so it's serialized exactly as it was stored.
+            Object requestData = mutation.body != null ? JsonParser.fromJson(mutation.body, JsonElement.class) : null;
+            request = client.request(Request.Method.valueOf(mutation.method), new MutationFilter(mutation), requestData, getResultClass(mutation));
+        } catch (RuntimeException e) {
+            onFinished(entry, null, e);
+            return;
+        }
+
+        request.withResultListener(new Request.ResultListener<Object>() {
+            @Override
+            public boolean onRequestPerformed(Object content) {
+                onFinished(entry, content, null);
+                return false;
+            }
+        });
+
+        request.withErrorListener(new Request.ErrorListener() {
+            @Override
+            public boolean onErrorOccurred(Throwable cause) {
+                if (isTransient(cause) && !isOutOfAttempts(entry, cause)) {
+                    onInterrupted(entry, cause);
+                } else {
+                    onFinished(entry, null, cause);
+                }
+
+                // The error is delivered to the waiting requests, if at all.
+                return true;
+            }
+        });
+    }
+
+    private void onFinished(Entry entry, Object content, Throwable error) {
+        ArrayList<Promise<Object>> promises;
+
+        synchronized (this) {
+            entries.remove(entry);
+            inFlight = null;
+            attempts = 0;
+            promises = new ArrayList<Promise<Object>>(entry.promises);
+            store.remove(entry.mutation.getKey());
+            store.set(INDEX_KEY, getIndex());
+        }
+
+        for (Promise<Object> promise : promises) {
+            if (error == null) {
+                promise.complete(content);
+            } else {
+                promise.fail(error);
+            }
+        }
+
+        replayNext();
+    }
+
+    /**
+     * Counts a failed attempt to replay the given change. Attempts failing due to the device being
+     * offline don't count, as they never reached the API.
+     *
+     * @return Boolean true if the change is to be given up, boolean false otherwise.
+     */
+    private synchronized boolean isOutOfAttempts(Entry entry, Throwable cause) {
+        if (cause instanceof ConnectionError) {
+            return false;
+        }
+
+        Mutation mutation = entry.mutation;
+        mutation.attempts++;
+
+        if (mutation.attempts >= MAX_ATTEMPTS) {
+            return true;
+        }
+
+        store.set(mutation.getKey(), mutation);
+        return false;
+    }
+
+    /**
+     * Schedules the next replay, the given change having failed due to a temporary error. A null
+     * change means a change sent straight away has just been queued.
+     */
+    private void onInterrupted(Entry entry, Throwable cause) {
+        long delay;
+
+        synchronized (this) {
+            if (entry == null && (isWaiting || inFlight != null)) {
+                // The queue is already on it.
+                return;
+            }
+
+            if (inFlight == entry) {
+                inFlight = null;
+            }
+
+            long backoff = getBackoff(attempts);
+            attempts++;
+            isWaiting = true;
+
+            if (cause instanceof ConnectionError && backoff >= MAX_BACKOFF_MS) {
+                // The device has been offline for a while, wait for it to be back rather than
+                // polling, see resume() and resumeOnSuccess(Request).
+                delay = -1L;
+            } else {
+                // Half the delay is randomized, so that a crowd of clients coming back online at
+                // the same time don't all hit the API at the same moments.
+                delay = backoff / 2 + (long) (random.nextDouble() * (backoff / 2));
+            }
+        }
+
+        handler.removeCallbacks(replayRunnable);
+
+        if (delay >= 0L) {
+            handler.postDelayed(replayRunnable, delay);
+        }
+    }
+
+    private <T> Request<T> resumeOnSuccess(Request<T> request) {
+        if (request != null) {
+            request.withResultListener(new Request.ResultListener<T>() {
+                @Override
+                public boolean onRequestPerformed(T content) {
+                    boolean isInterrupted;
+
+                    synchronized (MutationQueue.this) {
+                        isInterrupted = isWaiting;
+                    }
+
+                    if (isInterrupted) {
+                        resume();
+                    }
+
+                    return false;
+                }
+            });
+        }
+
+        return request;
+    }
+
+    /**
+     * Restores the changes persisted by a previous instance, placing them before any changes
+     * issued since this instance was created.
+     */
+    private void load() {
+        store.get(INDEX_KEY, long[].class).withResultListener(new Request.ResultListener<long[]>() {
+            @Override
+            public boolean onRequestPerformed(long[] index) {
+                if (index == null || index.length == 0) {
+                    onLoaded(new ArrayList<Mutation>());
+                    return false;
+                }
+
+                final ArrayList<String> keys = new ArrayList<String>();
+
+                for (long id : index) {
+                    keys.add(KEY_PREFIX + id);
+                }
+
+                store.getAll(keys, Mutation.class).withResultListener(new Request.ResultListener<Map<Object, Mutation>>() {
+                    @Override
+                    public boolean onRequestPerformed(Map<Object, Mutation> content) {
+                        ArrayList<Mutation> mutations = new ArrayList<Mutation>();
+
+                        for (String key : keys) {
+                            Mutation mutation = content != null ? content.get(key) : null;
+
+                            if (mutation != null) {
+                                mutations.add(mutation);
+                            }
+                        }
+
+                        onLoaded(mutations);
+                        return false;
+                    }
+                }).withErrorListener(newLoadErrorListener());
+
+                return false;
+            }
+        }).withErrorListener(newLoadErrorListener());
+    }
+
+    private Request.ErrorListener newLoadErrorListener() {
+        return new Request.ErrorListener() {
+            @Override
+            public boolean onErrorOccurred(Throwable cause) {
+                // Whatever couldn't be restored is lost, don't hold back the new changes.
+                onLoaded(new ArrayList<Mutation>());
+                return true;
+            }
+        };
+    }
+
+    private void onLoaded(List<Mutation> mutations) {
+        synchronized (this) {
+            if (isLoaded) {
+                return;
+            }
+
+            ArrayList<Entry> restored = new ArrayList<Entry>();
+
+            for (Mutation mutation : mutations) {
+                restored.add(new Entry(mutation));
+                nextId = Math.max(nextId, mutation.id + 1);
+            }
+
+            entries.addAll(0, restored);
+            isLoaded = true;
+
+            if (!restored.isEmpty()) {
+                store.set(INDEX_KEY, getIndex());
+            }
+        }
+
+        replayNext();
+    }
+
+    private long[] getIndex() {
+        long[] index = new long[entries.size()];
+
+        for (int i = 0; i < index.length; i++) {
+            index[i] = entries.get(i).mutation.id;
+        }
+
+        return index;
+    }
+
+    /**
+     * Returns the longest delay before the next replay, given the number of attempts that have
+     * failed in a row.
+     *
+     * @param attempts
+     *         The number of failed attempts.
+     *
+     * @return The max delay in milliseconds.
+     */
+    static long getBackoff(int attempts) {
+        return Math.min(MAX_BACKOFF_MS, MIN_BACKOFF_MS << Math.min(attempts, 20));
+    }
+
+    private static Class<Object> getResultClass(Mutation mutation) {
+        if (mutation.resultClass == null) {
+            return null;
+        }
+
+        try {
+            @SuppressWarnings("unchecked")
+            Class<Object> classOfResult = (Class<Object>) Class.forName(mutation.resultClass);
+            return classOfResult;
+        } catch (ClassNotFoundException e) {
+            return Object.class;
+        }
+    }
+
+    /**
+     * Tells whether the given error is likely to go away by itself, given some time.
+     */
+    private static boolean isTransient(Throwable error) {
+        if (error instanceof ConnectionError || error instanceof NoResponseError || error instanceof NetworkError) {
+            return true;
+        }
+
+        if (error instanceof ApiError) {
+            ApiError apiError = (ApiError) error;
+
+            // Keep the changes until the user has signed in again, or the API is back up.
+            return apiError.isAuthError() || apiError.getStatusCode() >= 500;
+        }
+
+        return false;
+    }
+
+}
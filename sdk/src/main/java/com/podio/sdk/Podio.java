@@ -6,6 +6,7 @@ import android.content.Context;
 import com.podio.sdk.Request.ErrorListener;
 import com.podio.sdk.Request.SessionListener;
 import com.podio.sdk.androidasynchttp.AndroidAsyncHttpClient;
+import com.podio.sdk.localstore.LocalStore;
 import com.podio.sdk.provider.ApplicationProvider;
 import com.podio.sdk.provider.CalendarProvider;
 import com.podio.sdk.provider.ClientProvider;
@@ -40,6 +41,9 @@ import javax.net.ssl.SSLSocketFactory;
  * third party developers.
  */
 public class Podio {
+    private static final String MUTATION_STORE_NAME = "podio-mutations";
+    private static final int MUTATION_STORE_MEMORY_KB = 256;
+
     /**
      * The default request client for the providers.
      */
@@ -47,6 +51,11 @@ public class Podio {
 
     protected static AndroidAsyncHttpClient androidAsyncHttpRestClient = new AndroidAsyncHttpClient();
 
+    /**
+     * The transport all requests are sent through.
+     */
+    protected static Transport transport = new UrlConnectionTransport();
+
     /**
      * Enables means of easy operating on the Application API end point.
      */
@@ -258,15 +267,40 @@ public class Podio {
      *         Optional custom SSL sockey factory to use for uploading files.
      */
     public static void setup(Context context, String scheme, String authority, String clientId, String clientSecret, String userAgent, SSLSocketFactory volleySslSocketFactory, cz.msebera.android.httpclient.conn.ssl.SSLSocketFactory androidAsyncHttpSslSocketFactory) {
-        volleytRestClient.setup(context, scheme, authority, clientId, clientSecret, userAgent, volleySslSocketFactory);
         androidAsyncHttpRestClient.setup(context, scheme, authority, userAgent, androidAsyncHttpSslSocketFactory);
+        setup(context, scheme, authority, clientId, clientSecret, userAgent, new UrlConnectionTransport(volleySslSocketFactory));
+    }
+
+    /**
+     * Initializes the Podio SDK with the given client credentials and HTTP transport. All API
+     * requests, including file uploads, are sent through the given transport. This method, or any
+     * of the other setup methods, MUST be called before any other request is made.
+     *
+     * @param context
+     *         The context to initialize the cache database and network clients in.
+     * @param scheme
+     *         The scheme the SDK will target with its requests.
+     * @param authority
+     *         The host the SDK will target with its requests.
+     * @param clientId
+     *         The pre-shared Podio client id.
+     * @param clientSecret
+     *         The corresponding Podio client secret.
+     * @param userAgent
+     *         Optional user agent.
+     * @param transport
+     *         The transport to send the requests through.
+     */
+    public static void setup(Context context, String scheme, String authority, String clientId, String clientSecret, String userAgent, Transport transport) {
+        Podio.transport = transport;
+        volleytRestClient.setup(context, transport, scheme, authority, clientId, clientSecret, userAgent);
         // Providers relying on a rest client in order to operate properly.
         application.setClient(volleytRestClient);
         calendar.setClient(volleytRestClient);
         client.setClient(volleytRestClient);
         contact.setClient(volleytRestClient);
         conversation.setClient(volleytRestClient);
-        file.setClient(androidAsyncHttpRestClient);
+        file.setClient(volleytRestClient);
         item.setClient(volleytRestClient);
         organization.setClient(volleytRestClient);
         user.setClient(volleytRestClient);
@@ -286,6 +320,115 @@ public class Podio {
         recurrence.setClient(volleytRestClient);
     }
 
+    /**
+     * Makes the item, comment, conversation and task providers accept changes while the device is
+     * offline. Changes failing due to the device being offline are persisted in a local store and
+     * replayed once the API can be reached again. This method must be called after
+     * {@link #setup(Context, String, String)}.
+     *
+     * @param context
+     *         The context to open the local store in.
+     *
+     * @return The mutation queue, call {@link MutationQueue#resume()} on it when the device goes
+     * online to replay any pending changes right away.
+     *
+     * @see MutationQueue
+     */
+    public static MutationQueue setupMutationQueue(Context context) {
+        Store store = LocalStore.open(context, MUTATION_STORE_NAME, MUTATION_STORE_MEMORY_KB, LocalStore.Engine.LOG);
+        MutationQueue mutationQueue = new MutationQueue(volleytRestClient, store);
+
+        item.setClient(mutationQueue);
+        comment.setClient(mutationQueue);
+        conversation.setClient(mutationQueue);
+        task.setClient(mutationQueue);
+
+        return mutationQueue;
+    }
+
+    /**
+     * Returns the transport all requests are sent through. Pass it on to the {@link ImageLoader}
+     * to have the images downloaded over the same connections.
+     *
+     * @return The current transport.
+     */
+    public static Transport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Cancels all pending requests with the given tag, typically all requests issued on behalf of
+     * a screen that is going away. This includes tagged promises, like the ones combining several
+     * requests. No listeners will be called for the canceled requests.
+     *
+     * @param tag
+     *         The tag of the requests to cancel.
+     *
+     * @see Request#withTag(Object)
+     */
+    public static void cancelAll(Object tag) {
+        volleytRestClient.cancelAll(tag);
+        androidAsyncHttpRestClient.cancelAll(tag);
+        Promise.cancelAll(tag);
+    }
+
+    /**
+     * Issues the requests of the given members concurrently, with no more than
+     * {@link RequestGroup#DEFAULT_MAX_CONCURRENCY} of them in flight at any time, and delivers
+     * their results as one list, in the order of the members.
+     *
+     * @param members
+     *         The members issuing the requests, typically on different providers.
+     *
+     * @return The started request group.
+     *
+     * @see RequestGroup
+     */
+    public static RequestGroup parallel(RequestGroup.Member<?>... members) {
+        return parallel(RequestGroup.DEFAULT_MAX_CONCURRENCY, members);
+    }
+
+    /**
+     * Issues the requests of the given members concurrently, with no more than the given number of
+     * them in flight at any time, and delivers their results as one list, in the order of the
+     * members. The first failing request fails the group and cancels the rest.
+     *
+     * @param maxConcurrency
+     *         The maximum number of requests to have in flight at any time.
+     * @param members
+     *         The members issuing the requests, typically on different providers.
+     *
+     * @return The started request group.
+     *
+     * @see RequestGroup
+     */
+    public static RequestGroup parallel(int maxConcurrency, RequestGroup.Member<?>... members) {
+        return parallel(maxConcurrency, true, members);
+    }
+
+    /**
+     * Issues the requests of the given members concurrently, with no more than the given number of
+     * them in flight at any time, and delivers their results as one list, in the order of the
+     * members. A group which isn't fail-fast keeps going when a request fails, the error is then
+     * available through {@link RequestGroup#getError(int)}.
+     *
+     * @param maxConcurrency
+     *         The maximum number of requests to have in flight at any time.
+     * @param isFailFast
+     *         Whether the first failing request should fail the group and cancel the rest.
+     * @param members
+     *         The members issuing the requests, typically on different providers.
+     *
+     * @return The started request group.
+     *
+     * @see RequestGroup#withFailFast(boolean)
+     */
+    public static RequestGroup parallel(int maxConcurrency, boolean isFailFast, RequestGroup.Member<?>... members) {
+        return new RequestGroup(maxConcurrency, members)
+                .withFailFast(isFailFast)
+                .start();
+    }
+
     /**
      * Restores a previously created Podio session. Even though the access token may have expired,
      * the refresh token can be used to get a new access token. The idea here is to enable the
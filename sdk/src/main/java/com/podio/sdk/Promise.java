@@ -0,0 +1,694 @@
+package com.podio.sdk;
+
+import com.podio.sdk.internal.CallbackManager;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A request which is completed by other requests, or by the caller, rather than by a network or a
+ * disk operation. Promises are what {@link Request#then(Transformation, Executor)} and
+ * {@link Request#compose(Continuation, Executor)} return, and {@link #all(Collection)} and
+ * {@link #any(Collection)} combine several requests into one. As for any other request, the
+ * listeners are called on the main thread.
+ * <p/>
+ * Note that a promise listens to its source requests like any other listener. A listener consuming
+ * the result, or the error, of a source request before the promise gets to see it will hence
+ * leave the promise pending.
+ *
+ */
+public class Promise<T> implements Request<T> {
+
+    /**
+     * The tagged promises that are still pending. A promise doesn't go through any client, so
+     * {@link Podio#cancelAll(Object)} finds them here. They are weakly referenced, so a tagged
+     * promise which nobody is waiting for anymore is still garbage collected.
+     */
+    private static final ArrayList<WeakReference<Promise<?>>> TAGGED_PROMISES = new ArrayList<WeakReference<Promise<?>>>();
+
+    /**
+     * Cancels all pending promises with the given tag, and thereby all requests they're waiting
+     * for.
+     *
+     * @param tag
+     *         The tag of the promises to cancel.
+     */
+    static void cancelAll(Object tag) {
+        ArrayList<Promise<?>> canceled = new ArrayList<Promise<?>>();
+
+        synchronized (TAGGED_PROMISES) {
+            Iterator<WeakReference<Promise<?>>> iterator = TAGGED_PROMISES.iterator();
+
+            while (iterator.hasNext()) {
+                Promise<?> promise = iterator.next().get();
+
+                if (promise == null) {
+                    iterator.remove();
+                } else if (promise.hasTag(tag)) {
+                    iterator.remove();
+                    canceled.add(promise);
+                }
+            }
+        }
+
+        for (Promise<?> promise : canceled) {
+            promise.cancel();
+        }
+    }
+
+    private static void register(Promise<?> promise) {
+        synchronized (TAGGED_PROMISES) {
+            if (indexOf(promise) == -1) {
+                TAGGED_PROMISES.add(new WeakReference<Promise<?>>(promise));
+            }
+        }
+    }
+
+    private static void unregister(Promise<?> promise) {
+        synchronized (TAGGED_PROMISES) {
+            int index = indexOf(promise);
+
+            if (index != -1) {
+                TAGGED_PROMISES.remove(index);
+            }
+        }
+    }
+
+    /**
+     * Looks up the given promise among the tagged promises, dropping any collected ones on the
+     * way. Must be called while holding the lock of the list.
+     */
+    private static int indexOf(Promise<?> promise) {
+        Iterator<WeakReference<Promise<?>>> iterator = TAGGED_PROMISES.iterator();
+        int index = 0;
+
+        while (iterator.hasNext()) {
+            Promise<?> tagged = iterator.next().get();
+
+            if (tagged == null) {
+                iterator.remove();
+            } else if (tagged == promise) {
+                return index;
+            } else {
+                index++;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Creates a promise delivering the transformed result of the given request.
+     *
+     * @param source
+     *         The request to transform the result of.
+     * @param transformation
+     *         The transformation to apply.
+     * @param executor
+     *         The executor to run the transformation on, or null to run it on the thread delivering
+     *         the result of the source request.
+     *
+     * @return A new promise.
+     *
+     * @see Request#then(Transformation, Executor)
+     */
+    public static <E, R> Promise<R> then(Request<E> source, final Transformation<E, R> transformation, final Executor executor) {
+        final Promise<R> promise = new Promise<R>();
+        promise.addSource(source);
+
+        source.withResultListener(new ResultListener<E>() {
+            @Override
+            public boolean onRequestPerformed(final E content) {
+                execute(promise, executor, new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            promise.complete(transformation.transform(content));
+                        } catch (Exception e) {
+                            promise.fail(e);
+                        }
+                    }
+                });
+
+                return false;
+            }
+        });
+
+        source.withErrorListener(newFailingListener(promise));
+        source.withProgressListener(newProgressingListener(promise));
+        return promise;
+    }
+
+    /**
+     * Creates a promise delivering the result of the request issued by the given continuation once
+     * the source request is done.
+     *
+     * @param source
+     *         The request to continue from.
+     * @param continuation
+     *         The continuation issuing the next request.
+     * @param executor
+     *         The executor to run the continuation on, or null to run it on the thread delivering
+     *         the result of the source request.
+     *
+     * @return A new promise.
+     *
+     * @see Request#compose(Continuation, Executor)
+     */
+    public static <E, R> Promise<R> compose(Request<E> source, final Continuation<E, R> continuation, final Executor executor) {
+        final Promise<R> promise = new Promise<R>();
+        promise.addSource(source);
+
+        source.withResultListener(new ResultListener<E>() {
+            @Override
+            public boolean onRequestPerformed(final E content) {
+                execute(promise, executor, new Runnable() {
+                    @Override
+                    public void run() {
+                        Request<R> next;
+
+                        try {
+                            next = continuation.proceed(content);
+                        } catch (Exception e) {
+                            promise.fail(e);
+                            return;
+                        }
+
+                        if (next == null) {
+                            promise.complete(null);
+                        } else if (promise.addSource(next)) {
+                            next.withResultListener(new ResultListener<R>() {
+                                @Override
+                                public boolean onRequestPerformed(R content) {
+                                    promise.complete(content);
+                                    return false;
+                                }
+                            });
+
+                            next.withErrorListener(newFailingListener(promise));
+                            next.withProgressListener(newProgressingListener(promise));
+                        }
+                    }
+                });
+
+                return false;
+            }
+        });
+
+        source.withErrorListener(newFailingListener(promise));
+        return promise;
+    }
+
+    /**
+     * Creates a promise delivering the results of all the given requests, in the order of the
+     * requests, once they are all done. Should any of the requests fail, then the promise fails
+     * with the same error and the remaining requests are canceled.
+     *
+     * @param requests
+     *         The requests to wait for.
+     *
+     * @return A new promise.
+     */
+    public static <E> Promise<List<E>> all(Collection<? extends Request<? extends E>> requests) {
+        Promise<List<E>> promise = new Promise<List<E>>();
+        ArrayList<E> results = new ArrayList<E>(Collections.<E> nCopies(requests.size(), null));
+        int[] remaining = new int[] { requests.size() };
+        int position = 0;
+
+        if (requests.isEmpty()) {
+            promise.complete(results);
+            return promise;
+        }
+
+        for (Request<? extends E> request : requests) {
+            promise.addSource(request);
+        }
+
+        for (Request<? extends E> request : requests) {
+            collect(promise, request, position++, results, remaining);
+        }
+
+        return promise;
+    }
+
+    /**
+     * Creates a promise delivering the results of all the given requests, in the order of the
+     * requests, once they are all done.
+     *
+     * @param requests
+     *         The requests to wait for.
+     *
+     * @return A new promise.
+     *
+     * @see #all(Collection)
+     */
+    public static Promise<List<Object>> all(Request<?>... requests) {
+        return Promise.<Object> all(Arrays.asList(requests));
+    }
+
+    /**
+     * Creates a promise delivering the result of the first of the given requests to succeed. The
+     * remaining requests are then canceled. Should all requests fail, then the promise fails with
+     * the error of the last one.
+     *
+     * @param requests
+     *         The requests to race.
+     *
+     * @return A new promise.
+     */
+    public static <E> Promise<E> any(Collection<? extends Request<? extends E>> requests) {
+        Promise<E> promise = new Promise<E>();
+        int[] remaining = new int[] { requests.size() };
+
+        if (requests.isEmpty()) {
+            promise.fail(new IllegalArgumentException("There are no requests to wait for"));
+            return promise;
+        }
+
+        for (Request<? extends E> request : requests) {
+            promise.addSource(request);
+        }
+
+        for (Request<? extends E> request : requests) {
+            race(promise, request, remaining);
+        }
+
+        return promise;
+    }
+
+    private static <E, S extends E> void collect(final Promise<List<E>> promise, Request<S> request, final int position, final ArrayList<E> results, final int[] remaining) {
+        request.withResultListener(new ResultListener<S>() {
+            @Override
+            public boolean onRequestPerformed(S content) {
+                boolean isLast;
+
+                synchronized (results) {
+                    results.set(position, content);
+                    isLast = --remaining[0] == 0;
+                }
+
+                if (isLast) {
+                    promise.complete(results);
+                }
+
+                return false;
+            }
+        });
+
+        request.withErrorListener(new ErrorListener() {
+            @Override
+            public boolean onErrorOccurred(Throwable cause) {
+                if (promise.fail(cause)) {
+                    promise.cancelSources();
+                }
+
+                return true;
+            }
+        });
+    }
+
+    private static <E, S extends E> void race(final Promise<E> promise, Request<S> request, final int[] remaining) {
+        request.withResultListener(new ResultListener<S>() {
+            @Override
+            public boolean onRequestPerformed(S content) {
+                if (promise.complete(content)) {
+                    promise.cancelSources();
+                }
+
+                return false;
+            }
+        });
+
+        request.withErrorListener(new ErrorListener() {
+            @Override
+            public boolean onErrorOccurred(Throwable cause) {
+                boolean isLast;
+
+                synchronized (remaining) {
+                    isLast = --remaining[0] == 0;
+                }
+
+                if (isLast) {
+                    promise.fail(cause);
+                }
+
+                return true;
+            }
+        });
+    }
+
+    private static ErrorListener newFailingListener(final Promise<?> promise) {
+        return new ErrorListener() {
+            @Override
+            public boolean onErrorOccurred(Throwable cause) {
+                promise.fail(cause);
+
+                // The error is delivered again, by the promise.
+                return true;
+            }
+        };
+    }
+
+    private static ProgressListener newProgressingListener(final Promise<?> promise) {
+        return new ProgressListener() {
+            @Override
+            public boolean onProgress(long transferredBytes, long totalBytes) {
+                promise.progress(transferredBytes, totalBytes);
+                return false;
+            }
+        };
+    }
+
+    private static void addSessionListener(Request<?> request, SessionListener sessionListener) {
+        try {
+            request.withSessionListener(sessionListener);
+        } catch (UnsupportedOperationException e) {
+            // This request doesn't deal with sessions, it will never change the session.
+        }
+    }
+
+    private static void execute(Promise<?> promise, Executor executor, Runnable runnable) {
+        if (executor == null) {
+            runnable.run();
+            return;
+        }
+
+        try {
+            executor.execute(runnable);
+        } catch (RejectedExecutionException e) {
+            promise.fail(e);
+        }
+    }
+
+    private final CallbackManager<T> callbackManager;
+    private final ArrayList<Request<?>> sources;
+    private final ArrayList<SessionListener> sessionListeners;
+
+    private T result;
+    private Throwable error;
+    private boolean isDone;
+    private boolean isCanceled;
+    private Object tag;
+
+    /**
+     * Creates a pending promise, which is to be completed, or failed, by the caller.
+     */
+    public Promise() {
+        this.callbackManager = new CallbackManager<T>();
+        this.sources = new ArrayList<Request<?>>();
+        this.sessionListeners = new ArrayList<SessionListener>();
+        this.isDone = false;
+        this.isCanceled = false;
+    }
+
+    /**
+     * Completes this promise with the given result, unless it's already done or canceled.
+     *
+     * @param result
+     *         The result to deliver.
+     *
+     * @return Boolean true if this call completed the promise, boolean false otherwise.
+     */
+    public boolean complete(T result) {
+        synchronized (this) {
+            if (isDone || isCanceled) {
+                return false;
+            }
+
+            this.result = result;
+            this.isDone = true;
+            notifyAll();
+        }
+
+        unregister(this);
+        callbackManager.deliverResultOnMainThread(result);
+        return true;
+    }
+
+    /**
+     * Fails this promise with the given error, unless it's already done or canceled.
+     *
+     * @param error
+     *         The error to deliver.
+     *
+     * @return Boolean true if this call failed the promise, boolean false otherwise.
+     */
+    public boolean fail(Throwable error) {
+        synchronized (this) {
+            if (isDone || isCanceled) {
+                return false;
+            }
+
+            this.error = error != null ? error : new PodioError("Unknown Error");
+            this.isDone = true;
+            notifyAll();
+        }
+
+        unregister(this);
+        callbackManager.deliverErrorOnMainThread(this.error);
+        return true;
+    }
+
+    /**
+     * Reports the progress of the file transfer this promise is waiting for to its progress
+     * listeners, unless the promise is already done or canceled.
+     *
+     * @param transferredBytes
+     *         The number of bytes transferred so far.
+     * @param totalBytes
+     *         The total number of bytes to transfer, or -1 if not known.
+     */
+    public void progress(long transferredBytes, long totalBytes) {
+        synchronized (this) {
+            if (isDone || isCanceled) {
+                return;
+            }
+        }
+
+        callbackManager.deliverProgressOnMainThread(transferredBytes, totalBytes);
+    }
+
+    /**
+     * Tells whether this promise is completed or failed.
+     *
+     * @return Boolean true if this promise is done, boolean false otherwise.
+     */
+    public synchronized boolean isDone() {
+        return isDone;
+    }
+
+    /**
+     * Tells whether this promise is canceled.
+     *
+     * @return Boolean true if this promise is canceled, boolean false otherwise.
+     */
+    public synchronized boolean isCanceled() {
+        return isCanceled;
+    }
+
+    @Override
+    public synchronized T waitForResult(long maxSeconds) throws PodioError {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(Math.max(maxSeconds, 0));
+        long remaining = deadline - System.currentTimeMillis();
+
+        try {
+            // Guard against spurious wake-ups, and don't wait at all if already done.
+            while (!isDone && !isCanceled && remaining > 0) {
+                wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        if (error != null) {
+            throw error instanceof PodioError ? (PodioError) error : new PodioError(error);
+        }
+
+        return result;
+    }
+
+    @Override
+    public synchronized Request<T> withResultListener(ResultListener<T> resultListener) {
+        if (!isCanceled) {
+            callbackManager.addResultListener(resultListener, isDone && error == null, result);
+        }
+
+        return this;
+    }
+
+    @Override
+    public synchronized Request<T> withErrorListener(ErrorListener errorListener) {
+        if (!isCanceled) {
+            callbackManager.addErrorListener(errorListener, isDone && error != null, error);
+        }
+
+        return this;
+    }
+
+    @Override
+    public synchronized Request<T> withProgressListener(ProgressListener progressListener) {
+        if (!isCanceled && !isDone) {
+            callbackManager.addProgressListener(progressListener);
+        }
+
+        return this;
+    }
+
+    /**
+     * Passes the given listener on to all requests this promise is waiting for, now and later on,
+     * as it's those requests that may change the session. Requests not dealing with sessions are
+     * skipped.
+     *
+     * @see com.podio.sdk.Request#withSessionListener(com.podio.sdk.Request.SessionListener)
+     */
+    @Override
+    public Request<T> withSessionListener(SessionListener sessionListener) {
+        ArrayList<Request<?>> requests;
+
+        synchronized (this) {
+            if (sessionListener == null || isCanceled) {
+                return this;
+            }
+
+            sessionListeners.add(sessionListener);
+            requests = new ArrayList<Request<?>>(sources);
+        }
+
+        for (Request<?> request : requests) {
+            addSessionListener(request, sessionListener);
+        }
+
+        return this;
+    }
+
+    /**
+     * Tags this promise and all requests it's waiting for, allowing them all to be canceled with
+     * {@link Podio#cancelAll(Object)}. Canceling the tag cancels this promise too, also when it's
+     * between requests, e.g. while a continuation is running.
+     *
+     * @see com.podio.sdk.Request#withTag(Object)
+     */
+    @Override
+    public Request<T> withTag(Object tag) {
+        ArrayList<Request<?>> requests;
+
+        boolean isPending;
+
+        synchronized (this) {
+            this.tag = tag;
+            requests = new ArrayList<Request<?>>(sources);
+            isPending = !isDone && !isCanceled;
+        }
+
+        if (tag != null && isPending) {
+            register(this);
+        }
+
+        // The promise may have finished while it was being registered.
+        if (tag == null || isDone() || isCanceled()) {
+            unregister(this);
+        }
+
+        for (Request<?> request : requests) {
+            request.withTag(tag);
+        }
+
+        return this;
+    }
+
+    /**
+     * Cancels this promise and all requests it's waiting for.
+     *
+     * @see com.podio.sdk.Request#cancel()
+     */
+    @Override
+    public void cancel() {
+        synchronized (this) {
+            if (isCanceled) {
+                return;
+            }
+
+            isCanceled = true;
+            notifyAll();
+        }
+
+        unregister(this);
+        cancelSources();
+    }
+
+    @Override
+    public <R> Request<R> then(Transformation<T, R> transformation, Executor executor) {
+        return then(this, transformation, executor);
+    }
+
+    @Override
+    public <R> Request<R> compose(Continuation<T, R> continuation, Executor executor) {
+        return compose(this, continuation, executor);
+    }
+
+    private synchronized boolean hasTag(Object tag) {
+        return this.tag != null && this.tag.equals(tag);
+    }
+
+    /**
+     * Registers a request this promise is waiting for. A request registered after the promise is
+     * canceled is canceled right away.
+     *
+     * @param request
+     *         The request to register.
+     *
+     * @return Boolean true if the request was registered, boolean false if it was canceled.
+     */
+    protected boolean addSource(Request<?> request) {
+        boolean isAdded;
+        Object currentTag;
+        ArrayList<SessionListener> listeners;
+
+        synchronized (this) {
+            isAdded = !isCanceled && sources.add(request);
+            currentTag = tag;
+            listeners = new ArrayList<SessionListener>(sessionListeners);
+        }
+
+        if (!isAdded) {
+            request.cancel();
+            return false;
+        }
+
+        if (currentTag != null) {
+            request.withTag(currentTag);
+        }
+
+        for (SessionListener listener : listeners) {
+            addSessionListener(request, listener);
+        }
+
+        return true;
+    }
+
+    /**
+     * Cancels all requests this promise is waiting for.
+     */
+    protected void cancelSources() {
+        ArrayList<Request<?>> requests;
+
+        synchronized (this) {
+            requests = new ArrayList<Request<?>>(sources);
+        }
+
+        for (Request<?> request : requests) {
+            request.cancel();
+        }
+    }
+
+}
@@ -1,14 +1,102 @@
 
 package com.podio.sdk;
 
-public abstract class Provider {
+public abstract class Provider implements Cloneable {
+
+    /**
+     * The cache time to live value which disables response caching for a provider.
+     */
+    public static final long CACHE_DISABLED = -1L;
 
     protected Client client;
 
+    private long cacheTimeToLive = CACHE_DISABLED;
+    private Request.Priority priority = Request.Priority.NORMAL;
+
     public void setClient(Client client) {
         this.client = client;
     }
 
+    /**
+     * Opts the GET requests of this provider in to the response cache of the client. A cached
+     * response is served as is until it's older than the given number of seconds, after which it
+     * is revalidated with the API through a conditional request. An unchanged resource will then
+     * only cost a "304 Not Modified" round trip. A time to live of zero will revalidate on every
+     * request.
+     *
+     * @param seconds
+     *         The time to live in seconds, or {@link #CACHE_DISABLED} to bypass the cache.
+     */
+    public void setCacheTimeToLive(long seconds) {
+        this.cacheTimeToLive = seconds < 0 ? CACHE_DISABLED : seconds;
+    }
+
+    /**
+     * Returns the response cache time to live of this provider.
+     *
+     * @return The time to live in seconds, or {@link #CACHE_DISABLED}.
+     */
+    public long getCacheTimeToLive() {
+        return cacheTimeToLive;
+    }
+
+    /**
+     * Returns a copy of this provider issuing its requests with the given priority. Background
+     * and prefetch requests are executed in a lane of their own, so they never delay the requests
+     * the user is waiting for. This provider, e.g. one of the providers shared through
+     * {@link Podio}, keeps its own priority, so background work can be demoted without demoting
+     * the requests of the UI:
+     * <pre>
+     * ItemProvider background = Podio.item.withPriority(Request.Priority.BACKGROUND);
+     * </pre>
+     * The copy sends its requests through the client this provider has at the time of the call.
+     *
+     * @param priority
+     *         The priority of the requests, null means {@link Request.Priority#NORMAL}.
+     *
+     * @return A copy of this provider.
+     */
+    @SuppressWarnings("unchecked")
+    public <P extends Provider> P withPriority(Request.Priority priority) {
+        Provider copy;
+
+        try {
+            copy = (Provider) clone();
+        } catch (CloneNotSupportedException e) {
+            // Can't happen, providers are cloneable.
+            throw new IllegalStateException(e);
+        }
+
+        copy.priority = priority != null ? priority : Request.Priority.NORMAL;
+        return (P) copy;
+    }
+
+    /**
+     * Returns the priority of the requests issued by this provider.
+     *
+     * @return The priority, never null.
+     */
+    public Request.Priority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Marks the given filter as describing a change which may be deferred, e.g. until the device is
+     * online again, should the client support it. Only changes which are safe to replay later on
+     * should be marked.
+     *
+     * @param filter
+     *         The filter to mark.
+     *
+     * @return The same filter, to enable convenient chaining.
+     *
+     * @see MutationQueue
+     */
+    protected Filter deferrable(Filter filter) {
+        filter.setDeferrable(true);
+        return filter;
+    }
+
     protected void validateClient() {
         if (this.client == null) {
             throw new NullPointerException("Your provider subclass MUST set a Client instance prior to a REST operation!");
@@ -17,21 +105,26 @@ public abstract class Provider {
 
     protected <T> Request<T> delete(Filter filter) {
         validateClient();
+        filter.setPriority(priority);
         return client.request(Request.Method.DELETE, filter, null, null);
     }
 
     protected <T> Request<T> get(Filter filter, Class<T> classOfResult) {
         validateClient();
+        filter.setPriority(priority);
+        filter.setCacheTimeToLive(cacheTimeToLive);
         return client.request(Request.Method.GET, filter, null, classOfResult);
     }
 
     protected <T> Request<T> post(Filter filter, Object item, Class<T> classOfItem) {
         validateClient();
+        filter.setPriority(priority);
         return client.request(Request.Method.POST, filter, item, classOfItem);
     }
 
     protected <T> Request<T> put(Filter filter, Object item, Class<T> classOfItem) {
         validateClient();
+        filter.setPriority(priority);
         return client.request(Request.Method.PUT, filter, item, classOfItem);
     }
 
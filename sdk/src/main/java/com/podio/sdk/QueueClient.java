@@ -1,6 +1,6 @@
-
 package com.podio.sdk;
 
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -10,16 +10,101 @@ import java.util.concurrent.TimeUnit;
 public abstract class QueueClient {
 
     /**
-     * The queue executor service that manages the request queue.
+     * The queue executor services that manage the request queue. There is either one executor,
+     * which may have many threads, or a number of single threaded executors, "lanes", which each
+     * execute their requests in order.
      */
-    private ExecutorService executorService;
+    private final ExecutorService[] executorServices;
 
     protected QueueClient(int corePoolSize, int maxPoolSize, long waitTimeSeconds) {
-        executorService = new ThreadPoolExecutor(corePoolSize, maxPoolSize, waitTimeSeconds, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(Integer.MAX_VALUE));
+        executorServices = new ExecutorService[] {
+                new ThreadPoolExecutor(corePoolSize, maxPoolSize, waitTimeSeconds, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(Integer.MAX_VALUE))
+        };
+    }
+
+    /**
+     * Creates a queue client with the given number of single threaded lanes. Requests enqueued with
+     * the same lane key are executed in order, while requests in different lanes are executed in
+     * parallel. Idle lanes will release their thread after the given time.
+     *
+     * @param laneCount
+     *         The number of lanes.
+     * @param waitTimeSeconds
+     *         The number of seconds an idle lane will keep its thread.
+     */
+    protected QueueClient(int laneCount, long waitTimeSeconds) {
+        executorServices = new ExecutorService[Math.max(laneCount, 1)];
+
+        for (int i = 0; i < executorServices.length; i++) {
+            ThreadPoolExecutor lane = new ThreadPoolExecutor(1, 1, Math.max(waitTimeSeconds, 1L), TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+            lane.allowCoreThreadTimeOut(true);
+            executorServices[i] = lane;
+        }
     }
 
     protected void execute(FutureTask<?> request) {
-        executorService.execute(request);
+        executorServices[0].execute(request);
+    }
+
+    /**
+     * Enqueues a request in the lane of the given key. All requests with equal lane keys end up in
+     * the same lane.
+     *
+     * @param request
+     *         The request to execute.
+     * @param laneKey
+     *         The key deciding the lane of the request.
+     */
+    protected void execute(FutureTask<?> request, Object laneKey) {
+        int lane = laneKey != null ? (laneKey.hashCode() & Integer.MAX_VALUE) % executorServices.length : 0;
+        executorServices[lane].execute(request);
+    }
+
+    /**
+     * Enqueues a request which will be executed once all previously enqueued requests, in all
+     * lanes, have been executed. No other request will be executed at the same time.
+     *
+     * @param request
+     *         The request to execute.
+     */
+    protected synchronized void executeExclusively(final FutureTask<?> request) {
+        if (executorServices.length == 1) {
+            executorServices[0].execute(request);
+            return;
+        }
+
+        final CountDownLatch arrived = new CountDownLatch(executorServices.length - 1);
+        final CountDownLatch finished = new CountDownLatch(1);
+
+        for (int i = 1; i < executorServices.length; i++) {
+            executorServices[i].execute(new Runnable() {
+                @Override
+                public void run() {
+                    arrived.countDown();
+
+                    try {
+                        finished.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+
+        executorServices[0].execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    arrived.await();
+                    request.run();
+                } catch (InterruptedException e) {
+                    request.cancel(false);
+                    Thread.currentThread().interrupt();
+                } finally {
+                    finished.countDown();
+                }
+            }
+        });
     }
 
 }
@@ -1,12 +1,41 @@
 
 package com.podio.sdk;
 
+import java.util.concurrent.Executor;
+
 public interface Request<T> {
 
     public static enum Method {
         DELETE, GET, POST, PUT
     }
 
+    /**
+     * The priority of a request. Background and prefetch requests are executed in a lane of their
+     * own, so they never occupy the network capacity needed by the requests the user is waiting
+     * for. Within a lane, requests with higher priority are executed first.
+     */
+    public static enum Priority {
+        /**
+         * For requests no one is waiting for, like synchronizing data in the background.
+         */
+        BACKGROUND,
+
+        /**
+         * For requests fetching data the user is likely to ask for soon.
+         */
+        PREFETCH,
+
+        /**
+         * The default priority.
+         */
+        NORMAL,
+
+        /**
+         * For requests fetching data the user is waiting to see right now.
+         */
+        USER_VISIBLE
+    }
+
     /**
      * Callback interface for error events.
      *
@@ -74,17 +103,150 @@ public interface Request<T> {
     }
 
     /**
-     * Make sure to catch any thrown PodioError
+     * Callback interface for transfer progress events. Only requests transferring files report
+     * progress, the listeners of any other request are never called.
+     *
+     */
+    public interface ProgressListener {
+
+        /**
+         * Delivers the progress of a file transfer. The implementation must return boolean true if
+         * the event is to be consumed (no subsequent listeners in the chain will be called) or
+         * boolean false to allow bubbling of the event.
+         *
+         * @param transferredBytes
+         *         The number of bytes transferred so far.
+         * @param totalBytes
+         *         The total number of bytes to transfer, or -1 if not known.
+         *
+         * @return Boolean flag whether the event is to be consumed or not by this implementation.
+         */
+        public boolean onProgress(long transferredBytes, long totalBytes);
+
+    }
+
+    /**
+     * Callback interface for turning the result of a request into something else.
+     *
+     * @see Request#then(Transformation, Executor)
+     */
+    public interface Transformation<E, R> {
+
+        /**
+         * Transforms the result of a successfully performed request. Any exception thrown will be
+         * delivered as the error of the transformed request.
+         *
+         * @param result
+         *         The result of the request.
+         *
+         * @return The transformed result.
+         */
+        public R transform(E result) throws Exception;
+
+    }
+
+    /**
+     * Callback interface for issuing a request based on the result of an other.
+     *
+     * @see Request#compose(Continuation, Executor)
+     */
+    public interface Continuation<E, R> {
+
+        /**
+         * Issues the next request, based on the result of a successfully performed request. Any
+         * exception thrown will be delivered as the error of the composed request.
+         *
+         * @param result
+         *         The result of the request.
+         *
+         * @return The next request, or null if there is nothing more to fetch.
+         */
+        public Request<R> proceed(E result) throws Exception;
+
+    }
+
+    /**
+     * Blocks the calling thread until this request is done, but no longer than the given number of
+     * seconds. Make sure to catch any thrown PodioError. Never call this method from the main
+     * thread, and prefer {@link #then(Transformation, Executor)} and
+     * {@link #compose(Continuation, Executor)} to chaining blocking calls.
+     *
      * @param maxSeconds
-     * @return
+     *         The maximum number of seconds to wait.
+     *
+     * @return The result, or null if the request didn't finish in time.
+     *
      * @throws PodioError
+     *         If the request failed.
      */
     public T waitForResult(long maxSeconds) throws PodioError;
 
+    /**
+     * Returns a request delivering the transformed result of this request, or the error of this
+     * request if it fails. No thread is blocked while waiting for this request.
+     *
+     * @param transformation
+     *         The transformation to apply to the result of this request.
+     * @param executor
+     *         The executor to run the transformation on, or null to run it on the thread
+     *         delivering the result, which normally is the main thread.
+     *
+     * @return The transformed request.
+     *
+     * @see Promise
+     */
+    public <R> Request<R> then(Transformation<T, R> transformation, Executor executor);
+
+    /**
+     * Returns a request delivering the result of the request issued by the given continuation
+     * once this request is done. Errors along the way are delivered as the error of the returned
+     * request. This allows a sequence of dependent requests to be chained without blocking any
+     * threads.
+     *
+     * @param continuation
+     *         The continuation issuing the next request.
+     * @param executor
+     *         The executor to run the continuation on, or null to run it on the thread delivering
+     *         the result, which normally is the main thread.
+     *
+     * @return The composed request.
+     *
+     * @see Promise
+     */
+    public <R> Request<R> compose(Continuation<T, R> continuation, Executor executor);
+
     public Request<T> withResultListener(ResultListener<T> contentListener);
 
     public Request<T> withErrorListener(ErrorListener errorListener);
 
     public Request<T> withSessionListener(SessionListener sessionListener);
 
+    /**
+     * Adds a listener to be notified, on the main thread, as a file transfer progresses. Progress
+     * is reported in steps of about a percent, and not at all for requests not transferring
+     * files.
+     *
+     * @param progressListener
+     *         The listener to add.
+     *
+     * @return This request, allowing chaining.
+     */
+    public Request<T> withProgressListener(ProgressListener progressListener);
+
+    /**
+     * Tags this request, allowing it to be canceled together with all other requests with an equal
+     * tag, typically all requests issued on behalf of one screen.
+     *
+     * @param tag
+     *         The tag of the request.
+     *
+     * @return This request, allowing chaining.
+     */
+    public Request<T> withTag(Object tag);
+
+    /**
+     * Cancels this request. None of its listeners will be called after this.
+     */
+    public void cancel();
+
 }
@@ -0,0 +1,292 @@
+package com.podio.sdk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A group of requests, typically spanning several providers, which are issued concurrently and
+ * delivered as one aggregated result. As opposed to {@link Promise#all(Collection)} the group
+ * issues the requests itself, through {@link Member}s, which allows it to keep no more than a given
+ * number of them in flight at any time. The results are delivered in the order of the members once
+ * they are all done. Should any member fail, then the group fails with the same error, the
+ * requests in flight are canceled and the remaining members are never issued, unless the group is
+ * told to keep going, see {@link #withFailFast(boolean)}.
+ * <p/>
+ * The group also keeps track of how long each member took, from the moment its request was issued
+ * until its result or error was delivered, see {@link #getElapsedMillis(int)}.
+ *
+ */
+public class RequestGroup extends Promise<List<Object>> {
+
+    /**
+     * Issues the request of one member of a group, once the group has room for it.
+     *
+     * @param <E>
+     *         The type of the result of the request.
+     */
+    public interface Member<E> {
+
+        /**
+         * Issues the request. This method is called on the thread starting the group, or on the
+         * main thread when a request in flight is done.
+         *
+         * @return The issued request, or null if there's nothing to wait for.
+         */
+        public Request<E> issue();
+    }
+
+    /**
+     * The default number of requests in flight, matching the number of network threads in the
+     * default request queue.
+     */
+    public static final int DEFAULT_MAX_CONCURRENCY = 4;
+
+    private final ArrayList<Member<?>> members;
+    private final int maxConcurrency;
+    private final Object[] results;
+    private final long[] startNanos;
+    private final long[] endNanos;
+    private final boolean[] isFinished;
+    private final Throwable[] errors;
+
+    private boolean isFailFast;
+    private boolean isStarted;
+    private int next;
+    private int remaining;
+
+    /**
+     * Creates a new group of the given members. No requests are issued until {@link #start()} is
+     * called.
+     *
+     * @param maxConcurrency
+     *         The maximum number of requests to have in flight at any time.
+     * @param members
+     *         The members of the group.
+     */
+    public RequestGroup(int maxConcurrency, Collection<? extends Member<?>> members) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("The max concurrency must be at least one");
+        }
+
+        this.members = new ArrayList<Member<?>>(members);
+        this.maxConcurrency = maxConcurrency;
+        this.results = new Object[this.members.size()];
+        this.startNanos = new long[this.members.size()];
+        this.endNanos = new long[this.members.size()];
+        this.isFinished = new boolean[this.members.size()];
+        this.errors = new Throwable[this.members.size()];
+        this.isFailFast = true;
+        this.isStarted = false;
+        this.next = 0;
+        this.remaining = this.members.size();
+    }
+
+    /**
+     * Creates a new group of the given members. No requests are issued until {@link #start()} is
+     * called.
+     *
+     * @param maxConcurrency
+     *         The maximum number of requests to have in flight at any time.
+     * @param members
+     *         The members of the group.
+     */
+    public RequestGroup(int maxConcurrency, Member<?>... members) {
+        this(maxConcurrency, Arrays.asList(members));
+    }
+
+    /**
+     * Decides what happens when a member fails. A fail-fast group, which is the default, fails with
+     * the error of the member. Otherwise the error is recorded, see {@link #getError(int)}, the
+     * member gets a null result and the group keeps going. This method must be called before the
+     * group is started.
+     *
+     * @param isFailFast
+     *         Boolean true to fail on the first error, boolean false to keep going.
+     *
+     * @return This group.
+     */
+    public synchronized RequestGroup withFailFast(boolean isFailFast) {
+        if (isStarted) {
+            throw new IllegalStateException("The group is already started");
+        }
+
+        this.isFailFast = isFailFast;
+        return this;
+    }
+
+    /**
+     * Issues the requests of as many members as the max concurrency allows. The remaining members
+     * are issued as the requests in flight are done. Calling this method more than once has no
+     * effect.
+     *
+     * @return This group.
+     */
+    public RequestGroup start() {
+        synchronized (this) {
+            if (isStarted) {
+                return this;
+            }
+
+            isStarted = true;
+        }
+
+        if (members.isEmpty()) {
+            complete(new ArrayList<Object>());
+            return this;
+        }
+
+        for (int i = 0; i < maxConcurrency; i++) {
+            issueNext();
+        }
+
+        return this;
+    }
+
+    /**
+     * Returns the number of members in this group.
+     *
+     * @return The size of the group.
+     */
+    public int size() {
+        return members.size();
+    }
+
+    /**
+     * Returns the number of milliseconds the given member took, from the moment its request was
+     * issued until its result or error was delivered. If the request hasn't been issued yet, then
+     * -1 is returned, and if it's still in flight, then the time elapsed so far is returned.
+     *
+     * @param index
+     *         The position of the member in the group.
+     *
+     * @return The elapsed time in milliseconds.
+     */
+    public synchronized long getElapsedMillis(int index) {
+        if (index >= next) {
+            return -1L;
+        }
+
+        long end = isFinished[index] ? endNanos[index] : System.nanoTime();
+        return TimeUnit.NANOSECONDS.toMillis(end - startNanos[index]);
+    }
+
+    /**
+     * Returns the error the given member failed with, if any.
+     *
+     * @param index
+     *         The position of the member in the group.
+     *
+     * @return The error, or null if the member hasn't failed.
+     */
+    public synchronized Throwable getError(int index) {
+        return errors[index];
+    }
+
+    private void issueNext() {
+        int index;
+
+        synchronized (this) {
+            if (next >= members.size() || isDone() || isCanceled()) {
+                return;
+            }
+
+            index = next++;
+            startNanos[index] = System.nanoTime();
+        }
+
+        issue(index, members.get(index));
+    }
+
+    private <E> void issue(final int index, Member<E> member) {
+        Request<E> request;
+
+        try {
+            request = member.issue();
+        } catch (RuntimeException e) {
+            onMemberFailed(index, e);
+            return;
+        }
+
+        if (request == null) {
+            onMemberDone(index, null);
+            return;
+        }
+
+        if (!addSource(request)) {
+            return;
+        }
+
+        request.withResultListener(new Request.ResultListener<E>() {
+            @Override
+            public boolean onRequestPerformed(E content) {
+                onMemberDone(index, content);
+                return false;
+            }
+        });
+
+        request.withErrorListener(new Request.ErrorListener() {
+            @Override
+            public boolean onErrorOccurred(Throwable cause) {
+                onMemberFailed(index, cause);
+
+                // The error is delivered again, by the group.
+                return true;
+            }
+        });
+    }
+
+    private void onMemberDone(int index, Object content) {
+        onMemberFinished(index, content, null);
+    }
+
+    private void onMemberFinished(int index, Object content, Throwable error) {
+        boolean isLast;
+
+        synchronized (this) {
+            if (isFinished[index]) {
+                return;
+            }
+
+            results[index] = content;
+            errors[index] = error;
+            endNanos[index] = System.nanoTime();
+            isFinished[index] = true;
+            isLast = --remaining == 0;
+        }
+
+        if (isLast) {
+            complete(new ArrayList<Object>(Arrays.asList(results)));
+        } else {
+            issueNext();
+        }
+    }
+
+    private void onMemberFailed(int index, Throwable cause) {
+        boolean isKeepingOn;
+
+        synchronized (this) {
+            isKeepingOn = !isFailFast;
+        }
+
+        if (isKeepingOn) {
+            onMemberFinished(index, null, cause != null ? cause : new PodioError("Unknown Error"));
+            return;
+        }
+
+        synchronized (this) {
+            if (!isFinished[index]) {
+                errors[index] = cause;
+                endNanos[index] = System.nanoTime();
+                isFinished[index] = true;
+            }
+        }
+
+        if (fail(cause)) {
+            cancelSources();
+        }
+    }
+
+}
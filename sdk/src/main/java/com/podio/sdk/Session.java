@@ -8,10 +8,11 @@ import org.json.JSONObject;
 
 public class Session {
 
-    private static String accessToken;
-    private static String refreshToken;
-    private static String transferToken;
-    private static long expires;
+    private static volatile String accessToken;
+    private static volatile String refreshToken;
+    private static volatile String transferToken;
+    private static volatile long expires;
+    private static volatile String reference;
 
     public static String accessToken() {
         return accessToken;
@@ -29,6 +30,14 @@ public class Session {
         return transferToken;
     }
 
+    /**
+     * @return The reference to whom the session was granted, e.g. "user:123", which unlike the
+     * tokens stays the same when the session is refreshed. Null if not known.
+     */
+    public static String reference() {
+        return reference;
+    }
+
     public static void set(String jsonString) {
         JSONObject jsonObject = null;
 
@@ -37,6 +46,7 @@ public class Session {
             accessToken = jsonObject.optString("access_token", null);
             refreshToken = jsonObject.optString("refresh_token", null);
             transferToken = jsonObject.optString("transfer_token", null);
+            reference = parseReference(jsonObject.optJSONObject("ref"));
 
             if (jsonObject.has("expires")) {
                 expires = jsonObject.optLong("expires", 0L);
@@ -46,11 +56,11 @@ public class Session {
             }
         } catch (JSONException e) {
             // Input JSON was most likely invalid. Fallback to defaults.
-            accessToken = refreshToken = null;
+            accessToken = refreshToken = reference = null;
             expires = 0;
         } catch (NullPointerException e) {
             // Input JSON was most likely a null pointer. Fallback to defaults.
-            accessToken = refreshToken = null;
+            accessToken = refreshToken = reference = null;
             expires = 0;
         }
     }
@@ -64,6 +74,15 @@ public class Session {
         Session.refreshToken = refreshToken;
         Session.transferToken = transferToken;
         Session.expires = expires;
+        Session.reference = null;
+    }
+
+    private static String parseReference(JSONObject ref) {
+        if (ref == null || !ref.has("type") || !ref.has("id")) {
+            return null;
+        }
+
+        return ref.optString("type") + ":" + ref.optString("id");
     }
 
     private Session() {
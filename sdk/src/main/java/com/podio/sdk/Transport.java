@@ -0,0 +1,33 @@
+package com.podio.sdk;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Definition of the HTTP transport the SDK sends its requests through. The JSON requests, the
+ * file uploads and the image loading can all share one transport, and hence one pool of
+ * connections to the API, which saves both TLS handshakes and latency on mobile networks.
+ * <p/>
+ * The default implementation is {@link UrlConnectionTransport}. An implementation backed by an
+ * HTTP/2 capable stack, which multiplexes all requests over a single connection, can be plugged in
+ * as long as it hands out {@link HttpURLConnection} objects.
+ *
+ */
+public interface Transport {
+
+    /**
+     * Opens, but doesn't connect, a connection to the given URL. The caller will configure the
+     * request method, headers and timeouts on the returned connection.
+     *
+     * @param url
+     *         The URL to open a connection to.
+     *
+     * @return A new connection object.
+     *
+     * @throws IOException
+     *         If the connection can't be opened for some reason.
+     */
+    public HttpURLConnection openConnection(URL url) throws IOException;
+
+}
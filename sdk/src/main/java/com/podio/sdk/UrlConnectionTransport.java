@@ -0,0 +1,53 @@
+package com.podio.sdk;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * A {@link Transport} handing out platform {@link HttpURLConnection} objects. The platform keeps
+ * idle connections alive and reuses them for subsequent requests to the same host, but only
+ * connections created with the very same SSL socket factory are interchangeable. All requests
+ * should hence go through one instance of this class.
+ *
+ */
+public class UrlConnectionTransport implements Transport {
+    private final SSLSocketFactory sslSocketFactory;
+
+    /**
+     * Creates a transport using the default SSL socket factory of the platform.
+     */
+    public UrlConnectionTransport() {
+        this(null);
+    }
+
+    /**
+     * Creates a transport using the given SSL socket factory for secure connections.
+     *
+     * @param sslSocketFactory
+     *         The SSL socket factory to use, or null to use the default one of the platform.
+     */
+    public UrlConnectionTransport(SSLSocketFactory sslSocketFactory) {
+        this.sslSocketFactory = sslSocketFactory;
+    }
+
+    @Override
+    public HttpURLConnection openConnection(URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+
+        if (!(connection instanceof HttpURLConnection)) {
+            throw new IOException("Not an HTTP URL: " + url);
+        }
+
+        if (sslSocketFactory != null && connection instanceof HttpsURLConnection) {
+            ((HttpsURLConnection) connection).setSSLSocketFactory(sslSocketFactory);
+        }
+
+        return (HttpURLConnection) connection;
+    }
+
+}
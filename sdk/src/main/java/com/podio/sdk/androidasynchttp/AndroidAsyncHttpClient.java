@@ -55,6 +55,13 @@ public class AndroidAsyncHttpClient implements Client {
         }
     }
 
+    @Override
+    public void cancelAll(Object tag) {
+        if (client != null && tag != null) {
+            client.cancelRequestsByTAG(tag, true);
+        }
+    }
+
     public synchronized void setup(Context context, String scheme, String authority, String userAgent, SSLSocketFactory sslSocketFactory) {
         this.context = context;
         this.scheme = scheme;
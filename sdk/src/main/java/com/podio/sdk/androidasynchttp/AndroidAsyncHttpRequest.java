@@ -5,13 +5,16 @@ import android.content.Context;
 
 import com.google.gson.JsonSyntaxException;
 import com.loopj.android.http.AsyncHttpClient;
-import com.loopj.android.http.BaseJsonHttpResponseHandler;
+import com.loopj.android.http.AsyncHttpResponseHandler;
+import com.loopj.android.http.RequestHandle;
 import com.loopj.android.http.RequestParams;
+import com.loopj.android.http.TextHttpResponseHandler;
 import com.podio.sdk.ApiError;
 import com.podio.sdk.ConnectionError;
 import com.podio.sdk.NoResponseError;
 import com.podio.sdk.Podio;
 import com.podio.sdk.PodioError;
+import com.podio.sdk.Promise;
 import com.podio.sdk.Request;
 import com.podio.sdk.Session;
 import com.podio.sdk.internal.CallbackManager;
@@ -20,7 +23,9 @@ import com.podio.sdk.json.JsonParser;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.net.SocketTimeoutException;
+import java.nio.charset.Charset;
 import java.util.Calendar;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 import cz.msebera.android.httpclient.Header;
@@ -45,12 +50,22 @@ public class AndroidAsyncHttpRequest<T> implements Request<T>, Request.SessionLi
     private PodioError error;
     private boolean attemptedReauth;
 
+    private RequestHandle handle;
+    private Object tag;
+    private volatile boolean isCanceled;
+
     @Override
-    public T waitForResult(long maxSeconds) throws PodioError {
-        // This is still awkward as we might end up blocking the delivery of
-        // a client side error (see
+    public synchronized T waitForResult(long maxSeconds) throws PodioError {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(Math.max(maxSeconds, 0));
+        long remaining = deadline - System.currentTimeMillis();
+
         try {
-            wait(TimeUnit.SECONDS.toMillis(Math.max(maxSeconds, 0)));
+            // Don't wait at all if the outcome is already known, and don't let a spurious wake-up
+            // cut the wait short.
+            while (!isDone && !isCanceled && remaining > 0) {
+                wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
         } catch (InterruptedException e) {
             callbackManager.deliverError(e);
         }
@@ -71,7 +86,7 @@ public class AndroidAsyncHttpRequest<T> implements Request<T>, Request.SessionLi
     @Override
     public Request<T> withErrorListener(ErrorListener errorListener) {
         callbackManager.addErrorListener(errorListener, isDone && error != null, error);
-        return null;
+        return this;
     }
 
     @Override
@@ -79,6 +94,46 @@ public class AndroidAsyncHttpRequest<T> implements Request<T>, Request.SessionLi
         throw new UnsupportedOperationException("AndroidAsyncHttp does not support SessionListeners");
     }
 
+    @Override
+    public Request<T> withProgressListener(ProgressListener progressListener) {
+        if (!isDone) {
+            callbackManager.addProgressListener(progressListener);
+        }
+
+        return this;
+    }
+
+    @Override
+    public synchronized Request<T> withTag(Object tag) {
+        this.tag = tag;
+
+        if (handle != null) {
+            handle.setTag(tag);
+        }
+
+        return this;
+    }
+
+    @Override
+    public synchronized void cancel() {
+        isCanceled = true;
+        notifyAll();
+
+        if (handle != null) {
+            handle.cancel(true);
+        }
+    }
+
+    @Override
+    public <R> Request<R> then(Transformation<T, R> transformation, Executor executor) {
+        return Promise.then(this, transformation, executor);
+    }
+
+    @Override
+    public <R> Request<R> compose(Continuation<T, R> continuation, Executor executor) {
+        return Promise.compose(this, continuation, executor);
+    }
+
     protected AndroidAsyncHttpRequest(AsyncHttpClient client, Context context, String url, File file, Class<T> resultType) {
         this.client = client;
         this.context = context;
@@ -109,37 +164,50 @@ public class AndroidAsyncHttpRequest<T> implements Request<T>, Request.SessionLi
         }
     }
 
-    private void runRequest() {
+    private synchronized void runRequest() {
+        if (isCanceled) {
+            return;
+        }
+
         try {
             RequestParams params = new RequestParams();
             params.put("source", file);
             params.put("filename", file.getName());
-            client.post(context, url, getHeaders(), params, null
-                    , new BaseJsonHttpResponseHandler<T>() {
+            handle = client.post(context, url, getHeaders(), params, null, new AsyncHttpResponseHandler(true) {
+                // This handler is executed on the worker thread, allowing us to parse the
+                // response bytes directly without first decoding them into a string. The
+                // callbacks are then delivered on the main thread.
 
                 @Override
-                protected T parseResponse(String rawJsonData, boolean isFailure) throws Throwable {
-                    T result;
-                    if (isFailure || classOfResult == null || classOfResult == Void.class) {
-                        result = null;
-                    } else {
-                        result = JsonParser.fromJson(rawJsonData, classOfResult);
+                public void onSuccess(int statusCode, Header[] headers, byte[] responseBody) {
+                    try {
+                        if (classOfResult == null || classOfResult == Void.class) {
+                            result = null;
+                        } else {
+                            result = JsonParser.fromJson(responseBody, Charset.forName(getCharset()), classOfResult);
+                        }
+                        deliverResponse();
+                    } catch (RuntimeException e) {
+                        error = new PodioError(e);
+                        deliverError();
                     }
-                    return result;
                 }
 
                 @Override
-                public void onSuccess(int statusCode, Header[] headers, String rawJsonResponse, T response) {
-                    result = response;
-                    deliverResponse();
+                public void onProgress(long bytesWritten, long totalSize) {
+                    if (!isCanceled) {
+                        callbackManager.deliverProgressOnMainThread(bytesWritten, totalSize);
+                    }
                 }
 
                 @Override
-                public void onFailure(int statusCode, Header[] headers, Throwable throwable, String rawJsonData, T errorResponse) {
+                public void onFailure(int statusCode, Header[] headers, byte[] responseBody, Throwable throwable) {
                     if (statusCode == HttpStatus.SC_UNAUTHORIZED && !attemptedReauth) {
                         attemptedReauth = true;
                         Podio.client.forceRefreshTokens().withSessionListener(AndroidAsyncHttpRequest.this);
                     } else {
+                        String rawJsonData = TextHttpResponseHandler.getResponseString(responseBody, getCharset());
+
                         if (throwable instanceof ConnectTimeoutException || throwable instanceof SocketTimeoutException) {
                             error = new NoResponseError(throwable);
                         } else if (rawJsonData != null) {
@@ -155,20 +223,34 @@ public class AndroidAsyncHttpRequest<T> implements Request<T>, Request.SessionLi
                     }
                 }
             });
+
+            if (tag != null) {
+                handle.setTag(tag);
+            }
         } catch (FileNotFoundException e) {
             error = new PodioError(e);
             deliverError();
         }
     }
 
-    private void deliverError() {
+    private synchronized void deliverError() {
+        if (isCanceled) {
+            return;
+        }
+
         isDone = true;
-        callbackManager.deliverError(this.error);
+        notifyAll();
+        callbackManager.deliverErrorOnMainThread(this.error);
     }
 
-    private void deliverResponse() {
+    private synchronized void deliverResponse() {
+        if (isCanceled) {
+            return;
+        }
+
         isDone = true;
-        callbackManager.deliverResult(result);
+        notifyAll();
+        callbackManager.deliverResultOnMainThread(result);
     }
 
     public Header[] getHeaders() {
@@ -405,12 +405,24 @@ public class Conversation {
     private final Presence presence = null;
     private final Push push = null;
 
+    // The parsed dates are cached as conversations often are sorted by date. These members should
+    // not be included in any JSON built from this class, hence the 'transient' keyword.
+    private transient volatile Date createdDate;
+    private transient volatile Date lastEventDate;
+
     public long getConversationId() {
         return Utils.getNative(conversation_id, -1L);
     }
 
     public Date getCreatedDate() {
-        return Utils.parseDateTimeUtc(created_on);
+        Date date = createdDate;
+
+        if (date == null) {
+            date = Utils.parseDateTimeUtc(created_on);
+            createdDate = date;
+        }
+
+        return date != null ? new Date(date.getTime()) : null;
     }
 
     public String getCreatedDateString() {
@@ -438,7 +450,14 @@ public class Conversation {
     }
 
     public Date getLastEventDate() {
-        return Utils.parseDateTimeUtc(last_event_on);
+        Date date = lastEventDate;
+
+        if (date == null) {
+            date = Utils.parseDateTimeUtc(last_event_on);
+            lastEventDate = date;
+        }
+
+        return date != null ? new Date(date.getTime()) : null;
     }
 
     public String getLastEventDateString() {
@@ -42,6 +42,23 @@ public class Item implements Data {
             this.sort_nulls_last = false;
         }
 
+        /**
+         * Creates a copy of the given filter data, which can be changed without affecting the
+         * original.
+         *
+         * @param source
+         *         The filter data to copy.
+         */
+        public FilterData(FilterData source) {
+            this.filters = new HashMap<String, Object>(source.filters);
+            this.sort_desc = source.sort_desc;
+            this.sort_by = source.sort_by;
+            this.limit = source.limit;
+            this.offset = source.offset;
+            this.remember = source.remember;
+            this.sort_nulls_last = source.sort_nulls_last;
+        }
+
         public void addConstraint(String key, Object value) {
             if (Utils.notEmpty(key) && value != null) {
                 filters.put(key, value);
@@ -175,6 +192,18 @@ public class Item implements Data {
         }
     }
 
+    /**
+     * A class representing the items the client wants to delete in one go.
+     */
+    public static class BulkDeleteData {
+        @SuppressWarnings("unused")
+        private final List<Long> item_ids;
+
+        public BulkDeleteData(List<Long> itemIds) {
+            this.item_ids = new ArrayList<Long>(itemIds);
+        }
+    }
+
     public static class CreateDataLinkedAccount extends CreateData {
 
         private CreateDataLinkedAccount(String externalId) {
@@ -249,6 +278,7 @@ public class Item implements Data {
     private final String created_on = null;
     private final String external_id;
     private final String last_event_on = null;
+    private final String last_edit_on = null;
     private final String link = null;
     private final String title = null;
     private final String[] tags = null;
@@ -279,6 +309,12 @@ public class Item implements Data {
     // hence the 'transient' keyword.
     private transient final HashMap<String, List<Field.Value>> unverifiedFieldValues = new HashMap<String, List<Field.Value>>();
 
+    // The parsed dates are cached as items often are sorted by date. These members should not be
+    // included in any JSON either.
+    private transient volatile Date createdDate;
+    private transient volatile Date lastEventDate;
+    private transient volatile Date lastEditDate;
+
     /**
      * Creates a new, empty Item with no fields.
      */
@@ -506,7 +542,14 @@ public class Item implements Data {
      * @return A date object, or null if the date couldn't be parsed.
      */
     public Date getCreatedDate() {
-        return Utils.parseDateTimeUtc(created_on);
+        Date date = createdDate;
+
+        if (date == null) {
+            date = Utils.parseDateTimeUtc(created_on);
+            createdDate = date;
+        }
+
+        return date != null ? new Date(date.getTime()) : null;
     }
 
     public String getCreatedDateString() {
@@ -551,13 +594,35 @@ public class Item implements Data {
      * @return A date object, or null if the date couldn't be parsed.
      */
     public Date getLastEventDate() {
-        return Utils.parseDateTimeUtc(last_event_on);
+        Date date = lastEventDate;
+
+        if (date == null) {
+            date = Utils.parseDateTimeUtc(last_event_on);
+            lastEventDate = date;
+        }
+
+        return date != null ? new Date(date.getTime()) : null;
     }
 
     public String getLastEventDateString() {
         return last_event_on;
     }
 
+    public Date getLastEditDate() {
+        Date date = lastEditDate;
+
+        if (date == null) {
+            date = Utils.parseDateTimeUtc(last_edit_on);
+            lastEditDate = date;
+        }
+
+        return date != null ? new Date(date.getTime()) : null;
+    }
+
+    public String getLastEditDateString() {
+        return last_edit_on;
+    }
+
     public int getLikeCount() {
         return Utils.getNative(like_count, -1);
     }
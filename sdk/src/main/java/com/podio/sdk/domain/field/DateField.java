@@ -97,6 +97,11 @@ public class DateField extends Field<DateField.Value> {
         private String start_time_utc = null;
         private String start_utc;
 
+        // The parsed dates are cached as values often are sorted by date. These members should
+        // not be included in any JSON built from this class, hence the 'transient' keyword.
+        private transient volatile Date startUtc;
+        private transient volatile Date endUtc;
+
         public Value(Date start) {
             this(start, null);
         }
@@ -203,11 +208,19 @@ public class DateField extends Field<DateField.Value> {
         }
 
         public Date getEndUtc() {
-            if (hasEndTimeUtc()) {
-                return Utils.parseDateTimeUtc(end_utc);
-            } else {
+            if (!hasEndTimeUtc()) {
+                // Depends on the current time zone of the device, hence not cached.
                 return Utils.parseDateDefault(end_utc);
             }
+
+            Date date = endUtc;
+
+            if (date == null) {
+                date = Utils.parseDateTimeUtc(end_utc);
+                endUtc = date;
+            }
+
+            return date != null ? new Date(date.getTime()) : null;
         }
 
         public Date getStartDateTime() {
@@ -231,11 +244,19 @@ public class DateField extends Field<DateField.Value> {
         }
 
         public Date getStartUtc() {
-            if (hasStartTimeUtc()) {
-                return Utils.parseDateTimeUtc(start_utc);
-            } else {
+            if (!hasStartTimeUtc()) {
+                // Depends on the current time zone of the device, hence not cached.
                 return Utils.parseDateDefault(start_utc);
             }
+
+            Date date = startUtc;
+
+            if (date == null) {
+                date = Utils.parseDateTimeUtc(start_utc);
+                startUtc = date;
+            }
+
+            return date != null ? new Date(date.getTime()) : null;
         }
 
         @Override
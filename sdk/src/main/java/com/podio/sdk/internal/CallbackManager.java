@@ -6,6 +6,7 @@ import android.os.Looper;
 
 import com.podio.sdk.PodioError;
 import com.podio.sdk.Request.ErrorListener;
+import com.podio.sdk.Request.ProgressListener;
 import com.podio.sdk.Request.ResultListener;
 
 import java.util.ArrayList;
@@ -33,12 +34,18 @@ public class CallbackManager<T> {
 
     private final ArrayList<ResultListener<T>> resultListeners;
     private final ArrayList<ErrorListener> errorListeners;
+    private final ArrayList<ProgressListener> progressListeners;
     private final Object RESULT_LISTENER_LOCK = new Object();
     private final Object ERROR_LISTENER_LOCK = new Object();
+    private final Object PROGRESS_LISTENER_LOCK = new Object();
+
+    private long lastProgressStep;
 
     public CallbackManager() {
         this.resultListeners = new ArrayList<ResultListener<T>>();
         this.errorListeners = new ArrayList<ErrorListener>();
+        this.progressListeners = new ArrayList<ProgressListener>();
+        this.lastProgressStep = -1L;
     }
 
     public void addErrorListener(ErrorListener listener, boolean deliverErrorNow, Throwable error) {
@@ -65,12 +72,24 @@ public class CallbackManager<T> {
         }
     }
 
+    public void addProgressListener(ProgressListener listener) {
+        if (listener != null) {
+            synchronized (PROGRESS_LISTENER_LOCK) {
+                progressListeners.add(listener);
+            }
+        }
+    }
+
     public void deliverError(Throwable error) {
         // We will not be delivering a result -> clear the listener references.
         synchronized (RESULT_LISTENER_LOCK) {
             resultListeners.clear();
         }
 
+        synchronized (PROGRESS_LISTENER_LOCK) {
+            progressListeners.clear();
+        }
+
         if (Utils.isEmpty(errorListeners) && Utils.isEmpty(GLOBAL_ERROR_LISTENERS)) {
             throw new PodioError(error);
         }
@@ -121,6 +140,10 @@ public class CallbackManager<T> {
             errorListeners.clear();
         }
 
+        synchronized (PROGRESS_LISTENER_LOCK) {
+            progressListeners.clear();
+        }
+
         synchronized (RESULT_LISTENER_LOCK) {
             for (ResultListener<T> listener : resultListeners) {
                 if (listener != null) {
@@ -147,6 +170,46 @@ public class CallbackManager<T> {
         });
     }
 
+    public void deliverProgress(long transferredBytes, long totalBytes) {
+        synchronized (PROGRESS_LISTENER_LOCK) {
+            for (ProgressListener listener : progressListeners) {
+                if (listener != null) {
+                    if (listener.onProgress(transferredBytes, totalBytes)) {
+                        // The callback consumed the event, stop the bubbling.
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Delivers the given progress on the main thread, unless it's less than a percent further
+     * than the previously delivered progress. This way a transfer can report every buffer it
+     * writes without flooding the main thread.
+     */
+    public void deliverProgressOnMainThread(final long transferredBytes, final long totalBytes) {
+        long step = totalBytes > 0 ? transferredBytes * 100L / totalBytes : transferredBytes / 65536L;
+
+        synchronized (PROGRESS_LISTENER_LOCK) {
+            if (progressListeners.isEmpty() || step == lastProgressStep) {
+                return;
+            }
+
+            lastProgressStep = step;
+        }
+
+        Handler handler = new Handler(Looper.getMainLooper());
+        handler.post(new Runnable() {
+
+            @Override
+            public void run() {
+                deliverProgress(transferredBytes, totalBytes);
+            }
+
+        });
+    }
+
     public ResultListener<T> removeResultListener(ResultListener<T> listener) {
         synchronized (RESULT_LISTENER_LOCK) {
             if (resultListeners.contains(listener)) {
@@ -9,11 +9,27 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
 public class Utils {
+    private static final String DATE_TIME_PATTERN = "yyyy-MM-dd HH:mm:ss";
+    private static final String DATE_PATTERN = "yyyy-MM-dd";
+    private static final String TIME_PATTERN = "HH:mm:ss";
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final long SECONDS_PER_DAY = 86400L;
+    private static final int FIRST_GREGORIAN_YEAR = 1600;
+    private static final long INVALID_DATE = Long.MIN_VALUE;
+
+    private static final ThreadLocal<HashMap<String, SimpleDateFormat>> SIMPLE_DATE_FORMATS = new ThreadLocal<HashMap<String, SimpleDateFormat>>() {
+        @Override
+        protected HashMap<String, SimpleDateFormat> initialValue() {
+            return new HashMap<String, SimpleDateFormat>();
+        }
+    };
 
     public static long currentTimeSeconds() {
         return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
@@ -30,8 +46,17 @@ public class Utils {
     }
 
     public static String formatDateUtc(Date date) {
+        if (date == null) {
+            return null;
+        }
+
+        String result = formatUtc(date.getTime(), true, false);
+        if (result != null) {
+            return result;
+        }
+
         try {
-            return getUtcSimpleDateFormat("yyyy-MM-dd").format(date);
+            return getUtcSimpleDateFormat(DATE_PATTERN).format(date);
         } catch (NullPointerException e) {
             return null;
         } catch (IllegalArgumentException e) {
@@ -40,8 +65,17 @@ public class Utils {
     }
 
     public static String formatDateTimeUtc(Date dateTime) {
+        if (dateTime == null) {
+            return null;
+        }
+
+        String result = formatUtc(dateTime.getTime(), true, true);
+        if (result != null) {
+            return result;
+        }
+
         try {
-            return getUtcSimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(dateTime);
+            return getUtcSimpleDateFormat(DATE_TIME_PATTERN).format(dateTime);
         } catch (NullPointerException e) {
             return null;
         } catch (IllegalArgumentException e) {
@@ -51,7 +85,7 @@ public class Utils {
 
     public static String formatDateDefault(Date date) {
         try {
-            return getDefaultSimpleDateFormat("yyyy-MM-dd").format(date);
+            return getDefaultSimpleDateFormat(DATE_PATTERN).format(date);
         } catch (NullPointerException e) {
             return null;
         } catch (IllegalArgumentException e) {
@@ -61,7 +95,7 @@ public class Utils {
 
     public static String formatDateTimeDefault(Date dateTime) {
         try {
-            return getDefaultSimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(dateTime);
+            return getDefaultSimpleDateFormat(DATE_TIME_PATTERN).format(dateTime);
         } catch (NullPointerException e) {
             return null;
         } catch (IllegalArgumentException e) {
@@ -185,8 +219,17 @@ public class Utils {
      * @return
      */
     public static Date parseDateTimeUtc(String dateTime) {
+        if (dateTime == null) {
+            return null;
+        }
+
+        long millis = parseUtc(dateTime, true, true);
+        if (millis != INVALID_DATE) {
+            return new Date(millis);
+        }
+
         try {
-            return getUtcSimpleDateFormat("yyyy-MM-dd HH:mm:ss").parse(dateTime);
+            return getUtcSimpleDateFormat(DATE_TIME_PATTERN).parse(dateTime);
         } catch (NullPointerException e) {
             return null;
         } catch (IllegalArgumentException e) {
@@ -203,8 +246,17 @@ public class Utils {
      * @return
      */
     public static Date parseDateUtc(String date) {
+        if (date == null) {
+            return null;
+        }
+
+        long millis = parseUtc(date, true, false);
+        if (millis != INVALID_DATE) {
+            return new Date(millis);
+        }
+
         try {
-            return getUtcSimpleDateFormat("yyyy-MM-dd").parse(date);
+            return getUtcSimpleDateFormat(DATE_PATTERN).parse(date);
         } catch (NullPointerException e) {
             return null;
         } catch (IllegalArgumentException e) {
@@ -221,8 +273,17 @@ public class Utils {
      * @return
      */
     public static Date parseTimeUtc(String time) {
+        if (time == null) {
+            return null;
+        }
+
+        long millis = parseUtc(time, false, true);
+        if (millis != INVALID_DATE) {
+            return new Date(millis);
+        }
+
         try {
-            return getUtcSimpleDateFormat("HH:mm:ss").parse(time);
+            return getUtcSimpleDateFormat(TIME_PATTERN).parse(time);
         } catch (NullPointerException e) {
             return null;
         } catch (IllegalArgumentException e) {
@@ -240,7 +301,7 @@ public class Utils {
      */
     public static Date parseDateTimeDefault(String dateTime) {
         try {
-            return getDefaultSimpleDateFormat("yyyy-MM-dd HH:mm:ss").parse(dateTime);
+            return getDefaultSimpleDateFormat(DATE_TIME_PATTERN).parse(dateTime);
         } catch (NullPointerException e) {
             return null;
         } catch (IllegalArgumentException e) {
@@ -258,7 +319,7 @@ public class Utils {
      */
     public static Date parseDateDefault(String date) {
         try {
-            return getDefaultSimpleDateFormat("yyyy-MM-dd").parse(date);
+            return getDefaultSimpleDateFormat(DATE_PATTERN).parse(date);
         } catch (NullPointerException e) {
             return null;
         } catch (IllegalArgumentException e) {
@@ -276,7 +337,7 @@ public class Utils {
      */
     public static Date parseTimeDefault(String time) {
         try {
-            return getDefaultSimpleDateFormat("HH:mm:ss").parse(time);
+            return getDefaultSimpleDateFormat(TIME_PATTERN).parse(time);
         } catch (NullPointerException e) {
             return null;
         } catch (IllegalArgumentException e) {
@@ -286,18 +347,190 @@ public class Utils {
         }
     }
 
-    @SuppressLint("SimpleDateFormat")
+    /**
+     * Parses Podio's fixed "yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd" or "HH:mm:ss" UTC notation by
+     * plain character arithmetic. Out of range fields roll over, just like they do with a lenient
+     * {@link SimpleDateFormat}. Anything but the exact notation, including years before the
+     * Gregorian calendar was adopted, is left for the {@link SimpleDateFormat} to handle.
+     *
+     * @param string
+     *         The string to parse.
+     * @param hasDate
+     *         Whether the string starts with a "yyyy-MM-dd" date.
+     * @param hasTime
+     *         Whether the string ends with a "HH:mm:ss" time.
+     *
+     * @return The number of milliseconds since the epoch, or {@link #INVALID_DATE} if the string
+     * isn't in the expected notation.
+     */
+    private static long parseUtc(String string, boolean hasDate, boolean hasTime) {
+        int expectedLength = (hasDate ? 10 : 0) + (hasDate && hasTime ? 1 : 0) + (hasTime ? 8 : 0);
+        if (string.length() != expectedLength) {
+            return INVALID_DATE;
+        }
+
+        long days = 0;
+        int offset = 0;
+
+        if (hasDate) {
+            int year = parseDigits(string, 0, 4);
+            int month = parseDigits(string, 5, 2);
+            int day = parseDigits(string, 8, 2);
+
+            if (year < 0 || month < 0 || day < 0 || string.charAt(4) != '-' || string.charAt(7) != '-') {
+                return INVALID_DATE;
+            }
+
+            // Month "00" is December the year before, "13" is January the year after.
+            year += (month + 11) / 12 - 1;
+            month = (month + 11) % 12 + 1;
+
+            if (year < FIRST_GREGORIAN_YEAR) {
+                return INVALID_DATE;
+            }
+
+            days = daysFromCivil(year, month) + day - 1;
+            offset = 11;
+
+            if (hasTime && string.charAt(10) != ' ') {
+                return INVALID_DATE;
+            }
+        }
+
+        long seconds = 0;
+
+        if (hasTime) {
+            int hours = parseDigits(string, offset, 2);
+            int minutes = parseDigits(string, offset + 3, 2);
+            int secs = parseDigits(string, offset + 6, 2);
+
+            if (hours < 0 || minutes < 0 || secs < 0 || string.charAt(offset + 2) != ':' || string.charAt(offset + 5) != ':') {
+                return INVALID_DATE;
+            }
+
+            seconds = hours * 3600L + minutes * 60L + secs;
+        }
+
+        return (days * SECONDS_PER_DAY + seconds) * 1000L;
+    }
+
+    /**
+     * Formats the given point in time in Podio's fixed UTC notation by plain character arithmetic.
+     *
+     * @param millis
+     *         The number of milliseconds since the epoch.
+     * @param hasDate
+     *         Whether to include the "yyyy-MM-dd" date.
+     * @param hasTime
+     *         Whether to include the "HH:mm:ss" time.
+     *
+     * @return The formatted string, or null if the year is out of the range this method handles.
+     */
+    private static String formatUtc(long millis, boolean hasDate, boolean hasTime) {
+        long seconds = millis >= 0 ? millis / 1000L : (millis - 999L) / 1000L;
+        long days = seconds >= 0 ? seconds / SECONDS_PER_DAY : (seconds - SECONDS_PER_DAY + 1) / SECONDS_PER_DAY;
+        int secondOfDay = (int) (seconds - days * SECONDS_PER_DAY);
+
+        // Civil date from days since the epoch, see daysFromCivil(int, int).
+        long shifted = days + 719468L;
+        long era = (shifted >= 0 ? shifted : shifted - 146096L) / 146097L;
+        int dayOfEra = (int) (shifted - era * 146097L);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400L + (month <= 2 ? 1 : 0);
+
+        if (year < FIRST_GREGORIAN_YEAR || year > 9999) {
+            return null;
+        }
+
+        char[] chars = new char[(hasDate ? 10 : 0) + (hasDate && hasTime ? 1 : 0) + (hasTime ? 8 : 0)];
+        int offset = 0;
+
+        if (hasDate) {
+            putDigits(chars, 0, (int) year, 4);
+            chars[4] = '-';
+            putDigits(chars, 5, month, 2);
+            chars[7] = '-';
+            putDigits(chars, 8, day, 2);
+            offset = 10;
+
+            if (hasTime) {
+                chars[offset++] = ' ';
+            }
+        }
+
+        if (hasTime) {
+            putDigits(chars, offset, secondOfDay / 3600, 2);
+            chars[offset + 2] = ':';
+            putDigits(chars, offset + 3, secondOfDay / 60 % 60, 2);
+            chars[offset + 5] = ':';
+            putDigits(chars, offset + 6, secondOfDay % 60, 2);
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * Calculates the number of days from the epoch to the first day of the given month in the
+     * proleptic Gregorian calendar.
+     */
+    private static long daysFromCivil(int year, int month) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468L;
+    }
+
+    private static int parseDigits(String string, int offset, int count) {
+        int result = 0;
+
+        for (int i = offset; i < offset + count; i++) {
+            int digit = string.charAt(i) - '0';
+
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+
+            result = result * 10 + digit;
+        }
+
+        return result;
+    }
+
+    private static void putDigits(char[] chars, int offset, int value, int count) {
+        for (int i = offset + count - 1; i >= offset; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
     private static SimpleDateFormat getUtcSimpleDateFormat(String pattern) {
-        TimeZone timeZone = TimeZone.getTimeZone("UTC");
-        SimpleDateFormat simpleDateFormat = new SimpleDateFormat(pattern);
-        simpleDateFormat.setTimeZone(timeZone);
-        return simpleDateFormat;
+        return getSimpleDateFormat(pattern, UTC);
     }
 
-    @SuppressLint("SimpleDateFormat")
     private static SimpleDateFormat getDefaultSimpleDateFormat(String pattern) {
-        TimeZone timeZone = TimeZone.getDefault();
-        SimpleDateFormat simpleDateFormat = new SimpleDateFormat(pattern);
+        return getSimpleDateFormat(pattern, TimeZone.getDefault());
+    }
+
+    /**
+     * Returns a formatter for the given pattern and time zone. {@link SimpleDateFormat} isn't
+     * thread safe, hence the formatters are cached per thread.
+     */
+    @SuppressLint("SimpleDateFormat")
+    private static SimpleDateFormat getSimpleDateFormat(String pattern, TimeZone timeZone) {
+        HashMap<String, SimpleDateFormat> formats = SIMPLE_DATE_FORMATS.get();
+        SimpleDateFormat simpleDateFormat = formats.get(pattern);
+
+        if (simpleDateFormat == null) {
+            simpleDateFormat = new SimpleDateFormat(pattern);
+            formats.put(pattern, simpleDateFormat);
+        }
+
         simpleDateFormat.setTimeZone(timeZone);
         return simpleDateFormat;
     }
@@ -0,0 +1,432 @@
+package com.podio.sdk.json;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+
+import static com.podio.sdk.json.BinaryJsonWriter.TAG_BEGIN_ARRAY;
+import static com.podio.sdk.json.BinaryJsonWriter.TAG_BEGIN_OBJECT;
+import static com.podio.sdk.json.BinaryJsonWriter.TAG_DOUBLE;
+import static com.podio.sdk.json.BinaryJsonWriter.TAG_END_ARRAY;
+import static com.podio.sdk.json.BinaryJsonWriter.TAG_END_OBJECT;
+import static com.podio.sdk.json.BinaryJsonWriter.TAG_FALSE;
+import static com.podio.sdk.json.BinaryJsonWriter.TAG_LONG;
+import static com.podio.sdk.json.BinaryJsonWriter.TAG_NAME;
+import static com.podio.sdk.json.BinaryJsonWriter.TAG_NAME_REFERENCE;
+import static com.podio.sdk.json.BinaryJsonWriter.TAG_NULL;
+import static com.podio.sdk.json.BinaryJsonWriter.TAG_NUMBER;
+import static com.podio.sdk.json.BinaryJsonWriter.TAG_STRING;
+import static com.podio.sdk.json.BinaryJsonWriter.TAG_TRUE;
+import static com.podio.sdk.json.BinaryJsonWriter.UTF8;
+
+/**
+ * A {@link JsonReader} that reads the binary token stream written by a {@link BinaryJsonWriter}.
+ * The regular Gson type adapters can hence parse the binary format without any JSON text ever
+ * being tokenized.
+ * <p/>
+ * Note that the reader can't turn member names into values, which the Gson map adapter requires.
+ * Maps are therefore read through a tree instead, see {@link BinaryMapTypeAdapterFactory}.
+ *
+ */
+final class BinaryJsonReader extends JsonReader {
+    private static final int BUFFER_SIZE = 8192;
+    private static final int NONE = -1;
+
+    private final InputStream in;
+    private final byte[] buffer;
+    private final ArrayList<String> names;
+
+    private int position;
+    private int limit;
+
+    private int peeked;
+    private long peekedLong;
+    private double peekedDouble;
+    private String peekedString;
+
+    /**
+     * Creates a reader reading binary tokens from the given stream.
+     *
+     * @param in
+     *         The stream to read from.
+     */
+    BinaryJsonReader(InputStream in) {
+        super(new StringReader(""));
+        this.in = in;
+        this.buffer = new byte[BUFFER_SIZE];
+        this.names = new ArrayList<String>();
+        this.position = 0;
+        this.limit = 0;
+        this.peeked = NONE;
+    }
+
+    /**
+     * Makes sure there is at least one unread byte in the buffer, unless the end of the stream is
+     * reached.
+     *
+     * @return Boolean false if the end of the stream is reached, boolean true otherwise.
+     */
+    private boolean fill() throws IOException {
+        if (position < limit) {
+            return true;
+        }
+
+        limit = in.read(buffer, 0, buffer.length);
+        position = 0;
+
+        if (limit <= 0) {
+            limit = 0;
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads the next byte from the stream.
+     *
+     * @return The byte, or -1 if the end of the stream is reached.
+     */
+    private int readByte() throws IOException {
+        return fill() ? buffer[position++] & 0xFF : -1;
+    }
+
+    private int readRequiredByte() throws IOException {
+        int value = readByte();
+
+        if (value < 0) {
+            throw new EOFException("Unexpected end of binary JSON");
+        }
+
+        return value;
+    }
+
+    private long readVarLong() throws IOException {
+        long result = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            int value = readRequiredByte();
+            result |= (long) (value & 0x7F) << shift;
+
+            if ((value & 0x80) == 0) {
+                return result;
+            }
+        }
+
+        throw new IOException("Malformed variable length integer");
+    }
+
+    private String readString() throws IOException {
+        long length = readVarLong();
+
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new IOException("Malformed string length: " + length);
+        }
+
+        int count = (int) length;
+
+        // Short strings are decoded straight from the buffer, longer ones are copied in chunks.
+        if (count <= limit - position) {
+            String result = new String(buffer, position, count, UTF8);
+            position += count;
+            return result;
+        }
+
+        byte[] bytes = new byte[count];
+        int offset = 0;
+
+        while (offset < count) {
+            if (!fill()) {
+                throw new EOFException("Unexpected end of binary JSON");
+            }
+
+            int chunk = Math.min(count - offset, limit - position);
+            System.arraycopy(buffer, position, bytes, offset, chunk);
+            position += chunk;
+            offset += chunk;
+        }
+
+        return new String(bytes, UTF8);
+    }
+
+    /**
+     * Reads the next tag, and its payload, unless it's already read.
+     *
+     * @return The tag of the next token, or -1 if the end of the stream is reached.
+     */
+    private int peekTag() throws IOException {
+        if (peeked != NONE) {
+            return peeked;
+        }
+
+        int tag = readByte();
+
+        switch (tag) {
+            case TAG_LONG:
+                long zigZag = readVarLong();
+                peekedLong = (zigZag >>> 1) ^ -(zigZag & 1);
+                break;
+            case TAG_DOUBLE:
+                long bits = 0;
+
+                for (int i = 0; i < 8; i++) {
+                    bits = (bits << 8) | readRequiredByte();
+                }
+
+                peekedDouble = Double.longBitsToDouble(bits);
+                break;
+            case TAG_STRING:
+            case TAG_NUMBER:
+                peekedString = readString();
+                break;
+            case TAG_NAME:
+                peekedString = readString();
+                names.add(peekedString);
+                break;
+            case TAG_NAME_REFERENCE:
+                long index = readVarLong();
+
+                if (index < 0 || index >= names.size()) {
+                    throw new IOException("Unknown name reference: " + index);
+                }
+
+                peekedString = names.get((int) index);
+                break;
+            default:
+                break;
+        }
+
+        peeked = tag;
+        return tag;
+    }
+
+    private void consume(int expectedTag, JsonToken expected) throws IOException {
+        if (peekTag() != expectedTag) {
+            throw unexpected(expected);
+        }
+
+        peeked = NONE;
+    }
+
+    private IllegalStateException unexpected(JsonToken expected) throws IOException {
+        return new IllegalStateException("Expected " + expected + " but was " + peek() + " at " + getPath());
+    }
+
+    @Override
+    public JsonToken peek() throws IOException {
+        switch (peekTag()) {
+            case -1:
+                return JsonToken.END_DOCUMENT;
+            case TAG_BEGIN_OBJECT:
+                return JsonToken.BEGIN_OBJECT;
+            case TAG_END_OBJECT:
+                return JsonToken.END_OBJECT;
+            case TAG_BEGIN_ARRAY:
+                return JsonToken.BEGIN_ARRAY;
+            case TAG_END_ARRAY:
+                return JsonToken.END_ARRAY;
+            case TAG_NULL:
+                return JsonToken.NULL;
+            case TAG_TRUE:
+            case TAG_FALSE:
+                return JsonToken.BOOLEAN;
+            case TAG_LONG:
+            case TAG_DOUBLE:
+            case TAG_NUMBER:
+                return JsonToken.NUMBER;
+            case TAG_STRING:
+                return JsonToken.STRING;
+            case TAG_NAME:
+            case TAG_NAME_REFERENCE:
+                return JsonToken.NAME;
+            default:
+                throw new IOException("Unknown binary JSON tag: " + peeked);
+        }
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        int tag = peekTag();
+        return tag != TAG_END_OBJECT && tag != TAG_END_ARRAY && tag != -1;
+    }
+
+    @Override
+    public void beginArray() throws IOException {
+        consume(TAG_BEGIN_ARRAY, JsonToken.BEGIN_ARRAY);
+    }
+
+    @Override
+    public void endArray() throws IOException {
+        consume(TAG_END_ARRAY, JsonToken.END_ARRAY);
+    }
+
+    @Override
+    public void beginObject() throws IOException {
+        consume(TAG_BEGIN_OBJECT, JsonToken.BEGIN_OBJECT);
+    }
+
+    @Override
+    public void endObject() throws IOException {
+        consume(TAG_END_OBJECT, JsonToken.END_OBJECT);
+    }
+
+    @Override
+    public String nextName() throws IOException {
+        int tag = peekTag();
+
+        if (tag != TAG_NAME && tag != TAG_NAME_REFERENCE) {
+            throw unexpected(JsonToken.NAME);
+        }
+
+        peeked = NONE;
+        return peekedString;
+    }
+
+    @Override
+    public String nextString() throws IOException {
+        String result;
+
+        switch (peekTag()) {
+            case TAG_STRING:
+            case TAG_NUMBER:
+                result = peekedString;
+                break;
+            case TAG_LONG:
+                result = Long.toString(peekedLong);
+                break;
+            case TAG_DOUBLE:
+                result = Double.toString(peekedDouble);
+                break;
+            default:
+                throw unexpected(JsonToken.STRING);
+        }
+
+        peeked = NONE;
+        return result;
+    }
+
+    @Override
+    public boolean nextBoolean() throws IOException {
+        int tag = peekTag();
+
+        if (tag != TAG_TRUE && tag != TAG_FALSE) {
+            throw unexpected(JsonToken.BOOLEAN);
+        }
+
+        peeked = NONE;
+        return tag == TAG_TRUE;
+    }
+
+    @Override
+    public void nextNull() throws IOException {
+        consume(TAG_NULL, JsonToken.NULL);
+    }
+
+    @Override
+    public double nextDouble() throws IOException {
+        double result;
+
+        switch (peekTag()) {
+            case TAG_LONG:
+                result = peekedLong;
+                break;
+            case TAG_DOUBLE:
+                result = peekedDouble;
+                break;
+            case TAG_STRING:
+            case TAG_NUMBER:
+                result = Double.parseDouble(peekedString);
+                break;
+            default:
+                throw unexpected(JsonToken.NUMBER);
+        }
+
+        peeked = NONE;
+        return result;
+    }
+
+    @Override
+    public long nextLong() throws IOException {
+        long result;
+
+        switch (peekTag()) {
+            case TAG_LONG:
+                result = peekedLong;
+                break;
+            case TAG_DOUBLE:
+                result = (long) peekedDouble;
+
+                if (result != peekedDouble) {
+                    throw new NumberFormatException("Expected a long but was " + peekedDouble + " at " + getPath());
+                }
+
+                break;
+            case TAG_STRING:
+            case TAG_NUMBER:
+                try {
+                    result = Long.parseLong(peekedString);
+                } catch (NumberFormatException e) {
+                    double asDouble = Double.parseDouble(peekedString);
+                    result = (long) asDouble;
+
+                    if (result != asDouble) {
+                        throw new NumberFormatException("Expected a long but was " + peekedString + " at " + getPath());
+                    }
+                }
+
+                break;
+            default:
+                throw unexpected(JsonToken.NUMBER);
+        }
+
+        peeked = NONE;
+        return result;
+    }
+
+    @Override
+    public int nextInt() throws IOException {
+        long result = nextLong();
+
+        if (result != (int) result) {
+            throw new NumberFormatException("Expected an int but was " + result + " at " + getPath());
+        }
+
+        return (int) result;
+    }
+
+    @Override
+    public void skipValue() throws IOException {
+        int depth = 0;
+
+        do {
+            int tag = peekTag();
+
+            if (tag == -1) {
+                throw new EOFException("Unexpected end of binary JSON");
+            } else if (tag == TAG_BEGIN_OBJECT || tag == TAG_BEGIN_ARRAY) {
+                depth++;
+            } else if (tag == TAG_END_OBJECT || tag == TAG_END_ARRAY) {
+                depth--;
+            }
+
+            peeked = NONE;
+        } while (depth > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        peeked = NONE;
+        in.close();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName();
+    }
+
+}
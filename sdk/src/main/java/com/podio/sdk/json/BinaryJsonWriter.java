@@ -0,0 +1,216 @@
+package com.podio.sdk.json;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+
+/**
+ * A {@link JsonWriter} that, instead of JSON text, writes a compact binary token stream which can
+ * be read back by a {@link BinaryJsonReader}. This allows the regular Gson type adapters to be used
+ * for the binary format.
+ * <p/>
+ * Each token is a single tag byte, followed by its payload, if any. Strings are length prefixed
+ * UTF-8, integral numbers are zig-zag encoded variable length integers and decimal numbers are
+ * eight byte IEEE 754 doubles. Each distinct member name is written only once per stream, all
+ * following occurrences refer to it by index.
+ *
+ */
+final class BinaryJsonWriter extends JsonWriter {
+    static final int TAG_BEGIN_OBJECT = 1;
+    static final int TAG_END_OBJECT = 2;
+    static final int TAG_BEGIN_ARRAY = 3;
+    static final int TAG_END_ARRAY = 4;
+    static final int TAG_NULL = 5;
+    static final int TAG_TRUE = 6;
+    static final int TAG_FALSE = 7;
+    static final int TAG_LONG = 8;
+    static final int TAG_DOUBLE = 9;
+    static final int TAG_STRING = 10;
+    static final int TAG_NUMBER = 11;
+    static final int TAG_NAME = 12;
+    static final int TAG_NAME_REFERENCE = 13;
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private final HashMap<String, Integer> names;
+
+    private int position;
+
+    /**
+     * Creates a writer writing binary tokens to the given stream. Nothing is guaranteed to reach
+     * the stream until the writer is flushed.
+     *
+     * @param out
+     *         The stream to write to.
+     */
+    BinaryJsonWriter(OutputStream out) {
+        super(new StringWriter(0));
+        this.out = out;
+        this.buffer = new byte[BUFFER_SIZE];
+        this.names = new HashMap<String, Integer>();
+        this.position = 0;
+    }
+
+    private void writeByte(int value) throws IOException {
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+
+        writeByte((int) value);
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        writeVarLong(bytes.length);
+
+        if (bytes.length > buffer.length - position) {
+            flushBuffer();
+            out.write(bytes);
+        } else {
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    @Override
+    public JsonWriter beginArray() throws IOException {
+        writeByte(TAG_BEGIN_ARRAY);
+        return this;
+    }
+
+    @Override
+    public JsonWriter endArray() throws IOException {
+        writeByte(TAG_END_ARRAY);
+        return this;
+    }
+
+    @Override
+    public JsonWriter beginObject() throws IOException {
+        writeByte(TAG_BEGIN_OBJECT);
+        return this;
+    }
+
+    @Override
+    public JsonWriter endObject() throws IOException {
+        writeByte(TAG_END_OBJECT);
+        return this;
+    }
+
+    @Override
+    public JsonWriter name(String name) throws IOException {
+        if (name == null) {
+            throw new NullPointerException("name == null");
+        }
+
+        Integer index = names.get(name);
+
+        if (index != null) {
+            writeByte(TAG_NAME_REFERENCE);
+            writeVarLong(index);
+        } else {
+            names.put(name, names.size());
+            writeByte(TAG_NAME);
+            writeBytes(name.getBytes(UTF8));
+        }
+
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+
+        writeByte(TAG_STRING);
+        writeBytes(value.getBytes(UTF8));
+        return this;
+    }
+
+    @Override
+    public JsonWriter nullValue() throws IOException {
+        writeByte(TAG_NULL);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(boolean value) throws IOException {
+        writeByte(value ? TAG_TRUE : TAG_FALSE);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(double value) throws IOException {
+        long bits = Double.doubleToLongBits(value);
+        writeByte(TAG_DOUBLE);
+
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            writeByte((int) (bits >>> shift));
+        }
+
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(long value) throws IOException {
+        writeByte(TAG_LONG);
+        writeVarLong((value << 1) ^ (value >> 63));
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(Number value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return value(value.longValue());
+        }
+
+        if (value instanceof Double || value instanceof Float) {
+            return value(value.doubleValue());
+        }
+
+        // Big numbers and lazily parsed numbers are kept in their literal form.
+        writeByte(TAG_NUMBER);
+        writeBytes(value.toString().getBytes(UTF8));
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flushBuffer();
+        out.close();
+    }
+
+}
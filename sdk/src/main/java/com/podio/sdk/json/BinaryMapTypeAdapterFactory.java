@@ -0,0 +1,48 @@
+package com.podio.sdk.json;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * The Gson map adapter reads the member names of a JSON object as map keys by "promoting" them to
+ * values, which only works for the Gson readers. This factory lets maps being read by a
+ * {@link BinaryJsonReader}, or by the {@link FieldTypeAdapterFactory.FieldJsonReader} of a field
+ * value, go through an intermediate JSON tree instead. All other reading and writing is left
+ * untouched.
+ *
+ */
+class BinaryMapTypeAdapterFactory implements TypeAdapterFactory {
+
+    @Override
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+        if (!Map.class.isAssignableFrom(typeToken.getRawType())) {
+            return null;
+        }
+
+        final TypeAdapter<T> delegate = gson.getDelegateAdapter(this, typeToken);
+        final TypeAdapter<JsonElement> treeAdapter = gson.getAdapter(JsonElement.class);
+
+        return new TypeAdapter<T>() {
+            @Override
+            public void write(JsonWriter out, T value) throws IOException {
+                delegate.write(out, value);
+            }
+
+            @Override
+            public T read(JsonReader in) throws IOException {
+                return in instanceof BinaryJsonReader || in instanceof FieldTypeAdapterFactory.FieldJsonReader ?
+                        delegate.fromJsonTree(treeAdapter.read(in)) :
+                        delegate.read(in);
+            }
+        };
+    }
+
+}
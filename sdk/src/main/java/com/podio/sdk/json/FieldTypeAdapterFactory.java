@@ -0,0 +1,551 @@
+package com.podio.sdk.json;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.podio.sdk.domain.field.CalculationField;
+import com.podio.sdk.domain.field.Field;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+
+/**
+ * Fields are delivered with a "type" discriminator which decides what concrete {@link Field}
+ * implementation the JSON describes. This factory streams the field JSON directly into the class
+ * given by {@link Field.Type#getFieldClass()} without building an intermediate JSON tree. Any
+ * members preceding the discriminator are buffered as raw tokens and replayed to the reflective
+ * adapter of the concrete class.
+ * <p/>
+ * Calculation fields are special as the actual value type depends on the "return_type" setting in
+ * the field configuration. Their values are therefore buffered until the configuration is known.
+ *
+ */
+class FieldTypeAdapterFactory implements TypeAdapterFactory {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+        // Only the abstract base type is dispatched, the concrete field classes are handled by
+        // the reflective adapters Gson provides for them.
+        return typeToken.getRawType() == Field.class ?
+                (TypeAdapter<T>) new FieldTypeAdapter(gson) :
+                null;
+    }
+
+    /**
+     * The type adapter doing the actual (de)serialization of a field.
+     */
+    private static final class FieldTypeAdapter extends TypeAdapter<Field> {
+        private final Gson gson;
+        private final EnumMap<Field.Type, TypeAdapter<Field>> fieldAdapters;
+
+        private FieldTypeAdapter(Gson gson) {
+            this.gson = gson;
+            this.fieldAdapters = new EnumMap<Field.Type, TypeAdapter<Field>>(Field.Type.class);
+        }
+
+        @Override
+        public Field read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            FieldJsonReader reader = new FieldJsonReader(in);
+            Field.Type type = reader.readType();
+            Field field = getFieldAdapter(type).read(reader);
+
+            if (field instanceof CalculationField) {
+                setCalculationValues((CalculationField) field, reader.getCapturedValues());
+            }
+
+            return field;
+        }
+
+        @Override
+        public void write(JsonWriter out, Field field) throws IOException {
+            if (field == null) {
+                out.nullValue();
+                return;
+            }
+
+            getFieldAdapter(field.getType()).write(out, field);
+        }
+
+        @SuppressWarnings("unchecked")
+        private synchronized TypeAdapter<Field> getFieldAdapter(Field.Type type) {
+            TypeAdapter<Field> adapter = fieldAdapters.get(type);
+
+            if (adapter == null) {
+                adapter = (TypeAdapter<Field>) gson.getAdapter(type.getFieldClass());
+                fieldAdapters.put(type, adapter);
+            }
+
+            return adapter;
+        }
+
+        /**
+         * Parses the buffered calculation values into NumberField.Value, DateField.Value or
+         * TextField.Value objects based on the return type of the given calculation field.
+         *
+         * @param field
+         *         The calculation field to populate.
+         * @param tokens
+         *         The buffered "values" JSON, or null if there were no values.
+         */
+        private void setCalculationValues(CalculationField field, List<Token> tokens) throws IOException {
+            if (tokens == null) {
+                return;
+            }
+
+            CalculationField.Configuration configuration = field.getConfiguration();
+            CalculationField.ReturnType returnType = configuration != null ? configuration.getReturnType() : null;
+
+            if (returnType == null) {
+                returnType = CalculationField.ReturnType.undefined;
+            }
+
+            TypeAdapter<? extends Field.Value> valueAdapter = gson.getAdapter(returnType.getFieldValueClass());
+            FieldJsonReader reader = new FieldJsonReader(tokens);
+
+            if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+                return;
+            }
+
+            ArrayList<Field.Value> values = new ArrayList<Field.Value>();
+            reader.beginArray();
+
+            while (reader.hasNext()) {
+                values.add(valueAdapter.read(reader));
+            }
+
+            reader.endArray();
+
+            if (!values.isEmpty()) {
+                field.setValues(values);
+            }
+        }
+    }
+
+    /**
+     * A single buffered JSON token. The value holds the literal of names, strings, numbers and
+     * booleans.
+     */
+    private static final class Token {
+        private static final Token BEGIN_ARRAY = new Token(JsonToken.BEGIN_ARRAY, null);
+        private static final Token END_ARRAY = new Token(JsonToken.END_ARRAY, null);
+        private static final Token BEGIN_OBJECT = new Token(JsonToken.BEGIN_OBJECT, null);
+        private static final Token END_OBJECT = new Token(JsonToken.END_OBJECT, null);
+        private static final Token NULL = new Token(JsonToken.NULL, null);
+        private static final Token TRUE = new Token(JsonToken.BOOLEAN, "true");
+        private static final Token FALSE = new Token(JsonToken.BOOLEAN, "false");
+
+        private final JsonToken kind;
+        private final String value;
+
+        private Token(JsonToken kind, String value) {
+            this.kind = kind;
+            this.value = value;
+        }
+    }
+
+    /**
+     * A {@link JsonReader} that first replays any buffered tokens and then continues reading from
+     * the underlying reader (if any). While reading a field object it also makes sure there always
+     * is a "values" array, even if it's empty, as this is needed when creating new items, and it
+     * diverts the calculation field values into a separate buffer.
+     * <p/>
+     * Being a wrapper, it can't serve the Gson map adapter, see {@link BinaryMapTypeAdapterFactory}.
+     */
+    static final class FieldJsonReader extends JsonReader {
+        private final JsonReader in;
+        private final ArrayDeque<Token> queue;
+
+        private int depth;
+        private boolean hasValues;
+        private boolean captureValues;
+        private List<Token> capturedValues;
+
+        /**
+         * Creates a reader that streams a field object from the given reader.
+         */
+        private FieldJsonReader(JsonReader in) {
+            super(new StringReader(""));
+            setLenient(in.isLenient());
+            this.in = in;
+            this.queue = new ArrayDeque<Token>();
+            this.depth = 0;
+            this.hasValues = false;
+            this.captureValues = false;
+            this.capturedValues = null;
+        }
+
+        /**
+         * Creates a reader that only replays the given tokens.
+         */
+        private FieldJsonReader(List<Token> tokens) {
+            super(new StringReader(""));
+            setLenient(true);
+            this.in = null;
+            this.queue = new ArrayDeque<Token>(tokens);
+            this.depth = 0;
+            this.hasValues = true;
+            this.captureValues = false;
+            this.capturedValues = null;
+        }
+
+        /**
+         * Copies the next value, including any nested values, from the given reader into the
+         * given token buffer.
+         */
+        private static void copyValue(JsonReader in, List<Token> out) throws IOException {
+            switch (in.peek()) {
+                case BEGIN_ARRAY:
+                    in.beginArray();
+                    out.add(Token.BEGIN_ARRAY);
+                    while (in.hasNext()) {
+                        copyValue(in, out);
+                    }
+                    in.endArray();
+                    out.add(Token.END_ARRAY);
+                    break;
+                case BEGIN_OBJECT:
+                    in.beginObject();
+                    out.add(Token.BEGIN_OBJECT);
+                    while (in.hasNext()) {
+                        out.add(new Token(JsonToken.NAME, in.nextName()));
+                        copyValue(in, out);
+                    }
+                    in.endObject();
+                    out.add(Token.END_OBJECT);
+                    break;
+                case STRING:
+                    out.add(new Token(JsonToken.STRING, in.nextString()));
+                    break;
+                case NUMBER:
+                    out.add(new Token(JsonToken.NUMBER, in.nextString()));
+                    break;
+                case BOOLEAN:
+                    out.add(in.nextBoolean() ? Token.TRUE : Token.FALSE);
+                    break;
+                case NULL:
+                    in.nextNull();
+                    out.add(Token.NULL);
+                    break;
+                default:
+                    throw new JsonSyntaxException("Unexpected token at " + in.getPath());
+            }
+        }
+
+        /**
+         * Consumes the beginning of the field object from the underlying reader up until, and
+         * including, the "type" member. Everything consumed is buffered for replay. Unknown or
+         * missing types are replayed as "undefined" instead of null.
+         *
+         * @return The type of the field.
+         */
+        private Field.Type readType() throws IOException {
+            ArrayList<Token> prefix = new ArrayList<Token>();
+            ArrayList<Token> values = null;
+            Field.Type type = null;
+
+            in.beginObject();
+            prefix.add(Token.BEGIN_OBJECT);
+
+            while (type == null && in.hasNext()) {
+                String name = in.nextName();
+
+                if ("type".equals(name)) {
+                    type = parseType(in);
+                } else if ("values".equals(name)) {
+                    values = new ArrayList<Token>();
+                    copyValue(in, values);
+                } else {
+                    prefix.add(new Token(JsonToken.NAME, name));
+                    copyValue(in, prefix);
+                }
+            }
+
+            if (type == null) {
+                type = Field.Type.undefined;
+            }
+
+            prefix.add(new Token(JsonToken.NAME, "type"));
+            prefix.add(new Token(JsonToken.STRING, type.name()));
+            captureValues = type == Field.Type.calculation;
+
+            if (values != null) {
+                hasValues = true;
+                prefix.add(new Token(JsonToken.NAME, "values"));
+
+                if (captureValues) {
+                    capturedValues = values;
+                    prefix.add(Token.BEGIN_ARRAY);
+                    prefix.add(Token.END_ARRAY);
+                } else {
+                    prefix.addAll(values);
+                }
+            }
+
+            queue.addAll(prefix);
+            return type;
+        }
+
+        private static Field.Type parseType(JsonReader in) throws IOException {
+            JsonToken token = in.peek();
+
+            if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+                try {
+                    return Field.Type.valueOf(in.nextString());
+                } catch (IllegalArgumentException e) {
+                    return Field.Type.undefined;
+                }
+            }
+
+            in.skipValue();
+            return Field.Type.undefined;
+        }
+
+        /**
+         * Returns the buffered calculation field values, if any.
+         *
+         * @return The buffered tokens or null.
+         */
+        private List<Token> getCapturedValues() {
+            return capturedValues;
+        }
+
+        /**
+         * Makes sure any pending tokens are in the queue and returns whether the next token is to
+         * be served from the queue.
+         */
+        private boolean isQueued() throws IOException {
+            peek();
+            return !queue.isEmpty();
+        }
+
+        private Token poll(JsonToken expected) throws IOException {
+            Token token = queue.poll();
+
+            if (token.kind != expected) {
+                throw new IllegalStateException("Expected " + expected + " but was " + token.kind + " at " + getPath());
+            }
+
+            return token;
+        }
+
+        private String pollLiteral(String expected) {
+            Token token = queue.poll();
+
+            if (token.kind != JsonToken.STRING && token.kind != JsonToken.NUMBER) {
+                throw new IllegalStateException("Expected " + expected + " but was " + token.kind + " at " + getPath());
+            }
+
+            return token.value;
+        }
+
+        @Override
+        public JsonToken peek() throws IOException {
+            if (!queue.isEmpty()) {
+                return queue.peek().kind;
+            }
+
+            if (in == null) {
+                return JsonToken.END_DOCUMENT;
+            }
+
+            JsonToken token = in.peek();
+
+            if (token == JsonToken.END_OBJECT && depth == 1 && !hasValues) {
+                // Ensure that we always have a "values" array, even if it's empty.
+                hasValues = true;
+                queue.add(new Token(JsonToken.NAME, "values"));
+                queue.add(Token.BEGIN_ARRAY);
+                queue.add(Token.END_ARRAY);
+                return JsonToken.NAME;
+            }
+
+            return token;
+        }
+
+        @Override
+        public boolean hasNext() throws IOException {
+            JsonToken token = peek();
+            return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY && token != JsonToken.END_DOCUMENT;
+        }
+
+        @Override
+        public void beginArray() throws IOException {
+            if (isQueued()) {
+                poll(JsonToken.BEGIN_ARRAY);
+            } else {
+                in.beginArray();
+            }
+
+            depth++;
+        }
+
+        @Override
+        public void endArray() throws IOException {
+            if (isQueued()) {
+                poll(JsonToken.END_ARRAY);
+            } else {
+                in.endArray();
+            }
+
+            depth--;
+        }
+
+        @Override
+        public void beginObject() throws IOException {
+            if (isQueued()) {
+                poll(JsonToken.BEGIN_OBJECT);
+            } else {
+                in.beginObject();
+            }
+
+            depth++;
+        }
+
+        @Override
+        public void endObject() throws IOException {
+            if (isQueued()) {
+                poll(JsonToken.END_OBJECT);
+            } else {
+                in.endObject();
+            }
+
+            depth--;
+        }
+
+        @Override
+        public String nextName() throws IOException {
+            if (isQueued()) {
+                return poll(JsonToken.NAME).value;
+            }
+
+            String name = in.nextName();
+
+            if (depth == 1 && "values".equals(name)) {
+                hasValues = true;
+
+                if (captureValues) {
+                    // Hand an empty array to the field adapter and keep the actual values until
+                    // the return type of the calculation field is known.
+                    capturedValues = new ArrayList<Token>();
+                    copyValue(in, capturedValues);
+                    queue.add(Token.BEGIN_ARRAY);
+                    queue.add(Token.END_ARRAY);
+                }
+            }
+
+            return name;
+        }
+
+        @Override
+        public String nextString() throws IOException {
+            return isQueued() ? pollLiteral("a string") : in.nextString();
+        }
+
+        @Override
+        public boolean nextBoolean() throws IOException {
+            return isQueued() ? Boolean.parseBoolean(poll(JsonToken.BOOLEAN).value) : in.nextBoolean();
+        }
+
+        @Override
+        public void nextNull() throws IOException {
+            if (isQueued()) {
+                poll(JsonToken.NULL);
+            } else {
+                in.nextNull();
+            }
+        }
+
+        @Override
+        public double nextDouble() throws IOException {
+            return isQueued() ? Double.parseDouble(pollLiteral("a double")) : in.nextDouble();
+        }
+
+        @Override
+        public long nextLong() throws IOException {
+            if (!isQueued()) {
+                return in.nextLong();
+            }
+
+            String literal = pollLiteral("a long");
+
+            try {
+                return Long.parseLong(literal);
+            } catch (NumberFormatException e) {
+                double asDouble = Double.parseDouble(literal);
+                long result = (long) asDouble;
+
+                if (result != asDouble) {
+                    throw new NumberFormatException("Expected a long but was " + literal + " at " + getPath());
+                }
+
+                return result;
+            }
+        }
+
+        @Override
+        public int nextInt() throws IOException {
+            long result = nextLong();
+
+            if (result != (int) result) {
+                throw new NumberFormatException("Expected an int but was " + result + " at " + getPath());
+            }
+
+            return (int) result;
+        }
+
+        @Override
+        public void skipValue() throws IOException {
+            if (!isQueued()) {
+                in.skipValue();
+                return;
+            }
+
+            int count = 0;
+
+            do {
+                JsonToken kind = queue.poll().kind;
+
+                if (kind == JsonToken.BEGIN_ARRAY || kind == JsonToken.BEGIN_OBJECT) {
+                    count++;
+                } else if (kind == JsonToken.END_ARRAY || kind == JsonToken.END_OBJECT) {
+                    count--;
+                }
+            } while (count > 0 && !queue.isEmpty());
+        }
+
+        @Override
+        public void close() throws IOException {
+            queue.clear();
+
+            if (in != null) {
+                in.close();
+            }
+        }
+
+        @Override
+        public String getPath() {
+            return in != null ? in.getPath() : "$";
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName();
+        }
+    }
+
+}
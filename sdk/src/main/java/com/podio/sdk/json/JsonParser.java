@@ -5,21 +5,31 @@ import com.google.gson.FieldNamingPolicy;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
 import com.podio.sdk.domain.DataReference;
 import com.podio.sdk.domain.TaskAction;
-import com.podio.sdk.domain.field.Field;
 import com.podio.sdk.domain.notification.Notification;
 import com.podio.sdk.domain.notification.NotificationContext;
 import com.podio.sdk.domain.reference.ReferenceGroup;
 import com.podio.sdk.domain.stream.EventActivity;
 import com.podio.sdk.domain.stream.EventContext;
+import com.podio.sdk.internal.Utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
 
 public class JsonParser {
 
     private static final Gson GSON = new GsonBuilder()
             .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
             .setDateFormat("yyyy-MM-dd HH:mm:ss")
-            .registerTypeAdapter(Field.class, new FieldDeserializerSerializer())
+            .registerTypeAdapterFactory(new FieldTypeAdapterFactory())
+            .registerTypeAdapterFactory(new BinaryMapTypeAdapterFactory())
             .registerTypeAdapter(Notification.class, new NotificationDeserializerSerializer())
             .registerTypeAdapter(NotificationContext.class, new NotificationContextDeserializerSerializer())
             .registerTypeAdapter(EventContext.class, new EventContextDeserializerSerializer())
@@ -35,13 +45,123 @@ public class JsonParser {
         try {
             return GSON.fromJson(json, classOfResult);
         } catch (JsonSyntaxException e) {
-            throw new JsonSyntaxException("Couldn't parse API error json: " + json, e);
+            throw new JsonSyntaxException(getErrorMessage(classOfResult), e);
         } catch (IllegalStateException e) {
-            throw new IllegalStateException("Couldn't parse API error json: " + json, e);
+            throw new IllegalStateException(getErrorMessage(classOfResult), e);
+        }
+    }
+
+    /**
+     * Parses the given raw JSON bytes without first decoding them into an intermediate string.
+     *
+     * @param json
+     *         The encoded JSON.
+     * @param charset
+     *         The charset the JSON is encoded with.
+     * @param classOfResult
+     *         The class to parse the JSON into.
+     *
+     * @return The parsed object or null if there is no JSON.
+     */
+    public static <T> T fromJson(byte[] json, Charset charset, Class<T> classOfResult) {
+        if (json == null) {
+            return null;
+        }
+
+        return fromJson(new ByteArrayInputStream(json), charset, classOfResult);
+    }
+
+    /**
+     * Parses the JSON provided by the given stream. The stream is closed when the parsing is done.
+     *
+     * @param json
+     *         The stream to read the encoded JSON from.
+     * @param charset
+     *         The charset the JSON is encoded with.
+     * @param classOfResult
+     *         The class to parse the JSON into.
+     *
+     * @return The parsed object or null if there is no JSON.
+     */
+    public static <T> T fromJson(InputStream json, Charset charset, Class<T> classOfResult) {
+        if (json == null) {
+            return null;
+        }
+
+        JsonReader reader = new JsonReader(new InputStreamReader(json, charset));
+
+        try {
+            return GSON.fromJson(reader, classOfResult);
+        } catch (JsonSyntaxException e) {
+            throw new JsonSyntaxException(getErrorMessage(classOfResult), e);
+        } catch (IllegalStateException e) {
+            throw new IllegalStateException(getErrorMessage(classOfResult), e);
+        } finally {
+            Utils.closeSilently(reader);
         }
     }
 
     public static <T> String toJson(T item) {
         return GSON.toJson(item);
     }
+
+    /**
+     * Parses the compact binary notation provided by the given stream, as written by
+     * {@link #toBinary(Object, OutputStream)}. The stream is closed when the parsing is done.
+     *
+     * @param binary
+     *         The stream to read the binary notation from.
+     * @param classOfResult
+     *         The class to parse the binary notation into.
+     *
+     * @return The parsed object or null if there is no data.
+     */
+    public static <T> T fromBinary(InputStream binary, Class<T> classOfResult) {
+        if (binary == null) {
+            return null;
+        }
+
+        BinaryJsonReader reader = new BinaryJsonReader(binary);
+
+        try {
+            return GSON.getAdapter(classOfResult).read(reader);
+        } catch (IOException e) {
+            throw new JsonSyntaxException(getErrorMessage(classOfResult), e);
+        } catch (IllegalStateException e) {
+            throw new IllegalStateException(getErrorMessage(classOfResult), e);
+        } finally {
+            Utils.closeSilently(reader);
+        }
+    }
+
+    /**
+     * Writes the given object to the given stream in a compact binary notation. The notation
+     * carries the same information as the JSON notation, but it's a lot cheaper to parse as there
+     * is no text to tokenize. The stream is flushed, but not closed, when done.
+     *
+     * @param item
+     *         The object to write.
+     * @param binary
+     *         The stream to write to.
+     *
+     * @throws IOException
+     *         If the stream couldn't be written to.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> void toBinary(T item, OutputStream binary) throws IOException {
+        BinaryJsonWriter writer = new BinaryJsonWriter(binary);
+
+        if (item == null) {
+            writer.nullValue();
+        } else {
+            ((TypeAdapter<T>) GSON.getAdapter(item.getClass())).write(writer, item);
+        }
+
+        writer.flush();
+    }
+
+    private static String getErrorMessage(Class<?> classOfResult) {
+        // Intentionally not including the JSON itself as it can be huge.
+        return "Couldn't parse json as " + (classOfResult != null ? classOfResult.getName() : null);
+    }
 }
@@ -0,0 +1,138 @@
+
+package com.podio.sdk.localstore;
+
+import com.podio.sdk.domain.Application;
+import com.podio.sdk.domain.Conversation;
+import com.podio.sdk.domain.Item;
+import com.podio.sdk.domain.NotificationGroup;
+import com.podio.sdk.json.JsonParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A {@link ValueCodec} persisting values of registered classes in a compact binary notation, see
+ * {@link JsonParser#toBinary(Object, OutputStream)}, optionally deflate compressed. The binary
+ * notation is both smaller and cheaper to parse than JSON. The most frequently cached domain
+ * classes, {@link Item}, {@link Application}, {@link Conversation} and {@link NotificationGroup},
+ * are registered by default. Values of any other class are persisted as JSON.
+ * <p>
+ * Each binary value starts with a marker byte which never starts a JSON document, hence this codec
+ * can read values persisted by the {@link JsonValueCodec} as well.
+ *
+ */
+public class CompactValueCodec implements ValueCodec {
+    private static final int MARKER = 0xB5;
+    private static final int FLAG_DEFLATED = 0x01;
+
+    private final ValueCodec fallback;
+    private final Set<Class<?>> registeredClasses;
+    private final boolean deflate;
+
+    /**
+     * Creates a codec that deflates the binary values.
+     */
+    public CompactValueCodec() {
+        this(true);
+    }
+
+    /**
+     * Creates a codec with the default domain classes registered.
+     *
+     * @param deflate
+     *         Whether to deflate compress the binary values or not. Compression saves disk space at
+     *         the cost of some extra CPU time.
+     */
+    public CompactValueCodec(boolean deflate) {
+        this.fallback = new JsonValueCodec();
+        this.registeredClasses = Collections.newSetFromMap(new ConcurrentHashMap<Class<?>, Boolean>());
+        this.deflate = deflate;
+
+        register(Item.class)
+                .register(Application.class)
+                .register(Conversation.class)
+                .register(NotificationGroup.class);
+    }
+
+    /**
+     * Registers a class, the values of which are to be persisted in the binary notation.
+     *
+     * @param classOfValue
+     *         The exact class of the values.
+     *
+     * @return This codec, allowing chaining of registrations.
+     */
+    public CompactValueCodec register(Class<?> classOfValue) {
+        registeredClasses.add(classOfValue);
+        return this;
+    }
+
+    @Override
+    public void encode(Object value, OutputStream output) throws IOException {
+        if (!registeredClasses.contains(value.getClass())) {
+            fallback.encode(value, output);
+            return;
+        }
+
+        output.write(MARKER);
+        output.write(deflate ? FLAG_DEFLATED : 0);
+
+        if (!deflate) {
+            JsonParser.toBinary(value, output);
+            return;
+        }
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+        try {
+            DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream(output, deflater);
+            JsonParser.toBinary(value, deflaterOutputStream);
+            deflaterOutputStream.finish();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public <T> T decode(InputStream input, Class<T> classOfValue) throws IOException {
+        PushbackInputStream pushbackInputStream = new PushbackInputStream(input, 1);
+        int marker = pushbackInputStream.read();
+
+        if (marker != MARKER) {
+            if (marker >= 0) {
+                pushbackInputStream.unread(marker);
+            }
+
+            return fallback.decode(pushbackInputStream, classOfValue);
+        }
+
+        int flags = pushbackInputStream.read();
+
+        if (flags < 0) {
+            pushbackInputStream.close();
+            throw new IOException("Truncated binary value");
+        }
+
+        if ((flags & FLAG_DEFLATED) == 0) {
+            return JsonParser.fromBinary(pushbackInputStream, classOfValue);
+        }
+
+        Inflater inflater = new Inflater();
+
+        try {
+            return JsonParser.fromBinary(new InflaterInputStream(pushbackInputStream, inflater), classOfValue);
+        } finally {
+            inflater.end();
+        }
+    }
+
+}
@@ -1,9 +1,5 @@
-
 package com.podio.sdk.localstore;
 
-import android.util.LruCache;
-
-import java.io.File;
 import java.util.concurrent.Callable;
 
 /**
@@ -11,7 +7,7 @@ import java.util.concurrent.Callable;
  * targeting the "destroy store" operation. This implementation clears the memory cache and wipes
  * all files from the disk cache that belongs to this very store, leaving other stores intact. If
  * the disk store isn't prepared yet, the disk write request will block until the disk store is
- * ready. This class also removes the actual store sub directory from the file system.
+ * ready.
  *
  */
 final class EraseRequest extends LocalStoreRequest<Void> {
@@ -22,32 +18,21 @@ final class EraseRequest extends LocalStoreRequest<Void> {
      * @param memoryStore
      *         The in-memory cache to clear.
      */
-    private static void destroyMemoryStore(LruCache<Object, Object> memoryStore) {
+    private static void destroyMemoryStore(MemoryStore memoryStore) {
         if (memoryStore != null) {
             memoryStore.evictAll();
         }
     }
 
     /**
-     * Recursively removes all files in the given directory and tries to remove the directory as
-     * well.
+     * Removes all values from the given storage engine.
      *
-     * @param diskStore
+     * @param storageEngine
      *         The disk cache to clear.
      */
-    private static void destroyDiskStore(File diskStore) {
-        if (isWritableDirectory(diskStore)) {
-            File[] files = diskStore.listFiles();
-
-            if (files != null) {
-                for (File file : files) {
-                    if (file.isDirectory()) {
-                        destroyDiskStore(file);
-                    } else if (file.isFile()) {
-                        file.delete();
-                    }
-                }
-            }
+    private static void destroyDiskStore(StorageEngine storageEngine) {
+        if (storageEngine != null) {
+            storageEngine.erase();
         }
     }
 
@@ -62,13 +47,7 @@ final class EraseRequest extends LocalStoreRequest<Void> {
             @Override
             public Void call() throws Exception {
                 destroyMemoryStore(storeEnabler.getMemoryStore());
-
-                // We have to synchronize at this point as the destroyDiskStore method is recursive
-                // and we would otherwise cause a deadlock if synchronizing on the same lock inside
-                // the method itself.
-                synchronized (storeEnabler.getDiskStoreLock()) {
-                    destroyDiskStore(storeEnabler.getDiskStore());
-                }
+                destroyDiskStore(storeEnabler.getStorageEngine());
                 return null;
             }
         });
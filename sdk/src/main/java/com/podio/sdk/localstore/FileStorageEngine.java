@@ -0,0 +1,112 @@
+
+package com.podio.sdk.localstore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link StorageEngine} implementation persisting each value as a file of its own, by default
+ * in JSON notation. The name of the file is the URL encoded string representation of the key.
+ *
+ */
+final class FileStorageEngine implements StorageEngine {
+
+    /**
+     * Recursively removes all files in the given directory.
+     *
+     * @param directory
+     *         The directory to clear.
+     */
+    private static void deleteFiles(File directory) {
+        if (LocalStoreRequest.isWritableDirectory(directory)) {
+            File[] files = directory.listFiles();
+
+            if (files != null) {
+                for (File file : files) {
+                    if (file.isDirectory()) {
+                        deleteFiles(file);
+                    } else if (file.isFile()) {
+                        file.delete();
+                    }
+                }
+            }
+        }
+    }
+
+    private final File directory;
+    private final ValueCodec codec;
+
+    /**
+     * Creates a new storage engine for the given directory, persisting the values as JSON.
+     *
+     * @param directory
+     *         The directory to keep the value files in.
+     */
+    FileStorageEngine(File directory) {
+        this(directory, new JsonValueCodec());
+    }
+
+    /**
+     * Creates a new storage engine for the given directory.
+     *
+     * @param directory
+     *         The directory to keep the value files in.
+     * @param codec
+     *         The codec to encode and decode the values with.
+     */
+    FileStorageEngine(File directory, ValueCodec codec) {
+        this.directory = directory;
+        this.codec = codec;
+    }
+
+    @Override
+    public <T> T read(Object key, Class<T> classOfValue) throws IOException {
+        if (!LocalStoreRequest.isReadableDirectory(directory)) {
+            return null;
+        }
+
+        File file = new File(directory, LocalStoreRequest.getFileName(key));
+        return LocalStoreRequest.readObjectFromDisk(file, classOfValue, codec);
+    }
+
+    @Override
+    public int write(Object key, Object value) throws IOException {
+        if (!LocalStoreRequest.isWritableDirectory(directory)) {
+            return -1;
+        }
+
+        File file = new File(directory, LocalStoreRequest.getFileName(key));
+        return LocalStoreRequest.writeObjectToDisk(file, value, codec);
+    }
+
+    @Override
+    public Map<Object, Integer> writeAll(Map<?, ?> values) throws IOException {
+        HashMap<Object, Integer> lengths = new HashMap<Object, Integer>();
+
+        for (Map.Entry<?, ?> entry : values.entrySet()) {
+            int length = write(entry.getKey(), entry.getValue());
+
+            if (length >= 0) {
+                lengths.put(entry.getKey(), length);
+            }
+        }
+
+        return lengths;
+    }
+
+    @Override
+    public void delete(Object key) throws IOException {
+        if (LocalStoreRequest.isReadableDirectory(directory)) {
+            File file = new File(directory, LocalStoreRequest.getFileName(key));
+            file.delete();
+        }
+    }
+
+    @Override
+    public void erase() {
+        deleteFiles(directory);
+    }
+
+}
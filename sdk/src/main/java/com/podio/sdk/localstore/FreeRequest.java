@@ -1,8 +1,6 @@
 
 package com.podio.sdk.localstore;
 
-import android.util.LruCache;
-
 import java.util.concurrent.Callable;
 
 /**
@@ -20,7 +18,7 @@ final class FreeRequest extends LocalStoreRequest<Void> {
      * @param memoryStore
      *         The reference to the memory cache object.
      */
-    FreeRequest(final LruCache<Object, Object> memoryStore) {
+    FreeRequest(final MemoryStore memoryStore) {
         super(new Callable<Void>() {
             @Override
             public Void call() throws Exception {
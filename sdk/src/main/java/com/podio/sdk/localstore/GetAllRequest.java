@@ -0,0 +1,102 @@
+package com.podio.sdk.localstore;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * A specific {@link com.podio.sdk.localstore.LocalStoreRequest LocalStoreRequest} implementation,
+ * targeting the "get several values" operation. This implementation looks for each value in the
+ * memory cache first and then proceeds to look in the disk store for any values not found there.
+ * All values are delivered together, as one map.
+ *
+ */
+final class GetAllRequest<T> extends LocalStoreRequest<Map<Object, T>> {
+
+    /**
+     * Retrieves the values associated with the given keys, from the memory cache or the disk store.
+     * Any values read from disk are put in the memory cache, unless changed, or removed, since the
+     * request was created. This method call will block until the disk store is prepared.
+     *
+     * @param storeEnabler
+     *         The callback that will provide the memory and disk stores.
+     * @param generations
+     *         The generations of the keys in the memory cache.
+     * @param snapshot
+     *         The generations when the request was created.
+     * @param keys
+     *         The keys for the values to fetch.
+     * @param classOfValue
+     *         The {@link Class} template to parse the disk store JSON to.
+     *
+     * @return The found values mapped by their keys.
+     *
+     * @throws IOException
+     *         If reading from disk store failed for some reason.
+     * @throws ClassCastException
+     *         If a value can't be cast to the requested template type.
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> Map<Object, E> getValues(RuntimeStoreEnabler storeEnabler, KeyGenerations generations, long[] snapshot, Collection<?> keys, Class<E> classOfValue) throws IOException, ClassCastException {
+        MemoryStore memoryStore = storeEnabler.getMemoryStore();
+        if (memoryStore == null) {
+            throw new IllegalStateException("You're trying to fetch content from a closed store.");
+        }
+
+        HashMap<Object, E> values = new HashMap<Object, E>();
+        StorageEngine storageEngine = null;
+
+        for (Object key : keys) {
+            E value = (E) memoryStore.get(key);
+
+            // If nothing found in the memory cache, try to read from disk.
+            if (value == null && isValidTemplate(classOfValue)) {
+                if (storageEngine == null) {
+                    // The storage engine won't be provided until the disk store is ready.
+                    storageEngine = storeEnabler.getStorageEngine();
+
+                    if (storageEngine == null) {
+                        break;
+                    }
+                }
+
+                value = storageEngine.read(key, classOfValue);
+
+                if (value != null) {
+                    generations.putIfCurrent(memoryStore, key, value, snapshot);
+                }
+            }
+
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Creates a new Request for retrieving several values from the local store.
+     *
+     * @param storeEnabler
+     *         The callback that will provide the memory and disk stores.
+     * @param generations
+     *         The generations of the keys in the memory cache.
+     * @param snapshot
+     *         The generations when the request was created.
+     * @param keys
+     *         The keys of the values.
+     * @param classOfValue
+     *         The type to parse the files into (if needed).
+     */
+    GetAllRequest(final RuntimeStoreEnabler storeEnabler, final KeyGenerations generations, final long[] snapshot, final Collection<?> keys, final Class<T> classOfValue) {
+        super(new Callable<Map<Object, T>>() {
+            @Override
+            public Map<Object, T> call() throws Exception {
+                return getValues(storeEnabler, generations, snapshot, keys, classOfValue);
+            }
+        });
+    }
+}
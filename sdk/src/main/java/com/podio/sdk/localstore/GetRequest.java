@@ -1,9 +1,6 @@
 
 package com.podio.sdk.localstore;
 
-import android.util.LruCache;
-
-import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.Callable;
 
@@ -13,7 +10,8 @@ import java.util.concurrent.Callable;
  * cache first and if nothing is found there it proceeds to look in the disk store. If the disk
  * store isn't prepared yet, the disk read request will block until the disk store is ready. If the
  * disk store is ready and contains a value, it tries to fetch it from there and put it in the
- * memory cache before returning it to the caller.
+ * memory cache before returning it to the caller, unless the value has been changed, or removed,
+ * since the request was created.
  *
  */
 final class GetRequest<T> extends LocalStoreRequest<T> {
@@ -26,6 +24,10 @@ final class GetRequest<T> extends LocalStoreRequest<T> {
      *
      * @param storeEnabler
      *         The callback that will provide the memory and disk stores.
+     * @param generations
+     *         The generations of the keys in the memory cache.
+     * @param snapshot
+     *         The generations when the request was created.
      * @param key
      *         The key for the value to fetch.
      * @param classOfValue
@@ -39,8 +41,8 @@ final class GetRequest<T> extends LocalStoreRequest<T> {
      *         If the value can't be cast to the requested template type.
      */
     @SuppressWarnings("unchecked")
-    private static final <E> E getValue(RuntimeStoreEnabler storeEnabler, Object key, Class<E> classOfValue) throws IOException, ClassCastException {
-        LruCache<Object, Object> memoryStore = storeEnabler.getMemoryStore();
+    private static final <E> E getValue(RuntimeStoreEnabler storeEnabler, KeyGenerations generations, long[] snapshot, Object key, Class<E> classOfValue) throws IOException, ClassCastException {
+        MemoryStore memoryStore = storeEnabler.getMemoryStore();
         if (memoryStore == null) {
             throw new IllegalStateException("You're trying to fetch content from a closed store.");
         }
@@ -49,19 +51,16 @@ final class GetRequest<T> extends LocalStoreRequest<T> {
 
         // If nothing found in the memory cache, try to read from disk.
         if (value == null) {
-            // Make sure we wait for the disk store to be ready before we start accessing it.
-            synchronized (storeEnabler.getDiskStoreLock()) {
-                File diskStore = storeEnabler.getDiskStore();
-                if (isReadableDirectory(diskStore) && isValidTemplate(classOfValue)) {
-                    // Read object from disk...
-                    String fileName = getFileName(key);
-                    File file = new File(diskStore, fileName);
-                    value = readObjectFromDisk(file, classOfValue);
+            // The storage engine won't be provided until the disk store is ready.
+            StorageEngine storageEngine = storeEnabler.getStorageEngine();
+            if (storageEngine != null && isValidTemplate(classOfValue)) {
+                // Read object from disk...
+                value = storageEngine.read(key, classOfValue);
 
-                    // ...and also update in memory.
-                    if (value != null) {
-                        memoryStore.put(key, value);
-                    }
+                // ...and also update in memory, unless the caller has changed the value while it
+                // was read.
+                if (value != null) {
+                    generations.putIfCurrent(memoryStore, key, value, snapshot);
                 }
             }
         }
@@ -76,16 +75,20 @@ final class GetRequest<T> extends LocalStoreRequest<T> {
      *
      * @param storeEnabler
      *         The callback that will provide the memory and disk stores.
+     * @param generations
+     *         The generations of the keys in the memory cache.
+     * @param snapshot
+     *         The generations when the request was created.
      * @param key
      *         The key of the value.
      * @param classOfValue
      *         The type to parse the file into (if needed).
      */
-    GetRequest(final RuntimeStoreEnabler storeEnabler, final Object key, final Class<T> classOfValue) {
+    GetRequest(final RuntimeStoreEnabler storeEnabler, final KeyGenerations generations, final long[] snapshot, final Object key, final Class<T> classOfValue) {
         super(new Callable<T>() {
             @Override
             public T call() throws Exception {
-                return getValue(storeEnabler, key, classOfValue);
+                return getValue(storeEnabler, generations, snapshot, key, classOfValue);
             }
         });
     }
@@ -1,23 +1,15 @@
 
 package com.podio.sdk.localstore;
 
-import android.util.LruCache;
-
 import com.podio.sdk.internal.Utils;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.util.concurrent.Callable;
 
 /**
- * A specific {@link LocalStoreRequest LocalStoreRequest} implementation, targeting the "get value"
- * operation. This implementation tries to fetch a value from the memory cache first and if nothing
- * is found there it proceeds to look in the disk store. If the disk store isn't prepared yet, the
- * request will block until the disk store is ready. If the disk store is ready and contains a
- * value, it tries to fetch it from there and put it in the memory cache before returning it to the
- * caller.
+ * A specific {@link LocalStoreRequest LocalStoreRequest} implementation, targeting the "prepare
+ * disk store" operation. This implementation makes sure the disk store directory exists and hands
+ * it over to the local store, which will then open the storage engine on it.
  *
  */
 final class InitRequest extends LocalStoreRequest<Void> {
@@ -49,58 +41,27 @@ final class InitRequest extends LocalStoreRequest<Void> {
     }
 
     /**
-     * Returns a {@link android.util.LruCache LruCache} providing the in-memory store.
-     *
-     * @param maxMemoryInKiloBytes
-     *         The maximum allowed size of the memory cache.
-     *
-     * @return The memory store.
-     */
-    private static LruCache<Object, Object> createNewMemoryStore(int maxMemoryInKiloBytes) {
-        return new LruCache<Object, Object>(maxMemoryInKiloBytes) {
-            @Override
-            protected int sizeOf(Object key, Object value) {
-                try {
-                    // This will only calculate the size of the object itself. The size of any
-                    // referenced objects are not included in that figure.
-                    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-                    ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
-                    objectOutputStream.writeObject(value);
-                    objectOutputStream.flush();
-
-                    byte[] byteArray = byteArrayOutputStream.toByteArray();
-                    objectOutputStream.close();
-
-                    return byteArray.length / 1024;
-                } catch (NullPointerException e) {
-                    return 0;
-                } catch (IOException e) {
-                    // We don't know anything about the size, assume worst case scenario.
-                    return Integer.MAX_VALUE;
-                }
-            }
-        };
-    }
-
-    /**
-     * Creates a new Request for retrieving a value from the local store. The request will deliver
-     * the requested object, or a null-pointer if no object is found by the given key.
+     * Creates a new Request for preparing the disk store of a local store. The disk store is always
+     * delivered through the given persister, even if it couldn't be prepared, as there may be other
+     * requests waiting for it.
      *
      * @param storePath
      *         The absolute path to the disk cache.
-     * @param maxMemoryInKiloBytes
-     *         The maximum allowed size of the memory cache.
      * @param storePersister
      *         The callback interface to deliver created stores through.
      */
-    InitRequest(final String storePath, final int maxMemoryInKiloBytes, final LocalStore.RuntimeStorePersister storePersister) {
+    InitRequest(final String storePath, final LocalStore.RuntimeStorePersister storePersister) {
         super(new Callable<Void>() {
             @Override
             public Void call() throws Exception {
-                storePersister.setMemoryStore(createNewMemoryStore(maxMemoryInKiloBytes));
-                synchronized (storePersister.getDiskStoreLock()) {
-                    storePersister.setDiskStore(createNewDiskStore(storePath));
+                File diskStore = null;
+
+                try {
+                    diskStore = createNewDiskStore(storePath);
+                } finally {
+                    storePersister.setDiskStore(diskStore);
                 }
+
                 return null;
             }
 
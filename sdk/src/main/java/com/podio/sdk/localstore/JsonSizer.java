@@ -0,0 +1,82 @@
+
+package com.podio.sdk.localstore;
+
+import com.podio.sdk.json.JsonParser;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The default {@link Sizer} of a {@link LocalStore}. Values of a class with a registered estimator
+ * are sized by that estimator, all other values are sized by the length of their encoded form, as
+ * written to disk, or by the length of their UTF-8 encoded JSON notation when they haven't just
+ * been written, e.g. when read from disk. The encoded length is a fair proxy for the memory
+ * footprint of the domain objects, but as it requires values read from disk to be serialized
+ * again, frequently cached classes may benefit from a cheaper estimator.
+ *
+ */
+public class JsonSizer implements Sizer {
+
+    /**
+     * Counts the number of bytes the given string would occupy if encoded as UTF-8, without
+     * actually encoding it.
+     *
+     * @param string
+     *         The string to measure.
+     *
+     * @return The number of UTF-8 bytes.
+     */
+    private static int utf8Length(String string) {
+        int length = 0;
+        int count = string.length();
+
+        for (int i = 0; i < count; i++) {
+            char c = string.charAt(i);
+
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(string.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+
+        return length;
+    }
+
+    private final ConcurrentHashMap<Class<?>, Sizer> estimators;
+
+    public JsonSizer() {
+        estimators = new ConcurrentHashMap<Class<?>, Sizer>();
+    }
+
+    /**
+     * Registers an estimator for all values of exactly the given class.
+     *
+     * @param classOfValue
+     *         The class of the values to estimate the size of.
+     * @param estimator
+     *         The estimator to use for the values.
+     *
+     * @return This sizer, allowing chaining of registrations.
+     */
+    public JsonSizer register(Class<?> classOfValue, Sizer estimator) {
+        estimators.put(classOfValue, estimator);
+        return this;
+    }
+
+    @Override
+    public int sizeOf(Object key, Object value, int encodedLength) {
+        Sizer estimator = estimators.get(value.getClass());
+
+        if (estimator != null) {
+            return estimator.sizeOf(key, value, encodedLength);
+        }
+
+        return encodedLength >= 0 ? encodedLength : utf8Length(JsonParser.toJson(value));
+    }
+
+}
@@ -0,0 +1,29 @@
+
+package com.podio.sdk.localstore;
+
+import com.podio.sdk.json.JsonParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * The default {@link ValueCodec} of a {@link LocalStore}, persisting each value as UTF-8 encoded
+ * JSON.
+ *
+ */
+public class JsonValueCodec implements ValueCodec {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Override
+    public void encode(Object value, OutputStream output) throws IOException {
+        output.write(JsonParser.toJson(value).getBytes(UTF8));
+    }
+
+    @Override
+    public <T> T decode(InputStream input, Class<T> classOfValue) throws IOException {
+        return JsonParser.fromJson(input, UTF8, classOfValue);
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.podio.sdk.localstore;
+
+import java.util.Collection;
+
+/**
+ * Keeps track of when the values in the memory cache of a {@link LocalStore} were last changed, so
+ * a worker can tell whether a value it's about to put in the memory cache has been replaced, or
+ * removed, by the caller in the meantime. Each key has a generation which is bumped every time the
+ * caller sets or removes its value. A snapshot of the generations is taken when a request is
+ * created, and the worker only updates the memory cache if the generation of the key is still the
+ * same.
+ * <p/>
+ * The generations are kept in a fixed number of stripes rather than per key, so the memory
+ * footprint doesn't grow with the number of keys. Two keys sharing a stripe will at worst cause a
+ * value not to be cached in memory, it will then be read from disk again next time.
+ *
+ */
+final class KeyGenerations {
+    private static final int STRIPE_COUNT = 64;
+
+    private final long[] generations;
+
+    KeyGenerations() {
+        generations = new long[STRIPE_COUNT];
+    }
+
+    /**
+     * Returns the current generations, to be handed to {@link #putIfCurrent(MemoryStore, Object,
+     * Object, long[])} later on.
+     *
+     * @return A snapshot of the current generations.
+     */
+    synchronized long[] snapshot() {
+        return generations.clone();
+    }
+
+    /**
+     * Starts a new generation for the given keys and drops any values for them from the memory
+     * cache.
+     *
+     * @param memoryStore
+     *         The memory cache to drop the values from.
+     * @param keys
+     *         The keys whose values are about to change.
+     *
+     * @return A snapshot of the generations, including the new ones.
+     */
+    synchronized long[] invalidate(MemoryStore memoryStore, Collection<?> keys) {
+        for (Object key : keys) {
+            memoryStore.remove(key);
+            generations[stripeOf(key)]++;
+        }
+
+        return generations.clone();
+    }
+
+    /**
+     * Starts a new generation for all keys and clears the memory cache.
+     *
+     * @param memoryStore
+     *         The memory cache to clear.
+     */
+    synchronized void invalidateAll(MemoryStore memoryStore) {
+        memoryStore.evictAll();
+
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            generations[i]++;
+        }
+    }
+
+    /**
+     * Puts the given value in the memory cache, unless the key has moved on to a newer generation
+     * since the given snapshot was taken. The size of the value is estimated before any lock is
+     * taken, so callers setting or removing values are never held up by it.
+     *
+     * @param memoryStore
+     *         The memory cache to put the value in.
+     * @param key
+     *         The key of the value.
+     * @param value
+     *         The value to cache.
+     * @param snapshot
+     *         The generations the value was read, or written, under.
+     *
+     * @return Boolean true if the value was put in the memory cache, boolean false if it's stale.
+     */
+    boolean putIfCurrent(MemoryStore memoryStore, Object key, Object value, long[] snapshot) {
+        return putIfCurrent(memoryStore, key, value, -1, snapshot);
+    }
+
+    /**
+     * Puts the given value, which has just been written to disk, in the memory cache unless the
+     * key has moved on to a newer generation since the given snapshot was taken.
+     *
+     * @param memoryStore
+     *         The memory cache to put the value in.
+     * @param key
+     *         The key of the value.
+     * @param value
+     *         The value to cache.
+     * @param encodedLength
+     *         The number of bytes the value was encoded into, or -1 if it wasn't written.
+     * @param snapshot
+     *         The generations the value was written under.
+     *
+     * @return Boolean true if the value was put in the memory cache, boolean false if it's stale.
+     */
+    boolean putIfCurrent(MemoryStore memoryStore, Object key, Object value, int encodedLength, long[] snapshot) {
+        MemoryStore.Entry entry = memoryStore.newEntry(key, value, encodedLength);
+        int stripe = stripeOf(key);
+
+        synchronized (this) {
+            if (generations[stripe] != snapshot[stripe]) {
+                return false;
+            }
+
+            memoryStore.put(key, entry);
+            return true;
+        }
+    }
+
+    private static int stripeOf(Object key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return (hash & 0x7fffffff) % STRIPE_COUNT;
+    }
+
+}
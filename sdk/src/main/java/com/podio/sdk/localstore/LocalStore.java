@@ -2,31 +2,35 @@
 package com.podio.sdk.localstore;
 
 import android.content.Context;
-import android.util.LruCache;
 
 import com.podio.sdk.QueueClient;
 import com.podio.sdk.Request;
 import com.podio.sdk.Store;
 import com.podio.sdk.internal.Utils;
-import com.podio.sdk.json.JsonParser;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A {@link Store} implementation modeling a memory-cache backed by persistent disk storage. The
- * memory cache heavily relies on the Android {@link LruCache} while the disk store is a basic
- * directory in the internal cache directory of the app. The actual contents are saved as JSON files
- * in sub-directories.
+ * memory cache heavily relies on the Android {@link android.util.LruCache} while the disk store is
+ * a basic directory in the internal cache directory of the app. By default the actual contents are
+ * saved as JSON files in sub-directories, but the store can also be opened with an {@link
+ * Engine#LOG append-only log} engine, which keeps all contents of a store in a few segment files.
+ * <p>
+ * Values found in the memory cache are delivered right away on the calling thread. All other
+ * operations are executed on a small set of worker threads, "lanes". All operations on the same
+ * key end up in the same lane, and are hence executed in order, while operations on different keys
+ * may be executed in parallel.
  * <p>
  * The {@link Store} interface enables means of adding, removing, and fetching content to and from
  * the store. Further more the caller can choose to close the store to free up memory. This will
@@ -38,21 +42,37 @@ import java.util.Set;
  * What is put in the store is completely up to the developer. There are no constraints nor
  * requirements on the data to have any association to Podio domain objects. The only general
  * requirement is for the key objects to have a constant string representation. Also bare in mind
- * that the disk store will convert the objects into JSON string notation and persist them as such.
- * This means that only those parts of your objects will be persisted to disk that can be expressed
- * as JSON.
+ * that the disk store will convert the objects into JSON string notation, or an equivalent binary
+ * notation if so configured, and persist them as such. This means that only those parts of your
+ * objects will be persisted to disk that can be expressed as JSON.
  *
  */
 public class LocalStore extends QueueClient implements Store, LocalStoreRequest.RuntimeStoreEnabler {
     private static final String LOCAL_STORES_DIRECTORY = "stores";
 
-    interface RuntimeStorePersister {
+    /**
+     * The available disk storage engines.
+     */
+    public enum Engine {
+        /**
+         * Persists each value as a JSON file of its own.
+         */
+        FILES,
+
+        /**
+         * Persists all values in a segmented, append-only log. This is the better choice for
+         * stores holding many values, as it doesn't create a file per value.
+         */
+        LOG
+    }
+
+    private static final int LANE_COUNT = 4;
+    private static final long LANE_KEEP_ALIVE_SECONDS = 30L;
 
-        void setMemoryStore(LruCache<Object, Object> memoryStore);
+    interface RuntimeStorePersister {
 
         void setDiskStore(File diskStore);
 
-        Object getDiskStoreLock();
     }
 
     /**
@@ -67,18 +87,13 @@ public class LocalStore extends QueueClient implements Store, LocalStoreRequest.
 
         EraseRequest request = LocalStoreRequest.newEraseRequest(new LocalStoreRequest.RuntimeStoreEnabler() {
             @Override
-            public LruCache<Object, Object> getMemoryStore() {
+            public MemoryStore getMemoryStore() {
                 return null;
             }
 
             @Override
-            public File getDiskStore() {
-                return root;
-            }
-
-            @Override
-            public Object getDiskStoreLock() {
-                return new Object();
+            public StorageEngine getStorageEngine() {
+                return new FileStorageEngine(root);
             }
         });
 
@@ -88,8 +103,8 @@ public class LocalStore extends QueueClient implements Store, LocalStoreRequest.
     }
 
     /**
-     * Creates a new instance of this class and configures its initial state. This is the only way
-     * to create and initialize a <code>LocalStore</code>.
+     * Creates a new instance of this class, persisting each value as a file of its own, and
+     * configures its initial state.
      *
      * @param context
      *         Used to fetch the disk storage folder.
@@ -97,8 +112,74 @@ public class LocalStore extends QueueClient implements Store, LocalStoreRequest.
      *         The name of the store.
      * @param maxMemoryInKiloBytes
      *         The memory size constraint.
+     *
+     * @see #open(Context, String, int, Engine)
      */
     public static Store open(final Context context, final String name, int maxMemoryInKiloBytes) {
+        return open(context, name, maxMemoryInKiloBytes, Engine.FILES);
+    }
+
+    /**
+     * Creates a new instance of this class, estimating the size of the values in the memory cache
+     * by a {@link JsonSizer}, and configures its initial state.
+     *
+     * @param context
+     *         Used to fetch the disk storage folder.
+     * @param name
+     *         The name of the store.
+     * @param maxMemoryInKiloBytes
+     *         The memory size constraint.
+     * @param engine
+     *         The disk storage engine to use.
+     *
+     * @see #open(Context, String, int, Engine, Sizer)
+     */
+    public static Store open(final Context context, final String name, int maxMemoryInKiloBytes, final Engine engine) {
+        return open(context, name, maxMemoryInKiloBytes, engine, new JsonSizer());
+    }
+
+    /**
+     * Creates a new instance of this class, persisting the values as JSON, and configures its
+     * initial state.
+     *
+     * @param context
+     *         Used to fetch the disk storage folder.
+     * @param name
+     *         The name of the store.
+     * @param maxMemoryInKiloBytes
+     *         The memory size constraint.
+     * @param engine
+     *         The disk storage engine to use.
+     * @param sizer
+     *         The strategy estimating the memory size of each value.
+     *
+     * @see #open(Context, String, int, Engine, Sizer, ValueCodec)
+     */
+    public static Store open(final Context context, final String name, int maxMemoryInKiloBytes, final Engine engine, Sizer sizer) {
+        return open(context, name, maxMemoryInKiloBytes, engine, sizer, new JsonValueCodec());
+    }
+
+    /**
+     * Creates a new instance of this class and configures its initial state. This is the only way
+     * to create and initialize a <code>LocalStore</code>. Note that a store must always be opened
+     * with the same engine, as the engines don't understand each other's disk format. A store
+     * persisted as JSON can however be reopened with a {@link CompactValueCodec}.
+     *
+     * @param context
+     *         Used to fetch the disk storage folder.
+     * @param name
+     *         The name of the store.
+     * @param maxMemoryInKiloBytes
+     *         The memory size constraint.
+     * @param engine
+     *         The disk storage engine to use.
+     * @param sizer
+     *         The strategy estimating the memory size of each value.
+     * @param codec
+     *         The strategy encoding the values on disk.
+     */
+    public static Store open(final Context context, final String name, int maxMemoryInKiloBytes, final Engine engine, Sizer sizer, ValueCodec codec) {
+        final ValueCodec valueCodec = codec != null ? codec : new JsonValueCodec();
         String directoryName;
 
         try {
@@ -110,26 +191,27 @@ public class LocalStore extends QueueClient implements Store, LocalStoreRequest.
         String systemCachePath = context.getCacheDir().getPath();
         String storePath = systemCachePath + File.separator + LOCAL_STORES_DIRECTORY + File.separator + directoryName;
 
+        // The memory store is ready for use right away, while the disk store is prepared on a
+        // worker thread.
         final LocalStore store = new LocalStore();
-        InitRequest request = LocalStoreRequest.newInitRequest(storePath, maxMemoryInKiloBytes,
-                new RuntimeStorePersister() {
-                    @Override
-                    public void setMemoryStore(LruCache<Object, Object> memoryStore) {
-                        // This callback is executed on the worker thread.
-                        store.memoryStore = memoryStore;
-                    }
+        store.memoryStore = createMemoryStore(maxMemoryInKiloBytes, sizer != null ? sizer : new JsonSizer());
 
+        InitRequest request = LocalStoreRequest.newInitRequest(storePath,
+                new RuntimeStorePersister() {
                     @Override
                     public void setDiskStore(File diskStore) {
                         // This callback is executed on the worker thread.
-                        store.diskStore = diskStore;
-                        copyMemoryStoreToDiskStore(store);
-                    }
-
-                    @Override
-                    public Object getDiskStoreLock() {
-                        // This callback is executed on the worker thread.
-                        return store.getDiskStoreLock();
+                        try {
+                            store.diskStore = diskStore;
+
+                            if (diskStore != null) {
+                                store.storageEngine = engine == Engine.LOG ?
+                                        LogStorageEngine.open(diskStore, valueCodec) :
+                                        new FileStorageEngine(diskStore, valueCodec);
+                            }
+                        } finally {
+                            store.diskStoreReady.countDown();
+                        }
                     }
 
                 }
@@ -141,71 +223,19 @@ public class LocalStore extends QueueClient implements Store, LocalStoreRequest.
     }
 
     /**
-     * Writes the object to a {@code ByteArrayOutputStream} and counts the number of bytes in the
-     * output. This value will then be converted to KB and returned as the size of the object.
-     *
-     * @param object
-     *         The object to calculate the size of.
+     * Returns a {@link MemoryStore} providing the in-memory store.
      *
-     * @return The size of the object expressed in kilobytes.
-     */
-
-    private static int calculateKiloByteSizeOfObject(Object object) {
-        try {
-            // This will only calculate the size of the object itself. The size of any
-            // referenced objects are not included in that figure.
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
-            objectOutputStream.writeObject(object);
-            objectOutputStream.flush();
-
-            byte[] byteArray = byteArrayOutputStream.toByteArray();
-            objectOutputStream.close();
-
-            return byteArray.length / 1024;
-        } catch (NullPointerException e) {
-            return 0;
-        } catch (IOException e) {
-            // We don't know anything about the size, assume worst case scenario.
-            return Integer.MAX_VALUE;
-        }
-    }
-
-    /**
-     * Writes all entries currently in the memory cache to the disk cache. Note that this method
-     * performs file system operations on the calling thread.
+     * @param maxMemoryInKiloBytes
+     *         The maximum allowed size of the memory cache.
+     * @param sizer
+     *         The strategy estimating the size of each value.
      *
-     * @param store
-     *         The local store object holding the memory and disk caches.
+     * @return The memory store.
      */
-    private static void copyMemoryStoreToDiskStore(LocalStore store) {
-        if (store != null) {
-            Map<Object, Object> snapshot = store.memoryStore.snapshot();
-            Set<Map.Entry<Object, Object>> entries = snapshot.entrySet();
-
-            for (Map.Entry<Object, Object> entry : entries) {
-                FileOutputStream fileOutputStream = null;
-                String fileName;
-
-                try {
-                    String key = entry.getKey().toString();
-                    fileName = URLEncoder.encode(key, Charset.defaultCharset().name());
-                    File file = new File(store.diskStore, fileName);
-                    String json = JsonParser.toJson(entry.getValue());
-                    fileOutputStream = new FileOutputStream(file);
-                    fileOutputStream.write(json.getBytes());
-                } catch (UnsupportedEncodingException e) {
-                    break;
-                } catch (FileNotFoundException e) {
-                    // Intentionally consume this exception.
-                } catch (IOException e) {
-                    // Intentionally consume this exception.
-                } finally {
-                    Utils.closeSilently(fileOutputStream);
-                }
-            }
-        }
-
+    private static MemoryStore createMemoryStore(int maxMemoryInKiloBytes, Sizer sizer) {
+        // The sizes are accounted for in bytes, so small values don't end up as "free".
+        int maxMemoryInBytes = (int) Math.min(Integer.MAX_VALUE, 1024L * Math.max(maxMemoryInKiloBytes, 1));
+        return new MemoryStore(maxMemoryInBytes, sizer);
     }
 
     /**
@@ -248,17 +278,24 @@ public class LocalStore extends QueueClient implements Store, LocalStoreRequest.
 
     }
 
-    private final Object diskStoreLock;
+    private final CountDownLatch diskStoreReady;
+    private final KeyGenerations generations;
+    private final AtomicInteger hitCount;
+    private final AtomicInteger missCount;
 
-    private LruCache<Object, Object> memoryStore;
+    private MemoryStore memoryStore;
     private File diskStore;
+    private StorageEngine storageEngine;
 
     /**
      * Hidden constructor.
      */
     private LocalStore() {
-        super(1, 1, 0L);
-        diskStoreLock = new Object();
+        super(LANE_COUNT, LANE_KEEP_ALIVE_SECONDS);
+        diskStoreReady = new CountDownLatch(1);
+        generations = new KeyGenerations();
+        hitCount = new AtomicInteger(0);
+        missCount = new AtomicInteger(0);
     }
 
     /**
@@ -269,8 +306,9 @@ public class LocalStore extends QueueClient implements Store, LocalStoreRequest.
      */
     @Override
     public Request<Void> free() {
+        // This is a memory only operation, there is no need to enqueue it.
         FreeRequest request = LocalStoreRequest.newFreeRequest(memoryStore);
-        execute(request);
+        request.run();
         return request;
     }
 
@@ -284,22 +322,75 @@ public class LocalStore extends QueueClient implements Store, LocalStoreRequest.
     @Override
     public Request<Void> erase() {
         EraseRequest request = LocalStoreRequest.newEraseRequest(this);
-        execute(request);
+        generations.invalidateAll(memoryStore);
+        executeExclusively(request);
         return request;
     }
 
     /**
      * Retrieves an object with the given key from the local store. If the object isn't found in
      * memory, and a {@link Class} template is given, it will be looked for on disk. If it's not
-     * found there either, a null pointer will be returned.
+     * found there either, a null pointer will be returned. An object found in memory is delivered
+     * right away, without involving any worker thread.
      *
      * @throws IllegalStateException
      *         If neither in-memory store, nor disk store has a valid handle.
      */
     @Override
+    @SuppressWarnings("unchecked")
     public <T> Request<T> get(Object key, Class<T> classOfValue) throws IllegalStateException {
-        GetRequest<T> request = LocalStoreRequest.newGetRequest(this, key, classOfValue);
-        execute(request);
+        Object value = memoryStore.get(key);
+
+        if (value != null) {
+            hitCount.incrementAndGet();
+            LocalStoreRequest<T> request = LocalStoreRequest.newResultRequest((T) value);
+            request.run();
+            return request;
+        }
+
+        missCount.incrementAndGet();
+        GetRequest<T> request = LocalStoreRequest.newGetRequest(this, generations, key, classOfValue);
+        execute(request, key.toString());
+        return request;
+    }
+
+    /**
+     * Retrieves several objects from the local store. If all objects are found in memory, they are
+     * delivered right away. Otherwise the request is executed once all previously enqueued requests
+     * are done, and any objects not found in memory are looked for on disk, given a {@link Class}
+     * template.
+     *
+     * @throws IllegalStateException
+     *         If neither in-memory store, nor disk store has a valid handle.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Request<Map<Object, T>> getAll(Collection<?> keys, Class<T> classOfValue) throws IllegalStateException {
+        HashMap<Object, T> values = new HashMap<Object, T>();
+
+        for (Object key : keys) {
+            Object value = memoryStore.get(key);
+
+            if (value == null) {
+                break;
+            }
+
+            values.put(key, (T) value);
+        }
+
+        if (values.size() == keys.size()) {
+            hitCount.addAndGet(values.size());
+            LocalStoreRequest<Map<Object, T>> request = LocalStoreRequest.newResultRequest((Map<Object, T>) values);
+            request.run();
+            return request;
+        }
+
+        hitCount.addAndGet(values.size());
+        missCount.addAndGet(keys.size() - values.size());
+
+        // The keys most likely span several lanes, hence the request has to wait for all of them.
+        GetAllRequest<T> request = LocalStoreRequest.newGetAllRequest(this, generations, new ArrayList<Object>(keys), classOfValue);
+        executeExclusively(request);
         return request;
     }
 
@@ -308,19 +399,27 @@ public class LocalStore extends QueueClient implements Store, LocalStoreRequest.
      *
      * @return A reference to the current disk store object.
      */
-    @Override
     public File getDiskStore() {
         return diskStore;
     }
 
     /**
-     * Provides a lock to synchronize any disk operations on.
+     * Provides the storage engine of the disk store. This method blocks until the disk store is
+     * prepared.
      *
-     * @return The "Disk-store-ready" lock object.
+     * @return A reference to the current storage engine, or null if the disk store couldn't be
+     * prepared.
      */
     @Override
-    public Object getDiskStoreLock() {
-        return diskStoreLock;
+    public StorageEngine getStorageEngine() {
+        try {
+            diskStoreReady.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        return storageEngine;
     }
 
     /**
@@ -329,7 +428,7 @@ public class LocalStore extends QueueClient implements Store, LocalStoreRequest.
      * @return A reference to the current memory store object.
      */
     @Override
-    public LruCache<Object, Object> getMemoryStore() {
+    public MemoryStore getMemoryStore() {
         return memoryStore;
     }
 
@@ -343,8 +442,12 @@ public class LocalStore extends QueueClient implements Store, LocalStoreRequest.
      */
     @Override
     public Request<Void> remove(Object key) throws IllegalStateException {
+        // Update the memory store right away, so any subsequent "get" operations won't see the
+        // value, nor will any pending requests put it back. The request will then remove it from
+        // disk, in order with any other requests for the same key.
         RemoveRequest request = LocalStoreRequest.newRemoveRequest(this, key);
-        execute(request);
+        generations.invalidate(memoryStore, Collections.singleton(key));
+        execute(request, key.toString());
         return request;
     }
 
@@ -357,11 +460,72 @@ public class LocalStore extends QueueClient implements Store, LocalStoreRequest.
      */
     @Override
     public Request<Void> set(Object key, Object value) throws IllegalStateException {
-        SetRequest request = LocalStoreRequest.newSetRequest(this, key, value);
-        execute(request);
+        // Drop any old value from the memory store right away, so subsequent "get" operations
+        // can't see it. The request will then put the new value in the memory store, and persist
+        // it, in order with any other requests for the same key. This keeps the size estimation of
+        // the value off the calling thread. Any pending requests for the key won't put their, now
+        // stale, values in the memory store.
+        long[] snapshot = generations.invalidate(memoryStore, Collections.singleton(key));
+        SetRequest request = LocalStoreRequest.newSetRequest(this, generations, snapshot, key, value);
+        execute(request, key.toString());
+        return request;
+    }
+
+    /**
+     * Adds or updates several values in the local store as one unit of work. Any values already in
+     * the store for the given keys will silently be overwritten.
+     *
+     * @throws IllegalStateException
+     *         If neither in-memory store, nor disk store has a valid handle.
+     */
+    @Override
+    public Request<Void> setAll(Map<?, ?> values) throws IllegalStateException {
+        // See set(Object, Object).
+        HashMap<Object, Object> valuesCopy = new HashMap<Object, Object>(values);
+        long[] snapshot = generations.invalidate(memoryStore, valuesCopy.keySet());
+        SetAllRequest request = LocalStoreRequest.newSetAllRequest(this, generations, snapshot, valuesCopy);
+
+        executeExclusively(request);
         return request;
     }
 
+    /**
+     * Returns the number of "get" operations that were served by the memory store.
+     *
+     * @return The number of memory store hits.
+     */
+    public int getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of "get" operations that had to consult the disk store.
+     *
+     * @return The number of memory store misses.
+     */
+    public int getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the number of values that have been evicted from the memory store in order to make
+     * room for new values.
+     *
+     * @return The number of memory store evictions.
+     */
+    public int getEvictionCount() {
+        return memoryStore.evictionCount();
+    }
+
+    /**
+     * Returns the estimated size of all values currently in the memory store.
+     *
+     * @return The size of the memory store in bytes.
+     */
+    public int getMemorySize() {
+        return memoryStore.size();
+    }
+
     /**
      * Returns whether the disk store is initialized and ready for use. If not, the memory store may
      * still cache and return any objects, even though the disk store won't.
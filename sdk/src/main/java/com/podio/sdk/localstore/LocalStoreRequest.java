@@ -1,21 +1,29 @@
 
 package com.podio.sdk.localstore;
 
-import android.util.LruCache;
-
+import com.podio.sdk.Promise;
 import com.podio.sdk.Request;
 import com.podio.sdk.internal.CallbackManager;
-import com.podio.sdk.json.JsonParser;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -31,13 +39,17 @@ import java.util.concurrent.TimeoutException;
  */
 class LocalStoreRequest<T> extends FutureTask<T> implements Request<T> {
 
-    interface RuntimeStoreEnabler {
+    /**
+     * The size, in bytes, from which values are read from disk through a memory mapping rather
+     * than being copied onto the heap.
+     */
+    static final int MAPPED_READ_THRESHOLD = 64 * 1024;
 
-        LruCache<Object, Object> getMemoryStore();
+    interface RuntimeStoreEnabler {
 
-        File getDiskStore();
+        MemoryStore getMemoryStore();
 
-        Object getDiskStoreLock();
+        StorageEngine getStorageEngine();
 
     }
 
@@ -62,7 +74,7 @@ class LocalStoreRequest<T> extends FutureTask<T> implements Request<T> {
      *
      * @return A request ready for being enqueued in a queue.
      */
-    static FreeRequest newFreeRequest(LruCache<Object, Object> memoryStore) {
+    static FreeRequest newFreeRequest(MemoryStore memoryStore) {
         return new FreeRequest(memoryStore);
     }
 
@@ -72,6 +84,8 @@ class LocalStoreRequest<T> extends FutureTask<T> implements Request<T> {
      *
      * @param storeEnabler
      *         The callback that will provide the memory and disk stores.
+     * @param generations
+     *         The generations of the keys in the memory cache.
      * @param key
      *         The key of the value.
      * @param classOfValue
@@ -79,24 +93,41 @@ class LocalStoreRequest<T> extends FutureTask<T> implements Request<T> {
      *
      * @return A request ready for being enqueued in a queue.
      */
-    static <E> GetRequest<E> newGetRequest(RuntimeStoreEnabler storeEnabler, Object key, Class<E> classOfValue) {
-        return new GetRequest<E>(storeEnabler, key, classOfValue);
+    static <E> GetRequest<E> newGetRequest(RuntimeStoreEnabler storeEnabler, KeyGenerations generations, Object key, Class<E> classOfValue) {
+        return new GetRequest<E>(storeEnabler, generations, generations.snapshot(), key, classOfValue);
+    }
+
+    /**
+     * Creates a new Request for retrieving several values from the local store. The request will
+     * deliver a map of all found values.
+     *
+     * @param storeEnabler
+     *         The callback that will provide the memory and disk stores.
+     * @param generations
+     *         The generations of the keys in the memory cache.
+     * @param keys
+     *         The keys of the values.
+     * @param classOfValue
+     *         The type to parse the files into (if needed).
+     *
+     * @return A request ready for being enqueued in a queue.
+     */
+    static <E> GetAllRequest<E> newGetAllRequest(RuntimeStoreEnabler storeEnabler, KeyGenerations generations, Collection<?> keys, Class<E> classOfValue) {
+        return new GetAllRequest<E>(storeEnabler, generations, generations.snapshot(), keys, classOfValue);
     }
 
     /**
-     * Creates a new Request for initializing the memory and disk stores for a local store.
+     * Creates a new Request for initializing the disk store for a local store.
      *
      * @param path
      *         The absolute path of the local store to initialize.
-     * @param maxMemoryInKiloBytes
-     *         The maximum allowed size of the memory cache.
      * @param storePersister
      *         The callback interface to deliver created stores through.
      *
      * @return A request ready for being enqueued in a queue.
      */
-    static InitRequest newInitRequest(String path, int maxMemoryInKiloBytes, LocalStore.RuntimeStorePersister storePersister) {
-        return new InitRequest(path, maxMemoryInKiloBytes, storePersister);
+    static InitRequest newInitRequest(String path, LocalStore.RuntimeStorePersister storePersister) {
+        return new InitRequest(path, storePersister);
     }
 
     /**
@@ -113,6 +144,25 @@ class LocalStoreRequest<T> extends FutureTask<T> implements Request<T> {
         return new RemoveRequest(storeEnabler, key);
     }
 
+    /**
+     * Creates a new Request which simply delivers the given result. This is useful when the result
+     * is already known, e.g. found in the memory store, and no worker thread needs to be involved.
+     * The request must still be run in order to deliver its result.
+     *
+     * @param result
+     *         The result to deliver.
+     *
+     * @return A request ready for being run.
+     */
+    static <E> LocalStoreRequest<E> newResultRequest(final E result) {
+        return new LocalStoreRequest<E>(new Callable<E>() {
+            @Override
+            public E call() throws Exception {
+                return result;
+            }
+        });
+    }
+
     /**
      * Creates a new request for storing a given value. The request will deliver the previous value
      * if an overwrite has occurred, or a null-pointer if no object is previously stored by the
@@ -120,6 +170,10 @@ class LocalStoreRequest<T> extends FutureTask<T> implements Request<T> {
      *
      * @param storeEnabler
      *         The callback that will provide the memory and disk stores.
+     * @param generations
+     *         The generations of the keys in the memory cache.
+     * @param snapshot
+     *         The generations after the old value was dropped from the memory cache.
      * @param key
      *         The key of the value.
      * @param value
@@ -127,8 +181,26 @@ class LocalStoreRequest<T> extends FutureTask<T> implements Request<T> {
      *
      * @return A request ready for being enqueued in a queue.
      */
-    static SetRequest newSetRequest(RuntimeStoreEnabler storeEnabler, Object key, Object value) {
-        return new SetRequest(storeEnabler, key, value);
+    static SetRequest newSetRequest(RuntimeStoreEnabler storeEnabler, KeyGenerations generations, long[] snapshot, Object key, Object value) {
+        return new SetRequest(storeEnabler, generations, snapshot, key, value);
+    }
+
+    /**
+     * Creates a new request for storing several values in one go.
+     *
+     * @param storeEnabler
+     *         The callback that will provide the memory and disk stores.
+     * @param generations
+     *         The generations of the keys in the memory cache.
+     * @param snapshot
+     *         The generations after the old values were dropped from the memory cache.
+     * @param values
+     *         The values, mapped by their keys.
+     *
+     * @return A request ready for being enqueued in a queue.
+     */
+    static SetAllRequest newSetAllRequest(RuntimeStoreEnabler storeEnabler, KeyGenerations generations, long[] snapshot, Map<?, ?> values) {
+        return new SetAllRequest(storeEnabler, generations, snapshot, values);
     }
 
     /**
@@ -203,19 +275,21 @@ class LocalStoreRequest<T> extends FutureTask<T> implements Request<T> {
     }
 
     /**
-     * Reads the content of a file and tries to parse it as JSON into an object.
+     * Reads the content of a file and tries to decode it into an object.
      *
      * @param file
      *         The file on disk to read from.
      * @param classOfValue
-     *         The class definition that the JSON should be parsed into.
+     *         The class definition that the content should be decoded into.
+     * @param codec
+     *         The codec to decode the content with.
      *
      * @return The object stored in the file.
      *
      * @throws IOException
      *         If anything went wrong during file access.
      */
-    protected static <E> E readObjectFromDisk(File file, Class<E> classOfValue) throws IOException {
+    protected static <E> E readObjectFromDisk(File file, Class<E> classOfValue, ValueCodec codec) throws IOException {
         // Validate file.
         if (!isReadableFile(file)) {
             return null;
@@ -225,49 +299,96 @@ class LocalStoreRequest<T> extends FutureTask<T> implements Request<T> {
             return null;
         }
 
-        long length = file.length();
-        if (length < 0 || length > Integer.MAX_VALUE) {
-            return null;
-        }
-
         // Read from disk.
-        byte[] bytes = new byte[(int) length];
         FileInputStream fileInputStream = new FileInputStream(file);
+        InputStream inputStream;
 
         try {
-            fileInputStream.read(bytes);
+            FileChannel channel = fileInputStream.getChannel();
+            long length = channel.size();
+
+            if (length > Integer.MAX_VALUE) {
+                return null;
+            }
+
+            inputStream = openRegion(channel, 0, (int) length);
         } finally {
             fileInputStream.close();
         }
 
-        // Parse JSON to object.
-        String json = new String(bytes);
-        E result = JsonParser.fromJson(json, classOfValue);
-        return result;
+        // Decode object.
+        return codec.decode(inputStream, classOfValue);
     }
 
     /**
-     * Tries to write the value to the disk store. An attempt will be made to parse the value to
-     * JSON and on success it will be written to a file with the same name as the key. The key will
-     * be transformed to the file name by calling the <code>toString()</code> method on it (pick
-     * your keys with great care).
+     * Opens a stream reading the given region of a file. Regions of at least
+     * {@link #MAPPED_READ_THRESHOLD} bytes are memory mapped, so they can be parsed without
+     * occupying the heap. The mapping stays valid after the channel is closed and is released once
+     * the stream is garbage collected. Smaller regions are read fully into memory, as mapping them
+     * costs more than it saves.
+     *
+     * @param channel
+     *         The channel of the file to read from.
+     * @param position
+     *         The position in the file where the region starts.
+     * @param length
+     *         The number of bytes in the region.
+     *
+     * @return A stream reading the region.
+     *
+     * @throws IOException
+     *         If the region couldn't be read or mapped, or if the file ends before the region.
+     */
+    static InputStream openRegion(FileChannel channel, long position, int length) throws IOException {
+        if (length >= MAPPED_READ_THRESHOLD) {
+            if (position + length > channel.size()) {
+                throw new EOFException();
+            }
+
+            return new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+        }
+
+        // A single read isn't guaranteed to fill the buffer, hence the loop.
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+
+        return new ByteArrayInputStream(buffer.array());
+    }
+
+    /**
+     * Tries to write the value to the disk store. An attempt will be made to encode the value and
+     * on success it will be written to a file with the same name as the key. The key will be
+     * transformed to the file name by calling the <code>toString()</code> method on it (pick your
+     * keys with great care).
      *
      * @param file
      *         The {@link File} pointing at the desired destination file on disk.
      * @param value
-     *         The value that will be serialized to JSON and saved as a file.
+     *         The value that will be encoded and saved as a file.
+     * @param codec
+     *         The codec to encode the value with.
+     *
+     * @return The number of bytes the value was encoded into.
      *
      * @throws IOException
      */
-    protected static void writeObjectToDisk(File file, Object value) throws IOException {
-        String json = JsonParser.toJson(value);
+    protected static int writeObjectToDisk(File file, Object value, ValueCodec codec) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        codec.encode(value, byteArrayOutputStream);
         FileOutputStream fileOutputStream = new FileOutputStream(file);
 
         try {
-            fileOutputStream.write(json.getBytes());
+            byteArrayOutputStream.writeTo(fileOutputStream);
         } finally {
             fileOutputStream.close();
         }
+
+        return byteArrayOutputStream.size();
     }
 
     /**
@@ -277,7 +398,7 @@ class LocalStoreRequest<T> extends FutureTask<T> implements Request<T> {
      * @throws IllegalStateException
      *         If neither in-memory store, nor disk store has a valid handle.
      */
-    protected static void validateState(LruCache<Object, Object> memoryStore, File diskStore) throws IllegalStateException {
+    protected static void validateState(MemoryStore memoryStore, File diskStore) throws IllegalStateException {
         if (memoryStore == null && diskStore == null) {
             throw new IllegalStateException("You're trying to interact with a closed store.");
         }
@@ -298,6 +419,11 @@ class LocalStoreRequest<T> extends FutureTask<T> implements Request<T> {
      */
     private Throwable error;
 
+    /**
+     * The tag of this request.
+     */
+    private volatile Object tag;
+
     /**
      * Initializes the listener containers.
      *
@@ -318,6 +444,11 @@ class LocalStoreRequest<T> extends FutureTask<T> implements Request<T> {
     protected void done() {
         super.done();
 
+        if (isCancelled()) {
+            // Canceled requests don't deliver anything.
+            return;
+        }
+
         try {
             result = get();
             error = null;
@@ -343,6 +474,8 @@ class LocalStoreRequest<T> extends FutureTask<T> implements Request<T> {
             callbackManager.deliverError(e);
         } catch (TimeoutException e) {
             callbackManager.deliverError(e);
+        } catch (CancellationException e) {
+            // The request was canceled, there is no result to wait for.
         }
 
         return null;
@@ -357,7 +490,7 @@ class LocalStoreRequest<T> extends FutureTask<T> implements Request<T> {
      */
     @Override
     public Request<T> withResultListener(Request.ResultListener<T> contentListener) {
-        callbackManager.addResultListener(contentListener, isDone(), result);
+        callbackManager.addResultListener(contentListener, isDone() && !isCancelled(), result);
         return this;
     }
 
@@ -385,4 +518,56 @@ class LocalStoreRequest<T> extends FutureTask<T> implements Request<T> {
         throw new UnsupportedOperationException("This implementation doesn't handle sessions.");
     }
 
+    /**
+     * Ignores the given listener, as local store requests don't transfer files.
+     *
+     * @see com.podio.sdk.Request#withProgressListener(com.podio.sdk.Request.ProgressListener)
+     */
+    @Override
+    public Request<T> withProgressListener(Request.ProgressListener progressListener) {
+        return this;
+    }
+
+    /**
+     * Tags this request. As local store requests are executed in a sequence of their own, the tag
+     * is for the caller's book keeping only.
+     *
+     * @see com.podio.sdk.Request#withTag(Object)
+     */
+    @Override
+    public Request<T> withTag(Object tag) {
+        this.tag = tag;
+        return this;
+    }
+
+    /**
+     * Returns the tag of this request.
+     *
+     * @return The tag, or null if this request isn't tagged.
+     */
+    public Object getTag() {
+        return tag;
+    }
+
+    /**
+     * Cancels this request unless it's already being executed, in which case it will be allowed
+     * to finish, but without delivering its result.
+     *
+     * @see com.podio.sdk.Request#cancel()
+     */
+    @Override
+    public void cancel() {
+        cancel(false);
+    }
+
+    @Override
+    public <R> Request<R> then(Request.Transformation<T, R> transformation, Executor executor) {
+        return Promise.then(this, transformation, executor);
+    }
+
+    @Override
+    public <R> Request<R> compose(Request.Continuation<T, R> continuation, Executor executor) {
+        return Promise.compose(this, continuation, executor);
+    }
+
 }
@@ -0,0 +1,742 @@
+
+package com.podio.sdk.localstore;
+
+import com.podio.sdk.internal.Utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link StorageEngine} implementation persisting all values in a segmented, append-only log.
+ * Every write appends a record to the active segment and every delete appends a "tombstone"
+ * record. An in-memory index keeps track of where the current value of each key lives.
+ * <p>
+ * A record is committed once it has been forced to disk. Each record carries a checksum, so a
+ * record torn by a crash is detected, and cut off, when the log is replayed on the next start.
+ * <p>
+ * When the log contains more stale records than live ones, all sealed segments are compacted into
+ * one on a background thread. The compacted segment is written to a temporary file which then
+ * atomically replaces the newest of the sealed segments. Its header lists the segments it
+ * supersedes, so any of them that survive a crash are removed on the next start.
+ *
+ */
+final class LogStorageEngine implements StorageEngine {
+
+    /**
+     * Describes where on disk a record lives.
+     */
+    static final class Location {
+        final int segmentId;
+        final long offset;
+        final int keyLength;
+        final int valueLength;
+
+        Location(int segmentId, long offset, int keyLength, int valueLength) {
+            this.segmentId = segmentId;
+            this.offset = offset;
+            this.keyLength = keyLength;
+            this.valueLength = valueLength;
+        }
+
+        long valueOffset() {
+            return offset + RECORD_HEADER_SIZE + keyLength;
+        }
+
+        int size() {
+            return recordSize(keyLength, valueLength);
+        }
+    }
+
+    /**
+     * An open segment file.
+     */
+    private static final class Segment {
+        final int id;
+        final File file;
+        final RandomAccessFile randomAccessFile;
+        final FileChannel channel;
+        long headerSize;
+        long size;
+
+        Segment(int id, File file) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.randomAccessFile = new RandomAccessFile(file, "rw");
+            this.channel = randomAccessFile.getChannel();
+            this.size = channel.size();
+        }
+
+        void close() {
+            Utils.closeSilently(randomAccessFile);
+        }
+    }
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private static final int SEGMENT_MAGIC = 0x50444c47;
+    private static final int SEGMENT_VERSION = 1;
+    private static final int RECORD_HEADER_SIZE = 12;
+    private static final int TOMBSTONE = -1;
+
+    private static final long SEGMENT_MAX_BYTES = 1024 * 1024;
+    private static final long COMPACTION_MIN_GARBAGE_BYTES = 512 * 1024;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Opens, and replays, the log in the given directory, persisting the values as JSON. A new log
+     * is created if there is none.
+     *
+     * @param directory
+     *         The directory to keep the segment files in.
+     *
+     * @return A storage engine ready for use, or null if the log couldn't be opened.
+     */
+    static LogStorageEngine open(File directory) {
+        return open(directory, new JsonValueCodec());
+    }
+
+    /**
+     * Opens, and replays, the log in the given directory. A new log is created if there is none.
+     *
+     * @param directory
+     *         The directory to keep the segment files in.
+     * @param codec
+     *         The codec to encode and decode the values with.
+     *
+     * @return A storage engine ready for use, or null if the log couldn't be opened.
+     */
+    static LogStorageEngine open(File directory, ValueCodec codec) {
+        if (!LocalStoreRequest.isWritableDirectory(directory)) {
+            return null;
+        }
+
+        LogStorageEngine engine = new LogStorageEngine(directory, codec);
+
+        try {
+            engine.load();
+            return engine;
+        } catch (IOException e) {
+            engine.closeSegments();
+            return null;
+        }
+    }
+
+    private static int recordSize(int keyLength, int valueLength) {
+        return RECORD_HEADER_SIZE + keyLength + Math.max(valueLength, 0);
+    }
+
+    private static int headerSize(int supersededCount) {
+        return 12 + 4 * supersededCount;
+    }
+
+    private static int checksum(ByteBuffer record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), record.arrayOffset() + 4, record.limit() - 4);
+        return (int) crc.getValue();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, position + buffer.position());
+
+            if (count < 0) {
+                throw new EOFException();
+            }
+        }
+
+        buffer.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private final File directory;
+    private final ValueCodec codec;
+    private final TreeMap<Integer, Segment> segments;
+    private final HashMap<String, Location> index;
+    private final ExecutorService compactionExecutor;
+
+    private Segment activeSegment;
+    private long liveBytes;
+    private long recordBytes;
+    private int generation;
+    private boolean isCompacting;
+
+    private LogStorageEngine(File directory, ValueCodec codec) {
+        this.directory = directory;
+        this.codec = codec;
+        this.segments = new TreeMap<Integer, Segment>();
+        this.index = new HashMap<String, Location>();
+        this.compactionExecutor = new ThreadPoolExecutor(0, 1, 30L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+    }
+
+    /**
+     * Reads a value from the log. The lock is only held while looking up the record, the actual
+     * disk read and parsing is done without it, allowing several values to be read in parallel.
+     *
+     * @see StorageEngine#read(Object, Class)
+     */
+    @Override
+    public <T> T read(Object key, Class<T> classOfValue) throws IOException {
+        if (!LocalStoreRequest.isValidTemplate(classOfValue)) {
+            return null;
+        }
+
+        InputStream value;
+
+        try {
+            value = readValue(key.toString());
+        } catch (ClosedChannelException e) {
+            // The segment was compacted away, or erased, while reading. The second attempt is
+            // done while holding the lock, so that won't happen again.
+            synchronized (this) {
+                value = readValue(key.toString());
+            }
+        }
+
+        return value != null ? codec.decode(value, classOfValue) : null;
+    }
+
+    /**
+     * Appends a value to the log. The value is encoded before the lock is taken.
+     *
+     * @see StorageEngine#write(Object, Object)
+     */
+    @Override
+    public int write(Object key, Object value) throws IOException {
+        byte[] keyBytes = key.toString().getBytes(UTF8);
+        byte[] valueBytes = encode(value);
+
+        synchronized (this) {
+            Location location = append(keyBytes, valueBytes, true);
+            updateIndex(key.toString(), location);
+            compactIfNeeded();
+        }
+
+        return valueBytes.length;
+    }
+
+    /**
+     * Appends all values to the log and forces them to disk in one go. The index isn't updated
+     * until all records are committed.
+     *
+     * @see StorageEngine#writeAll(Map)
+     */
+    @Override
+    public synchronized Map<Object, Integer> writeAll(Map<?, ?> values) throws IOException {
+        HashMap<String, Location> locations = new HashMap<String, Location>();
+        HashMap<Object, Integer> lengths = new HashMap<Object, Integer>();
+
+        for (Map.Entry<?, ?> entry : values.entrySet()) {
+            String key = entry.getKey().toString();
+            byte[] valueBytes = encode(entry.getValue());
+            locations.put(key, append(key.getBytes(UTF8), valueBytes, false));
+            lengths.put(entry.getKey(), valueBytes.length);
+        }
+
+        if (activeSegment != null) {
+            activeSegment.channel.force(false);
+        }
+
+        for (Map.Entry<String, Location> entry : locations.entrySet()) {
+            updateIndex(entry.getKey(), entry.getValue());
+        }
+
+        compactIfNeeded();
+
+        return lengths;
+    }
+
+    @Override
+    public synchronized void delete(Object key) throws IOException {
+        Location previous = index.get(key.toString());
+
+        if (previous != null) {
+            append(key.toString().getBytes(UTF8), null, true);
+            index.remove(key.toString());
+            liveBytes -= previous.size();
+            compactIfNeeded();
+        }
+    }
+
+    @Override
+    public synchronized void erase() {
+        // Any ongoing compaction will notice the new generation and back off.
+        generation++;
+        closeSegments();
+        segments.clear();
+        index.clear();
+        liveBytes = 0;
+        recordBytes = 0;
+        activeSegment = null;
+
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+
+        try {
+            activeSegment = createSegment(1);
+        } catch (IOException e) {
+            // The next write will try again.
+        }
+    }
+
+    private InputStream readValue(String key) throws IOException {
+        Location location;
+        Segment segment;
+
+        synchronized (this) {
+            location = index.get(key);
+
+            if (location == null) {
+                return null;
+            }
+
+            segment = segments.get(location.segmentId);
+        }
+
+        return LocalStoreRequest.openRegion(segment.channel, location.valueOffset(), location.valueLength);
+    }
+
+    /**
+     * Appends a record to the active segment and forces it to disk. A new active segment is
+     * created if the current one is full.
+     *
+     * @param keyBytes
+     *         The key of the record.
+     * @param valueBytes
+     *         The value of the record, or null for a tombstone.
+     * @param commit
+     *         Whether to force the record to disk. If not, the caller is responsible for forcing
+     *         the active segment to disk. Full segments are always forced before they're sealed.
+     *
+     * @return The location of the record.
+     *
+     * @throws IOException
+     *         If the record couldn't be written.
+     */
+    private Location append(byte[] keyBytes, byte[] valueBytes, boolean commit) throws IOException {
+        if (activeSegment == null) {
+            activeSegment = createSegment(segments.isEmpty() ? 1 : segments.lastKey() + 1);
+        }
+
+        int valueLength = valueBytes != null ? valueBytes.length : TOMBSTONE;
+        ByteBuffer record = ByteBuffer.allocate(recordSize(keyBytes.length, valueLength));
+        record.putInt(0);
+        record.putInt(keyBytes.length);
+        record.putInt(valueLength);
+        record.put(keyBytes);
+        if (valueBytes != null) {
+            record.put(valueBytes);
+        }
+        record.flip();
+        record.putInt(0, checksum(record));
+
+        Segment segment = activeSegment;
+        long offset = segment.size;
+
+        try {
+            writeFully(segment.channel, record, offset);
+
+            if (commit) {
+                segment.channel.force(false);
+            }
+        } catch (IOException e) {
+            // Don't leave a half written record behind for the next record to follow.
+            segment.channel.truncate(offset);
+            throw e;
+        }
+
+        segment.size += record.limit();
+        recordBytes += record.limit();
+
+        if (segment.size >= SEGMENT_MAX_BYTES) {
+            if (!commit) {
+                segment.channel.force(false);
+            }
+
+            activeSegment = createSegment(segment.id + 1);
+        }
+
+        return new Location(segment.id, offset, keyBytes.length, valueLength);
+    }
+
+    private byte[] encode(Object value) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        codec.encode(value, byteArrayOutputStream);
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    private void updateIndex(String key, Location location) {
+        Location previous = index.put(key, location);
+        liveBytes += location.size();
+
+        if (previous != null) {
+            liveBytes -= previous.size();
+        }
+    }
+
+    private void closeSegments() {
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+    }
+
+    /**
+     * Schedules a compaction of the sealed segments if more than half of the records on disk are
+     * stale.
+     */
+    private void compactIfNeeded() {
+        long garbageBytes = recordBytes - liveBytes;
+
+        if (!isCompacting && garbageBytes >= COMPACTION_MIN_GARBAGE_BYTES && garbageBytes > liveBytes) {
+            isCompacting = true;
+            compactionExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        compact();
+                    } catch (IOException e) {
+                        // The stale records will remain until the next compaction attempt.
+                    } finally {
+                        synchronized (LogStorageEngine.this) {
+                            isCompacting = false;
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Rewrites the live records of all sealed segments into one new segment. The sealed segments
+     * are immutable, so the copying is done without holding the lock. Only the final swap is done
+     * while holding it.
+     *
+     * @throws IOException
+     *         If the compacted segment couldn't be written.
+     */
+    private void compact() throws IOException {
+        ArrayList<Segment> inputs = new ArrayList<Segment>();
+        HashMap<String, Location> snapshot = new HashMap<String, Location>();
+        int snapshotGeneration;
+
+        synchronized (this) {
+            // Seal the active segment so it's part of the compaction too.
+            if (activeSegment != null && activeSegment.size > activeSegment.headerSize) {
+                activeSegment = createSegment(activeSegment.id + 1);
+            }
+
+            for (Segment segment : segments.values()) {
+                if (segment != activeSegment) {
+                    inputs.add(segment);
+                }
+            }
+
+            for (Map.Entry<String, Location> entry : index.entrySet()) {
+                if (activeSegment == null || entry.getValue().segmentId != activeSegment.id) {
+                    snapshot.put(entry.getKey(), entry.getValue());
+                }
+            }
+
+            snapshotGeneration = generation;
+        }
+
+        if (inputs.isEmpty()) {
+            return;
+        }
+
+        // The compacted segment takes the place of the newest input segment, which keeps it
+        // older than any segment written while compacting.
+        int outputId = inputs.get(inputs.size() - 1).id;
+        int[] superseded = new int[inputs.size()];
+        for (int i = 0; i < superseded.length; i++) {
+            superseded[i] = inputs.get(i).id;
+        }
+
+        File temporaryFile = new File(directory, outputId + TEMPORARY_SUFFIX);
+        HashMap<String, Location> compacted = new HashMap<String, Location>();
+        long outputRecordBytes = 0;
+        RandomAccessFile output = new RandomAccessFile(temporaryFile, "rw");
+
+        try {
+            FileChannel outputChannel = output.getChannel();
+            outputChannel.truncate(0);
+            long position = writeHeader(outputChannel, superseded);
+
+            for (Map.Entry<String, Location> entry : snapshot.entrySet()) {
+                Location location = entry.getValue();
+                Segment segment = null;
+
+                for (Segment input : inputs) {
+                    if (input.id == location.segmentId) {
+                        segment = input;
+                        break;
+                    }
+                }
+
+                ByteBuffer record = ByteBuffer.allocate(location.size());
+                readFully(segment.channel, record, location.offset);
+                writeFully(outputChannel, record, position);
+
+                compacted.put(entry.getKey(), new Location(outputId, position, location.keyLength, location.valueLength));
+                position += location.size();
+                outputRecordBytes += location.size();
+            }
+
+            outputChannel.force(true);
+        } catch (IOException e) {
+            Utils.closeSilently(output);
+            temporaryFile.delete();
+            throw e;
+        } finally {
+            Utils.closeSilently(output);
+        }
+
+        synchronized (this) {
+            if (snapshotGeneration != generation || !temporaryFile.renameTo(new File(directory, outputId + SEGMENT_SUFFIX))) {
+                temporaryFile.delete();
+                return;
+            }
+
+            long inputRecordBytes = 0;
+            for (Segment input : inputs) {
+                inputRecordBytes += input.size - input.headerSize;
+                input.close();
+                segments.remove(input.id);
+
+                if (input.id != outputId) {
+                    input.file.delete();
+                }
+            }
+
+            Segment compactedSegment = new Segment(outputId, new File(directory, outputId + SEGMENT_SUFFIX));
+            compactedSegment.headerSize = headerSize(superseded.length);
+            segments.put(outputId, compactedSegment);
+            recordBytes += outputRecordBytes - inputRecordBytes;
+
+            // Only move those keys that haven't been overwritten, or deleted, while compacting.
+            for (Map.Entry<String, Location> entry : compacted.entrySet()) {
+                String key = entry.getKey();
+
+                if (index.get(key) == snapshot.get(key)) {
+                    index.put(key, entry.getValue());
+                }
+            }
+        }
+    }
+
+    private Segment createSegment(int id) throws IOException {
+        Segment segment = new Segment(id, new File(directory, id + SEGMENT_SUFFIX));
+        segment.channel.truncate(0);
+        segment.headerSize = writeHeader(segment.channel, new int[0]);
+        segment.size = segment.headerSize;
+        segment.channel.force(true);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    /**
+     * Replays all segments in the log directory, rebuilding the index. Torn records are cut off
+     * and any segments superseded by a compacted segment are removed.
+     *
+     * @throws IOException
+     *         If the log couldn't be read.
+     */
+    private synchronized void load() throws IOException {
+        File[] files = directory.listFiles();
+        HashSet<Integer> superseded = new HashSet<Integer>();
+
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+
+                if (name.endsWith(TEMPORARY_SUFFIX)) {
+                    // A compaction that never finished.
+                    file.delete();
+                } else if (name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        int id = Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                        segments.put(id, new Segment(id, file));
+                    } catch (NumberFormatException e) {
+                        // Not one of ours.
+                    }
+                }
+            }
+        }
+
+        for (Segment segment : new ArrayList<Segment>(segments.values())) {
+            int[] ids = readSuperseded(segment);
+
+            if (ids == null) {
+                // The segment was never fully created.
+                segment.close();
+                segment.file.delete();
+                segments.remove(segment.id);
+            } else {
+                segment.headerSize = headerSize(ids.length);
+
+                for (int id : ids) {
+                    if (id != segment.id) {
+                        superseded.add(id);
+                    }
+                }
+            }
+        }
+
+        for (Integer id : superseded) {
+            Segment segment = segments.remove(id);
+
+            if (segment != null) {
+                segment.close();
+                segment.file.delete();
+            }
+        }
+
+        for (Segment segment : segments.values()) {
+            replay(segment);
+        }
+
+        if (!segments.isEmpty() && segments.lastEntry().getValue().size < SEGMENT_MAX_BYTES) {
+            activeSegment = segments.lastEntry().getValue();
+        } else {
+            activeSegment = createSegment(segments.isEmpty() ? 1 : segments.lastKey() + 1);
+        }
+    }
+
+    /**
+     * Reads the header of a segment.
+     *
+     * @param segment
+     *         The segment to read the header of.
+     *
+     * @return The ids of the segments superseded by the given segment, or null if the header is
+     * invalid.
+     *
+     * @throws IOException
+     *         If the segment couldn't be read.
+     */
+    private int[] readSuperseded(Segment segment) throws IOException {
+        if (segment.size < headerSize(0)) {
+            return null;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(headerSize(0));
+        readFully(segment.channel, header, 0);
+
+        if (header.getInt() != SEGMENT_MAGIC || header.getInt() != SEGMENT_VERSION) {
+            return null;
+        }
+
+        int count = header.getInt();
+        if (count < 0 || segment.size < headerSize(count)) {
+            return null;
+        }
+
+        ByteBuffer ids = ByteBuffer.allocate(4 * count);
+        readFully(segment.channel, ids, headerSize(0));
+        int[] result = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            result[i] = ids.getInt();
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads all records of a segment into the index. The segment is truncated at the first record
+     * that is torn or fails its checksum.
+     *
+     * @param segment
+     *         The segment to replay.
+     *
+     * @throws IOException
+     *         If the segment couldn't be read.
+     */
+    private void replay(Segment segment) throws IOException {
+        long position = segment.headerSize;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+
+        while (position + RECORD_HEADER_SIZE <= segment.size) {
+            header.clear();
+            readFully(segment.channel, header, position);
+            header.getInt();
+            int keyLength = header.getInt();
+            int valueLength = header.getInt();
+
+            if (keyLength < 0 || valueLength < TOMBSTONE || position + recordSize(keyLength, valueLength) > segment.size) {
+                break;
+            }
+
+            ByteBuffer record = ByteBuffer.allocate(recordSize(keyLength, valueLength));
+            readFully(segment.channel, record, position);
+
+            if (record.getInt(0) != checksum(record)) {
+                break;
+            }
+
+            String key = new String(record.array(), RECORD_HEADER_SIZE, keyLength, UTF8);
+            Location location = new Location(segment.id, position, keyLength, valueLength);
+            Location previous = valueLength == TOMBSTONE ? index.remove(key) : index.put(key, location);
+
+            if (valueLength != TOMBSTONE) {
+                liveBytes += location.size();
+            }
+
+            if (previous != null) {
+                liveBytes -= previous.size();
+            }
+
+            recordBytes += location.size();
+            position += location.size();
+        }
+
+        if (position < segment.size) {
+            segment.channel.truncate(position);
+            segment.size = position;
+        }
+    }
+
+    private long writeHeader(FileChannel channel, int[] superseded) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(headerSize(superseded.length));
+        header.putInt(SEGMENT_MAGIC);
+        header.putInt(SEGMENT_VERSION);
+        header.putInt(superseded.length);
+
+        for (int id : superseded) {
+            header.putInt(id);
+        }
+
+        header.flip();
+        writeFully(channel, header, 0);
+        return header.limit();
+    }
+
+}
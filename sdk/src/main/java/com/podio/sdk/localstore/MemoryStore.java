@@ -0,0 +1,99 @@
+package com.podio.sdk.localstore;
+
+import android.util.LruCache;
+
+/**
+ * The memory cache of a {@link LocalStore}. The values are kept in a {@link LruCache} along with
+ * their estimated size, which is calculated once, when the value is put in the cache. Removing, or
+ * evicting, a value hence never involves the {@link Sizer} and is cheap enough to do on any
+ * thread.
+ *
+ */
+final class MemoryStore {
+
+    /**
+     * A value in the memory cache and its estimated size.
+     */
+    static final class Entry {
+        private final Object value;
+        private final int size;
+
+        private Entry(Object value, int size) {
+            this.value = value;
+            this.size = size;
+        }
+    }
+
+    private final LruCache<Object, Entry> cache;
+    private final Sizer sizer;
+
+    /**
+     * Creates a new memory cache.
+     *
+     * @param maxBytes
+     *         The max total size of the values in the cache.
+     * @param sizer
+     *         The strategy estimating the size of each value.
+     */
+    MemoryStore(int maxBytes, Sizer sizer) {
+        this.sizer = sizer;
+        this.cache = new LruCache<Object, Entry>(maxBytes) {
+            @Override
+            protected int sizeOf(Object key, Entry entry) {
+                return entry.size;
+            }
+        };
+    }
+
+    /**
+     * Estimates the size of the given value and wraps them both in an entry for the cache. This
+     * doesn't touch the cache, so it can be done before taking any locks.
+     *
+     * @param key
+     *         The key of the value.
+     * @param value
+     *         The value to wrap.
+     * @param encodedLength
+     *         The number of bytes the value was encoded into when written to disk, or -1 if it
+     *         wasn't.
+     *
+     * @return An entry ready to be put in the cache.
+     */
+    Entry newEntry(Object key, Object value, int encodedLength) {
+        return new Entry(value, Math.max(sizer.sizeOf(key, value, encodedLength), 0));
+    }
+
+    Object get(Object key) {
+        Entry entry = cache.get(key);
+        return entry != null ? entry.value : null;
+    }
+
+    void put(Object key, Object value) {
+        cache.put(key, newEntry(key, value, -1));
+    }
+
+    void put(Object key, Entry entry) {
+        cache.put(key, entry);
+    }
+
+    void remove(Object key) {
+        cache.remove(key);
+    }
+
+    void evictAll() {
+        cache.evictAll();
+    }
+
+    int size() {
+        return cache.size();
+    }
+
+    int maxSize() {
+        return cache.maxSize();
+    }
+
+    int evictionCount() {
+        return cache.evictionCount();
+    }
+
+}
@@ -1,9 +1,6 @@
 
 package com.podio.sdk.localstore;
 
-import android.util.LruCache;
-
-import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.Callable;
 
@@ -29,22 +26,17 @@ final class RemoveRequest extends LocalStoreRequest<Void> {
      *         If the file system access fails for some reason.
      */
     private static final void removeValue(RuntimeStoreEnabler storeEnabler, Object key) throws IOException {
-        LruCache<Object, Object> memoryStore = storeEnabler.getMemoryStore();
+        MemoryStore memoryStore = storeEnabler.getMemoryStore();
         if (memoryStore == null) {
             throw new IllegalStateException("You're trying to remove content from a closed store.");
         }
 
         memoryStore.remove(key);
 
-        // Remove from disk. Make sure we wait for the disk store to be ready before we start
-        // accessing it.
-        synchronized (storeEnabler.getDiskStoreLock()) {
-            File diskStore = storeEnabler.getDiskStore();
-            if (isReadableDirectory(diskStore)) {
-                String fileName = getFileName(key);
-                File file = new File(diskStore, fileName);
-                file.delete();
-            }
+        // Remove from disk. The storage engine won't be provided until the disk store is ready.
+        StorageEngine storageEngine = storeEnabler.getStorageEngine();
+        if (storageEngine != null) {
+            storageEngine.delete(key);
         }
     }
 
@@ -0,0 +1,79 @@
+package com.podio.sdk.localstore;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * A specific {@link com.podio.sdk.localstore.LocalStoreRequest LocalStoreRequest} implementation,
+ * targeting the "store several values" operation. This implementation adds all values to the memory
+ * cache and then hands them over to the disk store as one batch, silently overwriting any previous
+ * values with the same keys.
+ *
+ */
+final class SetAllRequest extends LocalStoreRequest<Void> {
+
+    /**
+     * Persists the given values in the disk store and puts them in the memory cache, sized by the
+     * lengths they were encoded into, so they're serialized only once. If the disk store isn't
+     * initialized yet, the disk write operation will block until it's prepared. Values that have
+     * been changed, or removed, again since the request was created aren't put in the memory
+     * cache.
+     *
+     * @param storeEnabler
+     *         The callback that will provide the memory and disk stores.
+     * @param generations
+     *         The generations of the keys in the memory cache.
+     * @param snapshot
+     *         The generations when the request was created.
+     * @param values
+     *         The values to store, mapped by their keys.
+     *
+     * @throws IOException
+     *         If the file system operation fails for some reason.
+     */
+    private static void setValues(RuntimeStoreEnabler storeEnabler, KeyGenerations generations, long[] snapshot, Map<?, ?> values) throws IOException {
+        MemoryStore memoryStore = storeEnabler.getMemoryStore();
+        if (memoryStore == null) {
+            throw new IllegalStateException("You're trying to write content to a closed store.");
+        }
+
+        Map<Object, Integer> encodedLengths = null;
+
+        try {
+            // Update disk. The storage engine won't be provided until the disk store is ready.
+            StorageEngine storageEngine = storeEnabler.getStorageEngine();
+            if (storageEngine != null) {
+                encodedLengths = storageEngine.writeAll(values);
+            }
+        } finally {
+            // The memory cache is updated even if the disk write fails.
+            for (Map.Entry<?, ?> entry : values.entrySet()) {
+                Integer encodedLength = encodedLengths != null ? encodedLengths.get(entry.getKey()) : null;
+                generations.putIfCurrent(memoryStore, entry.getKey(), entry.getValue(), encodedLength != null ? encodedLength : -1, snapshot);
+            }
+        }
+    }
+
+    /**
+     * Creates a new request for storing the given values.
+     *
+     * @param storeEnabler
+     *         The callback that will provide the memory and disk stores.
+     * @param generations
+     *         The generations of the keys in the memory cache.
+     * @param snapshot
+     *         The generations when the request was created.
+     * @param values
+     *         The values to store, mapped by their keys.
+     */
+    SetAllRequest(final RuntimeStoreEnabler storeEnabler, final KeyGenerations generations, final long[] snapshot, final Map<?, ?> values) {
+        super(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                setValues(storeEnabler, generations, snapshot, values);
+                return null;
+            }
+        });
+    }
+}
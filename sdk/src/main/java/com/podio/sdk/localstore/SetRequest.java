@@ -1,9 +1,6 @@
 
 package com.podio.sdk.localstore;
 
-import android.util.LruCache;
-
-import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.Callable;
 
@@ -17,12 +14,18 @@ import java.util.concurrent.Callable;
 final class SetRequest extends LocalStoreRequest<Void> {
 
     /**
-     * Puts the given value in the memory cache and persists it in the disk store. If the disk store
-     * isn't initialized yet, the disk write operation will block until it's prepared. Any previous
-     * values are silently overwritten.
+     * Persists the given value in the disk store and puts it in the memory cache, sized by the
+     * length it was encoded into, so it's serialized only once. If the disk store isn't
+     * initialized yet, the disk write operation will block until it's prepared. Any previous
+     * values are silently overwritten. The value isn't put in the memory cache if it has been
+     * changed, or removed, again since the request was created.
      *
      * @param storeEnabler
      *         The callback that will provide the memory and disk stores.
+     * @param generations
+     *         The generations of the keys in the memory cache.
+     * @param snapshot
+     *         The generations when the request was created.
      * @param key
      *         The key of the value to store.
      * @param value
@@ -31,23 +34,23 @@ final class SetRequest extends LocalStoreRequest<Void> {
      * @throws IOException
      *         If the file system operation fails for some reason.
      */
-    private static void setValue(final RuntimeStoreEnabler storeEnabler, Object key, Object value) throws IOException {
-        LruCache<Object, Object> memoryStore = storeEnabler.getMemoryStore();
+    private static void setValue(final RuntimeStoreEnabler storeEnabler, KeyGenerations generations, long[] snapshot, Object key, Object value) throws IOException {
+        MemoryStore memoryStore = storeEnabler.getMemoryStore();
         if (memoryStore == null) {
             throw new IllegalStateException("You're trying to write content to a closed store.");
         }
 
-        memoryStore.put(key, value);
+        int encodedLength = -1;
 
-        // Update disk. Make sure we wait for the disk store to be ready before we start accessing
-        // it.
-        synchronized (storeEnabler.getDiskStoreLock()) {
-            File diskStore = storeEnabler.getDiskStore();
-            if (isWritableDirectory(diskStore)) {
-                String fileName = getFileName(key);
-                File file = new File(diskStore, fileName);
-                writeObjectToDisk(file, value);
+        try {
+            // Update disk. The storage engine won't be provided until the disk store is ready.
+            StorageEngine storageEngine = storeEnabler.getStorageEngine();
+            if (storageEngine != null) {
+                encodedLength = storageEngine.write(key, value);
             }
+        } finally {
+            // The memory cache is updated even if the disk write fails.
+            generations.putIfCurrent(memoryStore, key, value, encodedLength, snapshot);
         }
     }
 
@@ -56,16 +59,20 @@ final class SetRequest extends LocalStoreRequest<Void> {
      *
      * @param storeEnabler
      *         The callback that will provide the memory and disk stores.
+     * @param generations
+     *         The generations of the keys in the memory cache.
+     * @param snapshot
+     *         The generations when the request was created.
      * @param key
      *         The key of the value.
      * @param value
      *         The value to store.
      */
-    SetRequest(final RuntimeStoreEnabler storeEnabler, final Object key, final Object value) {
+    SetRequest(final RuntimeStoreEnabler storeEnabler, final KeyGenerations generations, final long[] snapshot, final Object key, final Object value) {
         super(new Callable<Void>() {
             @Override
             public Void call() throws Exception {
-                setValue(storeEnabler, key, value);
+                setValue(storeEnabler, generations, snapshot, key, value);
                 return null;
             }
         });
@@ -0,0 +1,28 @@
+
+package com.podio.sdk.localstore;
+
+/**
+ * Definition of a strategy for estimating how much memory a value occupies in the memory cache of a
+ * {@link LocalStore}. The estimate is called once for every value put in the memory cache, on a
+ * worker thread, and the result is kept along with the value. It should still be cheap. Values
+ * which have just been written to disk come with the length of their encoded form.
+ *
+ */
+public interface Sizer {
+
+    /**
+     * Estimates the size of the given value.
+     *
+     * @param key
+     *         The key of the value.
+     * @param value
+     *         The value to estimate the size of. Never null.
+     * @param encodedLength
+     *         The number of bytes the value was encoded into when written to disk, or -1 if it
+     *         wasn't.
+     *
+     * @return The estimated size in bytes. Negative values are treated as zero.
+     */
+    public int sizeOf(Object key, Object value, int encodedLength);
+
+}
@@ -0,0 +1,76 @@
+
+package com.podio.sdk.localstore;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Definition of the persistent tier of a {@link LocalStore}. A storage engine decides how the
+ * values are laid out on disk, while the local store itself takes care of the memory cache and the
+ * threading. All methods are called on the worker thread of the local store.
+ *
+ */
+public interface StorageEngine {
+
+    /**
+     * Reads the value associated with the given key from disk.
+     *
+     * @param key
+     *         The key of the value to read.
+     * @param classOfValue
+     *         The class definition to parse the persisted value into.
+     *
+     * @return The value, or null if there is no value for the given key.
+     *
+     * @throws IOException
+     *         If the disk access fails for some reason.
+     */
+    public <T> T read(Object key, Class<T> classOfValue) throws IOException;
+
+    /**
+     * Persists the given value, silently overwriting any previous value with the same key.
+     *
+     * @param key
+     *         The key of the value.
+     * @param value
+     *         The value to persist.
+     *
+     * @return The number of bytes the value was encoded into, or -1 if it wasn't written.
+     *
+     * @throws IOException
+     *         If the disk access fails for some reason.
+     */
+    public int write(Object key, Object value) throws IOException;
+
+    /**
+     * Persists all given values, silently overwriting any previous values with the same keys.
+     * Engines are encouraged to commit the values as one batch, but the operation is not
+     * guaranteed to be atomic.
+     *
+     * @param values
+     *         The values to persist, mapped by their keys.
+     *
+     * @return The number of bytes each written value was encoded into, mapped by its key.
+     *
+     * @throws IOException
+     *         If the disk access fails for some reason.
+     */
+    public Map<Object, Integer> writeAll(Map<?, ?> values) throws IOException;
+
+    /**
+     * Removes the value associated with the given key from disk.
+     *
+     * @param key
+     *         The key of the value to remove.
+     *
+     * @throws IOException
+     *         If the disk access fails for some reason.
+     */
+    public void delete(Object key) throws IOException;
+
+    /**
+     * Removes all values from disk.
+     */
+    public void erase();
+
+}
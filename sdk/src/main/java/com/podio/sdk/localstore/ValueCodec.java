@@ -0,0 +1,43 @@
+
+package com.podio.sdk.localstore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Definition of a strategy for converting the values of a {@link LocalStore} to and from the bytes
+ * persisted by its {@link StorageEngine}.
+ *
+ */
+public interface ValueCodec {
+
+    /**
+     * Writes the given value to the given stream. The stream is not closed.
+     *
+     * @param value
+     *         The value to encode. Never null.
+     * @param output
+     *         The stream to write the encoded value to.
+     *
+     * @throws IOException
+     *         If the stream couldn't be written to.
+     */
+    public void encode(Object value, OutputStream output) throws IOException;
+
+    /**
+     * Reads a value from the given stream. The stream is closed when the value is read.
+     *
+     * @param input
+     *         The stream to read the encoded value from.
+     * @param classOfValue
+     *         The class definition to decode the value into.
+     *
+     * @return The decoded value.
+     *
+     * @throws IOException
+     *         If the stream couldn't be read from.
+     */
+    public <T> T decode(InputStream input, Class<T> classOfValue) throws IOException;
+
+}
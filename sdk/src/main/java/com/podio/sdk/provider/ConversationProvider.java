@@ -242,7 +242,7 @@ public class ConversationProvider extends Provider {
     public Request<Conversation.Event> replyToConversation(long conversationId, String message, String link, long[] fileIds) {
         Path filter = new Path().withReply(conversationId);
         Conversation.Reply reply = new Conversation.Reply(message, link, fileIds);
-        return post(filter, reply, Conversation.Event.class);
+        return post(deferrable(filter), reply, Conversation.Event.class);
     }
 
     /**
@@ -1,10 +1,42 @@
-
 package com.podio.sdk.provider;
 
+import android.os.Handler;
+import android.os.Looper;
+
+import com.podio.sdk.ApiError;
+import com.podio.sdk.Client;
+import com.podio.sdk.ConnectionError;
 import com.podio.sdk.Filter;
+import com.podio.sdk.NetworkError;
+import com.podio.sdk.NoResponseError;
+import com.podio.sdk.Podio;
+import com.podio.sdk.PodioError;
+import com.podio.sdk.Promise;
 import com.podio.sdk.Provider;
 import com.podio.sdk.Request;
+import com.podio.sdk.RequestGroup;
+import com.podio.sdk.Session;
+import com.podio.sdk.Transport;
 import com.podio.sdk.domain.File;
+import com.podio.sdk.internal.Utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class provides methods to access Files API area.
@@ -18,16 +50,815 @@ public class FileProvider extends Provider {
             super("file");
         }
 
+        public FileFilter withId(long fileId) {
+            addPathSegment(Long.toString(fileId, 10));
+            return this;
+        }
+
     }
 
     /**
-     * Uploads a new file
+     * A file upload which is sent again, after a delay, should it fail for a reason which is likely
+     * to go away by itself, like a dropped connection. The API doesn't support resuming an upload,
+     * so each attempt sends the whole file.
+     */
+    private final class Upload extends Promise<File> {
+        private final java.io.File file;
+        private int attempts;
+
+        private Upload(java.io.File file) {
+            this.file = file;
+            this.attempts = 0;
+        }
+
+        private void send() {
+            if (isCanceled()) {
+                return;
+            }
+
+            attempts++;
+            Request<File> request = post(new FileFilter(), file, File.class);
+
+            if (!addSource(request)) {
+                return;
+            }
+
+            request.withProgressListener(new Request.ProgressListener() {
+                @Override
+                public boolean onProgress(long transferredBytes, long totalBytes) {
+                    progress(transferredBytes, totalBytes);
+                    return false;
+                }
+            });
+
+            request.withResultListener(new Request.ResultListener<File>() {
+                @Override
+                public boolean onRequestPerformed(File content) {
+                    complete(content);
+                    return false;
+                }
+            });
+
+            request.withErrorListener(new Request.ErrorListener() {
+                @Override
+                public boolean onErrorOccurred(Throwable cause) {
+                    if (attempts < maxUploadAttempts && isTransient(cause) && !isCanceled()) {
+                        handler.postDelayed(new Runnable() {
+                            @Override
+                            public void run() {
+                                send();
+                            }
+                        }, getRetryDelay(attempts));
+                    } else {
+                        fail(cause);
+                    }
+
+                    // The error is delivered again, by the upload, once it gives up.
+                    return true;
+                }
+            });
+        }
+    }
+
+    /**
+     * A file download, streamed to a partial file next to the destination and moved in place once
+     * complete. A download which fails half way, or is canceled, leaves the partial file behind,
+     * together with the id of the file and the validator (ETag or Last-Modified) it was fetched
+     * with. The next download of the same file to the same destination asks the API for the
+     * remaining bytes only, if the file still matches the validator, and starts over otherwise.
+     */
+    private final class Download extends Promise<java.io.File> implements Runnable {
+        private final String source;
+        private final String url;
+        private final java.io.File destination;
+        private final java.io.File partial;
+        private final java.io.File validatorFile;
+
+        private int attempts;
+        private HttpURLConnection connection;
+
+        private Download(String source, String url, java.io.File destination) {
+            this.source = source;
+            this.url = url;
+            this.destination = destination;
+            this.partial = new java.io.File(destination.getPath() + PARTIAL_SUFFIX);
+            this.validatorFile = new java.io.File(destination.getPath() + VALIDATOR_SUFFIX);
+            this.attempts = 0;
+        }
+
+        @Override
+        public void run() {
+            if (isCanceled()) {
+                return;
+            }
+
+            attempts++;
+
+            try {
+                if (transfer()) {
+                    release(this);
+                    complete(destination);
+                }
+            } catch (MalformedURLException e) {
+                // Retrying won't make the link any better.
+                onFailed(new PodioError("Invalid download link " + url, e));
+            } catch (SocketTimeoutException e) {
+                onFailed(new NoResponseError(e));
+            } catch (IOException e) {
+                onFailed(new ConnectionError(e));
+            } catch (PodioError e) {
+                onFailed(e);
+            } catch (RuntimeException e) {
+                // Nobody else would ever hear of it, and the download would never finish.
+                onFailed(new PodioError(e));
+            }
+        }
+
+        @Override
+        public void cancel() {
+            HttpURLConnection connection;
+
+            synchronized (this) {
+                connection = this.connection;
+            }
+
+            super.cancel();
+            release(this);
+
+            if (connection != null) {
+                // Makes a blocking read give up right away.
+                connection.disconnect();
+            }
+        }
+
+        /**
+         * Downloads the remaining bytes of the file, or the whole file should the partial file
+         * turn out not to match it. Failures to write to the local disk are thrown as a plain
+         * {@link PodioError}, which isn't retried, while network failures are thrown as
+         * {@link IOException}.
+         *
+         * @return Boolean true if the file was completely downloaded, boolean false if the
+         * download was canceled.
+         */
+        private boolean transfer() throws IOException {
+            java.io.File directory = destination.getAbsoluteFile().getParentFile();
+
+            if (directory != null && !directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+                throw new PodioError("Couldn't create the directory " + directory);
+            }
+
+            try {
+                return transferRemaining();
+            } catch (PartialMismatchException e) {
+                partial.delete();
+                validatorFile.delete();
+                return transferRemaining();
+            }
+        }
+
+        private boolean transferRemaining() throws IOException {
+            String validator = readValidator();
+            long offset = validator != null && partial.isFile() ? partial.length() : 0L;
+            HttpURLConnection connection = getTransport().openConnection(new URL(url));
+
+            synchronized (this) {
+                this.connection = connection;
+            }
+
+            try {
+                connection.setConnectTimeout(Client.CLIENT_DEFAULT_TIMEOUT_MS);
+                connection.setReadTimeout(Client.CLIENT_DEFAULT_TIMEOUT_MS);
+                connection.setUseCaches(false);
+                connection.setDoInput(true);
+
+                // A compressed response would make the byte offsets meaningless.
+                connection.setRequestProperty("Accept-Encoding", "identity");
+
+                if (isPodioHost(connection.getURL()) && Utils.notEmpty(Session.accessToken())) {
+                    connection.setRequestProperty("Authorization", "Bearer " + Session.accessToken());
+                }
+
+                if (offset > 0L) {
+                    // The server sends the whole file instead, should it have changed since.
+                    connection.setRequestProperty("Range", "bytes=" + offset + "-");
+                    connection.setRequestProperty("If-Range", validator);
+                }
+
+                int statusCode = connection.getResponseCode();
+
+                if (statusCode == HTTP_RANGE_NOT_SATISFIABLE && offset > 0L) {
+                    // The partial file is either complete, or broken beyond repair.
+                    if (offset == getTotalLength(connection)) {
+                        return moveInPlace();
+                    }
+
+                    throw new PartialMismatchException("The partial download doesn't match the file");
+                }
+
+                boolean isResumed = statusCode == HttpURLConnection.HTTP_PARTIAL;
+
+                if (statusCode != HttpURLConnection.HTTP_OK && !isResumed) {
+                    throw newApiError(connection, statusCode);
+                }
+
+                if (isResumed && getRangeStart(connection) != offset) {
+                    throw new PartialMismatchException("The server resumed the download at the wrong offset");
+                }
+
+                if (!isResumed) {
+                    // The server sent the whole file after all.
+                    offset = 0L;
+                    writeValidator(getValidator(connection));
+                }
+
+                long length = getContentLength(connection);
+                long totalBytes = length >= 0L ? offset + length : -1L;
+                long transferredBytes = offset;
+
+                InputStream in = connection.getInputStream();
+
+                try {
+                    FileOutputStream out = openPartial(offset > 0L);
+
+                    try {
+                        byte[] buffer = new byte[DOWNLOAD_BUFFER_SIZE];
+                        int count;
+
+                        while ((count = in.read(buffer)) != -1) {
+                            if (isCanceled()) {
+                                return false;
+                            }
+
+                            writePartial(out, buffer, count);
+                            transferredBytes += count;
+                            progress(transferredBytes, totalBytes);
+                        }
+                    } finally {
+                        closePartial(out);
+                    }
+                } finally {
+                    in.close();
+                }
+
+                if (totalBytes >= 0L && transferredBytes < totalBytes) {
+                    throw new IOException("The connection closed after " + transferredBytes + " of " + totalBytes + " bytes");
+                }
+
+                return !isCanceled() && moveInPlace();
+            } finally {
+                synchronized (this) {
+                    this.connection = null;
+                }
+
+                connection.disconnect();
+            }
+        }
+
+        /**
+         * Reads the validator the partial file was fetched with.
+         *
+         * @return The ETag or Last-Modified value, or null if there is none, or if it belongs to
+         * another file.
+         */
+        private String readValidator() {
+            if (!validatorFile.isFile()) {
+                return null;
+            }
+
+            try {
+                byte[] bytes = new byte[(int) validatorFile.length()];
+                DataInputStream in = new DataInputStream(new FileInputStream(validatorFile));
+
+                try {
+                    in.readFully(bytes);
+                } finally {
+                    in.close();
+                }
+
+                String[] lines = new String(bytes, "UTF-8").split("\n", 2);
+                return lines.length == 2 && lines[0].equals(source) && Utils.notEmpty(lines[1]) ? lines[1] : null;
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        private void writeValidator(String value) {
+            if (Utils.isEmpty(value)) {
+                // The partial file can't be resumed from.
+                validatorFile.delete();
+                return;
+            }
+
+            try {
+                FileOutputStream out = new FileOutputStream(validatorFile);
+
+                try {
+                    out.write((source + "\n" + value).getBytes("UTF-8"));
+                } finally {
+                    out.close();
+                }
+            } catch (IOException e) {
+                throw new PodioError("Couldn't write " + validatorFile, e);
+            }
+        }
+
+        private FileOutputStream openPartial(boolean append) {
+            try {
+                return new FileOutputStream(partial, append);
+            } catch (IOException e) {
+                throw new PodioError("Couldn't open " + partial, e);
+            }
+        }
+
+        private void writePartial(FileOutputStream out, byte[] buffer, int count) {
+            try {
+                out.write(buffer, 0, count);
+            } catch (IOException e) {
+                throw new PodioError("Couldn't write to " + partial, e);
+            }
+        }
+
+        private void closePartial(FileOutputStream out) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                throw new PodioError("Couldn't write to " + partial, e);
+            }
+        }
+
+        private boolean moveInPlace() {
+            if (destination.exists() && !destination.delete()) {
+                throw new PodioError("Couldn't replace " + destination);
+            }
+
+            if (!partial.renameTo(destination)) {
+                throw new PodioError("Couldn't move the download to " + destination);
+            }
+
+            validatorFile.delete();
+            return true;
+        }
+
+        private void onFailed(PodioError error) {
+            if (isCanceled()) {
+                return;
+            }
+
+            if (attempts < maxDownloadAttempts && isTransient(error)) {
+                handler.postDelayed(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!isCanceled()) {
+                            getDownloadExecutor().execute(Download.this);
+                        }
+                    }
+                }, getRetryDelay(attempts));
+            } else {
+                release(this);
+                fail(error);
+            }
+        }
+    }
+
+    /**
+     * Thrown when the server doesn't resume a download where the partial file ends.
+     */
+    private static final class PartialMismatchException extends IOException {
+        private PartialMismatchException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Sums up the progress of several uploads.
+     */
+    private static final class BatchProgress {
+        private final long[] uploadedBytes;
+        private final long totalBytes;
+        private Promise<?> target;
+
+        private BatchProgress(List<java.io.File> files) {
+            long totalBytes = 0L;
+
+            for (java.io.File file : files) {
+                totalBytes += file.length();
+            }
+
+            this.uploadedBytes = new long[files.size()];
+            this.totalBytes = totalBytes;
+        }
+
+        private void onProgress(int index, long fileBytes, long transferredBytes, long totalBytes) {
+            long sum = 0L;
+            Promise<?> target;
+
+            synchronized (this) {
+                // The request body is slightly larger than the file, scale it down to match.
+                uploadedBytes[index] = totalBytes > 0 ? fileBytes * transferredBytes / totalBytes : 0L;
+
+                for (long bytes : uploadedBytes) {
+                    sum += bytes;
+                }
+
+                target = this.target;
+            }
+
+            if (target != null) {
+                target.progress(sum, this.totalBytes);
+            }
+        }
+    }
+
+    /**
+     * The default number of files uploaded at the same time by {@link #uploadFiles(List)}.
+     */
+    public static final int DEFAULT_MAX_PARALLEL_UPLOADS = 2;
+
+    /**
+     * The default number of times a file upload is attempted before giving up.
+     */
+    public static final int DEFAULT_MAX_UPLOAD_ATTEMPTS = 4;
+
+    /**
+     * The default number of files downloaded at the same time.
+     */
+    public static final int DEFAULT_MAX_PARALLEL_DOWNLOADS = 2;
+
+    /**
+     * The default number of times a file download is attempted, each resuming where the previous
+     * one stopped, before giving up.
+     */
+    public static final int DEFAULT_MAX_DOWNLOAD_ATTEMPTS = 4;
+
+    private static final long MIN_RETRY_DELAY_MS = 2000L;
+    private static final long MAX_RETRY_DELAY_MS = 60000L;
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+    private static final int DOWNLOAD_BUFFER_SIZE = 16 * 1024;
+    private static final long DOWNLOAD_THREAD_KEEP_ALIVE_SECONDS = 30L;
+    private static final String PARTIAL_SUFFIX = ".part";
+    private static final String VALIDATOR_SUFFIX = ".part.validator";
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Random random = new Random();
+    private int maxUploadAttempts = DEFAULT_MAX_UPLOAD_ATTEMPTS;
+
+    /**
+     * The downloads in progress, keyed by the paths of their destinations.
+     */
+    private final HashMap<String, Download> downloads = new HashMap<String, Download>();
+
+    private Transport transport;
+    private ThreadPoolExecutor downloadExecutor;
+    private int maxParallelDownloads = DEFAULT_MAX_PARALLEL_DOWNLOADS;
+    private int maxDownloadAttempts = DEFAULT_MAX_DOWNLOAD_ATTEMPTS;
+
+    /**
+     * Sets the number of times a file upload is attempted before its error is delivered. Only
+     * errors which are likely to go away by themselves, i.e. connection errors, timeouts and
+     * server errors, are retried.
+     *
+     * @param maxUploadAttempts
+     *         The max number of attempts, one disables retrying.
+     */
+    public void setMaxUploadAttempts(int maxUploadAttempts) {
+        this.maxUploadAttempts = Math.max(1, maxUploadAttempts);
+    }
+
+    /**
+     * Sets the transport to download files through. Defaults to {@link Podio#getTransport()},
+     * sharing the connections of all other requests.
+     *
+     * @param transport
+     *         The transport to open the download connections with.
+     */
+    public synchronized void setTransport(Transport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * Sets the number of files downloaded at the same time. Further downloads wait for their
+     * turn.
+     *
+     * @param maxParallelDownloads
+     *         The max number of parallel downloads.
+     */
+    public synchronized void setMaxParallelDownloads(int maxParallelDownloads) {
+        this.maxParallelDownloads = Math.max(1, maxParallelDownloads);
+
+        if (downloadExecutor != null) {
+            // The max pool size may never be set below the core pool size.
+            if (this.maxParallelDownloads > downloadExecutor.getMaximumPoolSize()) {
+                downloadExecutor.setMaximumPoolSize(this.maxParallelDownloads);
+                downloadExecutor.setCorePoolSize(this.maxParallelDownloads);
+            } else {
+                downloadExecutor.setCorePoolSize(this.maxParallelDownloads);
+                downloadExecutor.setMaximumPoolSize(this.maxParallelDownloads);
+            }
+        }
+    }
+
+    /**
+     * Sets the number of times a file download is attempted before its error is delivered. Each
+     * attempt resumes where the previous one stopped.
+     *
+     * @param maxDownloadAttempts
+     *         The max number of attempts, one disables retrying.
+     */
+    public void setMaxDownloadAttempts(int maxDownloadAttempts) {
+        this.maxDownloadAttempts = Math.max(1, maxDownloadAttempts);
+    }
+
+    /**
+     * Uploads a new file. The file is streamed to the API, reporting its progress to any
+     * {@link Request.ProgressListener}, and is sent again, after an increasing delay, should the
+     * connection drop on the way.
+     *
+     * @param file
+     *         The file to upload.
      *
      * @return A ticket which the caller can use to identify this request with.
      */
     public Request<File> uploadFile(java.io.File file) {
-        FileFilter filter = new FileFilter();
-        return post(filter, file, File.class);
+        Upload upload = new Upload(file);
+        upload.send();
+        return upload;
+    }
+
+    /**
+     * Uploads the given files, {@link #DEFAULT_MAX_PARALLEL_UPLOADS} at a time.
+     *
+     * @param files
+     *         The files to upload.
+     *
+     * @return A ticket which the caller can use to identify this request with.
+     *
+     * @see #uploadFiles(int, List)
+     */
+    public Request<List<File>> uploadFiles(List<java.io.File> files) {
+        return uploadFiles(DEFAULT_MAX_PARALLEL_UPLOADS, files);
+    }
+
+    /**
+     * Uploads the given files, a limited number at a time, e.g. the attachments of a comment. The
+     * progress reported is the sum of all uploads. Should any of the uploads fail, once retried,
+     * then the remaining ones are canceled and the error is delivered.
+     *
+     * @param maxParallelUploads
+     *         The max number of files to upload at the same time.
+     * @param files
+     *         The files to upload.
+     *
+     * @return A ticket delivering the uploaded files, in the order of the given files.
+     */
+    public Request<List<File>> uploadFiles(int maxParallelUploads, final List<java.io.File> files) {
+        final BatchProgress batchProgress = new BatchProgress(files);
+        ArrayList<RequestGroup.Member<File>> members = new ArrayList<RequestGroup.Member<File>>();
+
+        for (int i = 0; i < files.size(); i++) {
+            final int index = i;
+            final java.io.File file = files.get(i);
+
+            members.add(new RequestGroup.Member<File>() {
+                @Override
+                public Request<File> issue() {
+                    final long fileBytes = file.length();
+
+                    return uploadFile(file).withProgressListener(new Request.ProgressListener() {
+                        @Override
+                        public boolean onProgress(long transferredBytes, long totalBytes) {
+                            batchProgress.onProgress(index, fileBytes, transferredBytes, totalBytes);
+                            return false;
+                        }
+                    });
+                }
+            });
+        }
+
+        RequestGroup group = new RequestGroup(maxParallelUploads, members);
+
+        synchronized (batchProgress) {
+            batchProgress.target = group;
+        }
+
+        Request<List<File>> request = group.then(new Request.Transformation<List<Object>, List<File>>() {
+            @Override
+            public List<File> transform(List<Object> results) {
+                ArrayList<File> uploaded = new ArrayList<File>(results.size());
+
+                for (Object result : results) {
+                    uploaded.add((File) result);
+                }
+
+                return uploaded;
+            }
+        }, null);
+
+        group.start();
+        return request;
+    }
+
+    /**
+     * Downloads the content of the file with the given id to the given destination, looking up
+     * the link of the file first.
+     *
+     * @param fileId
+     *         The id of the file to download.
+     * @param destination
+     *         The file to write the content to.
+     *
+     * @return A ticket delivering the destination file once the download is complete.
+     *
+     * @see #download(File, java.io.File)
+     */
+    public Request<java.io.File> download(long fileId, final java.io.File destination) {
+        return get(new FileFilter().withId(fileId), File.class)
+                .compose(new Request.Continuation<File, java.io.File>() {
+                    @Override
+                    public Request<java.io.File> proceed(File file) {
+                        return download(file, destination);
+                    }
+                }, null);
+    }
+
+    /**
+     * Downloads the content of the given file to the given destination. The content is streamed
+     * to disk, a buffer at a time, never held in memory as a whole, and the progress is reported
+     * to any {@link Request.ProgressListener}. Connection failures are retried, and a download
+     * canceled or failed half way is resumed where it stopped by the next download to the same
+     * destination, unless the file has changed since. At most {@link #DEFAULT_MAX_PARALLEL_DOWNLOADS} files are downloaded at the
+     * same time, see {@link #setMaxParallelDownloads(int)}.
+     * <p/>
+     * Downloading to a destination which is already being downloaded to returns the download in
+     * progress.
+     *
+     * @param file
+     *         The file to download.
+     * @param destination
+     *         The file to write the content to. Any existing file is replaced once the download
+     *         is complete.
+     *
+     * @return A ticket delivering the destination file once the download is complete.
+     */
+    public Request<java.io.File> download(File file, java.io.File destination) {
+        return download(Long.toString(file.getId(), 10), file.getLink(), destination);
+    }
+
+    Request<java.io.File> download(String source, String url, java.io.File destination) {
+        Download download;
+
+        synchronized (downloads) {
+            download = downloads.get(destination.getPath());
+
+            if (download != null) {
+                return download;
+            }
+
+            download = new Download(source, url, destination);
+            downloads.put(destination.getPath(), download);
+        }
+
+        getDownloadExecutor().execute(download);
+        return download;
+    }
+
+    private void release(Download download) {
+        synchronized (downloads) {
+            if (downloads.get(download.destination.getPath()) == download) {
+                downloads.remove(download.destination.getPath());
+            }
+        }
+    }
+
+    private synchronized Transport getTransport() {
+        return transport != null ? transport : Podio.getTransport();
+    }
+
+    private synchronized ThreadPoolExecutor getDownloadExecutor() {
+        if (downloadExecutor == null) {
+            downloadExecutor = new ThreadPoolExecutor(maxParallelDownloads, maxParallelDownloads,
+                    DOWNLOAD_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>());
+            downloadExecutor.allowCoreThreadTimeOut(true);
+        }
+
+        return downloadExecutor;
+    }
+
+    /**
+     * Calculates the delay before the given attempt is retried, doubling for each attempt. Half of
+     * the delay is randomized, so that a crowd of devices losing the network at the same time
+     * don't all come back at the same time.
+     */
+    private long getRetryDelay(int attempts) {
+        long delay = Math.min(MAX_RETRY_DELAY_MS, MIN_RETRY_DELAY_MS << Math.min(attempts - 1, 10));
+        return delay / 2 + (long) (random.nextDouble() * (delay / 2));
+    }
+
+    /**
+     * Tells whether the given error is likely to go away by itself, given some time.
+     */
+    private static boolean isTransient(Throwable error) {
+        if (error instanceof ConnectionError || error instanceof NoResponseError || error instanceof NetworkError) {
+            return true;
+        }
+
+        return error instanceof ApiError && ((ApiError) error).getStatusCode() >= 500;
+    }
+
+    /**
+     * Tells whether the given url points to a Podio host, which the access token may be sent to.
+     * Files hosted elsewhere are fetched without it.
+     */
+    private static boolean isPodioHost(URL url) {
+        String host = url.getHost();
+
+        return "https".equalsIgnoreCase(url.getProtocol()) && host != null
+                && (host.equalsIgnoreCase("podio.com") || host.toLowerCase().endsWith(".podio.com"));
+    }
+
+    private static long getContentLength(HttpURLConnection connection) {
+        try {
+            String length = connection.getHeaderField("Content-Length");
+            return length != null ? Long.parseLong(length.trim()) : -1L;
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * Reads the total length of the file from a "Content-Range: bytes *&#47;1234" header.
+     */
+    private static long getTotalLength(HttpURLConnection connection) {
+        String range = connection.getHeaderField("Content-Range");
+        int slash = range != null ? range.lastIndexOf('/') : -1;
+
+        try {
+            return slash >= 0 ? Long.parseLong(range.substring(slash + 1).trim()) : -1L;
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * Reads the first byte offset from a "Content-Range: bytes 1000-1233/1234" header.
+     */
+    private static long getRangeStart(HttpURLConnection connection) {
+        String range = connection.getHeaderField("Content-Range");
+        int dash = range != null ? range.indexOf('-') : -1;
+
+        try {
+            return range != null && range.startsWith("bytes ") && dash > 0 ? Long.parseLong(range.substring(6, dash).trim()) : -1L;
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * Picks the validator to resume a download with. A weak ETag can't be used for ranges, the
+     * Last-Modified date is used instead.
+     */
+    private static String getValidator(HttpURLConnection connection) {
+        String etag = connection.getHeaderField("ETag");
+
+        if (Utils.notEmpty(etag) && !etag.startsWith("W/")) {
+            return etag;
+        }
+
+        return connection.getHeaderField("Last-Modified");
+    }
+
+    private static PodioError newApiError(HttpURLConnection connection, int statusCode) {
+        String json = null;
+
+        try {
+            InputStream in = connection.getErrorStream();
+
+            if (in != null) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+                try {
+                    byte[] buffer = new byte[1024];
+                    int count;
+
+                    while ((count = in.read(buffer)) != -1 && out.size() < DOWNLOAD_BUFFER_SIZE) {
+                        out.write(buffer, 0, count);
+                    }
+                } finally {
+                    in.close();
+                }
+
+                json = out.toString("UTF-8");
+            }
+        } catch (IOException e) {
+            // The status code says enough.
+        }
+
+        try {
+            return new ApiError(json, statusCode);
+        } catch (RuntimeException e) {
+            // Not a Podio API error body, e.g. an HTML page from a CDN.
+            return new ApiError(null, statusCode, e);
+        }
     }
 
 }
@@ -2,11 +2,20 @@
 package com.podio.sdk.provider;
 
 import com.podio.sdk.Filter;
+import com.podio.sdk.Promise;
 import com.podio.sdk.Provider;
 import com.podio.sdk.Request;
+import com.podio.sdk.RequestGroup;
 import com.podio.sdk.domain.Item;
 import com.podio.sdk.domain.ItemParticipation;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Enables access to the item API end point.
  *
@@ -25,6 +34,13 @@ public class ItemProvider extends Provider {
             return this;
         }
 
+        Path withApplicationIdDelete(long applicationId) {
+            addPathSegment("app");
+            addPathSegment(Long.toString(applicationId, 10));
+            addPathSegment("delete");
+            return this;
+        }
+
         Path withApplicationIdFilter(long applicationId) {
             addPathSegment("app");
             addPathSegment(Long.toString(applicationId, 10));
@@ -199,6 +215,539 @@ public class ItemProvider extends Provider {
             Path filter = new Path().withApplicationAndViewIdFilter(applicationId, viewId);
             return post(filter, filterData, Item.FilterResult.class);
         }
+
+        /**
+         * Creates a cursor over the filtered items of the application with the given id. The
+         * cursor fetches the items page by page as they are asked for, the limit set through
+         * {@link #onSpan(int, int)} being the page size, while the offset is ignored.
+         * <p/>
+         * The cursor works on a copy of the filter, changing the filter once the cursor is created
+         * doesn't affect it.
+         *
+         * @param applicationId
+         *         The id of the parent application.
+         *
+         * @return A new cursor. No items are fetched until asked for.
+         */
+        public ItemCursor cursor(long applicationId) {
+            return new ItemCursor(ItemProvider.this, filterData, applicationId, -1L, ItemCursor.DEFAULT_MAX_PAGES);
+        }
+
+        /**
+         * Creates a cursor over the filtered items of the application with the given id and a given
+         * view_id.
+         *
+         * @param applicationId
+         *         The id of the parent application.
+         * @param viewId
+         *         The id of the view.
+         *
+         * @return A new cursor. No items are fetched until asked for.
+         *
+         * @see #cursor(long)
+         */
+        public ItemCursor cursor(long applicationId, long viewId) {
+            return new ItemCursor(ItemProvider.this, filterData, applicationId, viewId, ItemCursor.DEFAULT_MAX_PAGES);
+        }
+    }
+
+    /**
+     * A lazy cursor over a filtered set of items, typically backing an endlessly scrolling list.
+     * The items are fetched a page at a time, the next page being prefetched as the consumer nears
+     * the end of the current one. Only a bounded window of pages is kept in memory, pages falling
+     * out of it are fetched again should they be asked for.
+     * <p/>
+     * A cursor is meant to be used from the main thread, which is also where the page listener is
+     * called.
+     *
+     */
+    public static class ItemCursor {
+
+        /**
+         * Gets notified when a page of items is available.
+         *
+         */
+        public interface PageListener {
+
+            /**
+             * Called on the main thread when a page of items has been fetched.
+             *
+             * @param position
+             *         The position of the first item of the page.
+             * @param count
+             *         The number of items in the page.
+             */
+            public void onPageLoaded(int position, int count);
+        }
+
+        /**
+         * The default number of pages kept in memory.
+         */
+        public static final int DEFAULT_MAX_PAGES = 5;
+
+        private final ItemProvider provider;
+        private final ItemProvider prefetchProvider;
+        private final Item.FilterData filterData;
+        private final long applicationId;
+        private final long viewId;
+        private final int pageSize;
+        private final int prefetchDistance;
+        private final LinkedHashMap<Integer, List<Item>> pages;
+        private final HashMap<Integer, Request<List<Item>>> pendingPages;
+
+        private PageListener pageListener;
+        private int totalCount;
+        private int filteredCount;
+        private boolean isClosed;
+
+        private ItemCursor(ItemProvider provider, Item.FilterData filterData, long applicationId, long viewId, final int maxPages) {
+            int limit = filterData.getLimit();
+
+            this.provider = provider;
+            this.prefetchProvider = provider.withPriority(Request.Priority.PREFETCH);
+            this.filterData = new Item.FilterData(filterData);
+            this.applicationId = applicationId;
+            this.viewId = viewId;
+            this.pageSize = limit > 0 ? limit : Item.FilterData.DEFAULT_LIMIT;
+            this.prefetchDistance = Math.max(1, pageSize / 4);
+            this.pendingPages = new HashMap<Integer, Request<List<Item>>>();
+            this.totalCount = -1;
+            this.filteredCount = -1;
+            this.isClosed = false;
+
+            // Access ordered, so the least recently read page is the first one to go.
+            this.pages = new LinkedHashMap<Integer, List<Item>>(maxPages + 1, 1.0f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, List<Item>> eldest) {
+                    return size() > maxPages;
+                }
+            };
+        }
+
+        /**
+         * Sets the listener to notify when a page of items has been fetched.
+         *
+         * @param pageListener
+         *         The listener, or null to stop listening.
+         *
+         * @return This cursor, to enable convenient chaining.
+         */
+        public synchronized ItemCursor withPageListener(PageListener pageListener) {
+            this.pageListener = pageListener;
+            return this;
+        }
+
+        /**
+         * Returns the item at the given position, if it's in memory. Otherwise the page it's on is
+         * fetched and null is returned, the page listener being notified once it's available.
+         * Reading an item near the end of a page prefetches the next page, with prefetch priority.
+         *
+         * @param position
+         *         The zero-based position of the item in the filtered set.
+         *
+         * @return The item, or null if it isn't fetched yet.
+         */
+        public Item getItem(int position) {
+            int page = position / pageSize;
+            int index = position % pageSize;
+            List<Item> items;
+            boolean isPageNeeded;
+            boolean isNextPageNeeded;
+
+            // This is called for every item shown, don't ask for pages already fetched or on their
+            // way.
+            synchronized (this) {
+                items = pages.get(page);
+                isPageNeeded = items == null && isMissing(page);
+                isNextPageNeeded = items != null && index >= pageSize - prefetchDistance && isMissing(page + 1);
+            }
+
+            if (isPageNeeded) {
+                load(position);
+            }
+
+            if (isNextPageNeeded) {
+                load((page + 1) * pageSize, prefetchProvider);
+            }
+
+            return items != null && index < items.size() ? items.get(index) : null;
+        }
+
+        /**
+         * Fetches the page of items the given position is on, unless it's already in memory or
+         * being fetched.
+         *
+         * @param position
+         *         The zero-based position of an item in the filtered set.
+         *
+         * @return A ticket delivering the items of the page.
+         */
+        public Request<List<Item>> load(int position) {
+            return load(position, provider);
+        }
+
+        private Request<List<Item>> load(int position, ItemProvider provider) {
+            final int page = position / pageSize;
+            Request<List<Item>> request;
+
+            synchronized (this) {
+                List<Item> items = pages.get(page);
+
+                if (items == null && (isClosed || isBeyondEnd(page))) {
+                    items = Collections.emptyList();
+                }
+
+                if (items != null) {
+                    Promise<List<Item>> promise = new Promise<List<Item>>();
+                    promise.complete(items);
+                    return promise;
+                }
+
+                request = pendingPages.get(page);
+
+                if (request != null) {
+                    return request;
+                }
+
+                // Each page gets its own copy, a request may still be serializing the previous one.
+                Item.FilterData pageFilterData = new Item.FilterData(filterData)
+                        .setLimit(pageSize)
+                        .setOffset(page * pageSize);
+
+                Path filter = viewId < 0L ?
+                        new Path().withApplicationIdFilter(applicationId) :
+                        new Path().withApplicationAndViewIdFilter(applicationId, viewId);
+
+                request = provider.post(filter, pageFilterData, Item.FilterResult.class)
+                        .then(new Request.Transformation<Item.FilterResult, List<Item>>() {
+                            @Override
+                            public List<Item> transform(Item.FilterResult result) {
+                                return onPageFetched(page, result);
+                            }
+                        }, null);
+
+                pendingPages.put(page, request);
+            }
+
+            request.withErrorListener(new Request.ErrorListener() {
+                @Override
+                public boolean onErrorOccurred(Throwable cause) {
+                    synchronized (ItemCursor.this) {
+                        pendingPages.remove(page);
+                    }
+
+                    return false;
+                }
+            });
+
+            return request;
+        }
+
+        /**
+         * Returns the total number of items in the application, as stated by the API.
+         *
+         * @return The total count, or -1 if no page has been fetched yet.
+         */
+        public synchronized int getTotalCount() {
+            return totalCount;
+        }
+
+        /**
+         * Returns the number of items matching the filter, as stated by the API.
+         *
+         * @return The filtered count, or -1 if no page has been fetched yet.
+         */
+        public synchronized int getFilteredCount() {
+            return filteredCount;
+        }
+
+        /**
+         * Cancels any pending page requests and drops all pages from memory. The cursor won't
+         * fetch any more items.
+         */
+        public void close() {
+            ArrayList<Request<List<Item>>> requests;
+
+            synchronized (this) {
+                isClosed = true;
+                pages.clear();
+                requests = new ArrayList<Request<List<Item>>>(pendingPages.values());
+                pendingPages.clear();
+            }
+
+            for (Request<List<Item>> request : requests) {
+                request.cancel();
+            }
+        }
+
+        /**
+         * Tells whether the given page needs to be fetched. The caller must hold the lock of this
+         * cursor.
+         */
+        private boolean isMissing(int page) {
+            // Not pages.get, that would count as reading the page.
+            return !pages.containsKey(page) && !pendingPages.containsKey(page) && !isClosed && !isBeyondEnd(page);
+        }
+
+        private boolean isBeyondEnd(int page) {
+            return page < 0 || (filteredCount >= 0 && page * pageSize >= filteredCount);
+        }
+
+        private List<Item> onPageFetched(int page, Item.FilterResult result) {
+            List<Item> items = result.getItems();
+            PageListener listener;
+
+            synchronized (this) {
+                pendingPages.remove(page);
+
+                if (isClosed) {
+                    return items;
+                }
+
+                pages.put(page, items);
+                totalCount = result.getTotalCount();
+                filteredCount = result.getFilteredCount();
+                listener = pageListener;
+            }
+
+            if (listener != null) {
+                listener.onPageLoaded(page * pageSize, items.size());
+            }
+
+            return items;
+        }
+    }
+
+    /**
+     * Enables a set of item operations to be accumulated and submitted as one bulk request.
+     * <p/>
+     * The deletions of items in the same application are sent as one request to the bulk delete
+     * end point of the API. The API doesn't offer a bulk end point for creating or updating items,
+     * hence each of those operations is sent as a request of its own. No more than a given number
+     * of requests are in flight at any time. The requests run concurrently and in no particular
+     * order, so there should be no more than one operation per item in a bulk.
+     *
+     */
+    public class ItemBulkProvider {
+
+        /**
+         * The deletion of all items of one application in the bulk.
+         */
+        private final class BulkDelete implements RequestGroup.Member<Void> {
+            private final long applicationId;
+            private final ArrayList<Long> itemIds;
+
+            private BulkDelete(long applicationId) {
+                this.applicationId = applicationId;
+                this.itemIds = new ArrayList<Long>();
+            }
+
+            @Override
+            public Request<Void> issue() {
+                return ItemProvider.this.delete(applicationId, itemIds);
+            }
+        }
+
+        private final ArrayList<RequestGroup.Member<?>> requests;
+        private final ArrayList<Integer> operations;
+        private final HashMap<Long, Integer> deletes;
+        private int maxConcurrency;
+
+        /**
+         * Constructor.
+         */
+        private ItemBulkProvider() {
+            requests = new ArrayList<RequestGroup.Member<?>>();
+            operations = new ArrayList<Integer>();
+            deletes = new HashMap<Long, Integer>();
+            maxConcurrency = RequestGroup.DEFAULT_MAX_CONCURRENCY;
+        }
+
+        /**
+         * Adds the creation of a new item to the bulk.
+         *
+         * @param applicationId
+         *         The id of the application to which this item is to be added.
+         * @param item
+         *         The data describing the new item to create.
+         *
+         * @return This instance of the ItemBulkProvider, to enable convenient chaining.
+         */
+        public ItemBulkProvider create(final long applicationId, final Item item) {
+            add(new RequestGroup.Member<Item.CreateResult>() {
+                @Override
+                public Request<Item.CreateResult> issue() {
+                    return ItemProvider.this.create(applicationId, item);
+                }
+            });
+
+            return this;
+        }
+
+        /**
+         * Adds an update of an item to the bulk.
+         *
+         * @param itemId
+         *         The id of the item to update.
+         * @param item
+         *         The changed data bundle.
+         *
+         * @return This instance of the ItemBulkProvider, to enable convenient chaining.
+         */
+        public ItemBulkProvider update(final long itemId, final Item item) {
+            add(new RequestGroup.Member<Item.CreateResult>() {
+                @Override
+                public Request<Item.CreateResult> issue() {
+                    return ItemProvider.this.update(itemId, item);
+                }
+            });
+
+            return this;
+        }
+
+        /**
+         * Adds the deletion of an item to the bulk. All items of the same application are deleted
+         * by one request, the deletions hence succeed or fail together.
+         *
+         * @param applicationId
+         *         The id of the application the item belongs to.
+         * @param itemId
+         *         The id of the item to delete.
+         *
+         * @return This instance of the ItemBulkProvider, to enable convenient chaining.
+         */
+        public ItemBulkProvider delete(long applicationId, long itemId) {
+            Integer request = deletes.get(applicationId);
+
+            if (request == null) {
+                request = requests.size();
+                deletes.put(applicationId, request);
+                requests.add(new BulkDelete(applicationId));
+            }
+
+            ((BulkDelete) requests.get(request)).itemIds.add(itemId);
+            operations.add(request);
+
+            return this;
+        }
+
+        /**
+         * Prepares the max number of operations to have in flight at any time. Defaults to
+         * {@link RequestGroup#DEFAULT_MAX_CONCURRENCY}.
+         *
+         * @param maxConcurrency
+         *         The max number of concurrent requests.
+         *
+         * @return This instance of the ItemBulkProvider, to enable convenient chaining.
+         */
+        public ItemBulkProvider onMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * Submits all operations added so far. A failing operation doesn't fail the bulk, the
+         * outcome of each operation is reported through the delivered {@link BulkResult} instead.
+         *
+         * @return A ticket which the caller can use to identify this request with.
+         */
+        public Request<BulkResult> submit() {
+            final RequestGroup group = new RequestGroup(maxConcurrency, requests).withFailFast(false);
+            final ArrayList<Integer> operations = new ArrayList<Integer>(this.operations);
+
+            Request<BulkResult> request = group.then(new Request.Transformation<List<Object>, BulkResult>() {
+                @Override
+                public BulkResult transform(List<Object> results) {
+                    ArrayList<Object> operationResults = new ArrayList<Object>(operations.size());
+                    Throwable[] errors = new Throwable[operations.size()];
+
+                    // Each operation is reported with the outcome of the request carrying it.
+                    for (int i = 0; i < errors.length; i++) {
+                        int request = operations.get(i);
+                        operationResults.add(results.get(request));
+                        errors[i] = group.getError(request);
+                    }
+
+                    return new BulkResult(operationResults, errors);
+                }
+            }, null);
+
+            group.start();
+            return request;
+        }
+
+        private void add(RequestGroup.Member<?> request) {
+            operations.add(requests.size());
+            requests.add(request);
+        }
+    }
+
+    /**
+     * The outcome of a bulk of item operations, in the order the operations were added.
+     *
+     */
+    public static class BulkResult {
+        private final List<Object> results;
+        private final Throwable[] errors;
+
+        private BulkResult(List<Object> results, Throwable[] errors) {
+            this.results = results;
+            this.errors = errors;
+        }
+
+        /**
+         * @return The number of operations in the bulk.
+         */
+        public int size() {
+            return errors.length;
+        }
+
+        /**
+         * @param index
+         *         The position of the operation in the bulk.
+         *
+         * @return Boolean true if the operation succeeded, boolean false otherwise.
+         */
+        public boolean isSuccess(int index) {
+            return errors[index] == null;
+        }
+
+        /**
+         * @param index
+         *         The position of the operation in the bulk.
+         *
+         * @return The result of a successful create or update operation, or null for delete
+         * operations and failed operations.
+         */
+        public Item.CreateResult getResult(int index) {
+            Object result = results.get(index);
+            return result instanceof Item.CreateResult ? (Item.CreateResult) result : null;
+        }
+
+        /**
+         * @param index
+         *         The position of the operation in the bulk.
+         *
+         * @return The error the operation failed with, or null if it succeeded.
+         */
+        public Throwable getError(int index) {
+            return errors[index];
+        }
+
+        /**
+         * @return The number of failed operations.
+         */
+        public int getFailureCount() {
+            int count = 0;
+
+            for (Throwable error : errors) {
+                if (error != null) {
+                    count++;
+                }
+            }
+
+            return count;
+        }
     }
 
     /**
@@ -214,12 +763,28 @@ public class ItemProvider extends Provider {
     public Request<Item.CreateResult> create(long applicationId, Item item) {
         Path filter = new Path().withApplicationId(applicationId);
         Item.CreateData data = item.getCreateData(false);
-        return post(filter, data, Item.CreateResult.class);
+        return post(deferrable(filter), data, Item.CreateResult.class);
     }
 
     public Request<Void> delete(long itemId) {
         Path filter = new Path().withItemId(itemId);
-        return delete(filter);
+        return delete(deferrable(filter));
+    }
+
+    /**
+     * Requests the API to delete the given items of an application, all in one request.
+     *
+     * @param applicationId
+     *         The id of the application the items belong to.
+     * @param itemIds
+     *         The ids of the items to delete.
+     *
+     * @return A ticket which the caller can use to identify this request with.
+     */
+    public Request<Void> delete(long applicationId, List<Long> itemIds) {
+        Path filter = new Path().withApplicationIdDelete(applicationId);
+        Item.BulkDeleteData data = new Item.BulkDeleteData(itemIds);
+        return post(deferrable(filter), data, Void.class);
     }
 
     /**
@@ -236,7 +801,7 @@ public class ItemProvider extends Provider {
         // TODO: Consider a mirror "ChangeData" + "ChangeResult" implementation to avoid confusion.
         Path filter = new Path().withItemId(itemId);
         Item.CreateData data = item.getCreateData(false);
-        return put(filter, data, Item.CreateResult.class);
+        return put(deferrable(filter), data, Item.CreateResult.class);
     }
 
     /**
@@ -252,6 +817,15 @@ public class ItemProvider extends Provider {
         return get(filter, Item.class);
     }
 
+    /**
+     * Enables bulk requests of item changes.
+     *
+     * @return An ItemBulkProvider enabling the caller to add the operations to submit.
+     */
+    public ItemBulkProvider bulk() {
+        return new ItemBulkProvider();
+    }
+
     /**
      * Enables filtered request of items.
      *
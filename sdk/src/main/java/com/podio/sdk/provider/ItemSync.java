@@ -0,0 +1,324 @@
+package com.podio.sdk.provider;
+
+import com.podio.sdk.Promise;
+import com.podio.sdk.Request;
+import com.podio.sdk.Store;
+import com.podio.sdk.domain.Item;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps a local copy of the items of an application up to date, fetching only the items changed
+ * since the last sync. The items are fetched with the most recently edited first, and fetching
+ * stops as soon as an item edited before the watermark of the previous sync shows up. The fetched
+ * items are merged into the store, keyed by their item id, unless the store already holds the same
+ * or a newer revision of them. The watermark of each application is persisted in the store as well,
+ * once the sync has completed. It's the time the sync started, less a margin for any difference
+ * between the clocks of the device and the API, so items edited while the sync is paging through
+ * the items are fetched again by the next sync.
+ * <p/>
+ * Note that items deleted through the API are not detected, as they never show up in a filter.
+ *
+ */
+public class ItemSync {
+
+    /**
+     * The outcome of a sync.
+     *
+     */
+    public static class Result {
+        private final int fetchedCount;
+        private final int changedCount;
+        private final int pageCount;
+
+        private Result(int fetchedCount, int changedCount, int pageCount) {
+            this.fetchedCount = fetchedCount;
+            this.changedCount = changedCount;
+            this.pageCount = pageCount;
+        }
+
+        /**
+         * @return The number of items fetched from the API.
+         */
+        public int getFetchedCount() {
+            return fetchedCount;
+        }
+
+        /**
+         * @return The number of items written to the store.
+         */
+        public int getChangedCount() {
+            return changedCount;
+        }
+
+        /**
+         * @return The number of pages requested from the API.
+         */
+        public int getPageCount() {
+            return pageCount;
+        }
+    }
+
+    /**
+     * The state of one sync in progress.
+     */
+    private final class Run {
+        private final long applicationId;
+        private final long watermark;
+        private final long newWatermark;
+        private final Promise<Result> promise;
+
+        private int fetchedCount;
+        private int changedCount;
+        private int pageCount;
+
+        private Run(long applicationId, long watermark, Promise<Result> promise) {
+            this.applicationId = applicationId;
+            this.watermark = watermark;
+            this.newWatermark = System.currentTimeMillis() - WATERMARK_MARGIN_MS;
+            this.promise = promise;
+        }
+    }
+
+    /**
+     * The sort key making the API deliver the most recently edited items first.
+     */
+    static final String SORT_BY_LAST_EDIT = "last_edit_on";
+
+    private static final String ITEM_KEY_PREFIX = "item-";
+    private static final String WATERMARK_KEY_PREFIX = "watermark-";
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final long WATERMARK_MARGIN_MS = 10L * 60L * 1000L;
+
+    private final ItemProvider provider;
+    private final Store store;
+    private final int pageSize;
+
+    /**
+     * Creates a new sync engine fetching items through the given provider and keeping them in the
+     * given store.
+     *
+     * @param provider
+     *         The provider to fetch the items with.
+     * @param store
+     *         The store to keep the items and watermarks in.
+     */
+    public ItemSync(ItemProvider provider, Store store) {
+        this(provider, store, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Creates a new sync engine fetching items through the given provider, the given number at a
+     * time, and keeping them in the given store. The items are fetched with background priority,
+     * the priority of the given provider itself is left untouched.
+     *
+     * @param provider
+     *         The provider to fetch the items with.
+     * @param store
+     *         The store to keep the items and watermarks in.
+     * @param pageSize
+     *         The number of items to fetch per request.
+     */
+    public ItemSync(ItemProvider provider, Store store, int pageSize) {
+        this.provider = provider.withPriority(Request.Priority.BACKGROUND);
+        this.store = store;
+        this.pageSize = Math.max(1, pageSize);
+    }
+
+    /**
+     * Fetches the items of the given application which have changed since the last sync, and
+     * merges them into the store. The first sync of an application fetches all of its items.
+     *
+     * @param applicationId
+     *         The id of the application to sync.
+     *
+     * @return A ticket which the caller can use to identify this request with.
+     */
+    public Request<Result> sync(final long applicationId) {
+        final Promise<Result> promise = new Promise<Result>();
+
+        store.get(getWatermarkKey(applicationId), Long.class)
+                .withResultListener(new Request.ResultListener<Long>() {
+                    @Override
+                    public boolean onRequestPerformed(Long watermark) {
+                        fetchPage(new Run(applicationId, watermark != null ? watermark : Long.MIN_VALUE, promise), 0);
+                        return false;
+                    }
+                })
+                .withErrorListener(newFailingListener(promise));
+
+        return promise;
+    }
+
+    /**
+     * Fetches the item with the given id from the store.
+     *
+     * @param itemId
+     *         The id of the item.
+     *
+     * @return A ticket delivering the item, or null if it isn't in the store.
+     */
+    public Request<Item> getItem(long itemId) {
+        return store.get(getItemKey(itemId), Item.class);
+    }
+
+    /**
+     * Forgets the watermark of the given application, making the next sync fetch all items. The
+     * items themselves are left in the store.
+     *
+     * @param applicationId
+     *         The id of the application.
+     *
+     * @return A ticket which the caller can use to identify this request with.
+     */
+    public Request<Void> reset(long applicationId) {
+        return store.remove(getWatermarkKey(applicationId));
+    }
+
+    private void fetchPage(final Run run, final int offset) {
+        if (run.promise.isCanceled()) {
+            return;
+        }
+
+        provider.filter()
+                .onSortOrder(SORT_BY_LAST_EDIT, true)
+                .onSpan(pageSize, offset)
+                .onDoRemember(false)
+                .get(run.applicationId)
+                .withResultListener(new Request.ResultListener<Item.FilterResult>() {
+                    @Override
+                    public boolean onRequestPerformed(Item.FilterResult result) {
+                        onPageFetched(run, offset, result);
+                        return false;
+                    }
+                })
+                .withErrorListener(newFailingListener(run.promise));
+    }
+
+    private void onPageFetched(final Run run, final int offset, Item.FilterResult result) {
+        List<Item> items = result.getItems();
+        final HashMap<String, Item> changed = new HashMap<String, Item>();
+        boolean isWatermarkReached = false;
+
+        run.pageCount++;
+        run.fetchedCount += items.size();
+
+        for (Item item : items) {
+            Date lastEdit = item.getLastEditDate();
+
+            // Items edited at the very same second as the watermark may or may not have been
+            // seen by the previous sync, the revision check sorts them out. Items without an
+            // edit date can't tell, they are fetched and the sync goes on.
+            if (lastEdit != null && lastEdit.getTime() < run.watermark) {
+                isWatermarkReached = true;
+                break;
+            }
+
+            changed.put(getItemKey(item.getId()), item);
+        }
+
+        final boolean isLastPage = isWatermarkReached
+                || items.size() < pageSize
+                || offset + items.size() >= result.getFilteredCount();
+
+        merge(run, changed, new Runnable() {
+            @Override
+            public void run() {
+                if (isLastPage) {
+                    finish(run);
+                } else {
+                    fetchPage(run, offset + pageSize);
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes those of the given items to the store which are newer than the stored revisions.
+     */
+    private void merge(final Run run, final Map<String, Item> items, final Runnable next) {
+        if (items.isEmpty()) {
+            next.run();
+            return;
+        }
+
+        store.getAll(new ArrayList<String>(items.keySet()), Item.class)
+                .withResultListener(new Request.ResultListener<Map<Object, Item>>() {
+                    @Override
+                    public boolean onRequestPerformed(Map<Object, Item> stored) {
+                        HashMap<String, Item> newer = new HashMap<String, Item>();
+
+                        for (Map.Entry<String, Item> entry : items.entrySet()) {
+                            Item current = stored != null ? stored.get(entry.getKey()) : null;
+
+                            if (current == null || current.getRevisionId() < entry.getValue().getRevisionId()) {
+                                newer.put(entry.getKey(), entry.getValue());
+                            }
+                        }
+
+                        if (newer.isEmpty()) {
+                            next.run();
+                            return false;
+                        }
+
+                        run.changedCount += newer.size();
+                        store.setAll(newer)
+                                .withResultListener(new Request.ResultListener<Void>() {
+                                    @Override
+                                    public boolean onRequestPerformed(Void content) {
+                                        next.run();
+                                        return false;
+                                    }
+                                })
+                                .withErrorListener(newFailingListener(run.promise));
+
+                        return false;
+                    }
+                })
+                .withErrorListener(newFailingListener(run.promise));
+    }
+
+    private void finish(final Run run) {
+        final Result result = new Result(run.fetchedCount, run.changedCount, run.pageCount);
+
+        if (run.newWatermark == run.watermark) {
+            run.promise.complete(result);
+            return;
+        }
+
+        store.set(getWatermarkKey(run.applicationId), run.newWatermark)
+                .withResultListener(new Request.ResultListener<Void>() {
+                    @Override
+                    public boolean onRequestPerformed(Void content) {
+                        run.promise.complete(result);
+                        return false;
+                    }
+                })
+                .withErrorListener(newFailingListener(run.promise));
+    }
+
+    private static String getItemKey(long itemId) {
+        return ITEM_KEY_PREFIX + itemId;
+    }
+
+    private static String getWatermarkKey(long applicationId) {
+        return WATERMARK_KEY_PREFIX + applicationId;
+    }
+
+    private static Request.ErrorListener newFailingListener(final Promise<?> promise) {
+        return new Request.ErrorListener() {
+            @Override
+            public boolean onErrorOccurred(Throwable cause) {
+                promise.fail(cause);
+
+                // The error is delivered again, by the sync request.
+                return true;
+            }
+        };
+    }
+
+}
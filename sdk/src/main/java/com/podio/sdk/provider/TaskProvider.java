@@ -252,14 +252,14 @@ public class TaskProvider extends Provider {
     }
 
     public Request<Task> createTask(Task.CreateData createData) {
-        return post(new TaskFilter(), createData, Task.class);
+        return post(deferrable(new TaskFilter()), createData, Task.class);
     }
 
     public Request<Task> updateTask(long taskId, Task.CreateData createData) {
-        return put(new TaskFilter().withId(taskId), createData, Task.class);
+        return put(deferrable(new TaskFilter().withId(taskId)), createData, Task.class);
     }
 
     public Request<Void> deleteTask(long taskId) {
-        return delete(new TaskFilter().withId(taskId));
+        return delete(deferrable(new TaskFilter().withId(taskId)));
     }
 }
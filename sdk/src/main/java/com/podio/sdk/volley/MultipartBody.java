@@ -0,0 +1,119 @@
+package com.podio.sdk.volley;
+
+import com.podio.sdk.Request;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.UUID;
+
+/**
+ * A "multipart/form-data" request body carrying a file upload. The file is streamed from disk as
+ * the body is written, it's never held in memory as a whole.
+ *
+ */
+final class MultipartBody {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int BUFFER_SIZE = 8192;
+
+    private final File file;
+    private final String boundary;
+    private final byte[] head;
+    private final byte[] tail;
+
+    /**
+     * Creates a body uploading the given file as the "source" part, along with its name as the
+     * "filename" part.
+     *
+     * @param file
+     *         The file to upload.
+     */
+    MultipartBody(File file) {
+        String name = file.getName().replace("\"", "%22");
+
+        this.file = file;
+        this.boundary = "podio-" + UUID.randomUUID().toString();
+        this.head = ("--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"filename\"\r\n\r\n" +
+                file.getName() + "\r\n" +
+                "--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"source\"; filename=\"" + name + "\"\r\n" +
+                "Content-Type: application/octet-stream\r\n\r\n").getBytes(UTF8);
+        this.tail = ("\r\n--" + boundary + "--\r\n").getBytes(UTF8);
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    String getContentType() {
+        return "multipart/form-data; boundary=" + boundary;
+    }
+
+    /**
+     * Returns the exact number of bytes {@link #writeTo(OutputStream)} will write.
+     *
+     * @return The length of the body in bytes.
+     */
+    long getLength() {
+        return head.length + file.length() + tail.length;
+    }
+
+    /**
+     * Writes the body to the given stream.
+     *
+     * @param out
+     *         The stream to write to.
+     *
+     * @throws IOException
+     *         If the file can't be read or the stream can't be written to.
+     */
+    void writeTo(OutputStream out) throws IOException {
+        writeTo(out, null);
+    }
+
+    /**
+     * Writes the body to the given stream, reporting the progress for every buffer written.
+     *
+     * @param out
+     *         The stream to write to.
+     * @param progressListener
+     *         The listener to report the number of bytes written to, or null.
+     *
+     * @throws IOException
+     *         If the file can't be read or the stream can't be written to.
+     */
+    void writeTo(OutputStream out, Request.ProgressListener progressListener) throws IOException {
+        long length = getLength();
+        long written = head.length;
+        out.write(head);
+
+        InputStream in = new FileInputStream(file);
+
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+                written += count;
+
+                if (progressListener != null) {
+                    progressListener.onProgress(written, length);
+                }
+            }
+        } finally {
+            in.close();
+        }
+
+        out.write(tail);
+
+        if (progressListener != null) {
+            progressListener.onProgress(length, length);
+        }
+    }
+
+}
@@ -0,0 +1,249 @@
+package com.podio.sdk.volley;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.Request;
+import com.android.volley.toolbox.HttpStack;
+import com.podio.sdk.Transport;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A Volley {@link HttpStack} sending its requests through a {@link Transport}, allowing any number
+ * of request queues to share the connections of one transport. Responses are requested gzip
+ * encoded and decoded on the fly, and file uploads are streamed rather than buffered in memory,
+ * reporting their progress as they go.
+ *
+ */
+public class TransportStack implements HttpStack {
+    private static final String HEADER_CONTENT_TYPE = "Content-Type";
+    private static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+    private static final String HEADER_CONTENT_LENGTH = "Content-Length";
+
+    private final Transport transport;
+
+    /**
+     * Creates a new stack sending its requests through the given transport.
+     *
+     * @param transport
+     *         The transport to open the connections with.
+     */
+    public TransportStack(Transport transport) {
+        this.transport = transport;
+    }
+
+    @Override
+    public HttpResponse performRequest(Request<?> request, Map<String, String> additionalHeaders) throws IOException, AuthFailureError {
+        HashMap<String, String> headers = new HashMap<String, String>();
+        headers.putAll(request.getHeaders());
+        headers.putAll(additionalHeaders);
+
+        int timeoutMs = request.getTimeoutMs();
+        HttpURLConnection connection = transport.openConnection(new URL(request.getUrl()));
+        connection.setConnectTimeout(timeoutMs);
+        connection.setReadTimeout(timeoutMs);
+        connection.setUseCaches(false);
+        connection.setDoInput(true);
+
+        // Asking for gzip explicitly makes the platform leave the decoding to us, which is the
+        // same for any transport.
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            connection.addRequestProperty(header.getKey(), header.getValue());
+        }
+
+        setMethodAndBody(connection, request);
+
+        int responseCode = connection.getResponseCode();
+
+        if (responseCode == -1) {
+            throw new IOException("Could not retrieve response code from HttpUrlConnection.");
+        }
+
+        ProtocolVersion protocolVersion = new ProtocolVersion("HTTP", 1, 1);
+        BasicHttpResponse response = new BasicHttpResponse(new BasicStatusLine(protocolVersion, responseCode, connection.getResponseMessage()));
+        boolean isDecoded = false;
+
+        if (hasResponseBody(request.getMethod(), responseCode)) {
+            isDecoded = setEntity(response, connection);
+        }
+
+        for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+            String name = header.getKey();
+            List<String> values = header.getValue();
+
+            if (name == null || values == null || values.isEmpty()) {
+                continue;
+            }
+
+            // The decoded body has neither the encoding nor the length the API stated.
+            if (isDecoded && (HEADER_CONTENT_ENCODING.equalsIgnoreCase(name) || HEADER_CONTENT_LENGTH.equalsIgnoreCase(name))) {
+                continue;
+            }
+
+            response.addHeader(new BasicHeader(name, values.get(0)));
+        }
+
+        return response;
+    }
+
+    /**
+     * Hands the response body over to the given response, decoding it on the fly if it's gzip
+     * encoded.
+     *
+     * @return Boolean true if the body is being decoded, boolean false otherwise.
+     */
+    private static boolean setEntity(BasicHttpResponse response, HttpURLConnection connection) throws IOException {
+        InputStream inputStream;
+
+        try {
+            inputStream = connection.getInputStream();
+        } catch (IOException e) {
+            inputStream = connection.getErrorStream();
+        }
+
+        boolean isGzipped = "gzip".equalsIgnoreCase(connection.getContentEncoding())
+                && connection.getContentLength() != 0
+                && inputStream != null;
+
+        BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContentType(connection.getContentType());
+
+        if (isGzipped) {
+            entity.setContent(new GZIPInputStream(inputStream));
+            entity.setContentLength(-1);
+        } else {
+            entity.setContent(inputStream);
+            entity.setContentLength(connection.getContentLength());
+            entity.setContentEncoding(connection.getContentEncoding());
+        }
+
+        response.setEntity(entity);
+        return isGzipped;
+    }
+
+    private static boolean hasResponseBody(int requestMethod, int responseCode) {
+        return requestMethod != Request.Method.HEAD
+                && !(100 <= responseCode && responseCode < HttpURLConnection.HTTP_OK)
+                && responseCode != HttpURLConnection.HTTP_NO_CONTENT
+                && responseCode != HttpURLConnection.HTTP_NOT_MODIFIED;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static void setMethodAndBody(HttpURLConnection connection, Request<?> request) throws IOException, AuthFailureError {
+        switch (request.getMethod()) {
+            case Request.Method.DEPRECATED_GET_OR_POST:
+                byte[] postBody = request.getPostBody();
+
+                if (postBody != null) {
+                    connection.setRequestMethod("POST");
+                    writeBody(connection, request.getPostBodyContentType(), postBody);
+                }
+
+                break;
+            case Request.Method.GET:
+                connection.setRequestMethod("GET");
+                break;
+            case Request.Method.DELETE:
+                connection.setRequestMethod("DELETE");
+                break;
+            case Request.Method.POST:
+                connection.setRequestMethod("POST");
+                addBody(connection, request);
+                break;
+            case Request.Method.PUT:
+                connection.setRequestMethod("PUT");
+                addBody(connection, request);
+                break;
+            case Request.Method.HEAD:
+                connection.setRequestMethod("HEAD");
+                break;
+            case Request.Method.OPTIONS:
+                connection.setRequestMethod("OPTIONS");
+                break;
+            case Request.Method.TRACE:
+                connection.setRequestMethod("TRACE");
+                break;
+            case Request.Method.PATCH:
+                connection.setRequestMethod("PATCH");
+                addBody(connection, request);
+                break;
+            default:
+                throw new IllegalStateException("Unknown method type.");
+        }
+    }
+
+    private static void addBody(HttpURLConnection connection, Request<?> request) throws IOException, AuthFailureError {
+        final VolleyRequest<?> volleyRequest = request instanceof VolleyRequest ?
+                (VolleyRequest<?>) request :
+                null;
+
+        MultipartBody multipartBody = volleyRequest != null ?
+                volleyRequest.getMultipartBody() :
+                null;
+
+        if (multipartBody == null) {
+            byte[] body = request.getBody();
+
+            if (body != null) {
+                writeBody(connection, request.getBodyContentType(), body);
+            }
+
+            return;
+        }
+
+        long length = multipartBody.getLength();
+        connection.setDoOutput(true);
+        connection.setRequestProperty(HEADER_CONTENT_TYPE, multipartBody.getContentType());
+
+        if (length <= Integer.MAX_VALUE) {
+            connection.setFixedLengthStreamingMode((int) length);
+        } else {
+            connection.setChunkedStreamingMode(0);
+        }
+
+        OutputStream out = connection.getOutputStream();
+
+        try {
+            multipartBody.writeTo(out, new com.podio.sdk.Request.ProgressListener() {
+                @Override
+                public boolean onProgress(long transferredBytes, long totalBytes) {
+                    volleyRequest.deliverProgress(transferredBytes, totalBytes);
+                    return false;
+                }
+            });
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writeBody(HttpURLConnection connection, String contentType, byte[] body) throws IOException {
+        connection.setDoOutput(true);
+        connection.setRequestProperty(HEADER_CONTENT_TYPE, contentType);
+        connection.setFixedLengthStreamingMode(body.length);
+
+        OutputStream out = connection.getOutputStream();
+
+        try {
+            out.write(body);
+        } finally {
+            out.close();
+        }
+    }
+
+}
@@ -10,16 +10,23 @@ import com.android.volley.DefaultRetryPolicy;
 import com.android.volley.RequestQueue;
 import com.android.volley.RequestQueue.RequestFilter;
 import com.android.volley.VolleyError;
-import com.android.volley.toolbox.HurlStack;
-import com.android.volley.toolbox.Volley;
+import com.android.volley.toolbox.BasicNetwork;
+import com.android.volley.toolbox.DiskBasedCache;
+import com.android.volley.toolbox.NoCache;
 import com.podio.sdk.Client;
 import com.podio.sdk.Filter;
+import com.podio.sdk.PodioError;
 import com.podio.sdk.Request;
 import com.podio.sdk.Session;
+import com.podio.sdk.Transport;
+import com.podio.sdk.UrlConnectionTransport;
 import com.podio.sdk.internal.Utils;
 import com.podio.sdk.json.JsonParser;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
@@ -70,49 +77,50 @@ public class VolleyClient implements Client {
     }
 
     private final class VolleyRetryPolicy extends DefaultRetryPolicy {
-        private final String originalAccessToken;
+        private final VolleyRequest<?> request;
 
-        private VolleyRetryPolicy(String referenceAccessToken) {
+        private VolleyRetryPolicy(VolleyRequest<?> request) {
             super(CLIENT_DEFAULT_TIMEOUT_MS, 1, 1.0f);
-            this.originalAccessToken = referenceAccessToken;
+            this.request = request;
         }
 
         @Override
         public void retry(VolleyError error) throws VolleyError {
-            super.retry(error);
-            String accessToken = Utils.notEmpty(originalAccessToken) ? originalAccessToken : "";
+            String accessToken = request.getSentAccessToken();
 
-            // If the access token has changed since this request was originally executed (say, as a
-            // result of an other request refreshing it), the 401 status isn't necessarily valid any
-            // more, hence, we should only re-authenticate if our access token is intact.
+            // If the access token has changed since this request was sent (say, as a result of an
+            // other request refreshing it), the 401 status isn't necessarily valid any more, hence,
+            // we should only re-authenticate if our access token is intact. Otherwise we simply
+            // retry with the new access token.
             if (error instanceof AuthFailureError && accessToken.equals(Session.accessToken())) {
-                Uri uri = buildAuthUri();
+                if (!request.isParkable()) {
+                    throw error;
+                }
 
-                if (uri == null) {
+                // Never block the network thread waiting for the new access token. The request is
+                // parked and a replay of it is sent once the token is refreshed.
+                request.setParked(true);
+
+                if (!park(request.newReplay(), accessToken)) {
                     // Opt out if we can't re-authenticate.
+                    request.setParked(false);
                     clearRequestQueue();
-                    throw error;
                 }
 
-                String url = parseUrl(uri);
-                HashMap<String, String> params = parseParams(uri);
-
-                // Re-authenticate on a prioritized request queue.
-                VolleyRequest<Void> reAuthRequest = VolleyRequest.newAuthRequest(userAgent, url, params);
-                reAuthRequest.setRetryPolicy(new DefaultRetryPolicy(CLIENT_DEFAULT_TIMEOUT_MS, 0, 0));
-                addToRefreshQueue(reAuthRequest);
-
-                reAuthRequest.withErrorListener(new Request.ErrorListener() {
-                    @Override
-                    public boolean onErrorOccurred(Throwable cause) {
-                        clearRequestQueue();
-                        return false;
-                    }
-                }).waitForResult(TimeUnit.MILLISECONDS.toSeconds(CLIENT_DEFAULT_TIMEOUT_MS));
+                throw error;
             }
+
+            super.retry(error);
         }
     }
 
+    private static final String RESPONSE_CACHE_DIRECTORY = "responses";
+    private static final String LEGACY_CACHE_DIRECTORY = "volley";
+    private static final int RESPONSE_CACHE_MAX_SIZE_BYTES = 5 * 1024 * 1024;
+    private static final int BACKGROUND_THREAD_POOL_SIZE = 2;
+    private static final int UPLOAD_THREAD_POOL_SIZE = 1;
+    private static final long REFRESH_AHEAD_MS = TimeUnit.MINUTES.toMillis(10);
+
     protected String clientId;
     protected String clientSecret;
     protected String scheme;
@@ -121,8 +129,37 @@ public class VolleyClient implements Client {
 
     // All implementations and instances will share these request queues.
     private static RequestQueue volleyRequestQueue;
+    private static RequestQueue volleyBackgroundQueue;
+    private static RequestQueue volleyUploadQueue;
     private static RequestQueue volleyRefreshQueue;
 
+    // The access token refresh currently in flight, if any, and the requests waiting for it.
+    private static final Object REFRESH_LOCK = new Object();
+    private static final ArrayList<VolleyRequest<?>> PARKED_REQUESTS = new ArrayList<VolleyRequest<?>>();
+    private static VolleyRequest<Void> refreshRequest;
+
+    // The GET requests currently waiting for a response, keyed on their coalescing key.
+    private static final HashMap<String, VolleyRequest<?>> IN_FLIGHT_REQUESTS = new HashMap<String, VolleyRequest<?>>();
+
+    /**
+     * Forgets about the given in-flight request. Any subsequent identical request will be sent to
+     * the API on its own.
+     *
+     * @param key
+     *         The coalescing key of the request.
+     * @param request
+     *         The request to forget about.
+     */
+    static void removeInFlightRequest(String key, VolleyRequest<?> request) {
+        if (key != null) {
+            synchronized (IN_FLIGHT_REQUESTS) {
+                if (IN_FLIGHT_REQUESTS.get(key) == request) {
+                    IN_FLIGHT_REQUESTS.remove(key);
+                }
+            }
+        }
+    }
+
     @Override
     public Request<Void> authenticateWithUserCredentials(String username, String password) {
         return authenticate(new AuthPath()
@@ -147,83 +184,345 @@ public class VolleyClient implements Client {
     @Override
     @Deprecated
     public Request<Void> forceRefreshTokens() {
-        // Prepare to re-authenticate.
-        Uri uri = buildAuthUri();
+        VolleyRequest<Void> authRequest = refreshTokens();
 
         // Opt out if we can't re-authenticate.
-        if (uri == null) {
+        if (authRequest == null) {
             clearRequestQueue();
-            return null;
         }
 
-        String url = parseUrl(uri);
-        HashMap<String, String> params = parseParams(uri);
-        VolleyRequest<Void> authRequest = VolleyRequest.newAuthRequest(userAgent, url, params);
-
-        // Re-authenticate on a prioritized request queue.
-        addToRefreshQueue(authRequest);
-
         return authRequest;
     }
 
     @Override
     public <T> Request<T> request(Request.Method method, Filter filter, Object item, Class<T> classOfResult) {
         String url = filter.buildUri(scheme, authority).toString();
-        String body = item != null ? JsonParser.toJson(item) : null;
+        VolleyRequest<T> request;
+
+        if (method == Request.Method.POST && item instanceof File) {
+            // File uploads are sent through a queue of their own, see addToRequestQueue.
+            request = VolleyRequest.newUploadRequest(userAgent, url, (File) item, classOfResult);
+        } else {
+            String body = item != null ? JsonParser.toJson(item) : null;
+            request = VolleyRequest.newRequest(userAgent, method, url, body, classOfResult);
+        }
+
+        request.setCacheTimeToLive(filter.getCacheTimeToLive());
+        request.setRequestPriority(filter.getPriority());
+
+        if (method == Request.Method.GET && coalesce(request, url, classOfResult)) {
+            // An identical request is already on its way, this one will piggyback on its response.
+            return request;
+        }
 
-        VolleyRequest<T> request = VolleyRequest.newRequest(userAgent, method, url, body, classOfResult);
-        request.setRetryPolicy(new VolleyRetryPolicy(Session.accessToken()));
+        request.setRetryPolicy(new VolleyRetryPolicy(request));
+
+        if (isSessionAboutToExpire(0L) && park(request, Session.accessToken())) {
+            // The access token has expired, this request will be sent once it's refreshed.
+            return request;
+        }
+
+        if (isSessionAboutToExpire(REFRESH_AHEAD_MS)) {
+            // Refresh in good time, while the current access token is still valid.
+            refreshTokens();
+        }
 
         addToRequestQueue(request);
 
         return request;
     }
 
-    public synchronized void setup(Context context, String scheme, String authority, String clientId, String clientSecret, String userAgent, SSLSocketFactory sslSocketFactory) {
+    /**
+     * Checks whether the current session expires within the given margin.
+     *
+     * @param marginMillis
+     *         The margin in milliseconds.
+     *
+     * @return Boolean true if the session has a known expire time which is within the margin,
+     * boolean false otherwise.
+     */
+    private static boolean isSessionAboutToExpire(long marginMillis) {
+        long expires = Session.expires();
+        return expires > 0 && System.currentTimeMillis() > TimeUnit.SECONDS.toMillis(expires) - marginMillis;
+    }
+
+    /**
+     * Starts refreshing the access token, unless a refresh is already in flight, in which case the
+     * in-flight refresh request is returned. Once the refresh succeeds, all parked requests are
+     * sent with the new access token. Should it fail while the access token is still valid, as it
+     * may when refreshing ahead of time, the parked requests are sent anyway and the next request
+     * will try to refresh again. Should it fail after the access token has expired, then the parked
+     * requests fail with the same error.
+     *
+     * @return The refresh request, or null if the session can't be refreshed.
+     */
+    private VolleyRequest<Void> refreshTokens() {
+        final VolleyRequest<Void> request;
+
+        synchronized (REFRESH_LOCK) {
+            if (refreshRequest != null && !refreshRequest.isCanceled()) {
+                return refreshRequest;
+            }
+
+            Uri uri = buildAuthUri();
+
+            if (uri == null) {
+                return null;
+            }
+
+            request = VolleyRequest.newAuthRequest(userAgent, parseUrl(uri), parseParams(uri));
+            request.setRetryPolicy(new DefaultRetryPolicy(CLIENT_DEFAULT_TIMEOUT_MS, 0, 0));
+            refreshRequest = request;
+        }
+
+        request.withResultListener(new Request.ResultListener<Void>() {
+            @Override
+            public boolean onRequestPerformed(Void content) {
+                releaseParkedRequests(request);
+                return false;
+            }
+        }).withErrorListener(new Request.ErrorListener() {
+            @Override
+            public boolean onErrorOccurred(Throwable cause) {
+                if (isSessionAboutToExpire(0L)) {
+                    failParkedRequests(request, cause instanceof PodioError ? (PodioError) cause : new PodioError(cause));
+                } else {
+                    releaseParkedRequests(request);
+                }
+
+                return false;
+            }
+        });
+
+        // Re-authenticate on a prioritized request queue.
+        addToRefreshQueue(request);
+
+        return request;
+    }
+
+    /**
+     * Parks the given request until the in-flight access token refresh is done, starting one if
+     * needed. The request is sent right away if the access token has already been refreshed.
+     *
+     * @param request
+     *         The request to park.
+     * @param accessToken
+     *         The access token the request is known to have failed, or to be about to fail, with.
+     *
+     * @return Boolean false if the session can't be refreshed, boolean true otherwise.
+     */
+    private boolean park(VolleyRequest<?> request, String accessToken) {
+        VolleyRequest<Void> refresh = refreshTokens();
+
+        if (refresh == null) {
+            return false;
+        }
+
+        synchronized (REFRESH_LOCK) {
+            String currentAccessToken = Session.accessToken();
+            boolean isSameAccessToken = Utils.isEmpty(accessToken) ?
+                    Utils.isEmpty(currentAccessToken) :
+                    accessToken.equals(currentAccessToken);
+
+            if (refresh == refreshRequest && isSameAccessToken) {
+                PARKED_REQUESTS.add(request);
+                return true;
+            }
+        }
+
+        // The refresh has already finished.
+        addToRequestQueue(request);
+        return true;
+    }
+
+    private void failParkedRequests(VolleyRequest<Void> refresh, PodioError error) {
+        ArrayList<VolleyRequest<?>> parkedRequests;
+
+        synchronized (REFRESH_LOCK) {
+            if (refreshRequest == refresh) {
+                refreshRequest = null;
+            }
+
+            parkedRequests = new ArrayList<VolleyRequest<?>>(PARKED_REQUESTS);
+            PARKED_REQUESTS.clear();
+        }
+
+        for (VolleyRequest<?> request : parkedRequests) {
+            if (!request.isCanceled()) {
+                request.fail(error);
+            }
+        }
+    }
+
+    private void releaseParkedRequests(VolleyRequest<Void> refresh) {
+        ArrayList<VolleyRequest<?>> parkedRequests;
+
+        synchronized (REFRESH_LOCK) {
+            if (refreshRequest == refresh) {
+                refreshRequest = null;
+            }
+
+            parkedRequests = new ArrayList<VolleyRequest<?>>(PARKED_REQUESTS);
+            PARKED_REQUESTS.clear();
+        }
+
+        for (VolleyRequest<?> request : parkedRequests) {
+            if (!request.isCanceled()) {
+                addToRequestQueue(request);
+            }
+        }
+    }
+
+    /**
+     * Tries to attach the given GET request to an identical request which is already waiting for a
+     * response. Two requests are identical if they target the same URL, on behalf of the same
+     * session and expect the same type of result. If there is no such request, then the given
+     * request will be registered as in-flight for others to attach to. NOTE! Coalesced requests
+     * will be delivered the very same result object. A request is never attached to an in-flight
+     * request with lower priority, as that would make it wait in a slower lane.
+     *
+     * @param request
+     *         The request to coalesce.
+     * @param url
+     *         The URL of the request.
+     * @param classOfResult
+     *         The type of the expected result.
+     *
+     * @return Boolean true if the request was attached to an in-flight request and hence shouldn't
+     * be enqueued, boolean false otherwise.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> boolean coalesce(VolleyRequest<T> request, String url, Class<T> classOfResult) {
+        String resultType = classOfResult != null ? classOfResult.getName() : "";
+        String key = url + "#" + Session.accessToken() + "#" + resultType;
+
+        synchronized (IN_FLIGHT_REQUESTS) {
+            VolleyRequest<T> inFlightRequest = (VolleyRequest<T>) IN_FLIGHT_REQUESTS.get(key);
+
+            if (inFlightRequest != null
+                    && inFlightRequest.getRequestPriority().compareTo(request.getRequestPriority()) >= 0
+                    && inFlightRequest.addFollower(request)) {
+                return true;
+            }
+
+            request.setCoalescingKey(key);
+            IN_FLIGHT_REQUESTS.put(key, request);
+            return false;
+        }
+    }
+
+    public void setup(Context context, String scheme, String authority, String clientId, String clientSecret, String userAgent, SSLSocketFactory sslSocketFactory) {
+        setup(context, new UrlConnectionTransport(sslSocketFactory), scheme, authority, clientId, clientSecret, userAgent);
+    }
+
+    /**
+     * Initializes this client. All request queues send their requests through the given transport
+     * and hence share its connections.
+     *
+     * @param context
+     *         The context to create the response cache in.
+     * @param transport
+     *         The transport to send the requests through.
+     * @param scheme
+     *         The scheme of the API, typically "https".
+     * @param authority
+     *         The host of the API.
+     * @param clientId
+     *         The pre-shared Podio client id.
+     * @param clientSecret
+     *         The corresponding Podio client secret.
+     * @param userAgent
+     *         Optional user agent.
+     */
+    public synchronized void setup(Context context, Transport transport, String scheme, String authority, String clientId, String clientSecret, String userAgent) {
         this.scheme = scheme;
         this.authority = authority;
         this.clientId = clientId;
         this.clientSecret = clientSecret;
         this.userAgent = userAgent;
 
-        // Ensure the expected request queues exists.
-        if (sslSocketFactory == null) {
+        // Ensure the expected request queues exists. The request queue and the background queue
+        // share the response cache, the refresh queue deals exclusively with authentication
+        // requests, which mustn't be cached. Background and prefetch requests have a queue, and
+        // hence network threads, of their own so they can't starve the requests the user is
+        // waiting for. So do file uploads, which may keep a network thread busy for minutes.
+        if (volleyRequestQueue == null || volleyBackgroundQueue == null || volleyUploadQueue == null || volleyRefreshQueue == null) {
+            TransportStack stack = new TransportStack(transport);
+
             if (volleyRequestQueue == null) {
-                volleyRequestQueue = Volley.newRequestQueue(context);
+                deleteInBackground(new File(context.getCacheDir(), LEGACY_CACHE_DIRECTORY));
+                File cacheDirectory = new File(context.getCacheDir(), RESPONSE_CACHE_DIRECTORY);
+                Cache cache = new DiskBasedCache(cacheDirectory, RESPONSE_CACHE_MAX_SIZE_BYTES);
+                volleyRequestQueue = new RequestQueue(cache, new BasicNetwork(stack));
                 volleyRequestQueue.start();
             }
 
-            if (volleyRefreshQueue == null) {
-                volleyRefreshQueue = Volley.newRequestQueue(context);
-                volleyRefreshQueue.start();
+            if (volleyBackgroundQueue == null) {
+                volleyBackgroundQueue = new RequestQueue(volleyRequestQueue.getCache(), new BasicNetwork(stack), BACKGROUND_THREAD_POOL_SIZE);
+                volleyBackgroundQueue.start();
             }
-        } else if (volleyRequestQueue == null || volleyRefreshQueue == null) {
-            HurlStack stack = new HurlStack(null, sslSocketFactory);
 
-            if (volleyRequestQueue == null) {
-                volleyRequestQueue = Volley.newRequestQueue(context, stack);
-                volleyRequestQueue.start();
+            if (volleyUploadQueue == null) {
+                volleyUploadQueue = new RequestQueue(new NoCache(), new BasicNetwork(stack), UPLOAD_THREAD_POOL_SIZE);
+                volleyUploadQueue.start();
             }
 
             if (volleyRefreshQueue == null) {
-                volleyRefreshQueue = Volley.newRequestQueue(context, stack);
+                volleyRefreshQueue = new RequestQueue(new NoCache(), new BasicNetwork(stack));
                 volleyRefreshQueue.start();
             }
         }
 
-        // Clear out any and all queued requests.
+        // Clear out any and all queued requests. The response cache is intentionally left intact
+        // as its entries are bound to the session they were fetched with.
         clearRequestQueue();
         clearRefreshQueue();
+    }
 
-        // Clear out any cached content in the request queues.
-        Cache requestCache = volleyRequestQueue.getCache();
-        if (requestCache != null) {
-            requestCache.clear();
+    /**
+     * Deletes the given directory, and everything in it, on a background thread. This is how the
+     * response cache of earlier versions, which was kept in Volley's default cache directory, is
+     * cleaned out.
+     *
+     * @param directory
+     *         The directory to delete.
+     */
+    private static void deleteInBackground(final File directory) {
+        if (!directory.exists()) {
+            return;
         }
 
-        Cache priorityCache = volleyRefreshQueue.getCache();
-        if (priorityCache != null) {
-            priorityCache.clear();
+        new Thread("podio-cache-cleanup") {
+            @Override
+            public void run() {
+                delete(directory);
+            }
+        }.start();
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+
+        file.delete();
+    }
+
+    /**
+     * Removes all cached responses from the response cache. This is typically a good idea when a
+     * user logs out.
+     */
+    public synchronized void clearResponseCache() {
+        if (volleyRequestQueue != null) {
+            Cache responseCache = volleyRequestQueue.getCache();
+
+            if (responseCache != null) {
+                responseCache.clear();
+            }
         }
     }
 
@@ -235,8 +534,64 @@ public class VolleyClient implements Client {
 
     protected synchronized void addToRequestQueue(com.android.volley.Request<?> request) {
         if (request != null) {
-            volleyRequestQueue.add(request);
+            boolean isUploadRequest = request instanceof VolleyRequest
+                    && ((VolleyRequest<?>) request).isUploadRequest();
+            boolean isBackgroundRequest = request instanceof VolleyRequest
+                    && ((VolleyRequest<?>) request).isBackgroundRequest();
+
+            if (isUploadRequest) {
+                volleyUploadQueue.add(request);
+            } else if (isBackgroundRequest) {
+                volleyBackgroundQueue.add(request);
+            } else {
+                volleyRequestQueue.add(request);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void cancelAll(final Object tag) {
+        if (tag == null) {
+            return;
+        }
+
+        // Followers are never enqueued, hence the request queues don't know about them.
+        synchronized (IN_FLIGHT_REQUESTS) {
+            for (VolleyRequest<?> inFlightRequest : IN_FLIGHT_REQUESTS.values()) {
+                inFlightRequest.cancelFollowers(tag);
+            }
+        }
+
+        // Nor do they know about the requests parked while the access token is being refreshed.
+        ArrayList<VolleyRequest<?>> canceledRequests = new ArrayList<VolleyRequest<?>>();
+
+        synchronized (REFRESH_LOCK) {
+            Iterator<VolleyRequest<?>> iterator = PARKED_REQUESTS.iterator();
+
+            while (iterator.hasNext()) {
+                VolleyRequest<?> parkedRequest = iterator.next();
+
+                if (tag.equals(parkedRequest.getTag())) {
+                    canceledRequests.add(parkedRequest);
+                    iterator.remove();
+                }
+            }
+        }
+
+        for (VolleyRequest<?> canceledRequest : canceledRequests) {
+            canceledRequest.cancel();
         }
+
+        RequestFilter filter = new RequestFilter() {
+            @Override
+            public boolean apply(com.android.volley.Request<?> request) {
+                return tag.equals(request.getTag());
+            }
+        };
+
+        volleyRequestQueue.cancelAll(filter);
+        volleyBackgroundQueue.cancelAll(filter);
+        volleyUploadQueue.cancelAll(filter);
     }
 
     protected synchronized Request<Void> authenticate(Uri uri) {
@@ -276,12 +631,39 @@ public class VolleyClient implements Client {
     }
 
     protected synchronized void clearRequestQueue() {
-        volleyRequestQueue.cancelAll(new RequestFilter() {
+        // Cancel the followers first, or their leaders would keep on fetching for their sake.
+        synchronized (IN_FLIGHT_REQUESTS) {
+            for (VolleyRequest<?> inFlightRequest : IN_FLIGHT_REQUESTS.values()) {
+                inFlightRequest.cancelFollowers(null);
+            }
+        }
+
+        ArrayList<VolleyRequest<?>> parkedRequests;
+
+        synchronized (REFRESH_LOCK) {
+            parkedRequests = new ArrayList<VolleyRequest<?>>(PARKED_REQUESTS);
+            PARKED_REQUESTS.clear();
+        }
+
+        for (VolleyRequest<?> parkedRequest : parkedRequests) {
+            parkedRequest.cancel();
+        }
+
+        RequestFilter filter = new RequestFilter() {
             @Override
             public boolean apply(com.android.volley.Request<?> request) {
                 return true;
             }
-        });
+        };
+
+        volleyRequestQueue.cancelAll(filter);
+        volleyBackgroundQueue.cancelAll(filter);
+        volleyUploadQueue.cancelAll(filter);
+
+        // Canceled requests won't deliver anything, don't let new requests attach to them.
+        synchronized (IN_FLIGHT_REQUESTS) {
+            IN_FLIGHT_REQUESTS.clear();
+        }
     }
 
     protected HashMap<String, String> parseParams(Uri uri) {
@@ -17,14 +17,25 @@ import com.podio.sdk.ConnectionError;
 import com.podio.sdk.NetworkError;
 import com.podio.sdk.NoResponseError;
 import com.podio.sdk.PodioError;
+import com.podio.sdk.Promise;
+import com.podio.sdk.Provider;
 import com.podio.sdk.Session;
 import com.podio.sdk.internal.Utils;
 import com.podio.sdk.json.JsonParser;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 public class VolleyRequest<T> extends Request<T> implements com.podio.sdk.Request<T> {
@@ -59,6 +70,20 @@ public class VolleyRequest<T> extends Request<T> implements com.podio.sdk.Reques
         return request;
     }
 
+    static <E> VolleyRequest<E> newUploadRequest(String userAgent, String url, java.io.File file, Class<E> classOfResult) {
+        int volleyMethod = parseMethod(com.podio.sdk.Request.Method.POST);
+
+        VolleyRequest<E> request = new VolleyRequest<E>(volleyMethod, url, classOfResult, false);
+        request.multipartBody = new MultipartBody(file);
+        request.contentType = request.multipartBody.getContentType();
+        if (userAgent != null) {
+            request.headers.put("User-agent", userAgent);
+        }
+        request.headers.put("X-Time-Zone", Calendar.getInstance().getTimeZone().getID());
+
+        return request;
+    }
+
     static VolleyRequest<Void> newAuthRequest(String userAgent, String url, Map<String, String> params) {
         int volleyMethod = parseMethod(com.podio.sdk.Request.Method.POST);
 
@@ -95,10 +120,27 @@ public class VolleyRequest<T> extends Request<T> implements com.podio.sdk.Reques
     protected HashMap<String, String> params;
     protected String contentType;
     protected byte[] body;
+    private MultipartBody multipartBody;
+
+    private long cacheTimeToLive;
+    private String cacheIdentity;
+
+    private final ArrayList<VolleyRequest<T>> followers;
+    private boolean hasResponse;
+    private String coalescingKey;
+
+    private com.podio.sdk.Request.Priority requestPriority;
+    private volatile boolean isDetached;
+
+    private VolleyRequest<T> original;
+    private VolleyRequest<T> replay;
+    private volatile boolean isParked;
+    private String sentAccessToken;
 
     private T result;
     private PodioError error;
     private boolean isDone;
+    private boolean hasOutcome;
     private boolean isAuthRequest;
     private boolean hasSessionChanged;
 
@@ -115,6 +157,251 @@ public class VolleyRequest<T> extends Request<T> implements com.podio.sdk.Reques
 
         this.hasSessionChanged = false;
         this.isAuthRequest = isAuthRequest;
+        this.cacheTimeToLive = Provider.CACHE_DISABLED;
+
+        this.followers = new ArrayList<VolleyRequest<T>>();
+        this.hasResponse = false;
+
+        this.requestPriority = com.podio.sdk.Request.Priority.NORMAL;
+        this.isDetached = false;
+
+        this.original = null;
+        this.replay = null;
+        this.isParked = false;
+        this.sentAccessToken = "";
+    }
+
+    /**
+     * Creates a fresh copy of this request, to be sent in its place once the access token has been
+     * refreshed. The outcome of the replay is delivered through this request, which hence has to
+     * be parked so it won't deliver the authentication failure that made it need a replay.
+     *
+     * @return The replay of this request.
+     *
+     * @see #setParked(boolean)
+     */
+    VolleyRequest<T> newReplay() {
+        VolleyRequest<T> request = new VolleyRequest<T>(getMethod(), getUrl(), classOfResult, isAuthRequest);
+        request.contentType = contentType;
+        request.headers.putAll(headers);
+        request.params.putAll(params);
+        request.body = body;
+        request.multipartBody = multipartBody;
+        request.setCacheTimeToLive(cacheTimeToLive);
+        request.setRequestPriority(requestPriority);
+        request.setTag(getTag());
+        request.original = this;
+
+        replay = request;
+        return request;
+    }
+
+    void setParked(boolean parked) {
+        isParked = parked;
+    }
+
+    /**
+     * Tells whether this request may be parked, awaiting a refreshed access token, should it fail
+     * to authenticate. Authentication requests and replays may not, or a revoked session would have
+     * them go around in circles.
+     *
+     * @return Boolean true if this request may be parked, boolean false otherwise.
+     */
+    boolean isParkable() {
+        return original == null && !isAuthRequest;
+    }
+
+    /**
+     * Returns the access token this request was most recently sent with.
+     *
+     * @return The access token, or an empty string if the request hasn't been sent with one.
+     */
+    String getSentAccessToken() {
+        return sentAccessToken;
+    }
+
+    /**
+     * Attaches an identical request to this one. The follower will never be sent to the API, but
+     * will instead be delivered the same result, or error, as this request.
+     *
+     * @param follower
+     *         The request to deliver the response of this request to.
+     *
+     * @return Boolean true if the follower was attached, boolean false if this request already has
+     * a response, or has been canceled, in which case the follower has to fend for itself.
+     */
+    boolean addFollower(VolleyRequest<T> follower) {
+        synchronized (followers) {
+            if (hasResponse || isCanceled()) {
+                return false;
+            }
+
+            followers.add(follower);
+            return true;
+        }
+    }
+
+    void setCoalescingKey(String key) {
+        coalescingKey = key;
+    }
+
+    /**
+     * Cancels the attached followers with the given tag.
+     *
+     * @param tag
+     *         The tag of the followers to cancel, null cancels all followers.
+     */
+    void cancelFollowers(Object tag) {
+        synchronized (followers) {
+            for (VolleyRequest<T> follower : followers) {
+                if (tag == null || tag.equals(follower.getTag())) {
+                    follower.cancel();
+                }
+            }
+        }
+    }
+
+    void setRequestPriority(com.podio.sdk.Request.Priority priority) {
+        requestPriority = priority != null ? priority : com.podio.sdk.Request.Priority.NORMAL;
+    }
+
+    com.podio.sdk.Request.Priority getRequestPriority() {
+        return requestPriority;
+    }
+
+    /**
+     * Tells whether this request belongs in the background lane rather than in the lane of the
+     * requests the user is waiting for.
+     *
+     * @return Boolean true for background and prefetch requests, boolean false otherwise.
+     */
+    boolean isBackgroundRequest() {
+        return requestPriority == com.podio.sdk.Request.Priority.BACKGROUND ||
+                requestPriority == com.podio.sdk.Request.Priority.PREFETCH;
+    }
+
+    /**
+     * Tells whether this request uploads a file, and hence belongs in the upload lane.
+     *
+     * @return Boolean true for file upload requests, boolean false otherwise.
+     */
+    boolean isUploadRequest() {
+        return multipartBody != null;
+    }
+
+    /**
+     * Opts this request in to the response cache, given it's a GET request. A cached response will
+     * be delivered as is for the given number of seconds after it was last fetched or revalidated.
+     * Beyond that Volley will revalidate it with the API by sending the "If-None-Match" and
+     * "If-Modified-Since" headers.
+     *
+     * @param seconds
+     *         The time to live in seconds, or {@link Provider#CACHE_DISABLED}.
+     */
+    void setCacheTimeToLive(long seconds) {
+        cacheTimeToLive = seconds;
+        setShouldCache(seconds >= 0 && getMethod() == com.android.volley.Request.Method.GET && !isAuthRequest);
+    }
+
+    /**
+     * Cached responses are keyed on both the URL and the identity of the current session, so one
+     * user will never be served what was fetched on behalf of an other. The identity is a hash of
+     * the user the session was granted to, which survives token refreshes. Should that not be known
+     * (e.g. for a restored session that hasn't been refreshed yet) a hash of the refresh token, or
+     * the access token if there is no refresh token, is used instead. No token is ever written to
+     * disk.
+     *
+     * @see com.android.volley.Request#getCacheKey()
+     */
+    @Override
+    public String getCacheKey() {
+        if (cacheIdentity == null) {
+            cacheIdentity = getSessionIdentity();
+        }
+
+        return getUrl() + "#" + cacheIdentity;
+    }
+
+    /**
+     * Maps the priority of this request onto the Volley priorities, which decide the order in which
+     * the requests in a queue are executed. Background and prefetch requests have a queue of their
+     * own, so only the priorities sharing a queue need to be told apart.
+     *
+     * @see com.android.volley.Request#getPriority()
+     */
+    @Override
+    public com.android.volley.Request.Priority getPriority() {
+        switch (requestPriority) {
+            case BACKGROUND:
+                return com.android.volley.Request.Priority.LOW;
+            case USER_VISIBLE:
+                return com.android.volley.Request.Priority.HIGH;
+            case PREFETCH:
+            case NORMAL:
+            default:
+                return com.android.volley.Request.Priority.NORMAL;
+        }
+    }
+
+    @Override
+    public VolleyRequest<T> withTag(Object tag) {
+        setTag(tag);
+        return this;
+    }
+
+    /**
+     * Cancels this request. If other, identical, requests are piggybacking on this one, then it
+     * will still be sent to the API for their sake, but none of the listeners of this request will
+     * be called.
+     *
+     * @see com.android.volley.Request#cancel()
+     */
+    @Override
+    public void cancel() {
+        if (original != null && !original.isCanceled()) {
+            // A replay is canceled along with the request it replays, unless that request has to
+            // keep on fetching for its followers.
+            original.cancel();
+
+            if (!original.isCanceled()) {
+                return;
+            }
+        }
+
+        synchronized (followers) {
+            if (!hasResponse && hasLiveFollowers()) {
+                isDetached = true;
+                return;
+            }
+        }
+
+        super.cancel();
+
+        signalDone();
+
+        if (replay != null) {
+            replay.cancel();
+        }
+    }
+
+    private boolean hasLiveFollowers() {
+        for (VolleyRequest<T> follower : followers) {
+            if (!follower.isCanceled()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public <R> com.podio.sdk.Request<R> then(Transformation<T, R> transformation, Executor executor) {
+        return Promise.then(this, transformation, executor);
+    }
+
+    @Override
+    public <R> com.podio.sdk.Request<R> compose(Continuation<T, R> continuation, Executor executor) {
+        return Promise.compose(this, continuation, executor);
     }
 
     @Override
@@ -135,8 +422,60 @@ public class VolleyRequest<T> extends Request<T> implements com.podio.sdk.Reques
         return this;
     }
 
+    @Override
+    public VolleyRequest<T> withProgressListener(ProgressListener progressListener) {
+        if (!isDone) {
+            callbackManager.addProgressListener(progressListener);
+        }
+
+        return this;
+    }
+
+    /**
+     * Reports the progress of the file upload of this request, on the main thread. The progress of
+     * a replay is reported by the request it replays.
+     *
+     * @param sentBytes
+     *         The number of bytes of the body sent so far.
+     * @param totalBytes
+     *         The length of the body in bytes.
+     */
+    void deliverProgress(long sentBytes, long totalBytes) {
+        if (isCanceled()) {
+            return;
+        }
+
+        if (original != null) {
+            original.deliverProgress(sentBytes, totalBytes);
+        } else if (!isDetached) {
+            callbackManager.deliverProgressOnMainThread(sentBytes, totalBytes);
+        }
+    }
+
+    /**
+     * Returns the file upload body of this request. The body is streamed by the
+     * {@link TransportStack}, other stacks will have it buffered by {@link #getBody()}.
+     *
+     * @return The upload body, or null if this isn't a file upload request.
+     */
+    MultipartBody getMultipartBody() {
+        return multipartBody;
+    }
+
     @Override
     public byte[] getBody() throws AuthFailureError {
+        if (multipartBody != null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            try {
+                multipartBody.writeTo(out);
+            } catch (IOException e) {
+                throw new AuthFailureError("Couldn't read the file to upload", e);
+            }
+
+            return out.toByteArray();
+        }
+
         return Utils.notEmpty(body) ? body : super.getBody();
     }
 
@@ -151,8 +490,10 @@ public class VolleyRequest<T> extends Request<T> implements com.podio.sdk.Reques
 
         if (!isAuthRequest && Utils.notEmpty(accessToken)) {
             headers.put("Authorization", "Bearer " + accessToken);
+            sentAccessToken = accessToken;
         } else {
             headers.remove("Authorization");
+            sentAccessToken = "";
         }
 
         return headers;
@@ -160,10 +501,16 @@ public class VolleyRequest<T> extends Request<T> implements com.podio.sdk.Reques
 
     @Override
     public synchronized T waitForResult(long maxSeconds) throws PodioError {
-        // This is still awkward as we might end up blocking the delivery of
-        // a client side error (see
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(Math.max(maxSeconds, 0));
+        long remaining = deadline - System.currentTimeMillis();
+
         try {
-            wait(TimeUnit.SECONDS.toMillis(Math.max(maxSeconds, 0)));
+            // Don't wait at all if the outcome is already known, and don't let a spurious wake-up
+            // cut the wait short.
+            while (!hasOutcome && remaining > 0) {
+                wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
         } catch (InterruptedException e) {
             callbackManager.deliverError(e);
         }
@@ -177,14 +524,38 @@ public class VolleyRequest<T> extends Request<T> implements com.podio.sdk.Reques
 
     @Override
     public void deliverError(VolleyError error) {
+        // A parked request will have its outcome delivered by its replay.
+        if (!isParked) {
+            onError(error);
+        }
+    }
+
+    @Override
+    protected void deliverResponse(T result) {
+        onResponse(result);
+    }
+
+    private void onError(VolleyError error) {
         // This method is executed on the main thread. Extra care should be
         // taken on what is done here.
         isDone = true;
-        callbackManager.deliverError(this.error);
+
+        if (!isDetached) {
+            callbackManager.deliverError(this.error);
+        }
+
+        for (VolleyRequest<T> follower : followers) {
+            if (!follower.isCanceled()) {
+                follower.onError(error);
+            }
+        }
+
+        if (original != null && !original.isCanceled()) {
+            original.onError(error);
+        }
     }
 
-    @Override
-    protected void deliverResponse(T result) {
+    private void onResponse(T result) {
         // This method is executed on the main thread. Extra care should be
         // taken on what is done here.
 
@@ -194,7 +565,19 @@ public class VolleyRequest<T> extends Request<T> implements com.podio.sdk.Reques
             callbackManager.deliverSession();
         }
 
-        callbackManager.deliverResult(result);
+        if (!isDetached) {
+            callbackManager.deliverResult(result);
+        }
+
+        for (VolleyRequest<T> follower : followers) {
+            if (!follower.isCanceled()) {
+                follower.onResponse(result);
+            }
+        }
+
+        if (original != null && !original.isCanceled()) {
+            original.onResponse(result);
+        }
     }
 
     @Override
@@ -212,6 +595,11 @@ public class VolleyRequest<T> extends Request<T> implements com.podio.sdk.Reques
         // This method is executed on the worker thread. It's "safe" to perform
         // JSON parsing here.
 
+        if (isParked) {
+            // The authentication failure is of no interest, the replay will tell the outcome.
+            return volleyError;
+        }
+
         if (volleyError instanceof NoConnectionError) {
             error = new ConnectionError(volleyError);
         } else if (volleyError instanceof TimeoutError) {
@@ -233,11 +621,68 @@ public class VolleyRequest<T> extends Request<T> implements com.podio.sdk.Reques
             }
         }
 
+        signalDone();
+
+        releaseFollowers();
+        return volleyError;
+    }
+
+    /**
+     * Closes this request for new followers and hands the parsed outcome over to any already
+     * attached ones, and to the request this is a replay of, if any. This method is executed on
+     * the worker thread.
+     */
+    private void releaseFollowers() {
+        synchronized (followers) {
+            hasResponse = true;
+        }
+
+        VolleyClient.removeInFlightRequest(coalescingKey, this);
+
+        for (VolleyRequest<T> follower : followers) {
+            follower.release(result, error);
+        }
+
+        if (original != null) {
+            original.release(result, error);
+        }
+    }
+
+    /**
+     * Marks the outcome of this request as known, or the request as canceled, and wakes up any
+     * threads waiting for it.
+     */
+    private synchronized void signalDone() {
+        hasOutcome = true;
+        notifyAll();
+    }
+
+    /**
+     * Fails this request, without sending it, with the given error. This method is executed on the
+     * main thread.
+     *
+     * @param error
+     *         The error to deliver.
+     */
+    void fail(PodioError error) {
+        synchronized (this) {
+            this.result = null;
+            this.error = error;
+            signalDone();
+        }
+
+        releaseFollowers();
+        onError(null);
+    }
+
+    private void release(T result, PodioError error) {
         synchronized (this) {
-            notifyAll();
+            this.result = result;
+            this.error = error;
+            signalDone();
         }
 
-        return volleyError;
+        releaseFollowers();
     }
 
     private void handleNoneJsonError(VolleyError volleyError, int responseCode) {
@@ -260,12 +705,11 @@ public class VolleyRequest<T> extends Request<T> implements com.podio.sdk.Reques
         Response<T> response;
 
         try {
-            Entry cacheHeaders = HttpHeaderParser.parseCacheHeaders(networkResponse);
-            String charSet = HttpHeaderParser.parseCharset(networkResponse.headers);
-            String json = new String(networkResponse.data, charSet);
+            Entry cacheHeaders = parseCacheEntry(networkResponse);
+            Charset charset = Charset.forName(HttpHeaderParser.parseCharset(networkResponse.headers));
 
             if (isAuthRequest) {
-                Session.set(json);
+                Session.set(new String(networkResponse.data, charset));
                 hasSessionChanged = true;
                 result = null;
                 response = Response.success(null, cacheHeaders);
@@ -273,19 +717,24 @@ public class VolleyRequest<T> extends Request<T> implements com.podio.sdk.Reques
                 result = null;
                 response = Response.success(null, cacheHeaders);
             } else {
-                result = JsonParser.fromJson(json, classOfResult);
+                // Parse straight from the response bytes, there is no need to hold an
+                // intermediate copy of a potentially large JSON string in memory.
+                result = JsonParser.fromJson(networkResponse.data, charset, classOfResult);
                 response = Response.success(result, cacheHeaders);
             }
-        } catch (UnsupportedEncodingException e) {
+        } catch (IllegalCharsetNameException e) {
+            // The provided response JSON is provided with an illegal char-set.
+            result = null;
+            response = Response.error(new ParseError(e));
+        } catch (UnsupportedCharsetException e) {
             // The provided response JSON is provided with an unknown char-set.
             result = null;
             response = Response.error(new ParseError(e));
         }
 
-        synchronized (this) {
-            notifyAll();
-        }
+        signalDone();
 
+        releaseFollowers();
         return response;
     }
 
@@ -317,4 +766,90 @@ public class VolleyRequest<T> extends Request<T> implements com.podio.sdk.Reques
     private int getResponseCode(NetworkResponse networkResponse) {
         return networkResponse != null ? networkResponse.statusCode : 0;
     }
+
+    /**
+     * Builds the cache entry for a response. The caching policy is decided by the provider, not
+     * by the API, so any "Cache-Control" headers are ignored and the entry is given the time to
+     * live of this request. The validators, "ETag" and "Last-Modified", are kept for the
+     * revalidation.
+     *
+     * @param networkResponse
+     *         The response to build a cache entry for.
+     *
+     * @return A cache entry, or null if this request shouldn't be cached.
+     */
+    private Entry parseCacheEntry(NetworkResponse networkResponse) {
+        if (!shouldCache()) {
+            return HttpHeaderParser.parseCacheHeaders(networkResponse);
+        }
+
+        // Volley sends the server date of the cached entry as the "If-Modified-Since" header when
+        // revalidating it, so we store the time the resource was last modified, when known, there.
+        Map<String, String> responseHeaders = networkResponse.headers;
+        String lastModified = getHeader(responseHeaders, "Last-Modified");
+        String serverDate = lastModified != null ? lastModified : getHeader(responseHeaders, "Date");
+        long expires = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(cacheTimeToLive);
+
+        Entry entry = new Entry();
+        entry.data = networkResponse.data;
+        entry.etag = getHeader(responseHeaders, "ETag");
+        entry.serverDate = serverDate != null ? HttpHeaderParser.parseDateAsEpoch(serverDate) : 0L;
+        entry.ttl = expires;
+        entry.softTtl = expires;
+        entry.responseHeaders = responseHeaders;
+
+        return entry;
+    }
+
+    private static String getHeader(Map<String, String> headers, String name) {
+        if (headers == null) {
+            return null;
+        }
+
+        String value = headers.get(name);
+
+        if (value == null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                if (name.equalsIgnoreCase(header.getKey())) {
+                    value = header.getValue();
+                    break;
+                }
+            }
+        }
+
+        return value;
+    }
+
+    static String getSessionIdentity() {
+        String reference = Session.reference();
+
+        if (Utils.notEmpty(reference)) {
+            return sha1(reference);
+        }
+
+        String refreshToken = Session.refreshToken();
+        return sha1(Utils.notEmpty(refreshToken) ? refreshToken : Session.accessToken());
+    }
+
+    private static String sha1(String text) {
+        if (Utils.isEmpty(text)) {
+            return "";
+        }
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(text.getBytes(Charset.forName("UTF-8")));
+            StringBuilder builder = new StringBuilder(hash.length * 2);
+
+            for (byte b : hash) {
+                builder.append(Character.forDigit((b >> 4) & 0xf, 16));
+                builder.append(Character.forDigit(b & 0xf, 16));
+            }
+
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-1 is guaranteed on Android. Still, never fall back to the plain token.
+            return Integer.toHexString(text.hashCode());
+        }
+    }
 }